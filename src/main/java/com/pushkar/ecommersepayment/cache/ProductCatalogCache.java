@@ -0,0 +1,95 @@
+package com.pushkar.ecommersepayment.cache;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pushkar.ecommersepayment.model.Product;
+
+/**
+ * Bounded, TTL-evicting read cache for the product catalog.
+ *
+ * Entries are handed out as copies so callers that mutate a product before
+ * saving it cannot corrupt the cached value. Only the fields that change
+ * through product updates are kept: stock changes with every checkout, on
+ * every instance, so it is stored as {@code null} and the caller overlays
+ * the current value from the database on each read. Product and listing
+ * entries are dropped when a product is created, updated or deleted.
+ */
+public class ProductCatalogCache {
+
+  private static final int MAX_CACHED_PAGES = 256;
+
+  private final Cache<String, Product> products;
+  private final Cache<String, List<Product>> productLists;
+
+  public ProductCatalogCache(long maxSize, Duration ttl) {
+    this.products = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+    this.productLists = Caffeine.newBuilder()
+        .maximumSize(MAX_CACHED_PAGES)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+  }
+
+  public Product get(String id) {
+    Product product = products.getIfPresent(id);
+    return product != null ? copyOf(product) : null;
+  }
+
+  public Map<String, Product> getAll(Collection<String> ids) {
+    Map<String, Product> found = new HashMap<>();
+    products.getAllPresent(ids).forEach((id, product) -> found.put(id, copyOf(product)));
+    return found;
+  }
+
+  public void put(Product product) {
+    products.put(product.getId(), withoutStock(product));
+  }
+
+  /**
+   * Returns the cached listing page for {@code pageKey}, loading it on a miss.
+   * Pages are dropped whenever a product is created, updated or deleted.
+   */
+  public List<Product> getPage(String pageKey, Supplier<List<Product>> loader) {
+    List<Product> cached = productLists.get(pageKey, key -> loader.get().stream()
+        .map(ProductCatalogCache::withoutStock)
+        .toList());
+    return cached.stream().map(ProductCatalogCache::copyOf).toList();
+  }
+
+  public void evict(String id) {
+    products.invalidate(id);
+    productLists.invalidateAll();
+  }
+
+  public void evictLists() {
+    productLists.invalidateAll();
+  }
+
+  public Cache<String, Product> getProductEntries() {
+    return products;
+  }
+
+  public Cache<String, List<Product>> getProductListEntries() {
+    return productLists;
+  }
+
+  private static Product copyOf(Product product) {
+    return new Product(product.getId(), product.getName(), product.getDescription(),
+        product.getPrice(), product.getStock());
+  }
+
+  private static Product withoutStock(Product product) {
+    return new Product(product.getId(), product.getName(), product.getDescription(), product.getPrice(), null);
+  }
+}
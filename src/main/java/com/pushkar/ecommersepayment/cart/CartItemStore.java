@@ -0,0 +1,44 @@
+package com.pushkar.ecommersepayment.cart;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One {@code cart_items} document per cart line.
+ */
+@RequiredArgsConstructor
+public class CartItemStore implements CartStore {
+
+  private final CartRepository cartRepository;
+
+  @Override
+  public Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity) {
+    return cartRepository.addQuantity(userId, productId, quantity, maxQuantity);
+  }
+
+  @Override
+  public List<CartItem> findLines(String userId) {
+    return cartRepository.findByUserId(userId);
+  }
+
+  @Override
+  public CartResponse view(String userId) {
+    return cartRepository.findCartView(userId);
+  }
+
+  @Override
+  public void clear(String userId) {
+    cartRepository.deleteByUserId(userId);
+  }
+
+  @Override
+  public void removeLine(String cartItemId) {
+    cartRepository.deleteById(cartItemId);
+  }
+}
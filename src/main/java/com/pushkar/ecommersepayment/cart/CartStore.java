@@ -0,0 +1,42 @@
+package com.pushkar.ecommersepayment.cart;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+
+/**
+ * Where cart lines are kept. {@code cart.storage=items} stores one
+ * {@link CartItem} document per line in {@code cart_items},
+ * {@code embedded} one {@link com.pushkar.ecommersepayment.model.Cart}
+ * document per user in {@code carts}.
+ */
+public interface CartStore {
+
+  /**
+   * Adds {@code quantity} to the user's line for the product, creating the
+   * line if needed, as long as the resulting quantity stays within
+   * {@code maxQuantity}. Returns the line after the change, or empty when it
+   * would exceed the limit, in which case nothing is written.
+   */
+  Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity);
+
+  List<CartItem> findLines(String userId);
+
+  /**
+   * The cart joined to its products with line totals and subtotal.
+   */
+  CartResponse view(String userId);
+
+  void clear(String userId);
+
+  void removeLine(String cartItemId);
+
+  /**
+   * Writes out any of the user's cart changes that are still held in memory.
+   * Nothing to do for stores that write through.
+   */
+  default void flush(String userId) {
+  }
+}
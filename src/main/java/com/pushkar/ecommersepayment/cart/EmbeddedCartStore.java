@@ -0,0 +1,53 @@
+package com.pushkar.ecommersepayment.cart;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.CartLine;
+import com.pushkar.ecommersepayment.repository.CartDocumentRepository;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * One {@code carts} document per user with the lines embedded. Adding is a
+ * single atomic update, viewing reads one document and clearing deletes one.
+ */
+@RequiredArgsConstructor
+public class EmbeddedCartStore implements CartStore {
+
+  private final CartDocumentRepository cartDocumentRepository;
+
+  @Override
+  public Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity) {
+    return cartDocumentRepository.addQuantity(userId, productId, quantity, maxQuantity)
+        .map(line -> toCartItem(userId, line));
+  }
+
+  @Override
+  public List<CartItem> findLines(String userId) {
+    return cartDocumentRepository.findById(userId)
+        .map(cart -> cart.getLines().stream().map(line -> toCartItem(userId, line)).toList())
+        .orElse(List.of());
+  }
+
+  @Override
+  public CartResponse view(String userId) {
+    return cartDocumentRepository.findCartView(userId);
+  }
+
+  @Override
+  public void clear(String userId) {
+    cartDocumentRepository.deleteById(userId);
+  }
+
+  @Override
+  public void removeLine(String cartItemId) {
+    cartDocumentRepository.removeLine(cartItemId);
+  }
+
+  private static CartItem toCartItem(String userId, CartLine line) {
+    return new CartItem(line.getLineId(), userId, line.getProductId(), line.getQuantity());
+  }
+}
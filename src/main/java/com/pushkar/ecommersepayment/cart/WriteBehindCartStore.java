@@ -0,0 +1,316 @@
+package com.pushkar.ecommersepayment.cart;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Holds cart mutations in memory and writes only their net effect to the
+ * wrapped store, on a timer or when the cart is read or checked out.
+ *
+ * The first mutation of a user loads the stored lines once; adds, removes and
+ * clears after that only change the in-memory copy, so the stock limit is
+ * still checked exactly. A flush then issues at most one write per changed
+ * line. Durability is bounded by {@code flushInterval} (mutations younger
+ * than that are lost if the process dies), {@code maxUsers} (further users
+ * write through) and {@code maxPendingPerUser} (the user is flushed inline).
+ * Lines added since the last flush have no id yet, so they cannot be removed
+ * by id until flushed. A failed flush keeps the user's buffer; reads and
+ * checkouts of that user fail until a flush succeeds rather than seeing a
+ * cart without the buffered changes. An addition that no longer fits
+ * because the stored line was changed by another writer meanwhile is
+ * dropped, logged and counted on {@code cart.buffer.dropped}.
+ */
+@Slf4j
+public class WriteBehindCartStore implements CartStore {
+
+  private final CartStore delegate;
+  private final int maxUsers;
+  private final int maxPendingPerUser;
+
+  private final Map<String, UserBuffer> buffers = new ConcurrentHashMap<>();
+  private final Map<String, String> lineOwners = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService timer;
+
+  private final Counter mutationCounter;
+  private final Counter writeCounter;
+  private final Counter droppedCounter;
+
+  public WriteBehindCartStore(CartStore delegate, Duration flushInterval, int maxUsers, int maxPendingPerUser,
+      MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.maxUsers = maxUsers;
+    this.maxPendingPerUser = maxPendingPerUser;
+
+    this.mutationCounter = Counter.builder("cart.buffer.mutations")
+        .description("Cart mutations accepted into the write-behind buffer")
+        .register(meterRegistry);
+    this.writeCounter = Counter.builder("cart.buffer.writes")
+        .description("Writes issued to the cart store when flushing the buffer")
+        .register(meterRegistry);
+    this.droppedCounter = Counter.builder("cart.buffer.dropped")
+        .description("Buffered cart additions dropped at flush because the line had grown meanwhile")
+        .register(meterRegistry);
+    Gauge.builder("cart.buffer.coalescing.ratio", this, WriteBehindCartStore::getCoalescingRatio)
+        .description("Buffered cart mutations per write issued")
+        .register(meterRegistry);
+    Gauge.builder("cart.buffer.users", buffers, Map::size)
+        .description("Users with unflushed cart mutations")
+        .register(meterRegistry);
+
+    this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "cart-write-behind");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = flushInterval.toMillis();
+    timer.scheduleWithFixedDelay(this::flushAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity) {
+    if (!buffers.containsKey(userId) && buffers.size() >= maxUsers) {
+      return countWrite(delegate.addQuantity(userId, productId, quantity, maxQuantity));
+    }
+    while (true) {
+      UserBuffer buffer = bufferFor(userId);
+      synchronized (buffer) {
+        if (buffer.flushed) {
+          continue;
+        }
+        int newQuantity = buffer.quantities.getOrDefault(productId, 0) + quantity;
+        if (newQuantity > maxQuantity) {
+          return Optional.empty();
+        }
+        buffer.quantities.put(productId, newQuantity);
+        CartItem stored = buffer.cleared ? null : buffer.stored.get(productId);
+        CartItem line = new CartItem(stored != null ? stored.getId() : null, userId, productId, newQuantity);
+        mutated(buffer);
+        return Optional.of(line);
+      }
+    }
+  }
+
+  @Override
+  public List<CartItem> findLines(String userId) {
+    flush(userId);
+    return delegate.findLines(userId);
+  }
+
+  @Override
+  public CartResponse view(String userId) {
+    flush(userId);
+    return delegate.view(userId);
+  }
+
+  @Override
+  public void clear(String userId) {
+    // Without buffered changes a clear is a single write anyway
+    UserBuffer buffer = buffers.get(userId);
+    if (buffer != null) {
+      synchronized (buffer) {
+        if (!buffer.flushed) {
+          buffer.quantities.clear();
+          buffer.cleared = true;
+          mutated(buffer);
+          return;
+        }
+      }
+    }
+    delegate.clear(userId);
+    countWrite(null);
+  }
+
+  @Override
+  public void removeLine(String cartItemId) {
+    String userId = lineOwners.get(cartItemId);
+    UserBuffer buffer = userId != null ? buffers.get(userId) : null;
+    if (buffer != null) {
+      synchronized (buffer) {
+        if (!buffer.flushed) {
+          buffer.stored.values().stream()
+              .filter(line -> cartItemId.equals(line.getId()))
+              .findFirst()
+              .ifPresent(line -> buffer.quantities.remove(line.getProductId()));
+          mutated(buffer);
+          return;
+        }
+      }
+    }
+    delegate.removeLine(cartItemId);
+    countWrite(null);
+  }
+
+  @Override
+  public void flush(String userId) {
+    UserBuffer buffer = buffers.get(userId);
+    if (buffer != null) {
+      synchronized (buffer) {
+        flush(buffer);
+      }
+    }
+  }
+
+  /**
+   * Flushes every buffered user. A user whose flush fails stays buffered
+   * and is retried on the next run.
+   */
+  public void flushAll() {
+    for (UserBuffer buffer : buffers.values()) {
+      synchronized (buffer) {
+        flushLogged(buffer);
+      }
+    }
+  }
+
+  public double getCoalescingRatio() {
+    double writes = writeCounter.count();
+    return writes == 0 ? 0.0 : mutationCounter.count() / writes;
+  }
+
+  public int getBufferedUsers() {
+    return buffers.size();
+  }
+
+  /**
+   * Stops the timer and writes out everything still buffered.
+   */
+  public void shutdown() {
+    timer.shutdown();
+    int remaining = buffers.size();
+    if (remaining > 0) {
+      log.info("Flushing buffered carts of {} users", remaining);
+    }
+    flushAll();
+  }
+
+  private UserBuffer bufferFor(String userId) {
+    UserBuffer buffer = buffers.get(userId);
+    if (buffer != null) {
+      return buffer;
+    }
+    Map<String, CartItem> stored = new LinkedHashMap<>();
+    for (CartItem line : delegate.findLines(userId)) {
+      stored.put(line.getProductId(), line);
+    }
+    UserBuffer loaded = new UserBuffer(userId, stored);
+    UserBuffer existing = buffers.putIfAbsent(userId, loaded);
+    if (existing != null) {
+      return existing;
+    }
+    stored.values().forEach(line -> lineOwners.put(line.getId(), userId));
+    return loaded;
+  }
+
+  private void mutated(UserBuffer buffer) {
+    mutationCounter.increment();
+    if (++buffer.pending >= maxPendingPerUser) {
+      // The mutation is buffered either way; a failed flush is retried later
+      flushLogged(buffer);
+    }
+  }
+
+  private void flushLogged(UserBuffer buffer) {
+    try {
+      flush(buffer);
+    } catch (RuntimeException e) {
+      log.error("Failed to flush buffered cart of user {}, will retry: {}", buffer.userId, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Writes the difference between the stored lines and the buffered ones,
+   * then drops the buffer. Every write that succeeds is folded into
+   * {@code stored}, so when one fails the buffer stays in place and the next
+   * flush writes only what is still missing. Must be called holding the
+   * buffer's lock.
+   */
+  private void flush(UserBuffer buffer) {
+    if (buffer.flushed) {
+      return;
+    }
+    if (buffer.pending > 0) {
+      write(buffer);
+    }
+    buffer.flushed = true;
+    buffers.remove(buffer.userId, buffer);
+    buffer.stored.values().forEach(line -> lineOwners.remove(line.getId()));
+  }
+
+  private void write(UserBuffer buffer) {
+    Map<String, CartItem> stored = buffer.stored;
+    if (buffer.cleared) {
+      delegate.clear(buffer.userId);
+      countWrite(null);
+      stored.values().forEach(line -> lineOwners.remove(line.getId()));
+      stored.clear();
+      buffer.cleared = false;
+    }
+    for (CartItem line : new ArrayList<>(stored.values())) {
+      Integer quantity = buffer.quantities.get(line.getProductId());
+      if (quantity == null || quantity < line.getQuantity()) {
+        delegate.removeLine(line.getId());
+        countWrite(null);
+        stored.remove(line.getProductId());
+        lineOwners.remove(line.getId());
+      }
+    }
+    for (Map.Entry<String, Integer> entry : buffer.quantities.entrySet()) {
+      CartItem line = stored.get(entry.getKey());
+      int delta = entry.getValue() - (line == null ? 0 : line.getQuantity());
+      if (delta > 0) {
+        // The limit was checked when buffering; capping at the buffered
+        // quantity keeps a concurrent writer from pushing the line past it
+        Optional<CartItem> written = countWrite(
+            delegate.addQuantity(buffer.userId, entry.getKey(), delta, entry.getValue()));
+        if (written.isPresent()) {
+          stored.put(entry.getKey(), written.get());
+          lineOwners.put(written.get().getId(), buffer.userId);
+        } else {
+          // Without the stock limit the delta cannot be re-checked, so it is
+          // dropped; a retried flush must not count it twice
+          log.warn("Dropped {} buffered units of product {} for user {}: the stored line grew meanwhile", delta,
+              entry.getKey(), buffer.userId);
+          droppedCounter.increment(delta);
+          entry.setValue(line == null ? 0 : line.getQuantity());
+        }
+      }
+    }
+  }
+
+  private <T> T countWrite(T result) {
+    writeCounter.increment();
+    return result;
+  }
+
+  private static final class UserBuffer {
+
+    private final String userId;
+    private final Map<String, CartItem> stored; // by product id, as last known to the store
+    private final Map<String, Integer> quantities = new LinkedHashMap<>(); // current, by product id
+    private boolean cleared;
+    private boolean flushed;
+    private int pending;
+
+    private UserBuffer(String userId, Map<String, CartItem> stored) {
+      this.userId = userId;
+      this.stored = stored;
+      stored.forEach((productId, line) -> quantities.put(productId, line.getQuantity()));
+    }
+  }
+}
@@ -1,14 +1,30 @@
 package com.pushkar.ecommersepayment.client;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import com.pushkar.ecommersepayment.service.PaymentService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.dto.WebhookEventResult;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.webhook.WebhookBatchProcessor;
+import com.pushkar.ecommersepayment.webhook.WebhookDeduplicator;
+import com.pushkar.ecommersepayment.webhook.WebhookQueue;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -19,67 +35,98 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PaymentServiceClient {
 
-  private final PaymentService paymentService;
-
+  private final WebhookQueue webhookQueue;
+  private final WebhookDeduplicator webhookDeduplicator;
+  private final WebhookBatchProcessor webhookBatchProcessor;
+  private final ObjectMapper objectMapper;
+
+  /**
+   * Validates the webhook and stores it on the queue unless it is a
+   * redelivery of one already applied; the payment and order are updated by
+   * the queue workers. A 200 means the webhook is durably accepted, a 500
+   * asks the gateway to deliver it again.
+   */
   @PostMapping("/payment")
-  public ResponseEntity<Map<String, String>> handlePaymentWebhook(
-      @RequestBody Map<String, Object> payload) {
-
-    log.info("Received mock payment webhook: {}", payload);
-
+  public ResponseEntity<Map<String, String>> handlePaymentWebhook(@RequestBody PaymentWebhookRequest request) {
     try {
-      // Extract event type
-      String event = (String) payload.get("event");
+      String event = request.event();
 
       if (event == null) {
         log.error("Event type not found in webhook payload");
         return ResponseEntity.badRequest().body(Map.of("message", "Event type not found"));
       }
 
-      // Process based on event type
-      if (event.equals("payment.captured") || event.equals("order.paid")) {
-        handlePaymentSuccess(payload);
-      } else if (event.equals("payment.failed")) {
-        handlePaymentFailure(payload);
-      } else {
+      if (!WebhookTask.isSupported(event)) {
         log.warn("Unhandled event type: {}", event);
+        return ResponseEntity.ok(Map.of("message", "Webhook ignored"));
       }
 
-      return ResponseEntity.ok(Map.of("message", "Webhook processed successfully"));
-
-    } catch (Exception e) {
-      log.error("Error processing webhook: {}", e.getMessage(), e);
-      return ResponseEntity.status(500).body(Map.of("message", "Webhook processing failed"));
-    }
-  }
-
-  private void handlePaymentSuccess(Map<String, Object> payload) {
-    try {
-      // Simplified mock payload structure
-      String paymentId = (String) payload.get("paymentId");
-      String orderId = (String) payload.get("orderId");
+      if (request.orderId() == null) {
+        log.error("Order id not found in {} webhook payload", event);
+        return ResponseEntity.badRequest().body(Map.of("message", "Order id not found"));
+      }
+      log.debug("Received {} webhook for order {}", event, request.orderId());
 
-      log.info("Processing payment success - Payment ID: {}, Order ID: {}", paymentId, orderId);
+      WebhookTask task = new WebhookTask(event, request.paymentId(), request.orderId(), request.reason());
+      if (webhookDeduplicator.isProcessed(WebhookDeduplicator.keyOf(task))) {
+        webhookDeduplicator.dropped("endpoint");
+        return ResponseEntity.ok(Map.of("message", "Webhook already processed"));
+      }
+      webhookQueue.enqueue(task);
 
-      paymentService.handlePaymentSuccess(paymentId, orderId, null);
+      return ResponseEntity.ok(Map.of("message", "Webhook accepted"));
 
     } catch (Exception e) {
-      log.error("Error handling payment success: {}", e.getMessage(), e);
+      log.error("Error accepting webhook: {}", e.getMessage(), e);
+      return ResponseEntity.status(500).body(Map.of("message", "Webhook processing failed"));
     }
   }
 
-  private void handlePaymentFailure(Map<String, Object> payload) {
-    try {
-      // Simplified mock payload structure
-      String orderId = (String) payload.get("orderId");
-      String errorReason = (String) payload.get("reason");
-
-      log.info("Processing payment failure - Order ID: {}, Reason: {}", orderId, errorReason);
-
-      paymentService.handlePaymentFailure(orderId, errorReason);
+  /**
+   * Applies a bundle of webhooks, e.g. from a gateway or a reconciliation
+   * job, synchronously with grouped bulk writes and returns one result per
+   * event in request order. Invalid or failed events do not fail the batch;
+   * a failed event can be sent again.
+   */
+  @PostMapping(value = "/payment/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public ResponseEntity<List<WebhookEventResult>> handlePaymentWebhookBatch(
+      @RequestBody List<PaymentWebhookRequest> requests) {
+    log.info("Received webhook batch of {} events", requests.size());
+    return ResponseEntity.ok(webhookBatchProcessor.apply(requests));
+  }
 
-    } catch (Exception e) {
-      log.error("Error handling payment failure: {}", e.getMessage(), e);
+  /**
+   * Same as the JSON batch, with one event per line. A line that is not
+   * valid JSON is reported as INVALID instead of rejecting the batch.
+   * Reading stops at the first event over the batch limit. The body is taken
+   * as a {@link Resource}, which Spring MVC streams from the request and
+   * WebFlux can resolve as well.
+   */
+  @PostMapping(value = "/payment/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<List<WebhookEventResult>> handlePaymentWebhookStream(@RequestBody Resource body)
+      throws IOException {
+    ObjectReader reader = objectMapper.readerFor(PaymentWebhookRequest.class);
+    int maxEvents = webhookBatchProcessor.getMaxEvents();
+    List<PaymentWebhookRequest> requests = new ArrayList<>();
+    try (BufferedReader lines = new BufferedReader(
+        new InputStreamReader(body.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = lines.readLine()) != null) {
+        if (line.isBlank()) {
+          continue;
+        }
+        if (requests.size() == maxEvents) {
+          throw new IllegalArgumentException("Batch exceeds " + maxEvents + " events");
+        }
+        try {
+          requests.add(reader.readValue(line));
+        } catch (JsonProcessingException e) {
+          log.debug("Malformed webhook line {}: {}", requests.size(), e.getOriginalMessage());
+          requests.add(null);
+        }
+      }
     }
+    log.info("Received webhook stream of {} events", requests.size());
+    return ResponseEntity.ok(webhookBatchProcessor.apply(requests));
   }
 }
@@ -0,0 +1,28 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.pushkar.ecommersepayment.cache.ProductCatalogCache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Configuration
+public class CacheConfig {
+
+  @Bean
+  public ProductCatalogCache productCatalogCache(
+      @Value("${product.cache.max-size:10000}") long maxSize,
+      @Value("${product.cache.ttl:5m}") Duration ttl,
+      MeterRegistry meterRegistry) {
+    ProductCatalogCache cache = new ProductCatalogCache(maxSize, ttl);
+    // Exposes cache.gets{result=hit|miss}, cache.evictions and cache.size
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.getProductEntries(), "products");
+    CaffeineCacheMetrics.monitor(meterRegistry, cache.getProductListEntries(), "productLists");
+    return cache;
+  }
+}
@@ -0,0 +1,86 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+
+import com.pushkar.ecommersepayment.cart.CartItemStore;
+import com.pushkar.ecommersepayment.cart.CartStore;
+import com.pushkar.ecommersepayment.cart.EmbeddedCartStore;
+import com.pushkar.ecommersepayment.cart.WriteBehindCartStore;
+import com.pushkar.ecommersepayment.repository.CartDocumentRepository;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@RequiredArgsConstructor
+@Slf4j
+public class CartStoreConfig {
+
+  public static final String STORAGE_ITEMS = "items";
+  public static final String STORAGE_EMBEDDED = "embedded";
+
+  private final CartDocumentRepository cartDocumentRepository;
+
+  @Value("${cart.storage:items}")
+  private String storage;
+
+  @Value("${cart.storage.migrate-on-startup:false}")
+  private boolean migrateOnStartup;
+
+  @Value("${cart.write-behind.enabled:false}")
+  private boolean writeBehindEnabled;
+
+  @Value("${cart.write-behind.flush-interval:1s}")
+  private Duration writeBehindFlushInterval;
+
+  @Value("${cart.write-behind.max-users:10000}")
+  private int writeBehindMaxUsers;
+
+  @Value("${cart.write-behind.max-pending-per-user:50}")
+  private int writeBehindMaxPendingPerUser;
+
+  /**
+   * The store picked by {@code cart.storage}, optionally wrapped in the
+   * write-behind buffer. Spring calls the buffer's {@code shutdown} on close,
+   * which flushes whatever is still held.
+   */
+  @Bean
+  public CartStore cartStore(CartRepository cartRepository, MeterRegistry meterRegistry) {
+    CartStore store;
+    if (STORAGE_EMBEDDED.equalsIgnoreCase(storage)) {
+      store = new EmbeddedCartStore(cartDocumentRepository);
+    } else if (STORAGE_ITEMS.equalsIgnoreCase(storage)) {
+      store = new CartItemStore(cartRepository);
+    } else {
+      throw new IllegalStateException("Unknown cart.storage: " + storage);
+    }
+    if (!writeBehindEnabled) {
+      return store;
+    }
+    log.info("Buffering cart writes for up to {} ({} users, {} changes per user)",
+        writeBehindFlushInterval, writeBehindMaxUsers, writeBehindMaxPendingPerUser);
+    return new WriteBehindCartStore(store, writeBehindFlushInterval, writeBehindMaxUsers,
+        writeBehindMaxPendingPerUser, meterRegistry);
+  }
+
+  /**
+   * Copies carts kept in {@code cart_items} into {@code carts} when switching
+   * to embedded storage. The source documents are left in place.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateCartItems() {
+    if (!migrateOnStartup || !STORAGE_EMBEDDED.equalsIgnoreCase(storage)) {
+      return;
+    }
+    long carts = cartDocumentRepository.migrateFromCartItems();
+    log.info("Migrated cart_items into embedded carts, {} carts now stored", carts);
+  }
+}
@@ -5,6 +5,7 @@ import java.util.List;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Product;
 import com.pushkar.ecommersepayment.model.User;
 import com.pushkar.ecommersepayment.repository.ProductRepository;
@@ -37,12 +38,12 @@ public class DataSeeder implements CommandLineRunner {
     userRepository.saveAll(List.of(user1, user2));
     log.info("Seeded {} users", 2);
 
-    // Seed products
-    Product laptop = new Product(null, "Laptop", "Gaming Laptop", 50000.0, 10);
-    Product mouse = new Product(null, "Mouse", "Wireless Mouse", 1000.0, 50);
-    Product keyboard = new Product(null, "Keyboard", "Mechanical Keyboard", 3000.0, 30);
-    Product monitor = new Product(null, "Monitor", "27-inch 4K Monitor", 25000.0, 15);
-    Product headphones = new Product(null, "Headphones", "Noise-Cancelling Headphones", 5000.0, 40);
+    // Seed products, prices in paise
+    Product laptop = new Product(null, "Laptop", "Gaming Laptop", Money.inr(50_000_00), 10);
+    Product mouse = new Product(null, "Mouse", "Wireless Mouse", Money.inr(1_000_00), 50);
+    Product keyboard = new Product(null, "Keyboard", "Mechanical Keyboard", Money.inr(3_000_00), 30);
+    Product monitor = new Product(null, "Monitor", "27-inch 4K Monitor", Money.inr(25_000_00), 15);
+    Product headphones = new Product(null, "Headphones", "Noise-Cancelling Headphones", Money.inr(5_000_00), 40);
 
     productRepository.saveAll(List.of(laptop, mouse, keyboard, monitor, headphones));
     log.info("Seeded {} products", 5);
@@ -3,6 +3,7 @@ package com.pushkar.ecommersepayment.config;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -10,12 +11,30 @@ import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import com.pushkar.ecommersepayment.idempotency.IdempotencyKeyException;
+
 import lombok.extern.slf4j.Slf4j;
 
 @RestControllerAdvice
 @Slf4j
 public class GlobalExceptionHandler {
 
+  @ExceptionHandler(DuplicateKeyException.class)
+  public ResponseEntity<Map<String, String>> handleDuplicateKeyException(DuplicateKeyException ex) {
+    log.error("Duplicate key: {}", ex.getMessage());
+    return ResponseEntity
+        .status(HttpStatus.CONFLICT)
+        .body(Map.of("message", "Resource already exists"));
+  }
+
+  @ExceptionHandler(IdempotencyKeyException.class)
+  public ResponseEntity<Map<String, String>> handleIdempotencyKeyException(IdempotencyKeyException ex) {
+    log.warn("Idempotency key rejected: {}", ex.getMessage());
+    return ResponseEntity
+        .status(ex.getStatus())
+        .body(Map.of("message", ex.getMessage()));
+  }
+
   @ExceptionHandler(RuntimeException.class)
   public ResponseEntity<Map<String, String>> handleRuntimeException(RuntimeException ex) {
     log.error("Runtime exception: {}", ex.getMessage());
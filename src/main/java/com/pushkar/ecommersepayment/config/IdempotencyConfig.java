@@ -0,0 +1,30 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.idempotency.IdempotencyStore;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+@Configuration
+public class IdempotencyConfig {
+
+  @Bean
+  public IdempotencyStore idempotencyStore(MongoTemplate mongoTemplate, ObjectMapper objectMapper,
+      @Value("${idempotency.ttl:24h}") Duration ttl,
+      @Value("${idempotency.lock-timeout:30s}") Duration lockTimeout,
+      @Value("${idempotency.cache.max-size:10000}") long maxCachedResponses,
+      MeterRegistry meterRegistry) {
+    IdempotencyStore store = new IdempotencyStore(mongoTemplate, objectMapper, ttl, lockTimeout, maxCachedResponses);
+    // Exposes cache.gets{cache=idempotency,result=hit|miss} for responses replayed from memory
+    CaffeineCacheMetrics.monitor(meterRegistry, store.getCompletedEntries(), "idempotency");
+    return store;
+  }
+}
@@ -0,0 +1,84 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.Product;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rewrites amounts stored as floating point major units (the format before
+ * {@link com.pushkar.ecommersepayment.model.Money}) into minor units plus
+ * currency, on the server with pipeline updates. Only documents that still
+ * hold a plain number are touched, so it is a no-op once everything is
+ * converted.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MoneyMigration {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Value("${money.migration.enabled:true}")
+  private boolean enabled;
+
+  @Value("${money.migration.currency:INR}")
+  private String currency;
+
+  @EventListener(ContextRefreshedEvent.class)
+  public void onContextRefreshed(ContextRefreshedEvent event) {
+    if (event.getApplicationContext().getParent() != null || !enabled) {
+      return;
+    }
+    migrate();
+  }
+
+  public void migrate() {
+    long converted = convertField(Product.class, "price")
+        + convertField(Order.class, "totalAmount")
+        + convertField(Payment.class, "amount")
+        + convertOrderItemPrices();
+    if (converted > 0) {
+      log.info("Converted {} documents to minor unit amounts in {}", converted, currency);
+    }
+  }
+
+  private long convertField(Class<?> entity, String field) {
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(entity)).updateMany(
+        new Document(field, new Document("$type", "number")),
+        List.of(new Document("$set", new Document(field, toMoney("$" + field)))))
+        .getModifiedCount();
+  }
+
+  private long convertOrderItemPrices() {
+    Document price = new Document("$cond", List.of(
+        new Document("$isNumber", "$$item.price"), toMoney("$$item.price"), "$$item.price"));
+    Document items = new Document("$map", new Document("input", "$items")
+        .append("as", "item")
+        .append("in", new Document("$mergeObjects", List.of("$$item", new Document("price", price)))));
+    return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Order.class)).updateMany(
+        new Document("items.price", new Document("$type", "number")),
+        List.of(new Document("$set", new Document("items", items))))
+        .getModifiedCount();
+  }
+
+  private Document toMoney(String amountExpression) {
+    long scale = BigDecimal.TEN.pow(Currency.getInstance(currency).getDefaultFractionDigits()).longValueExact();
+    Document minorUnits = new Document("$toLong", new Document("$round", List.of(
+        new Document("$multiply", List.of(amountExpression, scale)), 0)));
+    return new Document("amount", minorUnits).append("currency", currency);
+  }
+}
@@ -0,0 +1,175 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.TextQuery;
+import org.springframework.stereotype.Component;
+
+import com.pushkar.ecommersepayment.model.Cart;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.User;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Creates the indexes declared on the {@code @Document} models before the
+ * application starts serving, then explains the query issued by every
+ * repository finder and reports any that would still scan the whole
+ * collection, or sort in memory although it declares a sort.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoIndexInitializer {
+
+  public static final String VERIFY_FAIL = "fail";
+  public static final String VERIFY_WARN = "warn";
+  public static final String VERIFY_OFF = "off";
+
+  private static final String SAMPLE = "__index_check__";
+
+  /**
+   * Filter and sort shapes of the derived finders in the repositories, with
+   * field names as stored. Keep in sync when a finder is added.
+   */
+  private static final List<FinderQuery> FINDERS = List.of(
+      new FinderQuery("CartRepository.findByUserId / deleteByUserId / findCartView", CartItem.class,
+          Query.query(Criteria.where("userId").is(SAMPLE))),
+      new FinderQuery("CartRepository.addQuantity", CartItem.class,
+          Query.query(Criteria.where("userId").is(SAMPLE).and("productId").is(SAMPLE))),
+      new FinderQuery("CartDocumentRepository.removeLine", Cart.class,
+          Query.query(Criteria.where("lines.lineId").is(SAMPLE))),
+      new FinderQuery("OrderRepository.findSummariesByUserId", Order.class,
+          Query.query(Criteria.where("userId").is(SAMPLE))
+              .with(Sort.by(Direction.DESC, "createdAt", "_id"))),
+      new FinderQuery("OutboxDispatcher (orders)", Order.class,
+          Query.query(Criteria.where("outbox.createdAt").lte(Instant.EPOCH))),
+      new FinderQuery("OutboxDispatcher (payments)", Payment.class,
+          Query.query(Criteria.where("outbox.createdAt").lte(Instant.EPOCH))),
+      new FinderQuery("PaymentRepository.findByOrderId", Payment.class,
+          Query.query(Criteria.where("orderId").is(SAMPLE))),
+      new FinderQuery("PaymentRepository.findByPaymentId", Payment.class,
+          Query.query(Criteria.where("paymentId").is(SAMPLE))),
+      new FinderQuery("PaymentRepository.findByRazorpayOrderId", Payment.class,
+          Query.query(Criteria.where("razorpayOrderId").is(SAMPLE))),
+      new FinderQuery("PaymentRepository.findByStatus", Payment.class,
+          Query.query(Criteria.where("status").is(SAMPLE))),
+      new FinderQuery("ProductRepository.searchByText", Product.class, new TextQuery(SAMPLE)),
+      new FinderQuery("ProductRepository.findByIdGreaterThanOrderByIdAsc", Product.class,
+          Query.query(Criteria.where("_id").gt(SAMPLE)).with(Sort.by("_id"))),
+      new FinderQuery("UserRepository.findByUsername", User.class,
+          Query.query(Criteria.where("username").is(SAMPLE))),
+      new FinderQuery("UserRepository.findByEmail", User.class,
+          Query.query(Criteria.where("email").is(SAMPLE))),
+      new FinderQuery("WebhookQueue.drain (waiting orders)", WebhookTask.class,
+          Query.query(Criteria.where("partition").is(0).and("nextAttemptAt").gt(Instant.EPOCH))),
+      new FinderQuery("WebhookQueue.findQueuedOrders", WebhookTask.class,
+          Query.query(Criteria.where("partition").in(0).and("orderId").in(SAMPLE))),
+      new FinderQuery("WebhookQueue.drain", WebhookTask.class,
+          Query.query(Criteria.where("partition").is(0).and("nextAttemptAt").lte(Instant.EPOCH)
+              .and("orderId").nin(SAMPLE)).with(Sort.by("_id"))));
+
+  private final MongoTemplate mongoTemplate;
+  private final MongoMappingContext mappingContext;
+
+  @Value("${mongo.index.verify:fail}")
+  private String verifyMode;
+
+  @EventListener(ContextRefreshedEvent.class)
+  public void onContextRefreshed(ContextRefreshedEvent event) {
+    if (event.getApplicationContext().getParent() != null) {
+      return;
+    }
+    createIndexes();
+
+    if (VERIFY_OFF.equalsIgnoreCase(verifyMode)) {
+      return;
+    }
+    List<String> unindexed = findUnindexedFinders();
+    if (unindexed.isEmpty()) {
+      log.info("Index check passed for {} repository finders", FINDERS.size());
+      return;
+    }
+    unindexed.forEach(finder -> log.error("{} is not backed by an index", finder));
+    if (VERIFY_FAIL.equalsIgnoreCase(verifyMode)) {
+      throw new IllegalStateException("Repository finders are not backed by an index: " + unindexed);
+    }
+  }
+
+  /**
+   * Ensures every index declared on a mapped document, so a fresh database
+   * gets them without relying on {@code auto-index-creation}.
+   */
+  public void createIndexes() {
+    IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+    for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+      if (!entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+        continue;
+      }
+      IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+      resolver.resolveIndexFor(entity.getType()).forEach(index -> {
+        String name = indexOps.ensureIndex(index);
+        log.debug("Ensured index {} on {}", name, entity.getCollection());
+      });
+    }
+  }
+
+  /**
+   * Runs {@code explain} for every finder and returns the ones whose winning
+   * plan contains a {@code COLLSCAN} stage, or a blocking {@code SORT} stage
+   * for a finder that declares a sort.
+   */
+  public List<String> findUnindexedFinders() {
+    List<String> unindexed = new ArrayList<>();
+    for (FinderQuery finder : FINDERS) {
+      Document explain = mongoTemplate.getCollection(mongoTemplate.getCollectionName(finder.entity()))
+          .find(finder.query().getQueryObject())
+          .sort(finder.query().getSortObject())
+          .explain();
+      Object winningPlan = ((Document) explain.get("queryPlanner")).get("winningPlan");
+      if (containsStage(winningPlan, "COLLSCAN")) {
+        unindexed.add("COLLSCAN: " + finder.name());
+      } else if (!finder.query().getSortObject().isEmpty() && containsStage(winningPlan, "SORT")) {
+        unindexed.add("SORT: " + finder.name());
+      }
+    }
+    return unindexed;
+  }
+
+  private static boolean containsStage(Object plan, String stage) {
+    if (plan instanceof Document document) {
+      if (stage.equals(document.get("stage"))) {
+        return true;
+      }
+      return document.values().stream().anyMatch(value -> containsStage(value, stage));
+    }
+    if (plan instanceof List<?> list) {
+      return list.stream().anyMatch(value -> containsStage(value, stage));
+    }
+    return false;
+  }
+
+  private record FinderQuery(String name, Class<?> entity, Query query) {
+  }
+}
@@ -0,0 +1,47 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.outbox.LogOutboxSink;
+import com.pushkar.ecommersepayment.outbox.OutboxConsumer;
+import com.pushkar.ecommersepayment.outbox.OutboxDispatcher;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@Slf4j
+public class OutboxConfig {
+
+  /**
+   * Delivers outbox events to every {@link OutboxConsumer} bean. Spring calls
+   * its {@code shutdown} on close, which delivers what is still pending.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "outbox.dispatcher.enabled", havingValue = "true", matchIfMissing = true)
+  public OutboxDispatcher outboxDispatcher(MongoTemplate mongoTemplate, ObjectProvider<OutboxConsumer> consumerBeans,
+      @Value("${outbox.dispatcher.poll-interval:200ms}") Duration pollInterval,
+      @Value("${outbox.dispatcher.batch-size:500}") int batchSize,
+      @Value("${outbox.dispatcher.max-attempts:10}") int maxAttempts,
+      MeterRegistry meterRegistry) {
+    List<OutboxConsumer> consumers = consumerBeans.orderedStream().toList();
+    log.info("Dispatching outbox events every {} to {}", pollInterval,
+        consumers.stream().map(OutboxConsumer::name).toList());
+    return new OutboxDispatcher(mongoTemplate, consumers, pollInterval, batchSize, maxAttempts, meterRegistry);
+  }
+
+  @Bean
+  @ConditionalOnProperty(name = "outbox.sink.log.enabled", havingValue = "true", matchIfMissing = true)
+  public LogOutboxSink logOutboxSink(ObjectMapper objectMapper) {
+    return new LogOutboxSink(objectMapper);
+  }
+}
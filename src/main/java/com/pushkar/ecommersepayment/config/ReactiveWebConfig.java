@@ -0,0 +1,42 @@
+package com.pushkar.ecommersepayment.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.reactive.config.BlockingExecutionConfigurer;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+
+/**
+ * With the {@code reactive} profile every controller is served by WebFlux.
+ * The existing blocking controllers keep working, but their handler methods
+ * are moved off the event loop onto a bounded pool.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveWebConfig implements WebFluxConfigurer {
+
+  @Value("${reactive.blocking-executor.threads:64}")
+  private int blockingThreads;
+
+  /**
+   * spring-boot-starter-web keeps Tomcat on the classpath, and Boot picks it
+   * over Netty for a reactive server unless a factory is declared.
+   */
+  @Bean
+  public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+    return new NettyReactiveWebServerFactory();
+  }
+
+  @Override
+  public void configureBlockingExecution(BlockingExecutionConfigurer configurer) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setCorePoolSize(blockingThreads);
+    executor.setMaxPoolSize(blockingThreads);
+    executor.setThreadNamePrefix("blocking-handler-");
+    executor.initialize();
+    configurer.setExecutor(executor);
+  }
+}
@@ -0,0 +1,35 @@
+package com.pushkar.ecommersepayment.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Configuration
+public class SearchIndexConfig {
+
+  @Bean
+  public ProductSearchIndex productSearchIndex(
+      @Value("${product.search.in-memory.enabled:false}") boolean enabled,
+      @Value("${product.search.in-memory.max-prefix-expansions:256}") int maxPrefixExpansions,
+      MeterRegistry meterRegistry) {
+    ProductSearchIndex index = new ProductSearchIndex(enabled, maxPrefixExpansions);
+    if (enabled) {
+      Gauge.builder("product.search.index.products", index, ProductSearchIndex::size)
+          .description("Products in the in-memory search index")
+          .register(meterRegistry);
+      Gauge.builder("product.search.index.tokens", index, ProductSearchIndex::tokenCount)
+          .description("Distinct tokens in the in-memory search index")
+          .register(meterRegistry);
+      Gauge.builder("product.search.index.memory", index, ProductSearchIndex::estimatedMemoryBytes)
+          .description("Approximate heap retained by the in-memory search index")
+          .baseUnit("bytes")
+          .register(meterRegistry);
+    }
+    return index;
+  }
+}
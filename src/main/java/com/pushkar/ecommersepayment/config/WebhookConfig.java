@@ -0,0 +1,70 @@
+package com.pushkar.ecommersepayment.config;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import com.pushkar.ecommersepayment.repository.OrderRepository;
+import com.pushkar.ecommersepayment.repository.PaymentRepository;
+import com.pushkar.ecommersepayment.service.PaymentService;
+import com.pushkar.ecommersepayment.webhook.WebhookBatchProcessor;
+import com.pushkar.ecommersepayment.webhook.WebhookDeduplicator;
+import com.pushkar.ecommersepayment.webhook.WebhookQueue;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+
+@Configuration
+@Slf4j
+public class WebhookConfig {
+
+  @Bean
+  public WebhookDeduplicator webhookDeduplicator(MongoTemplate mongoTemplate,
+      @Value("${webhook.dedup.window:24h}") Duration window,
+      @Value("${webhook.dedup.max-size:100000}") long maxSize,
+      MeterRegistry meterRegistry) {
+    WebhookDeduplicator deduplicator = new WebhookDeduplicator(mongoTemplate, window, maxSize, meterRegistry);
+    // Exposes cache.gets{cache=webhook_dedup,result=hit|miss} for the in-memory tier
+    CaffeineCacheMetrics.monitor(meterRegistry, deduplicator.getProcessedKeys(), "webhook_dedup");
+    return deduplicator;
+  }
+
+  /**
+   * Every instance enqueues webhooks; only instances with
+   * {@code webhook.queue.workers.enabled} apply them. Spring calls
+   * {@code shutdown} on close.
+   */
+  @Bean
+  public WebhookQueue webhookQueue(MongoTemplate mongoTemplate, PaymentService paymentService,
+      WebhookDeduplicator deduplicator,
+      @Value("${webhook.queue.partitions:8}") int partitions,
+      @Value("${webhook.queue.batch-size:200}") int batchSize,
+      @Value("${webhook.queue.max-attempts:8}") int maxAttempts,
+      @Value("${webhook.queue.backoff.initial:1s}") Duration initialBackoff,
+      @Value("${webhook.queue.backoff.max:5m}") Duration maxBackoff,
+      @Value("${webhook.queue.workers.enabled:true}") boolean workersEnabled,
+      @Value("${webhook.queue.poll-interval:100ms}") Duration pollInterval,
+      MeterRegistry meterRegistry) {
+    WebhookQueue queue = new WebhookQueue(mongoTemplate, paymentService::handleWebhook, deduplicator,
+        partitions, batchSize, maxAttempts, initialBackoff, maxBackoff, meterRegistry);
+    if (workersEnabled) {
+      log.info("Applying queued webhooks with {} workers, polling every {}", partitions, pollInterval);
+      queue.start(pollInterval);
+    }
+    return queue;
+  }
+
+  @Bean
+  public WebhookBatchProcessor webhookBatchProcessor(PaymentRepository paymentRepository,
+      OrderRepository orderRepository, WebhookDeduplicator deduplicator, WebhookQueue webhookQueue,
+      @Value("${webhook.batch.chunk-size:10000}") int chunkSize,
+      @Value("${webhook.batch.max-events:100000}") int maxEvents,
+      MeterRegistry meterRegistry) {
+    return new WebhookBatchProcessor(paymentRepository, orderRepository, deduplicator, webhookQueue, chunkSize,
+        maxEvents, meterRegistry);
+  }
+}
@@ -1,6 +1,5 @@
 package com.pushkar.ecommersepayment.controller;
 
-import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
@@ -14,7 +13,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.pushkar.ecommersepayment.dto.AddToCartRequest;
-import com.pushkar.ecommersepayment.dto.CartItemResponse;
+import com.pushkar.ecommersepayment.dto.CartResponse;
 import com.pushkar.ecommersepayment.model.CartItem;
 import com.pushkar.ecommersepayment.service.CartService;
 
@@ -35,9 +34,9 @@ public class CartController {
   }
 
   @GetMapping("/{userId}")
-  public ResponseEntity<List<CartItemResponse>> getCartItems(@PathVariable String userId) {
-    List<CartItemResponse> cartItems = cartService.getCartItems(userId);
-    return ResponseEntity.ok(cartItems);
+  public ResponseEntity<CartResponse> getCartItems(@PathVariable String userId) {
+    CartResponse cart = cartService.getCartItems(userId);
+    return ResponseEntity.ok(cart);
   }
 
   @DeleteMapping("/{userId}/clear")
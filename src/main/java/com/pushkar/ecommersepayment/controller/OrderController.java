@@ -9,11 +9,16 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.dto.OrderResponse;
+import com.pushkar.ecommersepayment.dto.OrderSummary;
+import com.pushkar.ecommersepayment.idempotency.IdempotencyStore;
 import com.pushkar.ecommersepayment.model.Order;
 import com.pushkar.ecommersepayment.service.OrderService;
 
@@ -26,11 +31,13 @@ import lombok.RequiredArgsConstructor;
 public class OrderController {
 
   private final OrderService orderService;
+  private final IdempotencyStore idempotencyStore;
 
   @PostMapping
-  public ResponseEntity<Order> createOrder(@Valid @RequestBody CreateOrderRequest request) {
-    Order order = orderService.createOrder(request);
-    return ResponseEntity.status(HttpStatus.CREATED).body(order);
+  public ResponseEntity<Order> createOrder(@Valid @RequestBody CreateOrderRequest request,
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+    return idempotencyStore.execute("orders", idempotencyKey, request, HttpStatus.CREATED, Order.class,
+        () -> orderService.createOrder(request));
   }
 
   @GetMapping("/{orderId}")
@@ -40,9 +47,11 @@ public class OrderController {
   }
 
   @GetMapping("/user/{userId}")
-  public ResponseEntity<List<Order>> getOrdersByUserId(@PathVariable String userId) {
-    List<Order> orders = orderService.getOrdersByUserId(userId);
-    return ResponseEntity.ok(orders);
+  public ResponseEntity<List<OrderSummary>> getOrdersByUserId(@PathVariable String userId,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit) {
+    CursorPage<OrderSummary> page = orderService.getOrdersByUserId(userId, cursor, limit);
+    return PageResponses.withNextCursor(page);
   }
 
   @PostMapping("/{orderId}/cancel")
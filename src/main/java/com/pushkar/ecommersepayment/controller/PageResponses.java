@@ -0,0 +1,27 @@
+package com.pushkar.ecommersepayment.controller;
+
+import java.util.List;
+
+import org.springframework.http.ResponseEntity;
+
+import com.pushkar.ecommersepayment.dto.CursorPage;
+
+/**
+ * Cursor-paginated endpoints return the page items as a plain JSON array and
+ * the cursor of the next page, if any, in the {@code X-Next-Cursor} header.
+ */
+final class PageResponses {
+
+  static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+  private PageResponses() {
+  }
+
+  static <T> ResponseEntity<List<T>> withNextCursor(CursorPage<T> page) {
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (page.getNextCursor() != null) {
+      response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+    }
+    return response.body(page.getItems());
+  }
+}
@@ -6,10 +6,12 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.pushkar.ecommersepayment.dto.PaymentRequest;
+import com.pushkar.ecommersepayment.idempotency.IdempotencyStore;
 import com.pushkar.ecommersepayment.model.Payment;
 import com.pushkar.ecommersepayment.service.PaymentService;
 
@@ -22,11 +24,13 @@ import lombok.RequiredArgsConstructor;
 public class PaymentController {
 
   private final PaymentService paymentService;
+  private final IdempotencyStore idempotencyStore;
 
   @PostMapping("/create")
-  public ResponseEntity<Payment> createPayment(@Valid @RequestBody PaymentRequest request) {
-    Payment payment = paymentService.createPayment(request);
-    return ResponseEntity.status(HttpStatus.CREATED).body(payment);
+  public ResponseEntity<Payment> createPayment(@Valid @RequestBody PaymentRequest request,
+      @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey) {
+    return idempotencyStore.execute("payments", idempotencyKey, request, HttpStatus.CREATED, Payment.class,
+        () -> paymentService.createPayment(request));
   }
 
   @GetMapping("/{paymentId}")
@@ -4,6 +4,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,11 +16,14 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.model.Product;
 import com.pushkar.ecommersepayment.service.ProductService;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 @RestController
 @RequestMapping("/api/products")
@@ -35,9 +39,20 @@ public class ProductController {
   }
 
   @GetMapping
-  public ResponseEntity<List<Product>> getAllProducts() {
-    List<Product> products = productService.getAllProducts();
-    return ResponseEntity.ok(products);
+  public ResponseEntity<List<Product>> getProducts(@RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit) {
+    CursorPage<Product> page = productService.getProducts(cursor, limit);
+    return PageResponses.withNextCursor(page);
+  }
+
+  /**
+   * Streams the whole catalog as newline-delimited JSON straight from a
+   * database cursor, one product per line, with constant memory.
+   */
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<Product> exportProducts() {
+    return Flux.fromStream(productService::streamProducts)
+        .subscribeOn(Schedulers.boundedElastic());
   }
 
   @GetMapping("/{id}")
@@ -47,8 +62,17 @@ public class ProductController {
   }
 
   @GetMapping("/search")
-  public ResponseEntity<List<Product>> searchProducts(@RequestParam String q) {
-    List<Product> products = productService.searchProducts(q);
+  public ResponseEntity<List<Product>> searchProducts(@RequestParam String q,
+      @RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit) {
+    CursorPage<Product> page = productService.searchProducts(q, cursor, limit);
+    return PageResponses.withNextCursor(page);
+  }
+
+  @GetMapping("/autocomplete")
+  public ResponseEntity<List<Product>> autocomplete(@RequestParam String q,
+      @RequestParam(required = false) Integer limit) {
+    List<Product> products = productService.autocomplete(q, limit);
     return ResponseEntity.ok(products);
   }
 
@@ -0,0 +1,72 @@
+package com.pushkar.ecommersepayment.controller;
+
+import java.util.Map;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.pushkar.ecommersepayment.client.PaymentServiceClient;
+import com.pushkar.ecommersepayment.dto.AddToCartRequest;
+import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.PaymentRequest;
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.service.ReactiveCheckoutService;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Reactive counterparts of the checkout endpoints, served on the event loop
+ * when the {@code reactive} profile is active.
+ */
+@RestController
+@RequestMapping("/api/reactive")
+@Profile("reactive")
+@RequiredArgsConstructor
+public class ReactiveCheckoutController {
+
+  private final ReactiveCheckoutService checkoutService;
+  private final PaymentServiceClient paymentServiceClient;
+
+  @PostMapping("/cart/add")
+  public Mono<ResponseEntity<CartItem>> addToCart(@Valid @RequestBody AddToCartRequest request) {
+    return checkoutService.addToCart(request)
+        .map(cartItem -> ResponseEntity.status(HttpStatus.CREATED).body(cartItem));
+  }
+
+  @PostMapping("/orders")
+  public Mono<ResponseEntity<Order>> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+    return checkoutService.createOrder(request)
+        .map(order -> ResponseEntity.status(HttpStatus.CREATED).body(order));
+  }
+
+  @PostMapping("/payments/create")
+  public Mono<ResponseEntity<Payment>> createPayment(@Valid @RequestBody PaymentRequest request) {
+    return checkoutService.createPayment(request)
+        .map(payment -> ResponseEntity.status(HttpStatus.CREATED).body(payment));
+  }
+
+  /**
+   * Same as {@code POST /api/webhooks/payment}: the webhook is validated,
+   * dropped if already applied, and otherwise stored on the durable queue,
+   * whose workers apply it in order per payment. A 500 asks the gateway to
+   * deliver it again. The queue write blocks, so it runs on the
+   * bounded-elastic scheduler.
+   */
+  @PostMapping("/webhooks/payment")
+  public Mono<ResponseEntity<Map<String, String>>> handlePaymentWebhook(
+      @RequestBody PaymentWebhookRequest request) {
+    return Mono.fromCallable(() -> paymentServiceClient.handlePaymentWebhook(request))
+        .subscribeOn(Schedulers.boundedElastic());
+  }
+}
@@ -2,8 +2,10 @@ package com.pushkar.ecommersepayment.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -12,12 +14,16 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.model.User;
 import com.pushkar.ecommersepayment.service.UserService;
 
 import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
 @RestController
 @RequestMapping("/api/users")
@@ -33,9 +39,21 @@ public class UserController {
   }
 
   @GetMapping
-  public ResponseEntity<List<User>> getAllUsers() {
-    List<User> users = userService.getAllUsers();
-    return ResponseEntity.ok(users);
+  public ResponseEntity<List<User>> getUsers(@RequestParam(required = false) String cursor,
+      @RequestParam(required = false) Integer limit,
+      @RequestParam(required = false) Set<String> fields) {
+    CursorPage<User> page = userService.getUsers(cursor, limit, fields);
+    return PageResponses.withNextCursor(page);
+  }
+
+  /**
+   * Streams every user as newline-delimited JSON from a database cursor.
+   * Heap use does not grow with the number of users.
+   */
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public Flux<User> exportUsers(@RequestParam(required = false) Set<String> fields) {
+    return Flux.fromStream(() -> userService.streamUsers(fields))
+        .subscribeOn(Schedulers.boundedElastic());
   }
 
   @GetMapping("/{id}")
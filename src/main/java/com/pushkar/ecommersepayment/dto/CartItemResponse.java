@@ -1,5 +1,6 @@
 package com.pushkar.ecommersepayment.dto;
 
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Product;
 
 import lombok.AllArgsConstructor;
@@ -20,4 +21,6 @@ public class CartItemResponse {
   private Integer quantity;
 
   private Product product;
+
+  private Money lineTotal; // quantity * product price, null when the product no longer exists
 }
@@ -0,0 +1,22 @@
+package com.pushkar.ecommersepayment.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.pushkar.ecommersepayment.model.Money;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartResponse {
+
+  private String userId;
+
+  private List<CartItemResponse> items = new ArrayList<>();
+
+  private Money subtotal; // null when the cart is empty or mixes currencies
+}
@@ -3,6 +3,7 @@ package com.pushkar.ecommersepayment.dto;
 import java.time.Instant;
 import java.util.List;
 
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.OrderItem;
 import com.pushkar.ecommersepayment.model.Payment;
 
@@ -19,7 +20,7 @@ public class OrderResponse {
 
   private String userId;
 
-  private Double totalAmount;
+  private Money totalAmount;
 
   private String status;
 
@@ -0,0 +1,30 @@
+package com.pushkar.ecommersepayment.dto;
+
+import java.time.Instant;
+
+import com.pushkar.ecommersepayment.model.Money;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Order history row: the order without its line items, only their count.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummary {
+
+  private String id;
+
+  private String userId;
+
+  private String status;
+
+  private Money totalAmount;
+
+  private Integer itemCount;
+
+  private Instant createdAt;
+}
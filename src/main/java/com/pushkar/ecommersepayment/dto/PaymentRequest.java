@@ -1,8 +1,11 @@
 package com.pushkar.ecommersepayment.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.pushkar.ecommersepayment.model.Money;
+
+import jakarta.validation.constraints.AssertTrue;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Positive;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,6 +19,11 @@ public class PaymentRequest {
   private String orderId;
 
   @NotNull(message = "Amount is required")
-  @Positive(message = "Amount must be positive")
-  private Double amount;
+  private Money amount;
+
+  @JsonIgnore
+  @AssertTrue(message = "Amount must be positive")
+  public boolean isAmountPositive() {
+    return amount == null || amount.isPositive();
+  }
 }
@@ -1,19 +1,8 @@
 package com.pushkar.ecommersepayment.dto;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class PaymentWebhookRequest {
-
-  private String orderId;
-
-  private String paymentId;
-
-  private String status;
-
-  private String signature;
+/**
+ * Body of a gateway payment webhook, bound field by field from the JSON
+ * stream. Unknown fields (signatures, gateway metadata) are skipped.
+ */
+public record PaymentWebhookRequest(String event, String paymentId, String orderId, String reason) {
 }
@@ -0,0 +1,16 @@
+package com.pushkar.ecommersepayment.dto;
+
+/**
+ * Outcome of one event of a webhook batch, at its zero-based position in the
+ * request.
+ */
+public record WebhookEventResult(int index, String event, String orderId, String status, String message) {
+
+  public static final String APPLIED = "APPLIED";
+  public static final String QUEUED = "QUEUED";
+  public static final String DUPLICATE = "DUPLICATE";
+  public static final String IGNORED = "IGNORED";
+  public static final String INVALID = "INVALID";
+  public static final String NOT_FOUND = "NOT_FOUND";
+  public static final String FAILED = "FAILED";
+}
@@ -0,0 +1,20 @@
+package com.pushkar.ecommersepayment.idempotency;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Getter;
+
+/**
+ * An {@code Idempotency-Key} that cannot be honoured, with the status to
+ * answer it with.
+ */
+@Getter
+public class IdempotencyKeyException extends RuntimeException {
+
+  private final HttpStatus status;
+
+  public IdempotencyKeyException(HttpStatus status, String message) {
+    super(message);
+    this.status = status;
+  }
+}
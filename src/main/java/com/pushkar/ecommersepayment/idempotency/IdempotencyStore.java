@@ -0,0 +1,275 @@
+package com.pushkar.ecommersepayment.idempotency;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pushkar.ecommersepayment.model.IdempotencyRecord;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Answers retried requests that carry the same {@code Idempotency-Key} with
+ * the stored response instead of running them again.
+ *
+ * A key is claimed by inserting an {@code IN_PROGRESS} record, so only one
+ * request per key runs across instances; the response is then stored on the
+ * record, which MongoDB expires after {@code ttl}. Within an instance,
+ * concurrent requests with the same key wait for the one running instead of
+ * racing for the claim, and completed responses are served from a bounded
+ * in-memory cache without a database round trip. A failed request releases
+ * its key so it can be retried. While its request runs, the claiming
+ * instance renews a heartbeat on the record every third of
+ * {@code lockTimeout}; a claim whose heartbeat is older than
+ * {@code lockTimeout} is assumed abandoned by a crashed instance and taken
+ * over, however long a live request takes.
+ */
+@Slf4j
+public class IdempotencyStore {
+
+  public static final String HEADER = "Idempotency-Key";
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private static final int MAX_KEY_LENGTH = 255;
+
+  private final MongoTemplate mongoTemplate;
+  private final ObjectMapper objectMapper;
+  private final Duration ttl;
+  private final Duration lockTimeout;
+
+  private final Cache<String, IdempotencyRecord> completed;
+  private final Map<String, CompletableFuture<IdempotencyRecord>> inFlight = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService heartbeats;
+
+  public IdempotencyStore(MongoTemplate mongoTemplate, ObjectMapper objectMapper, Duration ttl,
+      Duration lockTimeout, long maxCachedResponses) {
+    this.mongoTemplate = mongoTemplate;
+    this.objectMapper = objectMapper;
+    this.ttl = ttl;
+    this.lockTimeout = lockTimeout;
+    this.completed = Caffeine.newBuilder()
+        .maximumSize(maxCachedResponses)
+        .expireAfterWrite(ttl)
+        .recordStats()
+        .build();
+    this.heartbeats = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "idempotency-heartbeat");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Runs {@code action} once per {@code scope} and {@code key} and answers it
+   * with {@code status}. Without a key the action always runs.
+   */
+  public <T> ResponseEntity<T> execute(String scope, String key, Object request, HttpStatus status,
+      Class<T> type, Supplier<T> action) {
+    if (key == null) {
+      return ResponseEntity.status(status).body(action.get());
+    }
+    if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+      throw new IdempotencyKeyException(HttpStatus.BAD_REQUEST,
+          HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters");
+    }
+    String id = scope + ":" + key;
+    String requestHash = hash(request);
+
+    IdempotencyRecord record = completed.getIfPresent(id);
+    if (record != null) {
+      return replay(record, requestHash, type);
+    }
+
+    CompletableFuture<IdempotencyRecord> mine = new CompletableFuture<>();
+    CompletableFuture<IdempotencyRecord> running = inFlight.putIfAbsent(id, mine);
+    if (running != null) {
+      return replay(await(running), requestHash, type);
+    }
+    try {
+      String claimId = UUID.randomUUID().toString();
+      IdempotencyRecord existing = claim(id, requestHash, claimId);
+      if (existing != null) {
+        mine.complete(existing);
+        return replay(existing, requestHash, type);
+      }
+      ScheduledFuture<?> heartbeat = startHeartbeat(id, claimId);
+      T body;
+      try {
+        body = action.get();
+      } catch (RuntimeException e) {
+        release(id, claimId);
+        throw e;
+      } finally {
+        heartbeat.cancel(false);
+      }
+      mine.complete(store(id, requestHash, status, body));
+      return ResponseEntity.status(status).body(body);
+    } catch (RuntimeException e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.remove(id, mine);
+    }
+  }
+
+  public Cache<String, IdempotencyRecord> getCompletedEntries() {
+    return completed;
+  }
+
+  /**
+   * Inserts the {@code IN_PROGRESS} claim. Returns null when the key is now
+   * ours, or the completed record when the request already ran.
+   */
+  private IdempotencyRecord claim(String id, String requestHash, String claimId) {
+    Instant now = Instant.now();
+    try {
+      mongoTemplate.insert(new IdempotencyRecord(id, requestHash, IdempotencyRecord.IN_PROGRESS, 0, null, now,
+          claimId, now, now.plus(ttl)));
+      return null;
+    } catch (DuplicateKeyException e) {
+      IdempotencyRecord existing = mongoTemplate.findById(id, IdempotencyRecord.class);
+      if (existing == null) {
+        // Released or expired since the insert failed
+        return claim(id, requestHash, claimId);
+      }
+      if (IdempotencyRecord.COMPLETED.equals(existing.getStatus())) {
+        completed.put(id, existing);
+        return existing;
+      }
+      // Records claimed before heartbeats existed only have createdAt
+      Instant lastSeen = existing.getHeartbeatAt() != null ? existing.getHeartbeatAt() : existing.getCreatedAt();
+      if (lastSeen.isBefore(now.minus(lockTimeout))) {
+        // Only if the owner has not renewed it since we read it
+        Query abandoned = Query.query(Criteria.where("_id").is(id)
+            .and("status").is(IdempotencyRecord.IN_PROGRESS)
+            .and("heartbeatAt").is(existing.getHeartbeatAt()));
+        if (mongoTemplate.remove(abandoned, IdempotencyRecord.class).getDeletedCount() > 0) {
+          log.warn("Taking over idempotency key {} abandoned since {}", id, lastSeen);
+        }
+        return claim(id, requestHash, claimId);
+      }
+      throw inProgress();
+    }
+  }
+
+  private IdempotencyRecord store(String id, String requestHash, HttpStatus status, Object body) {
+    Instant now = Instant.now();
+    IdempotencyRecord record = new IdempotencyRecord(id, requestHash, IdempotencyRecord.COMPLETED, status.value(),
+        write(body), now, null, null, now.plus(ttl));
+    completed.put(id, record);
+    try {
+      mongoTemplate.save(record);
+    } catch (RuntimeException e) {
+      // The request has run; other instances may run a retry of it again
+      log.error("Failed to store response for idempotency key {}: {}", id, e.getMessage(), e);
+    }
+    return record;
+  }
+
+  /**
+   * Renews the claim's heartbeat until cancelled. Matching on the claim id
+   * keeps a request whose key was taken over from touching the new claim.
+   */
+  private ScheduledFuture<?> startHeartbeat(String id, String claimId) {
+    long periodMillis = Math.max(1, lockTimeout.toMillis() / 3);
+    return heartbeats.scheduleAtFixedRate(() -> {
+      try {
+        mongoTemplate.updateFirst(ownClaim(id, claimId), new Update().set("heartbeatAt", Instant.now()),
+            IdempotencyRecord.class);
+      } catch (RuntimeException e) {
+        log.error("Failed to renew idempotency key {}: {}", id, e.getMessage(), e);
+      }
+    }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+  }
+
+  private void release(String id, String claimId) {
+    try {
+      mongoTemplate.remove(ownClaim(id, claimId), IdempotencyRecord.class);
+    } catch (RuntimeException e) {
+      log.error("Failed to release idempotency key {}: {}", id, e.getMessage(), e);
+    }
+  }
+
+  private static Query ownClaim(String id, String claimId) {
+    return Query.query(Criteria.where("_id").is(id)
+        .and("status").is(IdempotencyRecord.IN_PROGRESS)
+        .and("claimId").is(claimId));
+  }
+
+  private IdempotencyRecord await(CompletableFuture<IdempotencyRecord> running) {
+    try {
+      return running.get(lockTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(e.getCause());
+    } catch (TimeoutException e) {
+      throw inProgress();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw inProgress();
+    }
+  }
+
+  private <T> ResponseEntity<T> replay(IdempotencyRecord record, String requestHash, Class<T> type) {
+    if (!record.getRequestHash().equals(requestHash)) {
+      throw new IdempotencyKeyException(HttpStatus.UNPROCESSABLE_ENTITY,
+          HEADER + " was already used with a different request");
+    }
+    try {
+      return ResponseEntity.status(record.getResponseStatus())
+          .header(REPLAYED_HEADER, "true")
+          .body(objectMapper.readValue(record.getResponseBody(), type));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Unreadable stored response for idempotency key " + record.getId(), e);
+    }
+  }
+
+  private String hash(Object request) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(objectMapper.writeValueAsBytes(request)));
+    } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+      throw new IllegalStateException("Cannot fingerprint request", e);
+    }
+  }
+
+  private String write(Object body) {
+    try {
+      return objectMapper.writeValueAsString(body);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot store response", e);
+    }
+  }
+
+  private static IdempotencyKeyException inProgress() {
+    return new IdempotencyKeyException(HttpStatus.CONFLICT,
+        "A request with this " + HEADER + " is still being processed");
+  }
+}
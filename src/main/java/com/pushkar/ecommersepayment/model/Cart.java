@@ -0,0 +1,30 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A user's whole cart as one document, used with {@code cart.storage=embedded}.
+ * The document id is the user id, so there is at most one cart per user.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "carts")
+public class Cart {
+
+  @Id
+  private String userId;
+
+  private List<CartLine> lines = new ArrayList<>();
+
+  private Instant updatedAt;
+}
@@ -0,0 +1,23 @@
+package com.pushkar.ecommersepayment.model;
+
+import org.springframework.data.mongodb.core.index.Indexed;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One product line embedded in a {@link Cart}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartLine {
+
+  @Indexed
+  private String lineId; // exposed as the cart item id
+
+  private String productId;
+
+  private Integer quantity;
+}
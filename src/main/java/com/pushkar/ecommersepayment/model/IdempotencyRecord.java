@@ -0,0 +1,41 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+  public static final String IN_PROGRESS = "IN_PROGRESS";
+  public static final String COMPLETED = "COMPLETED";
+
+  @Id
+  private String id; // scope:key
+
+  private String requestHash;
+
+  private String status; // IN_PROGRESS, COMPLETED
+
+  private int responseStatus;
+
+  private String responseBody; // JSON
+
+  private Instant createdAt;
+
+  private String claimId; // set while IN_PROGRESS, identifies the claiming request
+
+  private Instant heartbeatAt; // renewed by the claiming request while it runs
+
+  @Indexed(expireAfter = "0s")
+  private Instant expiresAt;
+}
@@ -0,0 +1,70 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.math.BigDecimal;
+import java.util.Currency;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * An amount of money as a whole number of minor units (paise for INR, cents
+ * for USD) of an ISO 4217 currency. Stored and serialized as
+ * {@code {"amount": 5000000, "currency": "INR"}}. Arithmetic is exact and
+ * fails on overflow instead of wrapping.
+ */
+public record Money(long amount, String currency) {
+
+  public static final String INR = "INR";
+
+  public Money {
+    // Only ISO 4217 codes, so toDecimal and the gateway never see an unknown one
+    try {
+      Currency.getInstance(currency);
+    } catch (IllegalArgumentException | NullPointerException e) {
+      throw new IllegalArgumentException("Invalid currency: " + currency);
+    }
+  }
+
+  public static Money of(long amount, String currency) {
+    return new Money(amount, currency);
+  }
+
+  public static Money inr(long paise) {
+    return new Money(paise, INR);
+  }
+
+  public static Money zero(String currency) {
+    return new Money(0, currency);
+  }
+
+  public Money times(int quantity) {
+    return new Money(Math.multiplyExact(amount, quantity), currency);
+  }
+
+  public Money plus(Money other) {
+    requireSameCurrency(other);
+    return new Money(Math.addExact(amount, other.amount), currency);
+  }
+
+  @JsonIgnore
+  public boolean isPositive() {
+    return amount > 0;
+  }
+
+  public void requireSameCurrency(Money other) {
+    if (!currency.equals(other.currency)) {
+      throw new IllegalArgumentException("Currency mismatch: " + currency + " and " + other.currency);
+    }
+  }
+
+  /**
+   * The amount in major units, e.g. 500.00 for 50000 paise.
+   */
+  public BigDecimal toDecimal() {
+    return BigDecimal.valueOf(amount, Currency.getInstance(currency).getDefaultFractionDigits());
+  }
+
+  @Override
+  public String toString() {
+    return currency + " " + toDecimal().toPlainString();
+  }
+}
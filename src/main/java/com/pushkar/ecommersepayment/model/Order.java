@@ -3,10 +3,14 @@ package com.pushkar.ecommersepayment.model;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,6 +19,8 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "orders")
+@CompoundIndex(name = "user_created_idx", def = "{'userId': 1, 'createdAt': -1, '_id': -1}")
+@CompoundIndex(name = "outbox_created_idx", def = "{'outbox.createdAt': 1}", sparse = true)
 public class Order {
 
   @Id
@@ -22,11 +28,53 @@ public class Order {
 
   private String userId;
 
-  private Double totalAmount;
+  private Money totalAmount;
 
   private String status; // CREATED, PAID, FAILED, CANCELLED
 
   private List<OrderItem> items = new ArrayList<>();
 
   private Instant createdAt;
+
+  @JsonIgnore
+  private List<OutboxEvent> outbox; // undispatched events, absent when empty
+
+  /**
+   * Statuses an order may move to {@code status} from when its payment
+   * changes: it is paid unless cancelled, and fails only while unpaid.
+   */
+  public static Set<String> sourcesOf(String status) {
+    return switch (status) {
+      case "PAID" -> Set.of("CREATED", "FAILED");
+      case "FAILED" -> Set.of("CREATED");
+      default -> Set.of();
+    };
+  }
+
+  public void addOutboxEvent(OutboxEvent event) {
+    if (outbox == null) {
+      outbox = new ArrayList<>();
+    }
+    outbox.add(event);
+  }
+
+  /**
+   * Sum of unit price times quantity over the items, accumulated in minor
+   * units without allocating per line. All items must share one currency.
+   */
+  public static Money totalOf(List<OrderItem> items) {
+    if (items.isEmpty()) {
+      throw new IllegalArgumentException("Order has no items");
+    }
+    String currency = items.get(0).getPrice().currency();
+    long total = 0;
+    for (OrderItem item : items) {
+      Money price = item.getPrice();
+      if (!currency.equals(price.currency())) {
+        throw new IllegalArgumentException("Order mixes currencies: " + currency + " and " + price.currency());
+      }
+      total = Math.addExact(total, Math.multiplyExact(price.amount(), item.getQuantity()));
+    }
+    return new Money(total, currency);
+  }
 }
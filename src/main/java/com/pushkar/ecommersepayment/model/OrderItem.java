@@ -13,5 +13,5 @@ public class OrderItem {
 
   private Integer quantity;
 
-  private Double price;
+  private Money price; // unit price when ordered
 }
@@ -0,0 +1,85 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.data.annotation.Transient;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A state change waiting to be dispatched. Events are embedded in the
+ * {@code outbox} array of the order or payment they describe and written in
+ * the same update as the change itself; the dispatcher removes them once
+ * every consumer has accepted them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEvent {
+
+  public static final String ORDER_CREATED = "order.created";
+  public static final String ORDER_STATUS_CHANGED = "order.status_changed";
+  public static final String PAYMENT_CREATED = "payment.created";
+  public static final String PAYMENT_SUCCEEDED = "payment.succeeded";
+  public static final String PAYMENT_FAILED = "payment.failed";
+
+  private String eventId;
+
+  private String type;
+
+  private Map<String, Object> data;
+
+  private Instant createdAt;
+
+  @Transient
+  private String aggregateType; // order, payment; set when dispatched
+
+  @Transient
+  private String aggregateId; // id of the document holding the event; set when dispatched
+
+  public static OutboxEvent of(String type, Map<String, Object> data) {
+    return new OutboxEvent(UUID.randomUUID().toString(), type, data, Instant.now(), null, null);
+  }
+
+  public static OutboxEvent orderCreated(Order order) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("userId", order.getUserId());
+    data.put("status", order.getStatus());
+    data.put("totalAmount", order.getTotalAmount());
+    data.put("itemCount", order.getItems().size());
+    return of(ORDER_CREATED, data);
+  }
+
+  public static OutboxEvent orderStatusChanged(String status) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("status", status);
+    return of(ORDER_STATUS_CHANGED, data);
+  }
+
+  public static OutboxEvent paymentCreated(Payment payment) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("orderId", payment.getOrderId());
+    data.put("amount", payment.getAmount());
+    data.put("razorpayOrderId", payment.getRazorpayOrderId());
+    return of(PAYMENT_CREATED, data);
+  }
+
+  public static OutboxEvent paymentSucceeded(String paymentId, String razorpayOrderId) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("paymentId", paymentId);
+    data.put("razorpayOrderId", razorpayOrderId);
+    return of(PAYMENT_SUCCEEDED, data);
+  }
+
+  public static OutboxEvent paymentFailed(String razorpayOrderId, String reason) {
+    Map<String, Object> data = new LinkedHashMap<>();
+    data.put("razorpayOrderId", razorpayOrderId);
+    data.put("reason", reason);
+    return of(PAYMENT_FAILED, data);
+  }
+}
@@ -1,10 +1,17 @@
 package com.pushkar.ecommersepayment.model;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -13,20 +20,54 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "payments")
+@CompoundIndex(name = "outbox_created_idx", def = "{'outbox.createdAt': 1}", sparse = true)
 public class Payment {
 
   @Id
   private String id;
 
+  @Indexed(unique = true)
   private String orderId;
 
-  private Double amount;
+  private Money amount;
 
+  @Indexed
   private String status; // PENDING, SUCCESS, FAILED
 
+  @Indexed(sparse = true)
   private String paymentId; // External payment ID (Razorpay)
 
+  @Indexed(unique = true, sparse = true)
   private String razorpayOrderId;
 
   private Instant createdAt;
+
+  @JsonIgnore
+  private String completionOwner; // instance that schedules the mock completion
+
+  @JsonIgnore
+  private Instant completionLeaseUntil; // other instances may take over after this
+
+  @JsonIgnore
+  private List<OutboxEvent> outbox; // undispatched events, absent when empty
+
+  /**
+   * Statuses a payment may move to {@code status} from. A capture may follow
+   * a failed attempt, a failure only a pending payment; anything else, such
+   * as a repeat or a failure arriving after the capture, is no state change.
+   */
+  public static Set<String> sourcesOf(String status) {
+    return switch (status) {
+      case "SUCCESS" -> Set.of("PENDING", "FAILED");
+      case "FAILED" -> Set.of("PENDING");
+      default -> Set.of();
+    };
+  }
+
+  public void addOutboxEvent(OutboxEvent event) {
+    if (outbox == null) {
+      outbox = new ArrayList<>();
+    }
+    outbox.add(event);
+  }
 }
@@ -0,0 +1,24 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "processed_webhooks")
+public class ProcessedWebhook {
+
+  @Id
+  private String id; // event|paymentId|orderId
+
+  @Indexed(expireAfter = "0s")
+  private Instant expiresAt;
+}
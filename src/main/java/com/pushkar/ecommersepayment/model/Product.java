@@ -1,8 +1,13 @@
 package com.pushkar.ecommersepayment.model;
 
+import java.util.List;
+
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,11 +21,24 @@ public class Product {
   @Id
   private String id;
 
+  @TextIndexed(weight = 3)
   private String name;
 
+  @TextIndexed
   private String description;
 
-  private Double price;
+  private Money price;
 
   private Integer stock;
+
+  @JsonIgnore
+  private List<String> reservations; // bulk reservations in flight, see ProductRepositoryImpl
+
+  public Product(String id, String name, String description, Money price, Integer stock) {
+    this.id = id;
+    this.name = name;
+    this.description = description;
+    this.price = price;
+    this.stock = stock;
+  }
 }
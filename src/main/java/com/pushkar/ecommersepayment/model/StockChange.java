@@ -0,0 +1,7 @@
+package com.pushkar.ecommersepayment.model;
+
+/**
+ * A quantity of one product to take out of, or put back into, stock.
+ */
+public record StockChange(String productId, int quantity) {
+}
@@ -1,8 +1,11 @@
 package com.pushkar.ecommersepayment.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -11,13 +14,16 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "users")
+@JsonInclude(JsonInclude.Include.NON_NULL) // fields left out of a projection are omitted
 public class User {
 
   @Id
   private String id;
 
+  @Indexed(unique = true)
   private String username;
 
+  @Indexed(unique = true)
   private String email;
 
   private String role;
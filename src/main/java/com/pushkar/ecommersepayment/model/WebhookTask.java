@@ -0,0 +1,62 @@
+package com.pushkar.ecommersepayment.model;
+
+import java.time.Instant;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A payment webhook accepted from the gateway and waiting to be applied.
+ * Tasks are kept in {@code webhook_queue} until applied; tasks that exhaust
+ * their attempts are moved to {@code webhook_dead_letters} unchanged apart
+ * from {@code failedAt}.
+ */
+@Data
+@NoArgsConstructor
+@Document(collection = "webhook_queue")
+@CompoundIndex(name = "partition_id_idx", def = "{'partition': 1, '_id': 1}")
+@CompoundIndex(name = "partition_next_attempt_idx", def = "{'partition': 1, 'nextAttemptAt': 1, '_id': 1}")
+public class WebhookTask {
+
+  public static final String PAYMENT_CAPTURED = "payment.captured";
+  public static final String ORDER_PAID = "order.paid";
+  public static final String PAYMENT_FAILED = "payment.failed";
+
+  @Id
+  private String id; // ObjectId, increasing in arrival order
+
+  private String event;
+
+  private String paymentId;
+
+  private String orderId; // gateway order id (Payment.razorpayOrderId)
+
+  private String reason;
+
+  private int partition; // from orderId; one worker drains a partition in id order
+
+  private int attempts;
+
+  private Instant nextAttemptAt;
+
+  private String lastError;
+
+  private Instant receivedAt;
+
+  private Instant failedAt; // set when dead-lettered
+
+  public WebhookTask(String event, String paymentId, String orderId, String reason) {
+    this.event = event;
+    this.paymentId = paymentId;
+    this.orderId = orderId;
+    this.reason = reason;
+  }
+
+  public static boolean isSupported(String event) {
+    return PAYMENT_CAPTURED.equals(event) || ORDER_PAID.equals(event) || PAYMENT_FAILED.equals(event);
+  }
+}
@@ -0,0 +1,45 @@
+package com.pushkar.ecommersepayment.outbox;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+
+/**
+ * Writes each event as one JSON line to the {@code outbox.events} logger,
+ * standing in for a message broker. Route that logger to its own file to
+ * get an event log.
+ */
+public class LogOutboxSink implements OutboxConsumer {
+
+  private static final Logger EVENTS = LoggerFactory.getLogger("outbox.events");
+
+  private final ObjectMapper objectMapper;
+
+  public LogOutboxSink(ObjectMapper objectMapper) {
+    this.objectMapper = objectMapper;
+  }
+
+  @Override
+  public String name() {
+    return "log";
+  }
+
+  @Override
+  public void accept(List<OutboxEvent> events) {
+    if (!EVENTS.isInfoEnabled()) {
+      return;
+    }
+    for (OutboxEvent event : events) {
+      try {
+        EVENTS.info(objectMapper.writeValueAsString(event));
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Cannot serialize outbox event " + event.getEventId(), e);
+      }
+    }
+  }
+}
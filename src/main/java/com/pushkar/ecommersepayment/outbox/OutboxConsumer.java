@@ -0,0 +1,21 @@
+package com.pushkar.ecommersepayment.outbox;
+
+import java.util.List;
+
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+
+/**
+ * Downstream work driven by order and payment state changes (emails,
+ * analytics, fulfilment). Every bean of this type receives each dispatched
+ * batch, oldest event first, on the dispatcher thread.
+ *
+ * Delivery is at least once: a batch is redelivered to every consumer when
+ * any of them throws, so consumers must tolerate seeing an event again,
+ * e.g. by its {@code eventId}.
+ */
+public interface OutboxConsumer {
+
+  String name();
+
+  void accept(List<OutboxEvent> events);
+}
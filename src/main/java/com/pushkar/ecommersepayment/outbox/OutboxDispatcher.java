@@ -0,0 +1,302 @@
+package com.pushkar.ecommersepayment.outbox;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the outboxes embedded in orders and payments and hands the pending
+ * events to every {@link OutboxConsumer} in batches, on its own thread, so
+ * consumers never add latency to checkout or payment handling.
+ *
+ * Each poll reads up to {@code batchSize} documents per collection through
+ * the sparse {@code outbox.createdAt} index, delivers their events oldest
+ * first, then removes exactly the delivered events from each document with
+ * one unordered bulk write; events added meanwhile stay for the next poll.
+ *
+ * When a consumer rejects a batch, its events are offered to that consumer
+ * one at a time; whatever fails stays in place to be redelivered. An event
+ * a working consumer keeps rejecting is moved to {@code outbox_dead_letters}
+ * after {@code maxAttempts} polls, so it cannot block its document's later
+ * events forever. Run the dispatcher on one instance only: two dispatchers
+ * would deliver the same events twice.
+ */
+@Slf4j
+public class OutboxDispatcher {
+
+  public static final String DEAD_LETTER_COLLECTION = "outbox_dead_letters";
+
+  private static final List<Source> SOURCES = List.of(new Source("order", Order.class),
+      new Source("payment", Payment.class));
+  private static final String ATTEMPTS = "attempts";
+  private static final int MAX_FAILURES_BEFORE_ACCEPT = 3;
+
+  private final MongoTemplate mongoTemplate;
+  private final List<OutboxConsumer> consumers;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final MeterRegistry meterRegistry;
+  private final ScheduledExecutorService timer;
+
+  private final Counter dispatchedCounter;
+  private final Counter deadLetterCounter;
+  private final Timer lagTimer;
+
+  public OutboxDispatcher(MongoTemplate mongoTemplate, List<OutboxConsumer> consumers, Duration pollInterval,
+      int batchSize, int maxAttempts, MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.consumers = List.copyOf(consumers);
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.meterRegistry = meterRegistry;
+
+    this.dispatchedCounter = Counter.builder("outbox.events.dispatched")
+        .description("Outbox events delivered to every consumer")
+        .register(meterRegistry);
+    this.deadLetterCounter = Counter.builder("outbox.events.dead_lettered")
+        .description("Outbox events moved to the dead-letter collection after repeated rejection")
+        .register(meterRegistry);
+    this.lagTimer = Timer.builder("outbox.dispatch.lag")
+        .description("Time from a state change being written to its event being delivered")
+        .publishPercentiles(0.5, 0.99)
+        .register(meterRegistry);
+
+    this.timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+      Thread thread = new Thread(runnable, "outbox-dispatcher");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = pollInterval.toMillis();
+    timer.scheduleWithFixedDelay(this::dispatchAll, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Dispatches until a poll finds less than a full batch.
+   */
+  public void dispatchAll() {
+    try {
+      while (dispatchPending() >= batchSize) {
+        // Drain a backlog without waiting for the next tick
+      }
+    } catch (RuntimeException e) {
+      log.error("Outbox dispatch failed: {}", e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Delivers one batch per collection and returns the number of events
+   * delivered.
+   */
+  public int dispatchPending() {
+    int dispatched = 0;
+    for (Source source : SOURCES) {
+      dispatched += dispatch(source);
+    }
+    return dispatched;
+  }
+
+  /**
+   * Stops polling and delivers whatever is pending.
+   */
+  public void shutdown() {
+    timer.shutdown();
+    try {
+      timer.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    dispatchAll();
+  }
+
+  private int dispatch(Source source) {
+    String collection = mongoTemplate.getCollectionName(source.type());
+    // No sort: a range on the multikey outbox.createdAt would force a blocking
+    // sort, while the index scan already returns the oldest outboxes first
+    Query query = Query.query(where("outbox.createdAt").lte(Instant.now()))
+        .limit(batchSize);
+    query.fields().include("outbox");
+    List<Document> documents = mongoTemplate.find(query, Document.class, collection);
+    if (documents.isEmpty()) {
+      return 0;
+    }
+
+    List<OutboxEvent> events = new ArrayList<>();
+    Map<String, Document> storedEvents = new HashMap<>();
+    Map<String, Object> documentIds = new HashMap<>();
+    Map<Object, List<String>> acknowledged = new LinkedHashMap<>();
+    for (Document document : documents) {
+      acknowledged.put(document.get("_id"), new ArrayList<>());
+      for (Document stored : document.getList("outbox", Document.class)) {
+        OutboxEvent event = mongoTemplate.getConverter().read(OutboxEvent.class, stored);
+        event.setAggregateType(source.name());
+        event.setAggregateId(document.get("_id").toString());
+        events.add(event);
+        storedEvents.put(event.getEventId(), stored);
+        documentIds.put(event.getEventId(), document.get("_id"));
+      }
+    }
+    events.sort(Comparator.comparing(OutboxEvent::getCreatedAt));
+
+    List<OutboxEvent> batch = Collections.unmodifiableList(events);
+    Set<String> undelivered = new HashSet<>();
+    Map<String, String> rejected = new LinkedHashMap<>();
+    for (OutboxConsumer consumer : consumers) {
+      try {
+        consumer.accept(batch);
+      } catch (RuntimeException e) {
+        meterRegistry.counter("outbox.dispatch.failures", "consumer", consumer.name()).increment();
+        log.error("Outbox consumer {} failed on {} {} events, retrying them one by one: {}",
+            consumer.name(), events.size(), source.name(), e.getMessage(), e);
+        deliverOneByOne(consumer, events, undelivered, rejected);
+      }
+    }
+
+    // A rejected event costs an attempt and is dead-lettered at the limit,
+    // which removes it from the outbox like a delivered one
+    Map<Object, List<String>> retried = new LinkedHashMap<>();
+    List<Document> deadLetters = new ArrayList<>();
+    int delivered = 0;
+    for (OutboxEvent event : events) {
+      String eventId = event.getEventId();
+      Object documentId = documentIds.get(eventId);
+      String rejection = rejected.get(eventId);
+      if (!undelivered.contains(eventId)) {
+        acknowledged.get(documentId).add(eventId);
+        delivered++;
+      } else if (rejection != null && storedEvents.get(eventId).getInteger(ATTEMPTS, 0) + 1 >= maxAttempts) {
+        deadLetters.add(new Document(storedEvents.get(eventId))
+            .append("aggregateType", source.name())
+            .append("aggregateId", event.getAggregateId())
+            .append("error", rejection)
+            .append("deadLetteredAt", new Date()));
+        acknowledged.get(documentId).add(eventId);
+      } else if (rejection != null) {
+        retried.computeIfAbsent(documentId, id -> new ArrayList<>()).add(eventId);
+      }
+    }
+    if (!deadLetters.isEmpty()) {
+      mongoTemplate.insert(deadLetters, DEAD_LETTER_COLLECTION);
+      deadLetterCounter.increment(deadLetters.size());
+      log.error("Dead-lettered {} {} outbox events after {} attempts into {}", deadLetters.size(), source.name(),
+          maxAttempts, DEAD_LETTER_COLLECTION);
+    }
+    countAttempts(collection, retried);
+    acknowledge(collection, acknowledged);
+
+    Instant now = Instant.now();
+    for (OutboxEvent event : events) {
+      if (!undelivered.contains(event.getEventId())) {
+        lagTimer.record(Duration.between(event.getCreatedAt(), now));
+      }
+    }
+    dispatchedCounter.increment(delivered);
+    return delivered;
+  }
+
+  /**
+   * Offers the events of a rejected batch to {@code consumer} one at a time,
+   * so a single event it cannot take does not hold back the others. Once an
+   * event of a document fails, that document's later events are held back to
+   * keep their order. Failures only count as rejections if the consumer
+   * accepted some other event; when it rejects the first few outright it is
+   * taken to be down, and the rest is left for the next poll untried.
+   */
+  private void deliverOneByOne(OutboxConsumer consumer, List<OutboxEvent> events, Set<String> undelivered,
+      Map<String, String> rejected) {
+    Set<String> failedAggregates = new HashSet<>();
+    Map<String, String> failures = new LinkedHashMap<>();
+    boolean accepted = false;
+    for (int i = 0; i < events.size(); i++) {
+      OutboxEvent event = events.get(i);
+      if (failedAggregates.contains(event.getAggregateId())) {
+        undelivered.add(event.getEventId());
+        continue;
+      }
+      try {
+        consumer.accept(List.of(event));
+        accepted = true;
+      } catch (RuntimeException e) {
+        failedAggregates.add(event.getAggregateId());
+        undelivered.add(event.getEventId());
+        failures.put(event.getEventId(), consumer.name() + ": " + e.getMessage());
+        if (!accepted && failures.size() == MAX_FAILURES_BEFORE_ACCEPT) {
+          events.subList(i + 1, events.size()).forEach(rest -> undelivered.add(rest.getEventId()));
+          return;
+        }
+      }
+    }
+    if (accepted) {
+      failures.forEach(rejected::putIfAbsent);
+    }
+  }
+
+  /**
+   * Increments the stored attempt count of each rejected event, with one
+   * unordered bulk write.
+   */
+  private void countAttempts(String collection, Map<Object, List<String>> eventIdsByDocument) {
+    List<UpdateOneModel<Document>> updates = new ArrayList<>();
+    eventIdsByDocument.forEach((id, eventIds) -> eventIds.forEach(eventId -> updates.add(new UpdateOneModel<>(
+        new Document("_id", id).append("outbox.eventId", eventId),
+        new Document("$inc", new Document("outbox.$." + ATTEMPTS, 1))))));
+    if (!updates.isEmpty()) {
+      mongoTemplate.getCollection(collection).bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+  }
+
+  /**
+   * Removes the delivered events from each document, and the outbox field
+   * itself once empty so the document drops out of the sparse index.
+   */
+  private void acknowledge(String collection, Map<Object, List<String>> eventIdsByDocument) {
+    List<UpdateOneModel<Document>> updates = new ArrayList<>(eventIdsByDocument.size());
+    eventIdsByDocument.forEach((id, eventIds) -> {
+      if (eventIds.isEmpty()) {
+        return;
+      }
+      Document remaining = new Document("$filter", new Document("input", "$outbox")
+          .append("as", "event")
+          .append("cond", new Document("$not", List.of(new Document("$in", List.of("$$event.eventId", eventIds))))));
+      Document outbox = new Document("$let", new Document("vars", new Document("remaining", remaining))
+          .append("in", new Document("$cond", List.of(
+              new Document("$eq", List.of(new Document("$size", "$$remaining"), 0)), "$$REMOVE", "$$remaining"))));
+      updates.add(new UpdateOneModel<>(new Document("_id", id),
+          List.of(new Document("$set", new Document("outbox", outbox)))));
+    });
+    if (!updates.isEmpty()) {
+      mongoTemplate.getCollection(collection).bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+  }
+
+  private record Source(String name, Class<?> type) {
+  }
+}
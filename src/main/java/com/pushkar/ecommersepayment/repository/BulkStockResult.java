@@ -0,0 +1,35 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import com.pushkar.ecommersepayment.model.StockChange;
+
+/**
+ * Outcome of a bulk stock decrement: the changes that were applied and, if
+ * any product was short, the first change that could not be applied.
+ */
+public record BulkStockResult(List<StockChange> applied, StockChange failed) {
+
+  /**
+   * The result for {@code changes} given the numbers of the lines that were
+   * applied; the first line that was not is the failed one.
+   */
+  public static BulkStockResult of(List<StockChange> changes, Set<Integer> appliedLines) {
+    List<StockChange> applied = new ArrayList<>();
+    StockChange failed = null;
+    for (int line = 0; line < changes.size(); line++) {
+      if (appliedLines.contains(line)) {
+        applied.add(changes.get(line));
+      } else if (failed == null) {
+        failed = changes.get(line);
+      }
+    }
+    return new BulkStockResult(applied, failed);
+  }
+
+  public boolean isSuccess() {
+    return failed == null;
+  }
+}
@@ -0,0 +1,10 @@
+package com.pushkar.ecommersepayment.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pushkar.ecommersepayment.model.Cart;
+
+@Repository
+public interface CartDocumentRepository extends MongoRepository<Cart, String>, CartDocumentRepositoryCustom {
+}
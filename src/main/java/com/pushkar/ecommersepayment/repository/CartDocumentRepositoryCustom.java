@@ -0,0 +1,35 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.Optional;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartLine;
+
+public interface CartDocumentRepositoryCustom {
+
+  /**
+   * Increments the quantity of the user's line for the product, or pushes a
+   * new line (creating the cart if needed), with single-document atomic
+   * updates. Returns empty without writing when the line would end up above
+   * {@code maxQuantity}.
+   */
+  Optional<CartLine> addQuantity(String userId, String productId, int quantity, int maxQuantity);
+
+  /**
+   * The cart's lines joined to their products, with line totals and the
+   * cart subtotal, in a single aggregation.
+   */
+  CartResponse findCartView(String userId);
+
+  /**
+   * Pulls the line with the given id out of whichever cart holds it.
+   */
+  boolean removeLine(String lineId);
+
+  /**
+   * Folds every user's {@code cart_items} documents into one {@code carts}
+   * document on the server. Carts that already exist are kept as they are,
+   * so the migration can be re-run. Returns the number of carts afterwards.
+   */
+  long migrateFromCartItems();
+}
@@ -0,0 +1,112 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static com.pushkar.ecommersepayment.repository.CartViews.stage;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.Cart;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.CartLine;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class CartDocumentRepositoryImpl implements CartDocumentRepositoryCustom {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public Optional<CartLine> addQuantity(String userId, String productId, int quantity, int maxQuantity) {
+    if (quantity > maxQuantity) {
+      return Optional.empty();
+    }
+
+    // Two attempts: the push below fails with a duplicate cart id when the
+    // line already exists, either above the limit or added concurrently
+    // between the two updates, and the retried $inc tells those apart.
+    for (int attempt = 0; attempt < 2; attempt++) {
+      Query existingLine = query(where("userId").is(userId)
+          .and("lines").elemMatch(where("productId").is(productId).and("quantity").lte(maxQuantity - quantity)));
+      Cart cart = mongoTemplate.findAndModify(existingLine,
+          new Update().inc("lines.$.quantity", quantity).currentDate("updatedAt"),
+          FindAndModifyOptions.options().returnNew(true), Cart.class);
+      if (cart != null) {
+        return findLine(cart, productId);
+      }
+
+      Query withoutLine = query(where("userId").is(userId).and("lines.productId").ne(productId));
+      CartLine line = new CartLine(new ObjectId().toHexString(), productId, quantity);
+      try {
+        cart = mongoTemplate.findAndModify(withoutLine,
+            new Update().push("lines", line).currentDate("updatedAt"),
+            FindAndModifyOptions.options().returnNew(true).upsert(true), Cart.class);
+        return findLine(cart, productId);
+      } catch (DuplicateKeyException e) {
+        // The cart has the line already, retry the increment
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public CartResponse findCartView(String userId) {
+    List<AggregationOperation> stages = new ArrayList<>();
+    stages.add(stage("$match", new Document("_id", userId)));
+    stages.add(stage("$unwind", "$lines"));
+    // Reshape each embedded line like a cart_items document
+    stages.add(stage("$project", new Document("_id", "$lines.lineId")
+        .append("userId", "$_id")
+        .append("productId", "$lines.productId")
+        .append("quantity", "$lines.quantity")));
+    stages.addAll(CartViews.joinProductsAndTotal(mongoTemplate));
+
+    Document cart = mongoTemplate.aggregate(Aggregation.newAggregation(stages),
+        mongoTemplate.getCollectionName(Cart.class), Document.class).getUniqueMappedResult();
+    return CartViews.read(mongoTemplate, userId, cart);
+  }
+
+  @Override
+  public boolean removeLine(String lineId) {
+    return mongoTemplate.updateFirst(query(where("lines.lineId").is(lineId)),
+        new Update().pull("lines", new Document("lineId", lineId)).currentDate("updatedAt"),
+        Cart.class).getModifiedCount() == 1;
+  }
+
+  @Override
+  public long migrateFromCartItems() {
+    Aggregation aggregation = Aggregation.newAggregation(
+        stage("$sort", new Document("_id", 1)),
+        stage("$group", new Document("_id", "$userId")
+            .append("lines", new Document("$push", new Document("lineId", new Document("$toString", "$_id"))
+                .append("productId", "$productId")
+                .append("quantity", "$quantity")))
+            .append("updatedAt", new Document("$first", "$$NOW"))),
+        stage("$merge", new Document("into", mongoTemplate.getCollectionName(Cart.class))
+            .append("on", "_id")
+            .append("whenMatched", "keepExisting")
+            .append("whenNotMatched", "insert")));
+    mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(CartItem.class), Document.class);
+    return mongoTemplate.count(new Query(), Cart.class);
+  }
+
+  private static Optional<CartLine> findLine(Cart cart, String productId) {
+    return cart.getLines().stream()
+        .filter(line -> productId.equals(line.getProductId()))
+        .findFirst();
+  }
+}
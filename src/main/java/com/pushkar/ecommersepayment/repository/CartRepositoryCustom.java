@@ -0,0 +1,25 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.Optional;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+
+public interface CartRepositoryCustom {
+
+  /**
+   * Adds {@code quantity} to the user's line for the product with a single
+   * upsert that {@code $inc}s the quantity, inserting the line when missing.
+   * The unique (userId, productId) index keeps concurrent adds on one line.
+   * Returns the line after the change, or empty without writing when it
+   * would end up above {@code maxQuantity}.
+   */
+  Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity);
+
+  /**
+   * The user's cart lines joined to their products, with line totals and the
+   * cart subtotal computed by the database in a single aggregation. An empty
+   * cart has no items and a subtotal of zero.
+   */
+  CartResponse findCartView(String userId);
+}
@@ -0,0 +1,64 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static com.pushkar.ecommersepayment.repository.CartViews.stage;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class CartRepositoryImpl implements CartRepositoryCustom {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public Optional<CartItem> addQuantity(String userId, String productId, int quantity, int maxQuantity) {
+    if (quantity > maxQuantity) {
+      return Optional.empty();
+    }
+    // When the line exists but is at its limit the filter misses it and the
+    // upsert collides with it on the unique index. Two concurrent first adds
+    // collide the same way, so the loser retries once and then matches the
+    // line the winner inserted.
+    for (int attempt = 0; attempt < 2; attempt++) {
+      try {
+        return Optional.of(mongoTemplate.findAndModify(
+            query(where("userId").is(userId).and("productId").is(productId)
+                .and("quantity").lte(maxQuantity - quantity)),
+            new Update().inc("quantity", quantity),
+            FindAndModifyOptions.options().returnNew(true).upsert(true),
+            CartItem.class));
+      } catch (DuplicateKeyException e) {
+        // Line exists: above the limit, or inserted by a concurrent add
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public CartResponse findCartView(String userId) {
+    List<AggregationOperation> stages = new ArrayList<>();
+    stages.add(stage("$match", new Document("userId", userId)));
+    stages.add(stage("$sort", new Document("_id", 1)));
+    stages.addAll(CartViews.joinProductsAndTotal(mongoTemplate));
+
+    Document cart = mongoTemplate.aggregate(Aggregation.newAggregation(stages),
+        mongoTemplate.getCollectionName(CartItem.class), Document.class).getUniqueMappedResult();
+    return CartViews.read(mongoTemplate, userId, cart);
+  }
+}
@@ -0,0 +1,72 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+
+import com.pushkar.ecommersepayment.dto.CartItemResponse;
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+
+/**
+ * The part of the cart view pipeline shared by both cart storage modes: it
+ * takes one document per line shaped like a {@code CartItem} and folds them
+ * into a single document with the joined lines and the subtotal. The
+ * subtotal is null when no line has a product or lines mix currencies.
+ */
+final class CartViews {
+
+  private CartViews() {
+  }
+
+  static List<AggregationOperation> joinProductsAndTotal(MongoTemplate mongoTemplate) {
+    // CartItem.productId is a string and Product._id an ObjectId, so the join
+    // converts it first; an id that is not an ObjectId simply finds nothing.
+    Document productId = new Document("$convert", new Document("input", "$productId")
+        .append("to", "objectId")
+        .append("onError", "$productId")
+        .append("onNull", null));
+
+    return List.of(
+        stage("$lookup", new Document("from", mongoTemplate.getCollectionName(Product.class))
+            .append("let", new Document("productId", productId))
+            .append("pipeline", List.of(
+                new Document("$match", new Document("$expr",
+                    new Document("$eq", List.of("$_id", "$$productId"))))))
+            .append("as", "product")),
+        stage("$unwind", new Document("path", "$product").append("preserveNullAndEmptyArrays", true)),
+        // Lines whose product is gone get no line total and $sum skips them
+        stage("$addFields", new Document("lineTotal", new Document("$cond", List.of(
+            new Document("$ifNull", List.of("$product.price", false)),
+            new Document("amount", new Document("$multiply", List.of("$quantity", "$product.price.amount")))
+                .append("currency", "$product.price.currency"),
+            "$$REMOVE")))),
+        stage("$group", new Document("_id", null)
+            .append("items", new Document("$push", "$$ROOT"))
+            .append("subtotal", new Document("$sum", "$lineTotal.amount"))
+            .append("currencies", new Document("$addToSet", "$lineTotal.currency"))));
+  }
+
+  static CartResponse read(MongoTemplate mongoTemplate, String userId, Document cart) {
+    if (cart == null) {
+      return new CartResponse(userId, new ArrayList<>(), null);
+    }
+    List<CartItemResponse> items = new ArrayList<>();
+    for (Document item : cart.getList("items", Document.class)) {
+      items.add(mongoTemplate.getConverter().read(CartItemResponse.class, item));
+    }
+    List<String> currencies = cart.getList("currencies", String.class);
+    Money subtotal = currencies.size() == 1
+        ? Money.of(((Number) cart.get("subtotal")).longValue(), currencies.get(0))
+        : null;
+    return new CartResponse(userId, items, subtotal);
+  }
+
+  static AggregationOperation stage(String operator, Object value) {
+    return context -> new Document(operator, value);
+  }
+}
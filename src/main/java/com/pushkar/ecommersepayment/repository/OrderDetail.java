@@ -0,0 +1,10 @@
+package com.pushkar.ecommersepayment.repository;
+
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Payment;
+
+/**
+ * An order together with its payment, {@code null} when none was created yet.
+ */
+public record OrderDetail(Order order, Payment payment) {
+}
@@ -0,0 +1,41 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import com.pushkar.ecommersepayment.dto.OrderSummary;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+
+public interface OrderRepositoryCustom {
+
+  /**
+   * Up to {@code limit} summaries of the user's orders, newest first by
+   * creation time and then id. Pass the creation time and id of the last
+   * summary of the previous page to continue after it, or nulls for the
+   * first page. Line items are counted on the server and never loaded.
+   */
+  List<OrderSummary> findSummariesByUserId(String userId, Instant beforeCreatedAt, String beforeId, int limit);
+
+  /**
+   * The order and its payment read in one round trip: the payment is joined
+   * on the server with a {@code $lookup} instead of a second query.
+   */
+  Optional<OrderDetail> findDetailById(String orderId);
+
+  /**
+   * Sets the order's status and appends {@code event} to its outbox in one
+   * update. With {@code expectedStatuses}, only an order still in one of
+   * them is changed. Returns whether an order was changed.
+   */
+  boolean transition(String orderId, Collection<String> expectedStatuses, String status, OutboxEvent event);
+
+  /**
+   * Applies every transition, keyed by order id, with one unordered bulk
+   * write and returns the ids whose update failed. An order no longer in an
+   * expected status is left alone and not reported.
+   */
+  Set<String> transitionAll(List<StatusTransition> transitions);
+}
@@ -0,0 +1,127 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.dto.OrderSummary;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class OrderRepositoryImpl implements OrderRepositoryCustom {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public List<OrderSummary> findSummariesByUserId(String userId, Instant beforeCreatedAt, String beforeId,
+      int limit) {
+    Criteria criteria = where("userId").is(userId);
+    if (beforeCreatedAt != null && beforeId != null) {
+      Object id = ObjectId.isValid(beforeId) ? new ObjectId(beforeId) : beforeId;
+      criteria = criteria.orOperator(
+          where("createdAt").lt(beforeCreatedAt),
+          where("createdAt").is(beforeCreatedAt).and("_id").lt(id));
+    }
+
+    // Served by the (userId, createdAt desc, _id desc) index without a sort stage
+    Aggregation aggregation = Aggregation.newAggregation(
+        Aggregation.match(criteria),
+        Aggregation.sort(Sort.by(Direction.DESC, "createdAt", "_id")),
+        Aggregation.limit(limit),
+        Aggregation.project("userId", "status", "totalAmount", "createdAt")
+            .and(ArrayOperators.Size.lengthOfArray(
+                ConditionalOperators.ifNull("items").then(List.of())))
+            .as("itemCount"));
+    return mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Order.class), OrderSummary.class)
+        .getMappedResults();
+  }
+
+  @Override
+  public Optional<OrderDetail> findDetailById(String orderId) {
+    // Payment.orderId holds the order id as a string while the order _id is an
+    // ObjectId, so the join needs a pipeline lookup comparing the string form
+    // rather than localField/foreignField. It is matched through the unique
+    // orderId index.
+    Object id = ObjectId.isValid(orderId) ? new ObjectId(orderId) : orderId;
+    Aggregation aggregation = Aggregation.newAggregation(
+        stage("$match", new Document("_id", id)),
+        stage("$limit", 1),
+        stage("$lookup", new Document("from", mongoTemplate.getCollectionName(Payment.class))
+            .append("let", new Document("orderId", new Document("$toString", "$_id")))
+            .append("pipeline", List.of(
+                new Document("$match", new Document("$expr",
+                    new Document("$eq", List.of("$orderId", "$$orderId")))),
+                new Document("$limit", 1)))
+            .append("as", "payment")));
+
+    Document document = mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(Order.class),
+        Document.class).getUniqueMappedResult();
+    if (document == null) {
+      return Optional.empty();
+    }
+    List<Document> payments = document.getList("payment", Document.class);
+    Payment payment = payments.isEmpty() ? null : mongoTemplate.getConverter().read(Payment.class, payments.get(0));
+    return Optional.of(new OrderDetail(mongoTemplate.getConverter().read(Order.class, document), payment));
+  }
+
+  private static AggregationOperation stage(String operator, Object value) {
+    return context -> new Document(operator, value);
+  }
+
+  @Override
+  public boolean transition(String orderId, Collection<String> expectedStatuses, String status, OutboxEvent event) {
+    Criteria criteria = where("_id").is(orderId);
+    if (expectedStatuses != null) {
+      criteria = criteria.and("status").in(expectedStatuses);
+    }
+    Update update = new Update().set("status", status).push("outbox", event);
+    return mongoTemplate.updateFirst(Query.query(criteria), update, Order.class).getMatchedCount() > 0;
+  }
+
+  @Override
+  public Set<String> transitionAll(List<StatusTransition> transitions) {
+    if (transitions.isEmpty()) {
+      return Set.of();
+    }
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class);
+    for (StatusTransition transition : transitions) {
+      bulk.updateOne(Query.query(where("_id").is(transition.id()).and("status").in(transition.expectedStatuses())),
+          new Update()
+              .set("status", transition.status())
+              .push("outbox").each(transition.events().toArray()));
+    }
+    try {
+      bulk.execute();
+      return Set.of();
+    } catch (BulkOperationException e) {
+      Set<String> failed = new HashSet<>();
+      e.getErrors().forEach(error -> failed.add(transitions.get(error.getIndex()).id()));
+      return failed;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package com.pushkar.ecommersepayment.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -8,10 +9,12 @@ import org.springframework.stereotype.Repository;
 import com.pushkar.ecommersepayment.model.Payment;
 
 @Repository
-public interface PaymentRepository extends MongoRepository<Payment, String> {
+public interface PaymentRepository extends MongoRepository<Payment, String>, PaymentRepositoryCustom {
   Optional<Payment> findByOrderId(String orderId);
 
   Optional<Payment> findByPaymentId(String paymentId);
 
   Optional<Payment> findByRazorpayOrderId(String razorpayOrderId);
+
+  List<Payment> findByStatus(String status);
 }
@@ -0,0 +1,45 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+
+public interface PaymentRepositoryCustom {
+
+  /**
+   * Sets the status, and the external payment id when given, of the payment
+   * for {@code razorpayOrderId} and appends {@code event} to its outbox in
+   * one update, provided the payment is in one of {@code expectedStatuses}.
+   * Returns the updated payment, or empty when there is no such payment in
+   * an expected status.
+   */
+  Optional<Payment> transitionByRazorpayOrderId(String razorpayOrderId, Collection<String> expectedStatuses,
+      String status, String paymentId, OutboxEvent event);
+
+  /**
+   * Order id and status of the payments for the given gateway order ids,
+   * keyed by gateway order id, read in one query. Unknown ids are absent.
+   */
+  Map<String, Payment> findStatusesByRazorpayOrderId(Collection<String> razorpayOrderIds);
+
+  /**
+   * Applies every transition, keyed by gateway order id, with one unordered
+   * bulk write and returns the ids whose update failed or whose payment was
+   * no longer in an expected status.
+   */
+  Set<String> transitionAllByRazorpayOrderId(List<StatusTransition> transitions);
+
+  /**
+   * Claims up to {@code limit} PENDING payments for {@code owner} until
+   * {@code leaseUntil} and returns them. A payment can be claimed when it has
+   * no lease, its lease has expired, or {@code owner} holds an older lease
+   * from before a restart. Each payment is taken by at most one instance.
+   */
+  List<Payment> claimPending(String owner, Instant now, Instant leaseUntil, int limit);
+}
@@ -0,0 +1,116 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class PaymentRepositoryImpl implements PaymentRepositoryCustom {
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public Optional<Payment> transitionByRazorpayOrderId(String razorpayOrderId, Collection<String> expectedStatuses,
+      String status, String paymentId, OutboxEvent event) {
+    Update update = new Update().set("status", status).push("outbox", event);
+    if (paymentId != null) {
+      update.set("paymentId", paymentId);
+    }
+    return Optional.ofNullable(mongoTemplate.findAndModify(
+        Query.query(where("razorpayOrderId").is(razorpayOrderId).and("status").in(expectedStatuses)),
+        update, FindAndModifyOptions.options().returnNew(true), Payment.class));
+  }
+
+  @Override
+  public Map<String, Payment> findStatusesByRazorpayOrderId(Collection<String> razorpayOrderIds) {
+    Query query = Query.query(where("razorpayOrderId").in(razorpayOrderIds));
+    query.fields().include("razorpayOrderId", "orderId", "status");
+    Map<String, Payment> payments = new HashMap<>();
+    for (Payment payment : mongoTemplate.find(query, Payment.class)) {
+      payments.put(payment.getRazorpayOrderId(), payment);
+    }
+    return payments;
+  }
+
+  @Override
+  public Set<String> transitionAllByRazorpayOrderId(List<StatusTransition> transitions) {
+    if (transitions.isEmpty()) {
+      return Set.of();
+    }
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Payment.class);
+    for (StatusTransition transition : transitions) {
+      Update update = new Update().set("status", transition.status())
+          .push("outbox").each(transition.events().toArray());
+      if (transition.paymentId() != null) {
+        update.set("paymentId", transition.paymentId());
+      }
+      bulk.updateOne(Query.query(where("razorpayOrderId").is(transition.id())
+          .and("status").in(transition.expectedStatuses())), update);
+    }
+    Set<String> failed = new HashSet<>();
+    int matched;
+    try {
+      matched = bulk.execute().getMatchedCount();
+    } catch (BulkOperationException e) {
+      e.getErrors().forEach(error -> failed.add(transitions.get(error.getIndex()).id()));
+      matched = e.getResult().getMatchedCount();
+    }
+    if (matched + failed.size() < transitions.size()) {
+      // Some payment changed status meanwhile; those not in their target status were not updated
+      Map<String, Payment> current = findStatusesByRazorpayOrderId(
+          transitions.stream().map(StatusTransition::id).toList());
+      for (StatusTransition transition : transitions) {
+        Payment payment = current.get(transition.id());
+        if (payment == null || !transition.status().equals(payment.getStatus())) {
+          failed.add(transition.id());
+        }
+      }
+    }
+    return failed;
+  }
+
+  @Override
+  public List<Payment> claimPending(String owner, Instant now, Instant leaseUntil, int limit) {
+    Query candidates = Query.query(claimable(owner, now, leaseUntil)).limit(limit);
+    candidates.fields().include("id");
+    List<String> ids = mongoTemplate.find(candidates, Payment.class).stream().map(Payment::getId).toList();
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    // The condition is checked again in the update, so when two instances
+    // race for the same payments each one is taken by exactly one of them
+    mongoTemplate.updateMulti(Query.query(where("id").in(ids)).addCriteria(claimable(owner, now, leaseUntil)),
+        new Update().set("completionOwner", owner).set("completionLeaseUntil", leaseUntil), Payment.class);
+    return mongoTemplate.find(Query.query(where("id").in(ids)
+        .and("completionOwner").is(owner).and("completionLeaseUntil").is(leaseUntil)), Payment.class);
+  }
+
+  private static Criteria claimable(String owner, Instant now, Instant leaseUntil) {
+    return where("status").is("PENDING").orOperator(
+        where("completionLeaseUntil").is(null),
+        where("completionLeaseUntil").lt(now),
+        where("completionOwner").is(owner).and("completionLeaseUntil").lt(leaseUntil));
+  }
+}
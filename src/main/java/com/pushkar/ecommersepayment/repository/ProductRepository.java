@@ -1,13 +1,22 @@
 package com.pushkar.ecommersepayment.repository;
 
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.data.domain.Limit;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import com.pushkar.ecommersepayment.model.Product;
 
 @Repository
-public interface ProductRepository extends MongoRepository<Product, String> {
-  List<Product> findByNameContainingIgnoreCase(String name);
+public interface ProductRepository extends MongoRepository<Product, String>, ProductRepositoryCustom {
+  List<Product> findAllByOrderByIdAsc(Limit limit);
+
+  List<Product> findByIdGreaterThanOrderByIdAsc(String id, Limit limit);
+
+  /**
+   * Iterates the whole collection through a server cursor. Close the stream.
+   */
+  Stream<Product> streamAllBy();
 }
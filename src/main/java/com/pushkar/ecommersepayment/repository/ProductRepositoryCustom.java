@@ -0,0 +1,47 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import com.pushkar.ecommersepayment.model.StockChange;
+
+public interface ProductRepositoryCustom {
+
+  /**
+   * Atomically decrements stock by {@code quantity} only if at least that much
+   * is available. Returns false without touching the document otherwise.
+   */
+  boolean decrementStockIfAvailable(String productId, int quantity);
+
+  /**
+   * Atomically increments stock by {@code quantity}. Returns false if the
+   * product does not exist.
+   */
+  boolean incrementStock(String productId, int quantity);
+
+  /**
+   * Applies every conditional decrement in one unordered bulk write. Lines
+   * whose product is missing or short are left untouched; the lines that were
+   * applied are reported so the caller can compensate.
+   */
+  BulkStockResult decrementStockInBulk(List<StockChange> changes);
+
+  /**
+   * Increments stock for every change in one unordered bulk write.
+   */
+  void incrementStockInBulk(List<StockChange> changes);
+
+  /**
+   * Current stock of the given products, keyed by id, read with one
+   * {@code $in} query that projects only the stock. Unknown ids are absent.
+   */
+  Map<String, Integer> findStockByIds(Collection<String> productIds);
+
+  /**
+   * Full-text search over name and description for products containing
+   * every term, ordered by relevance and then id. Pass the score and id of the last hit of the previous page to
+   * continue after it, or nulls for the first page.
+   */
+  List<ProductSearchHit> searchByText(String terms, Double afterScore, String afterId, int limit);
+}
@@ -0,0 +1,208 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+  /** Tags of the bulk reservation lines applied to a product and not yet read back. */
+  public static final String RESERVATIONS = "reservations";
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public boolean decrementStockIfAvailable(String productId, int quantity) {
+    // Single server-side conditional update, no read-modify-write in Java
+    return mongoTemplate.updateFirst(
+        query(where("id").is(productId).and("stock").gte(quantity)),
+        new Update().inc("stock", -quantity),
+        Product.class).getModifiedCount() == 1;
+  }
+
+  @Override
+  public boolean incrementStock(String productId, int quantity) {
+    return mongoTemplate.updateFirst(
+        query(where("id").is(productId)),
+        new Update().inc("stock", quantity),
+        Product.class).getModifiedCount() == 1;
+  }
+
+  @Override
+  public BulkStockResult decrementStockInBulk(List<StockChange> changes) {
+    // Each line is a conditional update that also adds the line's own tag to
+    // the product's reservations. Only when fewer lines matched than were sent
+    // are the products read back once; a line applied exactly when its tag is
+    // there. The tags are pulled again either way.
+    List<String> tags = reservationTags(changes);
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    for (int line = 0; line < changes.size(); line++) {
+      StockChange change = changes.get(line);
+      bulk.updateOne(
+          query(where("id").is(change.productId()).and("stock").gte(change.quantity())),
+          new Update().inc("stock", -change.quantity()).addToSet(RESERVATIONS, tags.get(line)));
+    }
+    int matched = bulk.execute().getMatchedCount();
+    BulkStockResult result = matched == changes.size() ? new BulkStockResult(changes, null)
+        : readBack(changes, tags, mongoTemplate.find(reservedBy(changes, tags), Document.class,
+            mongoTemplate.getCollectionName(Product.class)));
+    mongoTemplate.updateMulti(productsOf(changes), releaseTags(tags), Product.class);
+    return result;
+  }
+
+  @Override
+  public void incrementStockInBulk(List<StockChange> changes) {
+    if (changes.isEmpty()) {
+      return;
+    }
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    for (StockChange change : changes) {
+      bulk.updateOne(query(where("id").is(change.productId())),
+          new Update().inc("stock", change.quantity()));
+    }
+    bulk.execute();
+  }
+
+  @Override
+  public Map<String, Integer> findStockByIds(Collection<String> productIds) {
+    Query query = query(where("id").in(productIds));
+    query.fields().include("stock");
+    Map<String, Integer> stock = new HashMap<>();
+    for (Product product : mongoTemplate.find(query, Product.class)) {
+      stock.put(product.getId(), product.getStock());
+    }
+    return stock;
+  }
+
+  @Override
+  public List<ProductSearchHit> searchByText(String terms, Double afterScore, String afterId, int limit) {
+    String search = allTerms(terms);
+    if (search.isEmpty()) {
+      return List.of();
+    }
+    // The text score only exists inside the pipeline, so keyset paging on
+    // (score desc, _id asc) has to be an aggregation rather than a find.
+    List<AggregationOperation> stages = new ArrayList<>();
+    stages.add(stage("$match", new Document("$text", new Document("$search", search))));
+    stages.add(stage("$addFields", new Document("score", new Document("$meta", "textScore"))));
+    if (afterScore != null && afterId != null) {
+      Object id = ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId;
+      stages.add(stage("$match", new Document("$or", List.of(
+          new Document("score", new Document("$lt", afterScore)),
+          new Document("score", afterScore).append("_id", new Document("$gt", id))))));
+    }
+    stages.add(stage("$sort", new Document("score", -1).append("_id", 1)));
+    stages.add(stage("$limit", limit));
+
+    List<ProductSearchHit> hits = new ArrayList<>();
+    for (Document document : mongoTemplate.aggregate(Aggregation.newAggregation(stages),
+        mongoTemplate.getCollectionName(Product.class), Document.class)) {
+      double score = document.getDouble("score");
+      hits.add(new ProductSearchHit(mongoTemplate.getConverter().read(Product.class, document), score));
+    }
+    return hits;
+  }
+
+  /**
+   * A {@code $text} search string that, like the in-memory index, requires
+   * every term. Plain terms are OR-ed by MongoDB, quoted phrases are AND-ed,
+   * so each token is quoted on its own. This also keeps user input from
+   * being read as negations or phrases.
+   */
+  public static String allTerms(String terms) {
+    StringBuilder search = new StringBuilder();
+    for (String token : ProductSearchIndex.tokenize(terms)) {
+      if (search.length() > 0) {
+        search.append(' ');
+      }
+      search.append('"').append(token).append('"');
+    }
+    return search.toString();
+  }
+
+  /**
+   * One tag per line of a bulk reservation: a fresh id plus the line number,
+   * so two lines of the same product stay apart.
+   */
+  public static List<String> reservationTags(List<StockChange> changes) {
+    String reservation = new ObjectId().toHexString();
+    List<String> tags = new ArrayList<>(changes.size());
+    for (int line = 0; line < changes.size(); line++) {
+      tags.add(reservation + ":" + line);
+    }
+    return tags;
+  }
+
+  /**
+   * The products in {@code changes} that carry one of {@code tags}, with
+   * only their reservations.
+   */
+  public static Query reservedBy(List<StockChange> changes, List<String> tags) {
+    Query query = productsOf(changes).addCriteria(where(RESERVATIONS).in(tags));
+    query.fields().include(RESERVATIONS);
+    return query;
+  }
+
+  /**
+   * Splits a partly matched bulk decrement into applied and short lines
+   * from the documents read by {@link #reservedBy}: a line was applied
+   * exactly when its product holds the line's tag.
+   */
+  public static BulkStockResult readBack(List<StockChange> changes, List<String> tags, List<Document> products) {
+    Set<String> found = new HashSet<>();
+    for (Document product : products) {
+      found.addAll(product.getList(RESERVATIONS, String.class, List.of()));
+    }
+    Set<Integer> applied = new HashSet<>();
+    for (int line = 0; line < changes.size(); line++) {
+      if (found.contains(tags.get(line))) {
+        applied.add(line);
+      }
+    }
+    return BulkStockResult.of(changes, applied);
+  }
+
+  /**
+   * Removes this reservation's tags from its products once it has been read.
+   */
+  public static Update releaseTags(List<String> tags) {
+    return new Update().pullAll(RESERVATIONS, tags.toArray());
+  }
+
+  public static Query productsOf(List<StockChange> changes) {
+    List<Object> ids = changes.stream()
+        .<Object>map(change -> ObjectId.isValid(change.productId())
+            ? new ObjectId(change.productId()) : change.productId())
+        .distinct()
+        .toList();
+    return query(where("_id").in(ids));
+  }
+
+  private static AggregationOperation stage(String operator, Object value) {
+    return context -> new Document(operator, value);
+  }
+}
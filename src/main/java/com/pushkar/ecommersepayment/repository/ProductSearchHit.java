@@ -0,0 +1,9 @@
+package com.pushkar.ecommersepayment.repository;
+
+import com.pushkar.ecommersepayment.model.Product;
+
+/**
+ * A product matched by text search together with its relevance score.
+ */
+public record ProductSearchHit(Product product, double score) {
+}
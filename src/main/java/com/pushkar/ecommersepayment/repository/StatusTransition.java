@@ -0,0 +1,17 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+
+/**
+ * One document's share of a bulk status change: the statuses it may be
+ * changed from, its final status, the external payment id to record if any,
+ * and the outbox events of every change folded into it, oldest first.
+ * {@code id} is the gateway order id for payments and the order id for
+ * orders.
+ */
+public record StatusTransition(String id, Collection<String> expectedStatuses, String status, String paymentId,
+    List<OutboxEvent> events) {
+}
@@ -0,0 +1,23 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.pushkar.ecommersepayment.model.User;
+
+public interface UserRepositoryCustom {
+
+  /**
+   * Up to {@code limit} users with an id greater than {@code afterId} (all
+   * users when null), in id order. Only {@code fields} are loaded, or every
+   * field when empty.
+   */
+  List<User> findPage(String afterId, int limit, Collection<String> fields);
+
+  /**
+   * Iterates every user through a server cursor, loading only {@code fields}
+   * or every field when empty. The caller must close the stream.
+   */
+  Stream<User> streamAll(Collection<String> fields);
+}
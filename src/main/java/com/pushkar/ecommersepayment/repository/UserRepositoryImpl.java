@@ -0,0 +1,45 @@
+package com.pushkar.ecommersepayment.repository;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.pushkar.ecommersepayment.model.User;
+
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+  private static final int EXPORT_BATCH_SIZE = 1000;
+
+  private final MongoTemplate mongoTemplate;
+
+  @Override
+  public List<User> findPage(String afterId, int limit, Collection<String> fields) {
+    Query query = new Query().with(Sort.by("id")).limit(limit);
+    if (afterId != null) {
+      query.addCriteria(where("id").gt(afterId));
+    }
+    return mongoTemplate.find(project(query, fields), User.class);
+  }
+
+  @Override
+  public Stream<User> streamAll(Collection<String> fields) {
+    Query query = new Query().cursorBatchSize(EXPORT_BATCH_SIZE);
+    return mongoTemplate.stream(project(query, fields), User.class);
+  }
+
+  private static Query project(Query query, Collection<String> fields) {
+    if (!fields.isEmpty()) {
+      query.fields().include(fields.toArray(String[]::new));
+    }
+    return query;
+  }
+}
@@ -0,0 +1,13 @@
+package com.pushkar.ecommersepayment.repository.reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pushkar.ecommersepayment.model.Order;
+
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveOrderRepository extends ReactiveMongoRepository<Order, String> {
+  Flux<Order> findByUserId(String userId);
+}
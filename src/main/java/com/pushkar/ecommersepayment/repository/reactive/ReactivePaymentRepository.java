@@ -0,0 +1,17 @@
+package com.pushkar.ecommersepayment.repository.reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pushkar.ecommersepayment.model.Payment;
+
+import reactor.core.publisher.Mono;
+
+@Repository
+public interface ReactivePaymentRepository extends ReactiveMongoRepository<Payment, String> {
+  Mono<Payment> findByOrderId(String orderId);
+
+  Mono<Payment> findByPaymentId(String paymentId);
+
+  Mono<Payment> findByRazorpayOrderId(String razorpayOrderId);
+}
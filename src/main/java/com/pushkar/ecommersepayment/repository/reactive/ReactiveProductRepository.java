@@ -0,0 +1,11 @@
+package com.pushkar.ecommersepayment.repository.reactive;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+
+import com.pushkar.ecommersepayment.model.Product;
+
+@Repository
+public interface ReactiveProductRepository extends ReactiveMongoRepository<Product, String>,
+    ReactiveProductRepositoryCustom {
+}
@@ -0,0 +1,19 @@
+package com.pushkar.ecommersepayment.repository.reactive;
+
+import java.util.List;
+
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.BulkStockResult;
+
+import reactor.core.publisher.Mono;
+
+public interface ReactiveProductRepositoryCustom {
+
+  /**
+   * Reactive counterpart of
+   * {@link com.pushkar.ecommersepayment.repository.ProductRepositoryCustom#decrementStockInBulk}.
+   */
+  Mono<BulkStockResult> decrementStockInBulk(List<StockChange> changes);
+
+  Mono<Void> incrementStockInBulk(List<StockChange> changes);
+}
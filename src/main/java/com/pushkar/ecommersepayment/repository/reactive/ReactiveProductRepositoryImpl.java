@@ -0,0 +1,63 @@
+package com.pushkar.ecommersepayment.repository.reactive;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+import java.util.List;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.BulkStockResult;
+import com.pushkar.ecommersepayment.repository.ProductRepositoryImpl;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+@RequiredArgsConstructor
+public class ReactiveProductRepositoryImpl implements ReactiveProductRepositoryCustom {
+
+  private final ReactiveMongoTemplate mongoTemplate;
+
+  @Override
+  public Mono<BulkStockResult> decrementStockInBulk(List<StockChange> changes) {
+    // Same reservation tags and read-back as ProductRepositoryImpl
+    List<String> tags = ProductRepositoryImpl.reservationTags(changes);
+    ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    for (int line = 0; line < changes.size(); line++) {
+      StockChange change = changes.get(line);
+      bulk.updateOne(
+          query(where("id").is(change.productId()).and("stock").gte(change.quantity())),
+          new Update().inc("stock", -change.quantity()).addToSet(ProductRepositoryImpl.RESERVATIONS, tags.get(line)));
+    }
+
+    return bulk.execute().flatMap(result -> {
+      if (result.getMatchedCount() == changes.size()) {
+        return Mono.just(new BulkStockResult(changes, null));
+      }
+      return mongoTemplate.find(ProductRepositoryImpl.reservedBy(changes, tags), Document.class,
+              mongoTemplate.getCollectionName(Product.class))
+          .collectList()
+          .map(products -> ProductRepositoryImpl.readBack(changes, tags, products));
+    }).flatMap(result -> mongoTemplate.updateMulti(ProductRepositoryImpl.productsOf(changes),
+        ProductRepositoryImpl.releaseTags(tags), Product.class).thenReturn(result));
+  }
+
+  @Override
+  public Mono<Void> incrementStockInBulk(List<StockChange> changes) {
+    if (changes.isEmpty()) {
+      return Mono.empty();
+    }
+    ReactiveBulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class);
+    for (StockChange change : changes) {
+      bulk.updateOne(query(where("id").is(change.productId())),
+          new Update().inc("stock", change.quantity()));
+    }
+    return bulk.execute().then();
+  }
+}
@@ -0,0 +1,596 @@
+package com.pushkar.ecommersepayment.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import com.pushkar.ecommersepayment.model.Product;
+
+/**
+ * In-process inverted index over product name and description.
+ *
+ * Every product gets a dense int document number. Each token maps to a
+ * posting list, a sorted {@code int[]} whose entries are
+ * {@code docNumber << 1 | inName}, so a match in the name can be weighted
+ * higher without a second list. Tokens are kept in a sorted dictionary,
+ * which answers prefix lookups for autocomplete in O(log n) like a trie
+ * would, without a node object per character.
+ *
+ * Updates re-index a product under a fresh document number, which keeps
+ * posting lists append-only and sorted; the old number is dropped from its
+ * lists. Once dropped numbers outnumber live ones, the live documents are
+ * renumbered densely in their current order, so steady updates neither
+ * grow the index nor run out of numbers. All access goes through a
+ * read/write lock.
+ */
+public class ProductSearchIndex {
+
+  public static final int NAME_WEIGHT = 3;
+  public static final int DESCRIPTION_WEIGHT = 1;
+
+  private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+  private static final int MIN_DROPPED_TO_COMPACT = 1024;
+
+  private final boolean enabled;
+  private final int maxPrefixExpansions;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final NavigableMap<String, Postings> dictionary = new TreeMap<>();
+  private final Map<String, Integer> docNumbers = new HashMap<>();
+  private List<String> productIds = new ArrayList<>();
+  private List<Postings[]> docPostings = new ArrayList<>();
+  private int dropped;
+
+  private volatile boolean ready;
+
+  public ProductSearchIndex(boolean enabled, int maxPrefixExpansions) {
+    this.enabled = enabled;
+    this.maxPrefixExpansions = maxPrefixExpansions;
+  }
+
+  /**
+   * A matching product and its score: the sum of the field weights of every
+   * query term it matched.
+   */
+  public record Hit(String productId, int score) {
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * True once the initial build completed. Until then callers should fall
+   * back to the database.
+   */
+  public boolean isReady() {
+    return ready;
+  }
+
+  public void markReady() {
+    ready = enabled;
+  }
+
+  /**
+   * Indexes the product, replacing any previous version of it.
+   */
+  public void put(Product product) {
+    if (!enabled) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      removeLocked(product.getId());
+      addLocked(product);
+      compactIfSparseLocked();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes the product unless it is already present. Used by the initial
+   * build so it never overwrites a newer version written concurrently.
+   */
+  public void putIfAbsent(Product product) {
+    if (!enabled) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      if (!docNumbers.containsKey(product.getId())) {
+        addLocked(product);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String productId) {
+    if (!enabled) {
+      return;
+    }
+    lock.writeLock().lock();
+    try {
+      removeLocked(productId);
+      compactIfSparseLocked();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Products containing every query term in their name or description, best
+   * first and in indexing order among equal scores. Pass the score and id of
+   * the last hit of the previous page to continue after it.
+   */
+  public List<Hit> search(String query, Integer afterScore, String afterId, int limit) {
+    return query(tokenize(query), false, afterScore, afterId, limit);
+  }
+
+  /**
+   * Like {@link #search} but the last term only has to be a prefix of a
+   * token, so partially typed words match.
+   */
+  public List<Hit> autocomplete(String query, int limit) {
+    return query(tokenize(query), true, null, null, limit);
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docNumbers.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Document numbers handed out and not yet reclaimed, live or dropped.
+   */
+  public int documentSlots() {
+    lock.readLock().lock();
+    try {
+      return productIds.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int tokenCount() {
+    lock.readLock().lock();
+    try {
+      return dictionary.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Approximate retained heap in bytes, assuming compressed oops. Intended for
+   * capacity planning, not accounting.
+   */
+  public long estimatedMemoryBytes() {
+    lock.readLock().lock();
+    try {
+      long bytes = 0;
+      for (Map.Entry<String, Postings> entry : dictionary.entrySet()) {
+        // TreeMap entry + token String, shared with Postings + Postings + int[]
+        bytes += 40 + stringBytes(entry.getKey()) + 24 + 16 + 4L * entry.getValue().entries.length;
+      }
+      for (Map.Entry<String, Integer> entry : docNumbers.entrySet()) {
+        // HashMap node and table slot + boxed doc number + id String, shared with productIds
+        bytes += 36 + 16 + stringBytes(entry.getKey());
+        Postings[] postings = docPostings.get(entry.getValue());
+        bytes += 16 + 4L * postings.length;
+      }
+      // productIds and docPostings slots, including dropped document numbers
+      bytes += 8L * productIds.size();
+      return bytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public static List<String> tokenize(String text) {
+    if (text == null || text.isBlank()) {
+      return List.of();
+    }
+    Set<String> tokens = new LinkedHashSet<>();
+    for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+    return new ArrayList<>(tokens);
+  }
+
+  private void addLocked(Product product) {
+    int doc = productIds.size();
+    Map<String, Integer> entries = new HashMap<>();
+    for (String token : tokenize(product.getDescription())) {
+      entries.put(token, doc << 1);
+    }
+    for (String token : tokenize(product.getName())) {
+      entries.put(token, doc << 1 | 1);
+    }
+
+    Postings[] postings = new Postings[entries.size()];
+    int i = 0;
+    for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+      Postings list = dictionary.computeIfAbsent(entry.getKey(), Postings::new);
+      list.append(entry.getValue());
+      postings[i++] = list;
+    }
+    productIds.add(product.getId());
+    docPostings.add(postings);
+    docNumbers.put(product.getId(), doc);
+  }
+
+  private void removeLocked(String productId) {
+    Integer doc = docNumbers.remove(productId);
+    if (doc == null) {
+      return;
+    }
+    for (Postings list : docPostings.get(doc)) {
+      list.remove(doc);
+      if (list.size == 0) {
+        dictionary.remove(list.token);
+      }
+    }
+    productIds.set(doc, null);
+    docPostings.set(doc, null);
+    dropped++;
+  }
+
+  /**
+   * Renumbers the live documents 0..n-1 once most numbers are dropped. The
+   * mapping keeps their order, so every posting list stays sorted and ties
+   * still break by indexing order. Amortized over the removals that made
+   * it necessary, this costs O(1) per removal.
+   */
+  private void compactIfSparseLocked() {
+    if (dropped < MIN_DROPPED_TO_COMPACT || dropped <= docNumbers.size()) {
+      return;
+    }
+    int[] renumbered = new int[productIds.size()];
+    List<String> ids = new ArrayList<>(docNumbers.size());
+    List<Postings[]> postings = new ArrayList<>(docNumbers.size());
+    for (int doc = 0; doc < productIds.size(); doc++) {
+      String productId = productIds.get(doc);
+      if (productId != null) {
+        renumbered[doc] = ids.size();
+        docNumbers.put(productId, ids.size());
+        ids.add(productId);
+        postings.add(docPostings.get(doc));
+      }
+    }
+    for (Postings list : dictionary.values()) {
+      list.renumber(renumbered);
+    }
+    productIds = ids;
+    docPostings = postings;
+    dropped = 0;
+  }
+
+  private List<Hit> query(List<String> terms, boolean lastIsPrefix, Integer afterScore, String afterId, int limit) {
+    if (terms.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      int exactTerms = lastIsPrefix ? terms.size() - 1 : terms.size();
+      List<Postings> lists = new ArrayList<>(terms.size());
+      for (int i = 0; i < exactTerms; i++) {
+        Postings list = dictionary.get(terms.get(i));
+        if (list == null) {
+          return List.of();
+        }
+        lists.add(list);
+      }
+      lists.sort(Comparator.comparingInt(list -> list.size));
+
+      List<Postings> expansions = List.of();
+      if (lastIsPrefix) {
+        expansions = prefixExpansions(terms.get(terms.size() - 1));
+        if (expansions.isEmpty()) {
+          return List.of();
+        }
+        // Merging is linear in the expansions' total size, probing costs one
+        // lookup per expansion for every candidate; pick the cheaper one
+        long expandedSize = expansions.stream().mapToLong(list -> list.size).sum();
+        if (lists.isEmpty() || expandedSize < lists.get(0).size) {
+          lists.add(0, merge(expansions));
+          expansions = List.of();
+        }
+      }
+      return collect(lists, expansions, afterScore, afterId, limit);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Walks the shortest list and looks every candidate up in the others. All
+   * lists are sorted, so each lookup gallops forward from where the previous
+   * one stopped. A document must also appear in one of {@code expansions},
+   * if any, scoring its best weight there.
+   *
+   * Ties are broken by document number, which lets every candidate be ranked
+   * as a single long in a primitive heap. The previous page's last product
+   * is located by id; if it was re-indexed or removed since, the rest of its
+   * score bucket is skipped.
+   */
+  private List<Hit> collect(List<Postings> lists, List<Postings> expansions, Integer afterScore, String afterId,
+      int limit) {
+    long afterRank = Long.MAX_VALUE;
+    if (afterScore != null) {
+      Integer afterDoc = afterId == null ? null : docNumbers.get(afterId);
+      afterRank = rank(afterScore, afterDoc == null ? Integer.MAX_VALUE : afterDoc);
+    }
+
+    RankHeap best = new RankHeap(limit);
+    Postings driver = lists.get(0);
+    int[] positions = new int[lists.size()];
+    int[] expansionPositions = new int[expansions.size()];
+
+    candidates:
+    for (int i = 0; i < driver.size; i++) {
+      int entry = driver.entries[i];
+      int doc = entry >>> 1;
+      int score = weight(entry);
+      for (int j = 1; j < lists.size(); j++) {
+        Postings list = lists.get(j);
+        int position = list.seek(doc, positions[j]);
+        positions[j] = position;
+        if (position == list.size) {
+          break candidates;
+        }
+        if (list.entries[position] >>> 1 != doc) {
+          continue candidates;
+        }
+        score += weight(list.entries[position]);
+      }
+      if (!expansions.isEmpty()) {
+        int prefixWeight = 0;
+        for (int j = 0; j < expansions.size(); j++) {
+          Postings expansion = expansions.get(j);
+          int position = expansion.seek(doc, expansionPositions[j]);
+          expansionPositions[j] = position;
+          if (position < expansion.size && expansion.entries[position] >>> 1 == doc) {
+            prefixWeight = Math.max(prefixWeight, weight(expansion.entries[position]));
+          }
+        }
+        if (prefixWeight == 0) {
+          continue;
+        }
+        score += prefixWeight;
+      }
+
+      long rank = rank(score, doc);
+      if (rank < afterRank) {
+        best.offer(rank);
+      }
+    }
+
+    long[] ranks = best.sortedDescending();
+    List<Hit> hits = new ArrayList<>(ranks.length);
+    for (long rank : ranks) {
+      hits.add(new Hit(productIds.get(Integer.MAX_VALUE - (int) rank), (int) (rank >>> 32)));
+    }
+    return hits;
+  }
+
+  /**
+   * Higher score first, then lower document number.
+   */
+  private static long rank(int score, int doc) {
+    return (long) score << 32 | (Integer.MAX_VALUE - doc);
+  }
+
+  private List<Postings> prefixExpansions(String prefix) {
+    List<Postings> expansions = new ArrayList<>();
+    for (Postings list : dictionary.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+      expansions.add(list);
+      if (expansions.size() == maxPrefixExpansions) {
+        break;
+      }
+    }
+    return expansions;
+  }
+
+  /**
+   * Merges posting lists into one. A document matched in the name by any of
+   * them keeps the name weight.
+   */
+  private static Postings merge(List<Postings> lists) {
+    Postings merged = new Postings(null);
+    for (Postings list : lists) {
+      for (int i = 0; i < list.size; i++) {
+        merged.append(list.entries[i]);
+      }
+    }
+    merged.sortAndMergeDocs();
+    return merged;
+  }
+
+  private static int weight(int entry) {
+    return (entry & 1) == 1 ? NAME_WEIGHT : DESCRIPTION_WEIGHT;
+  }
+
+  private static long stringBytes(String value) {
+    // String header + byte[] header + Latin-1 payload
+    return 24 + 16 + value.length();
+  }
+
+  /**
+   * Min-heap of the best {@code capacity} ranks seen.
+   */
+  private static final class RankHeap {
+
+    private final long[] ranks;
+    private int size;
+
+    RankHeap(int capacity) {
+      this.ranks = new long[capacity];
+    }
+
+    void offer(long rank) {
+      if (size < ranks.length) {
+        ranks[size] = rank;
+        siftUp(size++);
+      } else if (rank > ranks[0]) {
+        ranks[0] = rank;
+        siftDown(0);
+      }
+    }
+
+    long[] sortedDescending() {
+      long[] sorted = Arrays.copyOf(ranks, size);
+      Arrays.sort(sorted);
+      for (int i = 0, j = sorted.length - 1; i < j; i++, j--) {
+        long swap = sorted[i];
+        sorted[i] = sorted[j];
+        sorted[j] = swap;
+      }
+      return sorted;
+    }
+
+    private void siftUp(int index) {
+      while (index > 0) {
+        int parent = (index - 1) >>> 1;
+        if (ranks[parent] <= ranks[index]) {
+          return;
+        }
+        swap(parent, index);
+        index = parent;
+      }
+    }
+
+    private void siftDown(int index) {
+      while (true) {
+        int smallest = index;
+        int left = 2 * index + 1;
+        int right = left + 1;
+        if (left < size && ranks[left] < ranks[smallest]) {
+          smallest = left;
+        }
+        if (right < size && ranks[right] < ranks[smallest]) {
+          smallest = right;
+        }
+        if (smallest == index) {
+          return;
+        }
+        swap(smallest, index);
+        index = smallest;
+      }
+    }
+
+    private void swap(int a, int b) {
+      long swap = ranks[a];
+      ranks[a] = ranks[b];
+      ranks[b] = swap;
+    }
+  }
+
+  /**
+   * Growable sorted int array of posting entries.
+   */
+  private static final class Postings {
+
+    private final String token;
+    private int[] entries = new int[2];
+    private int size;
+
+    Postings(String token) {
+      this.token = token;
+    }
+
+    void append(int entry) {
+      if (size == entries.length) {
+        entries = Arrays.copyOf(entries, size + (size >> 1) + 1);
+      }
+      entries[size++] = entry;
+    }
+
+    void remove(int doc) {
+      int index = indexOf(doc);
+      if (index >= 0) {
+        System.arraycopy(entries, index + 1, entries, index, size - index - 1);
+        size--;
+        if (size < entries.length / 4) {
+          entries = Arrays.copyOf(entries, Math.max(2, size * 2));
+        }
+      }
+    }
+
+    void renumber(int[] docs) {
+      for (int i = 0; i < size; i++) {
+        entries[i] = docs[entries[i] >>> 1] << 1 | (entries[i] & 1);
+      }
+    }
+
+    void sortAndMergeDocs() {
+      Arrays.sort(entries, 0, size);
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (kept > 0 && entries[kept - 1] >>> 1 == entries[i] >>> 1) {
+          entries[kept - 1] |= entries[i];
+        } else {
+          entries[kept++] = entries[i];
+        }
+      }
+      size = kept;
+    }
+
+    /**
+     * Returns the position of the first entry at or after {@code doc},
+     * searching forward from {@code from}, or {@code size} if there is none.
+     */
+    int seek(int doc, int from) {
+      int bound = 1;
+      while (from + bound < size && entries[from + bound] >>> 1 < doc) {
+        bound <<= 1;
+      }
+      int low = from;
+      int high = Math.min(from + bound, size - 1);
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (entries[mid] >>> 1 < doc) {
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      return low;
+    }
+
+    private int indexOf(int doc) {
+      int low = 0;
+      int high = size - 1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int midDoc = entries[mid] >>> 1;
+        if (midDoc < doc) {
+          low = mid + 1;
+        } else if (midDoc > doc) {
+          high = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+  }
+}
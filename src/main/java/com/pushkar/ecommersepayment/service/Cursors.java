@@ -0,0 +1,94 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Pagination helpers. A cursor is the keyset of the last item served, joined
+ * and URL-safe base64 encoded so clients treat it as an opaque token. A
+ * cursor that carries state the server relies on, such as a count of
+ * results served, is signed so a client cannot rewrite it.
+ */
+final class Cursors {
+
+  private static final String SEPARATOR = "\n";
+
+  private Cursors() {
+  }
+
+  static String encode(String... parts) {
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(String.join(SEPARATOR, parts).getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Encodes the parts followed by their HMAC-SHA256 under {@code key}.
+   */
+  static String encodeSigned(byte[] key, String... parts) {
+    String[] signed = Arrays.copyOf(parts, parts.length + 1);
+    signed[parts.length] = Base64.getUrlEncoder().withoutPadding().encodeToString(mac(key, parts));
+    return encode(signed);
+  }
+
+  /**
+   * Decodes a cursor made by {@link #encodeSigned}, rejecting it unless its
+   * signature matches its parts.
+   */
+  static String[] decodeSigned(byte[] key, String cursor, int expectedParts) {
+    String[] signed = decode(cursor, expectedParts + 1);
+    String[] parts = Arrays.copyOf(signed, expectedParts);
+    byte[] signature;
+    try {
+      signature = Base64.getUrlDecoder().decode(signed[expectedParts]);
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException("Invalid cursor: " + cursor);
+    }
+    if (!MessageDigest.isEqual(signature, mac(key, parts))) {
+      throw new RuntimeException("Invalid cursor: " + cursor);
+    }
+    return parts;
+  }
+
+  static String[] decode(String cursor, int expectedParts) {
+    try {
+      String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+          .split(SEPARATOR, -1);
+      if (parts.length != expectedParts) {
+        throw new IllegalArgumentException();
+      }
+      return parts;
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException("Invalid cursor: " + cursor);
+    }
+  }
+
+  private static byte[] mac(byte[] key, String[] parts) {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(new SecretKeySpec(key, "HmacSHA256"));
+      return mac.doFinal(String.join(SEPARATOR, parts).getBytes(StandardCharsets.UTF_8));
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("HmacSHA256 unavailable", e);
+    }
+  }
+
+  /**
+   * The requested page size, or the default when none was given, capped at
+   * {@code maxSize}.
+   */
+  static int pageSize(Integer limit, int defaultSize, int maxSize) {
+    if (limit == null) {
+      return defaultSize;
+    }
+    if (limit < 1) {
+      throw new RuntimeException("Limit must be positive");
+    }
+    return Math.min(limit, maxSize);
+  }
+}
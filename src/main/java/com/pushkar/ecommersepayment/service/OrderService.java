@@ -3,17 +3,27 @@ package com.pushkar.ecommersepayment.service;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.pushkar.ecommersepayment.cart.CartStore;
 import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.dto.OrderResponse;
+import com.pushkar.ecommersepayment.dto.OrderSummary;
 import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Order;
 import com.pushkar.ecommersepayment.model.OrderItem;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
 import com.pushkar.ecommersepayment.model.Product;
-import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.OrderDetail;
 import com.pushkar.ecommersepayment.repository.OrderRepository;
 
 import lombok.RequiredArgsConstructor;
@@ -25,30 +35,38 @@ import lombok.extern.slf4j.Slf4j;
 public class OrderService {
 
   private final OrderRepository orderRepository;
-  private final CartRepository cartRepository;
+  private final CartStore cartStore;
   private final ProductService productService;
-  private final PaymentService paymentService;
+
+  @Value("${order.history.default-page-size:20}")
+  private int historyDefaultPageSize;
+
+  @Value("${order.history.max-page-size:100}")
+  private int historyMaxPageSize;
 
   @Transactional
   public Order createOrder(CreateOrderRequest request) {
     log.info("Creating order for user: {}", request.getUserId());
 
-    // Get cart items
-    List<CartItem> cartItems = cartRepository.findByUserId(request.getUserId());
+    // Get cart items, writing out any still buffered first
+    cartStore.flush(request.getUserId());
+    List<CartItem> cartItems = cartStore.findLines(request.getUserId());
     if (cartItems.isEmpty()) {
       throw new RuntimeException("Cart is empty");
     }
 
-    // Validate stock and create order items
+    // Load every product in the cart with one query
+    Map<String, Product> products = productService.getProductsByIds(
+        cartItems.stream().map(CartItem::getProductId).toList());
+
+    // Build order items
     List<OrderItem> orderItems = new ArrayList<>();
-    double totalAmount = 0.0;
+    List<StockChange> stockChanges = new ArrayList<>();
 
     for (CartItem cartItem : cartItems) {
-      Product product = productService.getProductById(cartItem.getProductId());
-
-      if (product.getStock() < cartItem.getQuantity()) {
-        throw new RuntimeException("Insufficient stock for product: " + product.getName()
-            + ". Available: " + product.getStock());
+      Product product = products.get(cartItem.getProductId());
+      if (product == null) {
+        throw new RuntimeException("Product not found with id: " + cartItem.getProductId());
       }
 
       OrderItem orderItem = new OrderItem();
@@ -56,11 +74,16 @@ public class OrderService {
       orderItem.setQuantity(cartItem.getQuantity());
       orderItem.setPrice(product.getPrice());
       orderItems.add(orderItem);
-
-      totalAmount += product.getPrice() * cartItem.getQuantity();
-
-      // Update stock
-      productService.updateStock(product.getId(), -cartItem.getQuantity());
+      stockChanges.add(new StockChange(product.getId(), cartItem.getQuantity()));
+    }
+    Money totalAmount = Order.totalOf(orderItems);
+
+    // Reserve stock for all lines in one bulk write
+    Optional<StockChange> shortage = productService.reserveStock(stockChanges);
+    if (shortage.isPresent()) {
+      Product product = products.get(shortage.get().productId());
+      throw new RuntimeException("Insufficient stock for product: " + product.getName()
+          + ". Available: " + product.getStock());
     }
 
     // Create order
@@ -70,11 +93,18 @@ public class OrderService {
     order.setStatus("CREATED");
     order.setItems(orderItems);
     order.setCreatedAt(Instant.now());
-
-    Order savedOrder = orderRepository.save(order);
+    order.addOutboxEvent(OutboxEvent.orderCreated(order));
+
+    Order savedOrder;
+    try {
+      savedOrder = orderRepository.save(order);
+    } catch (RuntimeException e) {
+      productService.releaseStock(stockChanges);
+      throw e;
+    }
 
     // Clear cart
-    cartRepository.deleteByUserId(request.getUserId());
+    cartStore.clear(request.getUserId());
 
     log.info("Order created successfully: {}", savedOrder.getId());
     return savedOrder;
@@ -82,8 +112,9 @@ public class OrderService {
 
   public OrderResponse getOrderById(String orderId) {
     log.info("Fetching order: {}", orderId);
-    Order order = orderRepository.findById(orderId)
+    OrderDetail detail = orderRepository.findDetailById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
+    Order order = detail.order();
 
     OrderResponse response = new OrderResponse();
     response.setId(order.getId());
@@ -92,25 +123,47 @@ public class OrderService {
     response.setStatus(order.getStatus());
     response.setItems(order.getItems());
     response.setCreatedAt(order.getCreatedAt());
-
-    // Get payment if exists
-    paymentService.getPaymentByOrderId(orderId).ifPresent(response::setPayment);
+    response.setPayment(detail.payment());
 
     return response;
   }
 
-  public List<Order> getOrdersByUserId(String userId) {
+  /**
+   * One page of the user's order history, newest first, as summaries
+   * without line items.
+   */
+  public CursorPage<OrderSummary> getOrdersByUserId(String userId, String cursor, Integer limit) {
     log.info("Fetching orders for user: {}", userId);
-    return orderRepository.findByUserId(userId);
+    int pageSize = Cursors.pageSize(limit, historyDefaultPageSize, historyMaxPageSize);
+    Instant beforeCreatedAt = null;
+    String beforeId = null;
+    if (cursor != null) {
+      String[] parts = Cursors.decode(cursor, 2);
+      try {
+        beforeCreatedAt = Instant.ofEpochMilli(Long.parseLong(parts[0]));
+      } catch (NumberFormatException e) {
+        throw new RuntimeException("Invalid cursor: " + cursor);
+      }
+      beforeId = parts[1];
+    }
+
+    // One extra summary tells whether another page exists
+    List<OrderSummary> summaries = orderRepository.findSummariesByUserId(userId, beforeCreatedAt, beforeId,
+        pageSize + 1);
+    if (summaries.size() <= pageSize) {
+      return new CursorPage<>(summaries, null);
+    }
+    List<OrderSummary> page = summaries.subList(0, pageSize);
+    OrderSummary last = page.get(pageSize - 1);
+    return new CursorPage<>(page, Cursors.encode(String.valueOf(last.getCreatedAt().toEpochMilli()), last.getId()));
   }
 
   @Transactional
   public void updateOrderStatus(String orderId, String status) {
     log.info("Updating order {} status to: {}", orderId, status);
-    Order order = orderRepository.findById(orderId)
-        .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
-    order.setStatus(status);
-    orderRepository.save(order);
+    if (!orderRepository.transition(orderId, null, status, OutboxEvent.orderStatusChanged(status))) {
+      throw new RuntimeException("Order not found with id: " + orderId);
+    }
   }
 
   @Transactional
@@ -119,16 +172,20 @@ public class OrderService {
     Order order = orderRepository.findById(orderId)
         .orElseThrow(() -> new RuntimeException("Order not found with id: " + orderId));
 
-    if (!"CREATED".equals(order.getStatus())) {
+    // Conditional on CREATED so concurrent cancels restore the stock only once
+    if (!"CREATED".equals(order.getStatus())
+        || !orderRepository.transition(orderId, Set.of("CREATED"), "CANCELLED",
+            OutboxEvent.orderStatusChanged("CANCELLED"))) {
       throw new RuntimeException("Cannot cancel order with status: " + order.getStatus());
     }
 
     // Restore stock
-    for (OrderItem item : order.getItems()) {
-      productService.updateStock(item.getProductId(), item.getQuantity());
-    }
+    releaseReservedStock(order.getItems());
+  }
 
-    order.setStatus("CANCELLED");
-    orderRepository.save(order);
+  private void releaseReservedStock(List<OrderItem> items) {
+    productService.releaseStock(items.stream()
+        .map(item -> new StockChange(item.getProductId(), item.getQuantity()))
+        .toList());
   }
 }
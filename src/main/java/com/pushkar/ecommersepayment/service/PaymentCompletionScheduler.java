@@ -0,0 +1,181 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs delayed mock payment completions on a fixed number of threads instead
+ * of one sleeping thread per payment.
+ *
+ * In {@code pooled} mode completions run on the scheduler threads themselves.
+ * In {@code virtual} mode the scheduler threads only fire the timers and hand
+ * each completion to a new virtual thread (Java 21+, falls back to pooled).
+ * {@code auto} picks virtual when {@code spring.threads.virtual.enabled} is set.
+ */
+@Component
+@Slf4j
+public class PaymentCompletionScheduler {
+
+  public static final String MODE_AUTO = "auto";
+  public static final String MODE_POOLED = "pooled";
+  public static final String MODE_VIRTUAL = "virtual";
+
+  public static final String SHUTDOWN_DRAIN = "drain";
+  public static final String SHUTDOWN_PERSIST = "persist";
+
+  private final ScheduledThreadPoolExecutor timer;
+  private final Executor completionExecutor;
+  private final int maxPending;
+  private final String shutdownPolicy;
+  private final Duration drainTimeout;
+
+  private final Map<String, PendingCompletion> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger threadCount = new AtomicInteger();
+
+  private final Timer lagTimer;
+  private final Counter completedCounter;
+
+  public PaymentCompletionScheduler(
+      @Value("${payment.mock.scheduler.mode:auto}") String mode,
+      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreadsEnabled,
+      @Value("${payment.mock.scheduler.threads:4}") int threads,
+      @Value("${payment.mock.scheduler.max-pending:100000}") int maxPending,
+      @Value("${payment.mock.scheduler.shutdown-policy:drain}") String shutdownPolicy,
+      @Value("${payment.mock.scheduler.drain-timeout:10s}") Duration drainTimeout,
+      MeterRegistry meterRegistry) {
+    this.timer = new ScheduledThreadPoolExecutor(threads,
+        runnable -> new Thread(runnable, "payment-completion-" + threadCount.incrementAndGet()));
+    this.timer.setRemoveOnCancelPolicy(true);
+    this.completionExecutor = createCompletionExecutor(
+        MODE_AUTO.equals(mode) ? (virtualThreadsEnabled ? MODE_VIRTUAL : MODE_POOLED) : mode);
+    this.maxPending = maxPending;
+    this.shutdownPolicy = shutdownPolicy;
+    this.drainTimeout = drainTimeout;
+
+    meterRegistry.gauge("payment.completion.pending", pending, Map::size);
+    this.lagTimer = Timer.builder("payment.completion.lag")
+        .description("Delay between a completion's due time and when it started")
+        .register(meterRegistry);
+    this.completedCounter = meterRegistry.counter("payment.completion.completed");
+  }
+
+  public boolean hasCapacity() {
+    return pending.size() < maxPending;
+  }
+
+  public int getPendingCount() {
+    return pending.size();
+  }
+
+  /**
+   * Runs {@code completion} once {@code delay} has elapsed. A payment that is
+   * already scheduled is not scheduled twice.
+   */
+  public void schedule(String paymentId, Duration delay, Runnable completion) {
+    long dueAt = System.nanoTime() + delay.toNanos();
+    PendingCompletion entry = new PendingCompletion(completion, dueAt);
+    if (pending.putIfAbsent(paymentId, entry) != null) {
+      log.debug("Completion already scheduled for payment: {}", paymentId);
+      return;
+    }
+    entry.future = timer.schedule(() -> completionExecutor.execute(() -> run(paymentId, entry)),
+        delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Runs {@code task} on the timer after {@code delay}. Unlike a completion
+   * it is not tracked as pending, so it is neither drained nor counted
+   * against the capacity, and it is dropped on shutdown.
+   */
+  public void scheduleTask(Duration delay, Runnable task) {
+    timer.schedule(task, delay.toNanos(), TimeUnit.NANOSECONDS);
+  }
+
+  private void run(String paymentId, PendingCompletion entry) {
+    if (!pending.remove(paymentId, entry)) {
+      return;
+    }
+    lagTimer.record(Math.max(0, System.nanoTime() - entry.dueAt), TimeUnit.NANOSECONDS);
+    try {
+      entry.completion.run();
+      completedCounter.increment();
+    } catch (RuntimeException e) {
+      log.error("Payment completion failed for payment {}: {}", paymentId, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * With the {@code drain} policy every pending completion is run immediately
+   * and awaited up to the drain timeout. With {@code persist} they are dropped
+   * here: the payments stay PENDING in MongoDB and are rescheduled on startup.
+   */
+  @PreDestroy
+  public void shutdown() {
+    int remaining = pending.size();
+    if (SHUTDOWN_DRAIN.equals(shutdownPolicy) && remaining > 0) {
+      log.info("Draining {} pending payment completions", remaining);
+      CountDownLatch drained = new CountDownLatch(remaining);
+      pending.forEach((paymentId, entry) -> {
+        if (entry.future != null) {
+          entry.future.cancel(false);
+        }
+        timer.execute(() -> {
+          try {
+            run(paymentId, entry);
+          } finally {
+            drained.countDown();
+          }
+        });
+      });
+      try {
+        if (!drained.await(drainTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+          log.warn("Drain timed out, {} payments left PENDING", pending.size());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    } else if (remaining > 0) {
+      log.info("Leaving {} pending payment completions to be resumed on startup", remaining);
+    }
+    timer.shutdownNow();
+  }
+
+  private Executor createCompletionExecutor(String mode) {
+    if (MODE_VIRTUAL.equals(mode)) {
+      try {
+        return new VirtualThreadTaskExecutor("payment-completion-vt-");
+      } catch (UnsupportedOperationException e) {
+        log.warn("Virtual threads require Java 21+, falling back to pooled payment completions");
+      }
+    }
+    return Runnable::run;
+  }
+
+  private static final class PendingCompletion {
+    private final Runnable completion;
+    private final long dueAt;
+    private volatile ScheduledFuture<?> future;
+
+    private PendingCompletion(Runnable completion, long dueAt) {
+      this.completion = completion;
+      this.dueAt = dueAt;
+    }
+  }
+}
@@ -1,16 +1,22 @@
 package com.pushkar.ecommersepayment.service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.pushkar.ecommersepayment.dto.PaymentRequest;
 import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
 import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.WebhookTask;
 import com.pushkar.ecommersepayment.repository.OrderRepository;
 import com.pushkar.ecommersepayment.repository.PaymentRepository;
 
@@ -24,6 +30,7 @@ public class PaymentService {
 
   private final PaymentRepository paymentRepository;
   private final OrderRepository orderRepository;
+  private final PaymentCompletionScheduler completionScheduler;
 
   @Value("${payment.mock.enabled:true}")
   private boolean mockEnabled;
@@ -34,6 +41,18 @@ public class PaymentService {
   @Value("${payment.mock.failure.probability:0.1}")
   private double failureProbability;
 
+  @Value("${payment.mock.scheduler.resume-on-startup:true}")
+  private boolean resumeOnStartup;
+
+  @Value("${payment.mock.scheduler.resume-page-size:500}")
+  private int resumePageSize;
+
+  @Value("${payment.mock.scheduler.lease:5m}")
+  private Duration completionLease;
+
+  @Value("${payment.mock.instance-id:${HOSTNAME:}}")
+  private String instanceId;
+
   @Transactional
   public Payment createPayment(PaymentRequest request) {
     log.info("Creating mock payment for order: {}", request.getOrderId());
@@ -46,12 +65,21 @@ public class PaymentService {
       throw new RuntimeException("Order is not in CREATED status. Current status: " + order.getStatus());
     }
 
+    if (!order.getTotalAmount().currency().equals(request.getAmount().currency())) {
+      throw new RuntimeException("Payment currency " + request.getAmount().currency()
+          + " does not match order currency " + order.getTotalAmount().currency());
+    }
+
     // Check if payment already exists
     Optional<Payment> existingPayment = paymentRepository.findByOrderId(request.getOrderId());
     if (existingPayment.isPresent()) {
       throw new RuntimeException("Payment already exists for this order");
     }
 
+    if (!hasProcessingCapacity()) {
+      throw new RuntimeException("Payment processing is at capacity, please retry shortly");
+    }
+
     // Create mock payment order
     String mockOrderId = "mock_order_" + UUID.randomUUID().toString();
     String mockPaymentId = "mock_pay_" + UUID.randomUUID().toString();
@@ -64,78 +92,172 @@ public class PaymentService {
     payment.setRazorpayOrderId(mockOrderId);
     payment.setPaymentId(mockPaymentId);
     payment.setCreatedAt(Instant.now());
+    leaseCompletion(payment);
+    payment.addOutboxEvent(OutboxEvent.paymentCreated(payment));
 
     Payment savedPayment = paymentRepository.save(payment);
     log.info("Mock payment created successfully: {}", savedPayment.getId());
 
     // Simulate async payment processing
+    scheduleMockCompletion(mockPaymentId, mockOrderId);
+
+    return savedPayment;
+  }
+
+  /**
+   * Leases a new payment to this instance, which schedules its completion;
+   * other instances leave it alone while the lease lasts.
+   */
+  public void leaseCompletion(Payment payment) {
+    payment.setCompletionOwner(instanceId());
+    payment.setCompletionLeaseUntil(payment.getCreatedAt().plus(completionLease));
+  }
+
+  public boolean hasProcessingCapacity() {
+    return !mockEnabled || completionScheduler.hasCapacity();
+  }
+
+  public void scheduleMockCompletion(String mockPaymentId, String mockOrderId) {
     if (mockEnabled) {
       simulatePaymentProcessing(mockPaymentId, mockOrderId);
     }
-
-    return savedPayment;
   }
 
   private void simulatePaymentProcessing(String mockPaymentId, String mockOrderId) {
-    new Thread(() -> {
-      try {
-        // Simulate payment gateway delay
-        Thread.sleep(mockDelay);
-
-        // Random success/failure based on configured probability
-        boolean success = Math.random() > failureProbability;
-
-        if (success) {
-          log.info("Mock payment succeeded: {}", mockPaymentId);
-          handlePaymentSuccess(mockPaymentId, mockOrderId, "mock_signature");
-        } else {
-          log.info("Mock payment failed: {}", mockPaymentId);
-          handlePaymentFailure(mockOrderId, "Mock payment failure - insufficient funds");
+    completionScheduler.schedule(mockPaymentId, Duration.ofMillis(mockDelay), () -> {
+      // Random success/failure based on configured probability
+      boolean success = Math.random() > failureProbability;
+
+      if (success) {
+        log.info("Mock payment succeeded: {}", mockPaymentId);
+        handlePaymentSuccess(mockPaymentId, mockOrderId, "mock_signature");
+      } else {
+        log.info("Mock payment failed: {}", mockPaymentId);
+        handlePaymentFailure(mockOrderId, "Mock payment failure - insufficient funds");
+      }
+    });
+  }
+
+  /**
+   * Reschedules mock completions for payments left PENDING by a previous run,
+   * e.g. when the scheduler was shut down with the persist policy.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void resumePendingPayments() {
+    if (!mockEnabled || !resumeOnStartup) {
+      return;
+    }
+    resumeClaimedPayments();
+  }
+
+  /**
+   * Claims PENDING payments page by page and schedules their completion
+   * while the scheduler has capacity. Claims are leases, so with several
+   * instances each payment is resumed by one of them, and payments of an
+   * instance that died are taken over once its lease expires. When the
+   * scheduler fills up, the rest is claimed after it has worked some off.
+   */
+  void resumeClaimedPayments() {
+    Instant now = Instant.now();
+    Instant leaseUntil = now.plus(completionLease);
+    int resumed = 0;
+    while (completionScheduler.hasCapacity()) {
+      List<Payment> claimed = paymentRepository.claimPending(instanceId(), now, leaseUntil, resumePageSize);
+      for (Payment payment : claimed) {
+        simulatePaymentProcessing(payment.getPaymentId(), payment.getRazorpayOrderId());
+      }
+      resumed += claimed.size();
+      if (claimed.size() < resumePageSize) {
+        if (resumed > 0) {
+          log.info("Resumed {} pending mock payments", resumed);
         }
-      } catch (InterruptedException e) {
-        log.error("Payment simulation interrupted", e);
-        Thread.currentThread().interrupt();
+        return;
       }
-    }).start();
+    }
+    log.info("Resumed {} pending mock payments, claiming more once the scheduler has capacity", resumed);
+    completionScheduler.scheduleTask(Duration.ofMillis(mockDelay), this::resumeClaimedPayments);
+  }
+
+  private String instanceId() {
+    if (instanceId == null || instanceId.isBlank()) {
+      instanceId = UUID.randomUUID().toString();
+    }
+    return instanceId;
   }
 
   @Transactional
   public void handlePaymentSuccess(String paymentId, String mockOrderId, String signature) {
     log.info("Processing payment success - Payment ID: {}, Order ID: {}", paymentId, mockOrderId);
 
-    Payment payment = paymentRepository.findByRazorpayOrderId(mockOrderId)
-        .orElseThrow(() -> new RuntimeException("Payment not found for order: " + mockOrderId));
-
-    payment.setPaymentId(paymentId);
-    payment.setStatus("SUCCESS");
-    paymentRepository.save(payment);
+    // Each status change and its outbox event are one write; consumers run on the dispatcher
+    Payment payment = transitionPayment(mockOrderId, "SUCCESS", paymentId,
+        OutboxEvent.paymentSucceeded(paymentId, mockOrderId));
+    if (payment == null) {
+      return;
+    }
 
     // Update order status
-    Order order = orderRepository.findById(payment.getOrderId())
-        .orElseThrow(() -> new RuntimeException("Order not found: " + payment.getOrderId()));
-    order.setStatus("PAID");
-    orderRepository.save(order);
+    transitionOrder(payment.getOrderId(), "PAID");
 
-    log.info("Payment processed successfully for order: {}", order.getId());
+    log.info("Payment processed successfully for order: {}", payment.getOrderId());
   }
 
   @Transactional
   public void handlePaymentFailure(String mockOrderId, String reason) {
     log.info("Processing payment failure - Order ID: {}, Reason: {}", mockOrderId, reason);
 
-    Payment payment = paymentRepository.findByRazorpayOrderId(mockOrderId)
-        .orElseThrow(() -> new RuntimeException("Payment not found for order: " + mockOrderId));
-
-    payment.setStatus("FAILED");
-    paymentRepository.save(payment);
+    Payment payment = transitionPayment(mockOrderId, "FAILED", null, OutboxEvent.paymentFailed(mockOrderId, reason));
+    if (payment == null) {
+      return;
+    }
 
     // Update order status
-    Order order = orderRepository.findById(payment.getOrderId())
-        .orElseThrow(() -> new RuntimeException("Order not found: " + payment.getOrderId()));
-    order.setStatus("FAILED");
-    orderRepository.save(order);
+    transitionOrder(payment.getOrderId(), "FAILED");
 
-    log.info("Payment failure processed for order: {}", order.getId());
+    log.info("Payment failure processed for order: {}", payment.getOrderId());
+  }
+
+  /**
+   * Applies a gateway webhook taken off the queue. Throws when it cannot be
+   * applied yet, so the queue retries it.
+   */
+  public void handleWebhook(WebhookTask task) {
+    switch (task.getEvent()) {
+      case WebhookTask.PAYMENT_CAPTURED, WebhookTask.ORDER_PAID ->
+          handlePaymentSuccess(task.getPaymentId(), task.getOrderId(), null);
+      case WebhookTask.PAYMENT_FAILED -> handlePaymentFailure(task.getOrderId(), task.getReason());
+      default -> log.warn("Unhandled webhook event type: {}", task.getEvent());
+    }
+  }
+
+  /**
+   * Moves the payment to {@code status} if that is a state change from its
+   * current status. Returns the payment when it is now in {@code status},
+   * including a redelivery whose payment already is, so the order can still
+   * be brought in line; returns null for a late event the payment has moved
+   * past, which changes nothing.
+   */
+  private Payment transitionPayment(String mockOrderId, String status, String paymentId, OutboxEvent event) {
+    Optional<Payment> changed = paymentRepository.transitionByRazorpayOrderId(mockOrderId,
+        Payment.sourcesOf(status), status, paymentId, event);
+    if (changed.isPresent()) {
+      return changed.get();
+    }
+    Payment payment = paymentRepository.findByRazorpayOrderId(mockOrderId)
+        .orElseThrow(() -> new RuntimeException("Payment not found for order: " + mockOrderId));
+    if (!status.equals(payment.getStatus())) {
+      log.info("Ignoring {} for order {}: payment is already {}", status, mockOrderId, payment.getStatus());
+      return null;
+    }
+    return payment;
+  }
+
+  private void transitionOrder(String orderId, String status) {
+    // Only a real state change writes, so each one emits exactly one outbox event
+    if (!orderRepository.transition(orderId, Order.sourcesOf(status), status, OutboxEvent.orderStatusChanged(status))
+        && !orderRepository.existsById(orderId)) {
+      throw new RuntimeException("Order not found: " + orderId);
+    }
   }
 
   public Optional<Payment> getPaymentByOrderId(String orderId) {
@@ -1,11 +1,29 @@
 package com.pushkar.ecommersepayment.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 
+import com.pushkar.ecommersepayment.cache.ProductCatalogCache;
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.BulkStockResult;
 import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.repository.ProductSearchHit;
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -16,26 +34,256 @@ import lombok.extern.slf4j.Slf4j;
 public class ProductService {
 
   private final ProductRepository productRepository;
+  private final ProductCatalogCache productCache;
+  private final ProductSearchIndex searchIndex;
+
+  @Value("${product.catalog.default-page-size:20}")
+  private int catalogDefaultPageSize;
+
+  @Value("${product.catalog.max-page-size:100}")
+  private int catalogMaxPageSize;
+
+  @Value("${product.search.default-page-size:20}")
+  private int searchDefaultPageSize;
+
+  @Value("${product.search.max-page-size:100}")
+  private int searchMaxPageSize;
+
+  @Value("${product.search.max-results:1000}")
+  private int searchMaxResults;
+
+  @Value("${product.search.cursor-key:}")
+  private String searchCursorKey;
+
+  private volatile byte[] cursorKey;
 
   public Product createProduct(Product product) {
     log.info("Creating product: {}", product.getName());
-    return productRepository.save(product);
+    Product savedProduct = productRepository.save(product);
+    productCache.evictLists();
+    searchIndex.put(savedProduct);
+    return savedProduct;
   }
 
-  public List<Product> getAllProducts() {
-    log.info("Fetching all products");
-    return productRepository.findAll();
+  /**
+   * One page of the catalog in id order. Pages are read by keyset
+   * ({@code _id > last id}) so deep pages cost the same as the first one.
+   * Cached pages get their stock from one projected read per page.
+   */
+  public CursorPage<Product> getProducts(String cursor, Integer limit) {
+    log.info("Fetching products page");
+    int pageSize = Cursors.pageSize(limit, catalogDefaultPageSize, catalogMaxPageSize);
+    String afterId = cursor == null ? null : Cursors.decode(cursor, 1)[0];
+
+    // One extra product tells whether another page exists
+    Limit fetch = Limit.of(pageSize + 1);
+    List<Product> products = withCurrentStock(productCache.getPage(afterId + "/" + fetch.max(), () -> afterId == null
+        ? productRepository.findAllByOrderByIdAsc(fetch)
+        : productRepository.findByIdGreaterThanOrderByIdAsc(afterId, fetch)));
+
+    if (products.size() <= pageSize) {
+      return new CursorPage<>(products, null);
+    }
+    List<Product> page = products.subList(0, pageSize);
+    return new CursorPage<>(page, Cursors.encode(page.get(pageSize - 1).getId()));
+  }
+
+  /**
+   * Streams the whole catalog from a database cursor. The caller must close
+   * the stream.
+   */
+  public Stream<Product> streamProducts() {
+    log.info("Exporting all products");
+    return productRepository.streamAllBy();
   }
 
   public Product getProductById(String id) {
-    log.info("Fetching product by id: {}", id);
-    return productRepository.findById(id)
+    log.debug("Fetching product by id: {}", id);
+    Product cached = productCache.get(id);
+    if (cached != null) {
+      List<Product> current = withCurrentStock(List.of(cached));
+      if (current.isEmpty()) {
+        throw new RuntimeException("Product not found with id: " + id);
+      }
+      return current.get(0);
+    }
+    Product product = productRepository.findById(id)
         .orElseThrow(() -> new RuntimeException("Product not found with id: " + id));
+    productCache.put(product);
+    return product;
+  }
+
+  /**
+   * Loads all requested products with a single {@code $in} query, and the
+   * stock of those served from the cache with one more. Ids that do not
+   * resolve to a product are simply absent from the returned map.
+   */
+  public Map<String, Product> getProductsByIds(Collection<String> ids) {
+    log.debug("Fetching {} products by id", ids.size());
+    Map<String, Product> products = new HashMap<>();
+    withCurrentStock(List.copyOf(productCache.getAll(ids).values()))
+        .forEach(product -> products.put(product.getId(), product));
+    List<String> missing = new ArrayList<>();
+    for (String id : ids) {
+      if (!products.containsKey(id)) {
+        missing.add(id);
+      }
+    }
+    if (!missing.isEmpty()) {
+      for (Product product : productRepository.findAllById(missing)) {
+        productCache.put(product);
+        products.put(product.getId(), product);
+      }
+    }
+    return products;
   }
 
-  public List<Product> searchProducts(String query) {
+  /**
+   * Text search over name and description, most relevant first. Pages are
+   * capped at the configured page size and a query never yields more than
+   * the configured maximum number of results in total. The count served so
+   * far travels in the cursor, which is signed so clients cannot reset it.
+   */
+  public CursorPage<Product> searchProducts(String query, String cursor, Integer limit) {
     log.info("Searching products with query: {}", query);
-    return productRepository.findByNameContainingIgnoreCase(query);
+    int pageSize = Cursors.pageSize(limit, searchDefaultPageSize, searchMaxPageSize);
+    if (query == null || query.isBlank()) {
+      return new CursorPage<>(List.of(), null);
+    }
+
+    int served = 0;
+    Double afterScore = null;
+    String afterId = null;
+    if (cursor != null) {
+      String[] parts = Cursors.decodeSigned(cursorKey(), cursor, 3);
+      try {
+        served = Integer.parseInt(parts[0]);
+        afterScore = Double.valueOf(parts[1]);
+      } catch (NumberFormatException e) {
+        throw new RuntimeException("Invalid cursor: " + cursor);
+      }
+      // A negative count would lift the cap on total results
+      if (served < 0) {
+        throw new RuntimeException("Invalid cursor: " + cursor);
+      }
+      afterId = parts[2];
+    }
+
+    int take = Math.min(pageSize, searchMaxResults - served);
+    if (take <= 0) {
+      return new CursorPage<>(List.of(), null);
+    }
+    // One extra hit tells whether another page exists
+    List<ProductSearchHit> hits = searchIndex.isReady()
+        ? searchInMemory(query, afterScore, afterId, take + 1)
+        : productRepository.searchByText(query, afterScore, afterId, take + 1);
+    boolean hasMore = hits.size() > take && served + take < searchMaxResults;
+    List<ProductSearchHit> page = hits.subList(0, Math.min(take, hits.size()));
+
+    String nextCursor = null;
+    if (hasMore) {
+      ProductSearchHit last = page.get(page.size() - 1);
+      nextCursor = Cursors.encodeSigned(cursorKey(), String.valueOf(served + page.size()),
+          String.valueOf(last.score()), last.product().getId());
+    }
+    return new CursorPage<>(page.stream().map(ProductSearchHit::product).toList(), nextCursor);
+  }
+
+  /**
+   * Products matching every typed word, the last one as a prefix. Served
+   * from the in-memory index when it is enabled, otherwise a text search on
+   * the completed words.
+   */
+  public List<Product> autocomplete(String query, Integer limit) {
+    log.debug("Autocomplete for query: {}", query);
+    if (!searchIndex.isReady()) {
+      return searchProducts(query, null, limit).getItems();
+    }
+    int pageSize = Cursors.pageSize(limit, searchDefaultPageSize, searchMaxPageSize);
+    List<ProductSearchIndex.Hit> hits = searchIndex.autocomplete(query, pageSize);
+    return toSearchHits(hits).stream().map(ProductSearchHit::product).toList();
+  }
+
+  /**
+   * Loads every product into the in-memory search index, if enabled. Until
+   * it is ready searches keep going to the database.
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  public void buildSearchIndex() {
+    if (!searchIndex.isEnabled()) {
+      return;
+    }
+    long start = System.nanoTime();
+    try (Stream<Product> products = productRepository.streamAllBy()) {
+      products.forEach(searchIndex::putIfAbsent);
+    }
+    searchIndex.markReady();
+
+    int size = searchIndex.size();
+    long bytes = searchIndex.estimatedMemoryBytes();
+    log.info("Search index built in {} ms: {} products, {} tokens, ~{} MB (~{} MB per million products)",
+        (System.nanoTime() - start) / 1_000_000, size, searchIndex.tokenCount(), bytes >> 20,
+        size == 0 ? 0 : (bytes * 1_000_000 / size) >> 20);
+  }
+
+  /**
+   * The configured search cursor key, or a random one when none is set, in
+   * which case cursors are only accepted by the instance that issued them.
+   */
+  private byte[] cursorKey() {
+    byte[] key = cursorKey;
+    if (key == null) {
+      synchronized (this) {
+        key = cursorKey;
+        if (key == null) {
+          if (searchCursorKey == null || searchCursorKey.isBlank()) {
+            key = new byte[32];
+            new SecureRandom().nextBytes(key);
+          } else {
+            key = searchCursorKey.getBytes(StandardCharsets.UTF_8);
+          }
+          cursorKey = key;
+        }
+      }
+    }
+    return key;
+  }
+
+  private List<ProductSearchHit> searchInMemory(String query, Double afterScore, String afterId, int limit) {
+    Integer afterIndexScore = afterScore == null ? null : afterScore.intValue();
+    return toSearchHits(searchIndex.search(query, afterIndexScore, afterId, limit));
+  }
+
+  private List<ProductSearchHit> toSearchHits(List<ProductSearchIndex.Hit> hits) {
+    Map<String, Product> products = getProductsByIds(hits.stream().map(ProductSearchIndex.Hit::productId).toList());
+    List<ProductSearchHit> searchHits = new ArrayList<>(hits.size());
+    for (ProductSearchIndex.Hit hit : hits) {
+      Product product = products.get(hit.productId());
+      if (product != null) {
+        searchHits.add(new ProductSearchHit(product, hit.score()));
+      }
+    }
+    return searchHits;
+  }
+
+  /**
+   * Sets the current stock on products read from the cache, which keeps
+   * none. Products that no longer exist are left out.
+   */
+  private List<Product> withCurrentStock(List<Product> cached) {
+    if (cached.isEmpty()) {
+      return cached;
+    }
+    Map<String, Integer> stock = productRepository.findStockByIds(cached.stream().map(Product::getId).toList());
+    List<Product> products = new ArrayList<>(cached.size());
+    for (Product product : cached) {
+      Integer current = stock.get(product.getId());
+      if (current != null) {
+        product.setStock(current);
+        products.add(product);
+      }
+    }
+    return products;
   }
 
   public Product updateProduct(String id, Product product) {
@@ -45,18 +293,63 @@ public class ProductService {
     existingProduct.setDescription(product.getDescription());
     existingProduct.setPrice(product.getPrice());
     existingProduct.setStock(product.getStock());
-    return productRepository.save(existingProduct);
+    Product savedProduct = productRepository.save(existingProduct);
+    productCache.evict(id);
+    searchIndex.put(savedProduct);
+    return savedProduct;
   }
 
   public void deleteProduct(String id) {
     log.info("Deleting product: {}", id);
     productRepository.deleteById(id);
+    productCache.evict(id);
+    searchIndex.remove(id);
   }
 
   public void updateStock(String productId, Integer quantity) {
     log.info("Updating stock for product: {} by quantity: {}", productId, quantity);
-    Product product = getProductById(productId);
+    // Read from the database, never the cache, before writing stock back
+    Product product = productRepository.findById(productId)
+        .orElseThrow(() -> new RuntimeException("Product not found with id: " + productId));
     product.setStock(product.getStock() + quantity);
     productRepository.save(product);
   }
+
+  /**
+   * Reserves stock with a single conditional decrement on the server, so
+   * concurrent checkouts of the same product can never oversell it.
+   */
+  public boolean reserveStock(String productId, int quantity) {
+    log.debug("Reserving {} units of product: {}", quantity, productId);
+    return productRepository.decrementStockIfAvailable(productId, quantity);
+  }
+
+  /**
+   * Reserves stock for every change with one bulk write. If any product is
+   * short, the changes already applied are released again and the change that
+   * could not be reserved is returned.
+   */
+  public Optional<StockChange> reserveStock(List<StockChange> changes) {
+    log.debug("Reserving stock for {} products", changes.size());
+    BulkStockResult result = productRepository.decrementStockInBulk(changes);
+    if (result.isSuccess()) {
+      return Optional.empty();
+    }
+    log.info("Stock reservation failed for product: {}, releasing {} reserved lines",
+        result.failed().productId(), result.applied().size());
+    productRepository.incrementStockInBulk(result.applied());
+    return Optional.of(result.failed());
+  }
+
+  public void releaseStock(List<StockChange> changes) {
+    log.debug("Releasing stock for {} products", changes.size());
+    productRepository.incrementStockInBulk(changes);
+  }
+
+  public void releaseStock(String productId, int quantity) {
+    log.debug("Releasing {} units of product: {}", quantity, productId);
+    if (!productRepository.incrementStock(productId, quantity)) {
+      log.warn("Could not release stock, product not found: {}", productId);
+    }
+  }
 }
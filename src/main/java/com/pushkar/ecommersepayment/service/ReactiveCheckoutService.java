@@ -0,0 +1,169 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.function.Function;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+
+import com.pushkar.ecommersepayment.cart.CartStore;
+import com.pushkar.ecommersepayment.dto.AddToCartRequest;
+import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.PaymentRequest;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OrderItem;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.reactive.ReactiveOrderRepository;
+import com.pushkar.ecommersepayment.repository.reactive.ReactivePaymentRepository;
+import com.pushkar.ecommersepayment.repository.reactive.ReactiveProductRepository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking version of the checkout path (add to cart, create order, create
+ * payment) built on the reactive repositories. Only active
+ * with the {@code reactive} profile.
+ *
+ * The cart goes through the configured {@link CartStore}, like the blocking
+ * path, so both see the same cart whatever {@code cart.storage} and the
+ * write-behind buffer are set to. Its calls block and run on the
+ * bounded-elastic scheduler.
+ */
+@Service
+@Profile("reactive")
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveCheckoutService {
+
+  private final CartStore cartStore;
+  private final ReactiveOrderRepository orderRepository;
+  private final ReactivePaymentRepository paymentRepository;
+  private final ReactiveProductRepository productRepository;
+  private final PaymentService paymentService;
+
+  public Mono<CartItem> addToCart(AddToCartRequest request) {
+    log.debug("Adding to cart - User: {}, Product: {}, Quantity: {}",
+        request.getUserId(), request.getProductId(), request.getQuantity());
+
+    return productRepository.findById(request.getProductId())
+        .switchIfEmpty(Mono.error(
+            () -> new RuntimeException("Product not found with id: " + request.getProductId())))
+        // The line's total quantity, existing plus added, may not exceed the stock
+        .flatMap(product -> blocking(() -> cartStore
+            .addQuantity(request.getUserId(), request.getProductId(), request.getQuantity(), product.getStock()))
+            .flatMap(Mono::justOrEmpty)
+            .switchIfEmpty(Mono.error(
+                () -> new RuntimeException("Insufficient stock. Available: " + product.getStock()))));
+  }
+
+  public Mono<Order> createOrder(CreateOrderRequest request) {
+    log.debug("Creating order for user: {}", request.getUserId());
+
+    return blocking(() -> {
+          cartStore.flush(request.getUserId());
+          return cartStore.findLines(request.getUserId());
+        })
+        .flatMap(cartItems -> {
+          if (cartItems.isEmpty()) {
+            return Mono.error(new RuntimeException("Cart is empty"));
+          }
+          return productRepository.findAllById(cartItems.stream().map(CartItem::getProductId).toList())
+              .collectMap(Product::getId, Function.identity())
+              .flatMap(products -> placeOrder(request.getUserId(), cartItems, products));
+        });
+  }
+
+  private Mono<Order> placeOrder(String userId, List<CartItem> cartItems, Map<String, Product> products) {
+    List<OrderItem> orderItems = new ArrayList<>();
+    List<StockChange> stockChanges = new ArrayList<>();
+
+    for (CartItem cartItem : cartItems) {
+      Product product = products.get(cartItem.getProductId());
+      if (product == null) {
+        return Mono.error(new RuntimeException("Product not found with id: " + cartItem.getProductId()));
+      }
+      orderItems.add(new OrderItem(product.getId(), cartItem.getQuantity(), product.getPrice()));
+      stockChanges.add(new StockChange(product.getId(), cartItem.getQuantity()));
+    }
+
+    Order order = new Order();
+    order.setUserId(userId);
+    order.setTotalAmount(Order.totalOf(orderItems));
+    order.setStatus("CREATED");
+    order.setItems(orderItems);
+    order.setCreatedAt(Instant.now());
+    order.addOutboxEvent(OutboxEvent.orderCreated(order));
+
+    return productRepository.decrementStockInBulk(stockChanges)
+        .flatMap(result -> {
+          if (result.isSuccess()) {
+            return orderRepository.save(order)
+                .onErrorResume(e -> productRepository.incrementStockInBulk(stockChanges).then(Mono.error(e)));
+          }
+          Product product = products.get(result.failed().productId());
+          return productRepository.incrementStockInBulk(result.applied())
+              .then(Mono.error(new RuntimeException("Insufficient stock for product: " + product.getName()
+                  + ". Available: " + product.getStock())));
+        })
+        .flatMap(savedOrder -> blocking(() -> {
+          cartStore.clear(userId);
+          return savedOrder;
+        }))
+        .doOnNext(savedOrder -> log.debug("Order created successfully: {}", savedOrder.getId()));
+  }
+
+  public Mono<Payment> createPayment(PaymentRequest request) {
+    log.debug("Creating mock payment for order: {}", request.getOrderId());
+
+    return orderRepository.findById(request.getOrderId())
+        .switchIfEmpty(Mono.error(
+            () -> new RuntimeException("Order not found with id: " + request.getOrderId())))
+        .flatMap(order -> {
+          if (!"CREATED".equals(order.getStatus())) {
+            return Mono.error(new RuntimeException(
+                "Order is not in CREATED status. Current status: " + order.getStatus()));
+          }
+          if (!order.getTotalAmount().currency().equals(request.getAmount().currency())) {
+            return Mono.error(new RuntimeException("Payment currency " + request.getAmount().currency()
+                + " does not match order currency " + order.getTotalAmount().currency()));
+          }
+          return paymentRepository.findByOrderId(request.getOrderId()).hasElement();
+        })
+        .flatMap(exists -> {
+          if (exists) {
+            return Mono.error(new RuntimeException("Payment already exists for this order"));
+          }
+          if (!paymentService.hasProcessingCapacity()) {
+            return Mono.error(new RuntimeException("Payment processing is at capacity, please retry shortly"));
+          }
+
+          Payment payment = new Payment();
+          payment.setOrderId(request.getOrderId());
+          payment.setAmount(request.getAmount());
+          payment.setStatus("PENDING");
+          payment.setRazorpayOrderId("mock_order_" + UUID.randomUUID());
+          payment.setPaymentId("mock_pay_" + UUID.randomUUID());
+          payment.setCreatedAt(Instant.now());
+          paymentService.leaseCompletion(payment);
+          payment.addOutboxEvent(OutboxEvent.paymentCreated(payment));
+          return paymentRepository.save(payment);
+        })
+        .doOnNext(saved -> paymentService.scheduleMockCompletion(saved.getPaymentId(), saved.getRazorpayOrderId()));
+  }
+
+  private static <T> Mono<T> blocking(Callable<T> call) {
+    return Mono.fromCallable(call).subscribeOn(Schedulers.boundedElastic());
+  }
+}
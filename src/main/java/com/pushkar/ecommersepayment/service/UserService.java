@@ -1,9 +1,13 @@
 package com.pushkar.ecommersepayment.service;
 
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.model.User;
 import com.pushkar.ecommersepayment.repository.UserRepository;
 
@@ -15,16 +19,49 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class UserService {
 
+  /**
+   * Fields a listing or export can be projected to.
+   */
+  public static final Set<String> USER_FIELDS = Set.of("id", "username", "email", "role");
+
   private final UserRepository userRepository;
 
+  @Value("${user.listing.default-page-size:50}")
+  private int defaultPageSize;
+
+  @Value("${user.listing.max-page-size:500}")
+  private int maxPageSize;
+
   public User createUser(User user) {
     log.info("Creating user: {}", user.getUsername());
     return userRepository.save(user);
   }
 
-  public List<User> getAllUsers() {
-    log.info("Fetching all users");
-    return userRepository.findAll();
+  /**
+   * One page of users in id order, read by keyset. Only the requested
+   * fields are loaded; the id is always included.
+   */
+  public CursorPage<User> getUsers(String cursor, Integer limit, Set<String> fields) {
+    log.info("Fetching users page");
+    int pageSize = Cursors.pageSize(limit, defaultPageSize, maxPageSize);
+    String afterId = cursor == null ? null : Cursors.decode(cursor, 1)[0];
+
+    // One extra user tells whether another page exists
+    List<User> users = userRepository.findPage(afterId, pageSize + 1, validateFields(fields));
+    if (users.size() <= pageSize) {
+      return new CursorPage<>(users, null);
+    }
+    List<User> page = users.subList(0, pageSize);
+    return new CursorPage<>(page, Cursors.encode(page.get(pageSize - 1).getId()));
+  }
+
+  /**
+   * Streams every user from a database cursor, projected to the requested
+   * fields. The caller must close the stream.
+   */
+  public Stream<User> streamUsers(Set<String> fields) {
+    log.info("Exporting users");
+    return userRepository.streamAll(validateFields(fields));
   }
 
   public User getUserById(String id) {
@@ -46,4 +83,16 @@ public class UserService {
     log.info("Deleting user: {}", id);
     userRepository.deleteById(id);
   }
+
+  private static Set<String> validateFields(Set<String> fields) {
+    if (fields == null || fields.isEmpty()) {
+      return Set.of();
+    }
+    for (String field : fields) {
+      if (!USER_FIELDS.contains(field)) {
+        throw new RuntimeException("Unknown user field: " + field);
+      }
+    }
+    return fields;
+  }
 }
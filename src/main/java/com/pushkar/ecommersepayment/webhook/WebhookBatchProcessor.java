@@ -0,0 +1,282 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.dto.WebhookEventResult;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.repository.OrderRepository;
+import com.pushkar.ecommersepayment.repository.PaymentRepository;
+import com.pushkar.ecommersepayment.repository.StatusTransition;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Applies a batch of payment webhooks, e.g. a gateway event bundle or a
+ * reconciliation run, directly instead of through the queue, and reports
+ * the outcome of every event.
+ *
+ * Events are handled in chunks of {@code chunkSize}. Per chunk, known
+ * deliveries are filtered with one deduplication query and the payments
+ * are looked up with one query. Events of orders that still have webhooks
+ * in the {@link WebhookQueue} would overtake them, so they are appended to
+ * the queue instead and reported as queued. All other events of one payment
+ * are then folded, starting from its stored status, into a single update
+ * that ends in the status of its last state change and appends the outbox
+ * event of every change in order. An event that changes nothing, such as a
+ * failure arriving after the capture, is skipped as {@code PaymentService}
+ * skips it. Each update applies only if the payment, or the order, is still
+ * in the status it was folded from. The payment updates and the order
+ * updates each go out as one unordered bulk write, followed by one bulk
+ * write recording the applied keys. A chunk thus costs six round trips
+ * however many events it holds.
+ *
+ * Events whose payment update failed are reported failed and may be sent
+ * again. Events whose payment was updated but whose order update failed
+ * are appended to the queue instead: re-applying them leaves the payment
+ * alone and only moves the order, so no outbox event is written twice.
+ */
+@Slf4j
+public class WebhookBatchProcessor {
+
+  private final PaymentRepository paymentRepository;
+  private final OrderRepository orderRepository;
+  private final WebhookDeduplicator deduplicator;
+  private final WebhookQueue webhookQueue;
+  private final int chunkSize;
+  private final int maxEvents;
+  private final MeterRegistry meterRegistry;
+
+  public WebhookBatchProcessor(PaymentRepository paymentRepository, OrderRepository orderRepository,
+      WebhookDeduplicator deduplicator, WebhookQueue webhookQueue, int chunkSize, int maxEvents,
+      MeterRegistry meterRegistry) {
+    this.paymentRepository = paymentRepository;
+    this.orderRepository = orderRepository;
+    this.deduplicator = deduplicator;
+    this.webhookQueue = webhookQueue;
+    this.chunkSize = chunkSize;
+    this.maxEvents = maxEvents;
+    this.meterRegistry = meterRegistry;
+  }
+
+  public int getMaxEvents() {
+    return maxEvents;
+  }
+
+  /**
+   * Applies the events in order and returns one result per event. A
+   * {@code null} event stands for one that could not be parsed.
+   */
+  public List<WebhookEventResult> apply(List<PaymentWebhookRequest> events) {
+    if (events.size() > maxEvents) {
+      throw new IllegalArgumentException("Batch exceeds " + maxEvents + " events");
+    }
+    WebhookEventResult[] results = new WebhookEventResult[events.size()];
+    for (int start = 0; start < events.size(); start += chunkSize) {
+      applyChunk(events, start, Math.min(start + chunkSize, events.size()), results);
+    }
+    List<WebhookEventResult> outcome = List.of(results);
+    outcome.forEach(result -> meterRegistry.counter("webhook.batch.events", "status", result.status()).increment());
+    return outcome;
+  }
+
+  private void applyChunk(List<PaymentWebhookRequest> events, int from, int to, WebhookEventResult[] results) {
+    // Validate, and drop repeats within the chunk
+    Map<Integer, String> keys = new LinkedHashMap<>();
+    Set<String> seen = new HashSet<>();
+    for (int index = from; index < to; index++) {
+      PaymentWebhookRequest event = events.get(index);
+      if (event == null) {
+        results[index] = result(index, null, WebhookEventResult.INVALID, "Malformed event");
+      } else if (event.event() == null) {
+        results[index] = result(index, event, WebhookEventResult.INVALID, "Event type not found");
+      } else if (!WebhookTask.isSupported(event.event())) {
+        results[index] = result(index, event, WebhookEventResult.IGNORED, "Unhandled event type");
+      } else if (event.orderId() == null) {
+        results[index] = result(index, event, WebhookEventResult.INVALID, "Order id not found");
+      } else {
+        String key = WebhookDeduplicator.keyOf(toTask(event));
+        if (seen.add(key)) {
+          keys.put(index, key);
+        } else {
+          results[index] = result(index, event, WebhookEventResult.DUPLICATE, "Repeated in batch");
+        }
+      }
+    }
+    if (keys.isEmpty()) {
+      return;
+    }
+
+    Set<String> processed = deduplicator.findProcessed(keys.values());
+    Set<String> gatewayOrderIds = new HashSet<>();
+    keys.forEach((index, key) -> {
+      if (!processed.contains(key)) {
+        gatewayOrderIds.add(events.get(index).orderId());
+      }
+    });
+    Map<String, Payment> payments = gatewayOrderIds.isEmpty() ? Map.of()
+        : paymentRepository.findStatusesByRazorpayOrderId(gatewayOrderIds);
+    Set<String> queuedOrders = payments.isEmpty() ? Set.of() : webhookQueue.findQueuedOrders(payments.keySet());
+
+    // Fold the events of each payment, in batch order
+    Map<String, PaymentChanges> changes = new LinkedHashMap<>();
+    List<WebhookTask> queued = new ArrayList<>();
+    keys.forEach((index, key) -> {
+      PaymentWebhookRequest event = events.get(index);
+      if (processed.contains(key)) {
+        results[index] = result(index, event, WebhookEventResult.DUPLICATE, "Already processed");
+      } else if (!payments.containsKey(event.orderId())) {
+        results[index] = result(index, event, WebhookEventResult.NOT_FOUND, "Payment not found for order");
+      } else if (queuedOrders.contains(event.orderId())) {
+        queued.add(toTask(event));
+        results[index] = result(index, event, WebhookEventResult.QUEUED, "Queued behind earlier webhooks");
+      } else {
+        changes.computeIfAbsent(event.orderId(), id -> new PaymentChanges(payments.get(id))).add(index, event);
+      }
+    });
+    if (!queued.isEmpty()) {
+      webhookQueue.enqueueAll(queued);
+    }
+    if (changes.isEmpty()) {
+      return;
+    }
+
+    List<StatusTransition> paymentTransitions = new ArrayList<>(changes.size());
+    changes.forEach((gatewayOrderId, change) -> {
+      if (change.changed()) {
+        paymentTransitions.add(new StatusTransition(gatewayOrderId, Set.of(change.storedStatus), change.status,
+            change.paymentId, change.paymentEvents));
+      }
+    });
+    Set<String> failedPayments = paymentRepository.transitionAllByRazorpayOrderId(paymentTransitions);
+
+    List<StatusTransition> orderTransitions = new ArrayList<>(changes.size());
+    changes.forEach((gatewayOrderId, change) -> {
+      StatusTransition orderTransition = change.orderTransition();
+      if (!failedPayments.contains(gatewayOrderId) && orderTransition != null) {
+        orderTransitions.add(orderTransition);
+      }
+    });
+    Set<String> failedOrders = orderRepository.transitionAll(orderTransitions);
+
+    // A payment that was updated but whose order was not is finished by the queue, not by a resend
+    List<String> appliedKeys = new ArrayList<>();
+    List<WebhookTask> retries = new ArrayList<>();
+    changes.forEach((gatewayOrderId, change) -> {
+      boolean paymentFailed = failedPayments.contains(gatewayOrderId);
+      boolean orderFailed = !paymentFailed && failedOrders.contains(change.orderId);
+      for (int index : change.indexes) {
+        PaymentWebhookRequest event = events.get(index);
+        if (paymentFailed) {
+          results[index] = result(index, event, WebhookEventResult.FAILED, "Payment update failed");
+        } else if (orderFailed) {
+          retries.add(toTask(event));
+          results[index] = result(index, event, WebhookEventResult.QUEUED,
+              "Payment updated, order update queued for retry");
+        } else {
+          results[index] = result(index, event, WebhookEventResult.APPLIED, change.skipped.get(index));
+          appliedKeys.add(keys.get(index));
+        }
+      }
+    });
+    if (!retries.isEmpty()) {
+      webhookQueue.enqueueAll(retries);
+    }
+    if (!failedPayments.isEmpty() || !failedOrders.isEmpty()) {
+      log.error("Webhook batch: {} payment updates failed, {} order updates queued for retry", failedPayments.size(),
+          failedOrders.size());
+    }
+    deduplicator.markProcessed(appliedKeys);
+  }
+
+  private static WebhookTask toTask(PaymentWebhookRequest event) {
+    return new WebhookTask(event.event(), event.paymentId(), event.orderId(), event.reason());
+  }
+
+  private static WebhookEventResult result(int index, PaymentWebhookRequest event, String status, String message) {
+    return event == null ? new WebhookEventResult(index, null, null, status, message)
+        : new WebhookEventResult(index, event.event(), event.orderId(), status, message);
+  }
+
+  /**
+   * The events of one payment folded together, as {@code PaymentService}
+   * would leave the payment and order after applying them one by one.
+   */
+  private static final class PaymentChanges {
+
+    private final String orderId;
+    private final String storedStatus;
+    private final List<Integer> indexes = new ArrayList<>();
+    private final Map<Integer, String> skipped = new HashMap<>();
+    private final List<OutboxEvent> paymentEvents = new ArrayList<>();
+    private final List<OutboxEvent> orderEvents = new ArrayList<>();
+    private String status;
+    private String paymentId;
+    private String firstOrderStatus;
+
+    private PaymentChanges(Payment payment) {
+      this.orderId = payment.getOrderId();
+      this.storedStatus = payment.getStatus();
+      this.status = payment.getStatus();
+    }
+
+    private void add(int index, PaymentWebhookRequest event) {
+      indexes.add(index);
+      boolean failure = WebhookTask.PAYMENT_FAILED.equals(event.event());
+      String target = failure ? "FAILED" : "SUCCESS";
+      if (!Payment.sourcesOf(target).contains(status)) {
+        skipped.put(index, "Payment already " + status);
+        return;
+      }
+      status = target;
+      if (failure) {
+        paymentEvents.add(OutboxEvent.paymentFailed(event.orderId(), event.reason()));
+      } else {
+        // A success without a payment id leaves the stored one, like handlePaymentSuccess with null
+        if (event.paymentId() != null) {
+          paymentId = event.paymentId();
+        }
+        paymentEvents.add(OutboxEvent.paymentSucceeded(event.paymentId(), event.orderId()));
+      }
+      if (firstOrderStatus == null) {
+        firstOrderStatus = orderStatus();
+      }
+      orderEvents.add(OutboxEvent.orderStatusChanged(orderStatus()));
+    }
+
+    private boolean changed() {
+      return !paymentEvents.isEmpty();
+    }
+
+    /**
+     * The order update matching the folded payment changes. When none of the
+     * events changed the payment, the order is still brought in line with the
+     * payment's status, which changes nothing unless an earlier order update
+     * was lost.
+     */
+    private StatusTransition orderTransition() {
+      if (changed()) {
+        return new StatusTransition(orderId, Order.sourcesOf(firstOrderStatus), orderStatus(), null, orderEvents);
+      }
+      if (!"SUCCESS".equals(status) && !"FAILED".equals(status)) {
+        return null;
+      }
+      return new StatusTransition(orderId, Order.sourcesOf(orderStatus()), orderStatus(), null,
+          List.of(OutboxEvent.orderStatusChanged(orderStatus())));
+    }
+
+    private String orderStatus() {
+      return "SUCCESS".equals(status) ? "PAID" : "FAILED";
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.pushkar.ecommersepayment.model.ProcessedWebhook;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Remembers which webhook deliveries have been applied, keyed by
+ * {@code (event, paymentId, orderId)}, so gateway redeliveries are dropped
+ * before they reach the payment and order collections.
+ *
+ * Applied keys are held in a bounded in-memory cache for {@code window} and
+ * written to {@code processed_webhooks}, which MongoDB expires after the
+ * same window. A lookup answers from memory when it can and otherwise makes
+ * one indexed read by id, so other instances and restarts see the keys too;
+ * keys found in the store are cached.
+ */
+public class WebhookDeduplicator {
+
+  private final MongoTemplate mongoTemplate;
+  private final Duration window;
+  private final Cache<String, Boolean> processed;
+  private final MeterRegistry meterRegistry;
+
+  private final Counter storeHitCounter;
+  private final Counter storeMissCounter;
+
+  public WebhookDeduplicator(MongoTemplate mongoTemplate, Duration window, long maxSize,
+      MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.window = window;
+    this.meterRegistry = meterRegistry;
+    this.processed = Caffeine.newBuilder()
+        .maximumSize(maxSize)
+        .expireAfterWrite(window)
+        .recordStats()
+        .build();
+
+    this.storeHitCounter = Counter.builder("webhook.dedup.store.lookups")
+        .tag("result", "hit")
+        .description("Deduplication lookups that missed memory, by result in processed_webhooks")
+        .register(meterRegistry);
+    this.storeMissCounter = Counter.builder("webhook.dedup.store.lookups")
+        .tag("result", "miss")
+        .description("Deduplication lookups that missed memory, by result in processed_webhooks")
+        .register(meterRegistry);
+    Gauge.builder("webhook.dedup.hit.ratio", this, WebhookDeduplicator::getHitRatio)
+        .description("Share of webhook deliveries recognised as already processed")
+        .register(meterRegistry);
+  }
+
+  public static String keyOf(WebhookTask task) {
+    return task.getEvent() + "|" + task.getPaymentId() + "|" + task.getOrderId();
+  }
+
+  /**
+   * Whether the delivery with this key has been applied within the window.
+   */
+  public boolean isProcessed(String key) {
+    if (processed.getIfPresent(key) != null) {
+      return true;
+    }
+    boolean stored = mongoTemplate.exists(Query.query(where("_id").is(key)), ProcessedWebhook.class);
+    countStoreLookups(stored ? 1 : 0, stored ? 0 : 1);
+    if (stored) {
+      processed.put(key, Boolean.TRUE);
+    }
+    return stored;
+  }
+
+  /**
+   * Returns the given keys that have been applied, reading the ones not in
+   * memory with one query.
+   */
+  public Set<String> findProcessed(Collection<String> keys) {
+    Set<String> found = new HashSet<>();
+    List<String> unknown = new ArrayList<>();
+    for (String key : keys) {
+      if (processed.getIfPresent(key) != null) {
+        found.add(key);
+      } else {
+        unknown.add(key);
+      }
+    }
+    if (unknown.isEmpty()) {
+      return found;
+    }
+    Query query = Query.query(where("_id").in(unknown));
+    query.fields().include("_id");
+    int hits = 0;
+    for (ProcessedWebhook stored : mongoTemplate.find(query, ProcessedWebhook.class)) {
+      processed.put(stored.getId(), Boolean.TRUE);
+      found.add(stored.getId());
+      hits++;
+    }
+    countStoreLookups(hits, unknown.size() - hits);
+    return found;
+  }
+
+  /**
+   * Records the keys as applied, in memory and with one unordered bulk
+   * upsert.
+   */
+  public void markProcessed(Collection<String> keys) {
+    if (keys.isEmpty()) {
+      return;
+    }
+    Instant expiresAt = Instant.now().plus(window);
+    BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessedWebhook.class);
+    for (String key : keys) {
+      processed.put(key, Boolean.TRUE);
+      bulk.upsert(Query.query(where("_id").is(key)), new Update().set("expiresAt", expiresAt));
+    }
+    bulk.execute();
+  }
+
+  /**
+   * Counts a delivery dropped as a duplicate at {@code stage} (endpoint,
+   * worker).
+   */
+  public void dropped(String stage) {
+    meterRegistry.counter("webhook.dedup.dropped", "stage", stage).increment();
+  }
+
+  public double getHitRatio() {
+    CacheStats stats = processed.stats();
+    long lookups = stats.requestCount();
+    return lookups == 0 ? 0.0 : (stats.hitCount() + storeHitCounter.count()) / lookups;
+  }
+
+  public Cache<String, Boolean> getProcessedKeys() {
+    return processed;
+  }
+
+  private void countStoreLookups(int hits, int misses) {
+    storeHitCounter.increment(hits);
+    storeMissCounter.increment(misses);
+  }
+}
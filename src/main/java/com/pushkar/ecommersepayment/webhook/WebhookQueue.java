@@ -0,0 +1,305 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.WebhookTask;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Durable queue between the webhook endpoint and {@code PaymentService}.
+ * The endpoint only inserts a task and answers; workers apply the tasks in
+ * batches on their own threads.
+ *
+ * Each task is assigned a partition from its gateway order id, and each
+ * partition is drained by one worker in {@code _id} (arrival) order. Only
+ * the oldest task of an order is ever applied, so webhooks of one order take
+ * effect in the order they arrived, also across retries. A failed task is
+ * retried with exponential backoff and blocks the later tasks of its order
+ * meanwhile. Those orders are looked up first and excluded from the batch
+ * query, so a backlog of blocked tasks never fills a batch and stalls the
+ * rest of the partition. After {@code maxAttempts} a task is moved to
+ * {@code webhook_dead_letters}. Tasks whose delivery was already applied,
+ * according to the {@link WebhookDeduplicator}, are dropped without calling
+ * the handler. Applied tasks are recorded as processed and deleted with one
+ * write each per batch, so only a crash in the middle of a batch applies
+ * tasks again. Start the workers on one instance only.
+ */
+@Slf4j
+public class WebhookQueue {
+
+  public static final String DEAD_LETTER_COLLECTION = "webhook_dead_letters";
+
+  private final MongoTemplate mongoTemplate;
+  private final Consumer<WebhookTask> handler;
+  private final WebhookDeduplicator deduplicator;
+  private final int partitions;
+  private final int batchSize;
+  private final int maxAttempts;
+  private final Duration initialBackoff;
+  private final Duration maxBackoff;
+  private ScheduledExecutorService workers;
+
+  private final Counter enqueuedCounter;
+  private final Counter processedCounter;
+  private final Counter retryCounter;
+  private final Counter deadLetterCounter;
+  private final Timer lagTimer;
+
+  public WebhookQueue(MongoTemplate mongoTemplate, Consumer<WebhookTask> handler, WebhookDeduplicator deduplicator,
+      int partitions, int batchSize, int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+      MeterRegistry meterRegistry) {
+    this.mongoTemplate = mongoTemplate;
+    this.handler = handler;
+    this.deduplicator = deduplicator;
+    this.partitions = partitions;
+    this.batchSize = batchSize;
+    this.maxAttempts = maxAttempts;
+    this.initialBackoff = initialBackoff;
+    this.maxBackoff = maxBackoff;
+
+    this.enqueuedCounter = Counter.builder("webhook.queue.enqueued")
+        .description("Webhooks accepted into the queue")
+        .register(meterRegistry);
+    this.processedCounter = Counter.builder("webhook.queue.processed")
+        .description("Queued webhooks applied")
+        .register(meterRegistry);
+    this.retryCounter = Counter.builder("webhook.queue.retries")
+        .description("Queued webhooks that failed and were scheduled again")
+        .register(meterRegistry);
+    this.deadLetterCounter = Counter.builder("webhook.queue.dead_lettered")
+        .description("Queued webhooks moved to the dead-letter collection")
+        .register(meterRegistry);
+    this.lagTimer = Timer.builder("webhook.queue.lag")
+        .description("Time from a webhook being accepted to it being applied")
+        .publishPercentiles(0.5, 0.99)
+        .register(meterRegistry);
+    Gauge.builder("webhook.queue.depth", this, queue -> queue.mongoTemplate.estimatedCount(WebhookTask.class))
+        .description("Webhooks waiting in the queue (estimate)")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Starts one worker per partition, each polling every {@code pollInterval}
+   * while its partition is empty.
+   */
+  public synchronized void start(Duration pollInterval) {
+    if (workers != null) {
+      return;
+    }
+    AtomicInteger threadCount = new AtomicInteger();
+    workers = new ScheduledThreadPoolExecutor(partitions, runnable -> {
+      Thread thread = new Thread(runnable, "webhook-worker-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    long intervalMillis = pollInterval.toMillis();
+    for (int partition = 0; partition < partitions; partition++) {
+      int owned = partition;
+      workers.scheduleWithFixedDelay(() -> drainPartition(owned), intervalMillis, intervalMillis,
+          TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Durably stores the webhook; once this returns it will be applied even if
+   * the process dies.
+   */
+  public WebhookTask enqueue(WebhookTask task) {
+    Instant now = Instant.now();
+    task.setPartition(partitionOf(task.getOrderId(), partitions));
+    task.setReceivedAt(now);
+    task.setNextAttemptAt(now);
+    WebhookTask stored = mongoTemplate.insert(task);
+    enqueuedCounter.increment();
+    return stored;
+  }
+
+  /**
+   * Stores webhooks that have to be applied behind tasks already queued for
+   * their orders, in list order, with one insert.
+   */
+  public void enqueueAll(List<WebhookTask> tasks) {
+    Instant now = Instant.now();
+    for (WebhookTask task : tasks) {
+      task.setPartition(partitionOf(task.getOrderId(), partitions));
+      task.setReceivedAt(now);
+      task.setNextAttemptAt(now);
+    }
+    mongoTemplate.insert(tasks, WebhookTask.class);
+    enqueuedCounter.increment(tasks.size());
+  }
+
+  /**
+   * Returns the gateway order ids among {@code orderIds} that still have
+   * tasks in the queue. The query is bounded by their partitions, so it reads
+   * the partition index rather than the whole collection.
+   */
+  public Set<String> findQueuedOrders(Collection<String> orderIds) {
+    Set<Integer> owningPartitions = new HashSet<>();
+    orderIds.forEach(orderId -> owningPartitions.add(partitionOf(orderId, partitions)));
+    Query query = Query.query(where("partition").in(owningPartitions).and("orderId").in(orderIds));
+    return new HashSet<>(mongoTemplate.findDistinct(query, "orderId", WebhookTask.class, String.class));
+  }
+
+  /**
+   * Drains every partition on the calling thread until nothing more can be
+   * applied now.
+   */
+  public void drainAll() {
+    for (int partition = 0; partition < partitions; partition++) {
+      drainPartition(partition);
+    }
+  }
+
+  /**
+   * Applies one batch of the partition and returns the number of tasks taken
+   * off the queue: applied, dropped as duplicates or dead-lettered.
+   */
+  public int drain(int partition) {
+    Instant now = Instant.now();
+    // Orders whose oldest task waits for a retry; their later tasks have to wait as well
+    List<String> waitingOrders = mongoTemplate.findDistinct(
+        Query.query(where("partition").is(partition).and("nextAttemptAt").gt(now)),
+        "orderId", WebhookTask.class, String.class);
+    Criteria due = where("partition").is(partition).and("nextAttemptAt").lte(now);
+    if (!waitingOrders.isEmpty()) {
+      due.and("orderId").nin(waitingOrders);
+    }
+    Query query = Query.query(due)
+        .with(Sort.by("_id"))
+        .limit(batchSize);
+    List<WebhookTask> tasks = mongoTemplate.find(query, WebhookTask.class);
+    if (tasks.isEmpty()) {
+      return 0;
+    }
+
+    Set<String> processedKeys = deduplicator.findProcessed(tasks.stream().map(WebhookDeduplicator::keyOf).toList());
+    Set<String> blockedOrders = new HashSet<>();
+    List<String> done = new ArrayList<>();
+    List<String> appliedKeys = new ArrayList<>();
+    int deadLettered = 0;
+    for (WebhookTask task : tasks) {
+      String key = WebhookDeduplicator.keyOf(task);
+      if (processedKeys.contains(key)) {
+        // A redelivery of a webhook already applied changes nothing, whatever its position
+        done.add(task.getId());
+        deduplicator.dropped("worker");
+        continue;
+      }
+      if (blockedOrders.contains(task.getOrderId())) {
+        continue;
+      }
+      try {
+        handler.accept(task);
+        done.add(task.getId());
+        processedKeys.add(key);
+        appliedKeys.add(key);
+        lagTimer.record(Duration.between(task.getReceivedAt(), Instant.now()));
+      } catch (RuntimeException e) {
+        if (fail(task, e)) {
+          deadLettered++;
+        } else {
+          blockedOrders.add(task.getOrderId());
+        }
+      }
+    }
+
+    // Recorded before the delete, so a crash in between drops the batch on redelivery instead of reapplying it
+    deduplicator.markProcessed(appliedKeys);
+    if (!done.isEmpty()) {
+      mongoTemplate.remove(Query.query(where("_id").in(done)), WebhookTask.class);
+      processedCounter.increment(appliedKeys.size());
+    }
+    return done.size() + deadLettered;
+  }
+
+  /**
+   * Stops the workers; queued tasks stay in the collection for the next
+   * start.
+   */
+  public synchronized void shutdown() {
+    if (workers == null) {
+      return;
+    }
+    workers.shutdown();
+    try {
+      workers.awaitTermination(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  static int partitionOf(String orderId, int partitions) {
+    return orderId == null ? 0 : Math.floorMod(orderId.hashCode(), partitions);
+  }
+
+  static Duration backoff(int attempts, Duration initialBackoff, Duration maxBackoff) {
+    long factor = 1L << Math.min(attempts - 1, 30);
+    Duration delay = initialBackoff.multipliedBy(factor);
+    return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+  }
+
+  private void drainPartition(int partition) {
+    try {
+      while (drain(partition) > 0) {
+        // Keep going while a burst is queued
+      }
+    } catch (RuntimeException e) {
+      log.error("Draining webhook partition {} failed: {}", partition, e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Schedules the task again, or moves it to the dead-letter collection once
+   * it has used its attempts. Returns whether it was dead-lettered.
+   */
+  private boolean fail(WebhookTask task, RuntimeException error) {
+    int attempts = task.getAttempts() + 1;
+    String message = error.getMessage() != null ? error.getMessage() : error.getClass().getName();
+    if (attempts >= maxAttempts) {
+      task.setAttempts(attempts);
+      task.setLastError(message);
+      task.setFailedAt(Instant.now());
+      mongoTemplate.insert(task, DEAD_LETTER_COLLECTION);
+      mongoTemplate.remove(Query.query(where("_id").is(task.getId())), WebhookTask.class);
+      deadLetterCounter.increment();
+      log.error("Webhook {} for order {} dead-lettered after {} attempts: {}",
+          task.getEvent(), task.getOrderId(), attempts, message);
+      return true;
+    }
+
+    Duration delay = backoff(attempts, initialBackoff, maxBackoff);
+    mongoTemplate.updateFirst(Query.query(where("_id").is(task.getId())), new Update()
+        .set("attempts", attempts)
+        .set("nextAttemptAt", Instant.now().plus(delay))
+        .set("lastError", message), WebhookTask.class);
+    retryCounter.increment();
+    log.warn("Webhook {} for order {} failed (attempt {}), retrying in {}: {}",
+        task.getEvent(), task.getOrderId(), attempts, delay, message);
+    return false;
+  }
+}
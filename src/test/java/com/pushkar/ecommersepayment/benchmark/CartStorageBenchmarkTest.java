@@ -0,0 +1,123 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.cart.CartItemStore;
+import com.pushkar.ecommersepayment.cart.CartStore;
+import com.pushkar.ecommersepayment.cart.EmbeddedCartStore;
+import com.pushkar.ecommersepayment.model.Cart;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.repository.CartDocumentRepository;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares add, view and clear latency of the two cart storage modes: one
+ * {@code cart_items} document per line against one {@code carts} document per
+ * user. Each user fills a cart of {@code -Dbenchmark.cart.lines=10} lines.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_benchmark"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Cart Storage Benchmark - cart_items vs Embedded")
+class CartStorageBenchmarkTest {
+
+  private static final int PRODUCTS = 1_000;
+  private static final int USERS = 2_000;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private CartRepository cartRepository;
+
+  @Autowired
+  private CartDocumentRepository cartDocumentRepository;
+
+  @Test
+  @DisplayName("Cart add/view/clear latency per storage mode")
+  void benchmarkCartStorage() {
+    int lines = Integer.getInteger("benchmark.cart.lines", 10);
+    List<String> productIds = seedProducts();
+
+    run("items", new CartItemStore(cartRepository), productIds, lines);
+    run("embedded", new EmbeddedCartStore(cartDocumentRepository), productIds, lines);
+
+    mongoTemplate.dropCollection(Product.class);
+    mongoTemplate.remove(new Query(), CartItem.class);
+    mongoTemplate.remove(new Query(), Cart.class);
+  }
+
+  private void run(String mode, CartStore store, List<String> productIds, int lines) {
+    // Warm up with a throwaway pass so both modes start with hot connections
+    exercise(store, productIds, lines, USERS / 10, "warmup-");
+    long[][] latencies = exercise(store, productIds, lines, USERS, "user-");
+    System.out.printf("[cart %s, %d lines] add p50=%d us p99=%d us | view p50=%d us p99=%d us"
+            + " | clear p50=%d us p99=%d us%n", mode, lines,
+        micros(latencies[0], 0.5), micros(latencies[0], 0.99),
+        micros(latencies[1], 0.5), micros(latencies[1], 0.99),
+        micros(latencies[2], 0.5), micros(latencies[2], 0.99));
+  }
+
+  /**
+   * Each user adds every line twice (a push, then an increment), views the
+   * cart once and clears it.
+   */
+  private static long[][] exercise(CartStore store, List<String> productIds, int lines, int users, String prefix) {
+    long[] adds = new long[users * lines * 2];
+    long[] views = new long[users];
+    long[] clears = new long[users];
+    int add = 0;
+    for (int u = 0; u < users; u++) {
+      String userId = prefix + u;
+      for (int pass = 0; pass < 2; pass++) {
+        for (int l = 0; l < lines; l++) {
+          String productId = productIds.get((u + l) % productIds.size());
+          long start = System.nanoTime();
+          store.addQuantity(userId, productId, 1, Integer.MAX_VALUE);
+          adds[add++] = System.nanoTime() - start;
+        }
+      }
+      long start = System.nanoTime();
+      store.view(userId);
+      views[u] = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      store.clear(userId);
+      clears[u] = System.nanoTime() - start;
+    }
+    Arrays.sort(adds);
+    Arrays.sort(views);
+    Arrays.sort(clears);
+    return new long[][] {adds, views, clears};
+  }
+
+  private List<String> seedProducts() {
+    mongoTemplate.dropCollection(Product.class);
+    List<Product> products = new ArrayList<>(PRODUCTS);
+    for (int i = 0; i < PRODUCTS; i++) {
+      products.add(new Product(null, "Cart Product " + i, "Cart benchmark", Money.inr(100_00 + i), 1_000_000));
+    }
+    mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class).insert(products).execute();
+    return products.stream().map(Product::getId).toList();
+  }
+
+  private static long micros(long[] sorted, double percentile) {
+    return TimeUnit.NANOSECONDS.toMicros(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+  }
+}
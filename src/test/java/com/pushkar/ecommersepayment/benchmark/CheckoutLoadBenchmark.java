@@ -0,0 +1,107 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.User;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.repository.UserRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Drives the full cart -> order -> payment flow over HTTP with many concurrent
+ * shoppers and prints throughput and latency percentiles. Subclasses pick the
+ * threading mode; run with {@code -Dbenchmark=true} against a local MongoDB.
+ */
+abstract class CheckoutLoadBenchmark {
+
+  private static final int SHOPPERS = 2_000;
+  private static final int CONCURRENCY = 500;
+
+  @LocalServerPort
+  private int port;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  private final HttpClient httpClient = HttpClient.newHttpClient();
+
+  protected abstract String modeName();
+
+  @Test
+  @DisplayName("Full checkout flow under high concurrency")
+  void benchmarkCheckoutFlow() throws Exception {
+    String productId = productRepository.save(
+        new Product(null, "Benchmark Item", "Load test", Money.inr(100_00), SHOPPERS * 2)).getId();
+    List<String> userIds = new ArrayList<>();
+    for (int i = 0; i < SHOPPERS; i++) {
+      userIds.add(userRepository.save(new User(null, "bench_" + i, "bench_" + i + "@example.com", "customer")).getId());
+    }
+
+    ExecutorService shoppers = Executors.newFixedThreadPool(CONCURRENCY);
+    List<Future<Long>> futures = new ArrayList<>();
+    long start = System.nanoTime();
+    for (String userId : userIds) {
+      futures.add(shoppers.submit(() -> checkout(userId, productId)));
+    }
+    long[] latencies = new long[futures.size()];
+    for (int i = 0; i < futures.size(); i++) {
+      latencies[i] = futures.get(i).get(5, TimeUnit.MINUTES);
+    }
+    long elapsed = System.nanoTime() - start;
+    shoppers.shutdown();
+
+    Arrays.sort(latencies);
+    System.out.printf("[%s] %d checkouts in %d ms (%.1f/s), p50=%d ms, p99=%d ms, max=%d ms%n",
+        modeName(), SHOPPERS, TimeUnit.NANOSECONDS.toMillis(elapsed),
+        SHOPPERS / (elapsed / 1e9),
+        TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length / 2]),
+        TimeUnit.NANOSECONDS.toMillis(latencies[(int) (latencies.length * 0.99)]),
+        TimeUnit.NANOSECONDS.toMillis(latencies[latencies.length - 1]));
+
+    assertEquals(SHOPPERS, productRepository.findById(productId).orElseThrow().getStock());
+    userRepository.deleteAllById(userIds);
+    productRepository.deleteById(productId);
+  }
+
+  private long checkout(String userId, String productId) throws Exception {
+    long start = System.nanoTime();
+    post("/api/cart/add", "{\"userId\":\"" + userId + "\",\"productId\":\"" + productId + "\",\"quantity\":1}");
+    JsonNode order = post("/api/orders", "{\"userId\":\"" + userId + "\"}");
+    post("/api/payments/create", "{\"orderId\":\"" + order.get("id").asText() + "\",\"amount\":{\"amount\":10000,\"currency\":\"INR\"}}");
+    return System.nanoTime() - start;
+  }
+
+  private JsonNode post(String path, String body) throws Exception {
+    HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+        .header("Content-Type", "application/json")
+        .POST(HttpRequest.BodyPublishers.ofString(body))
+        .build();
+    HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    if (response.statusCode() >= 300) {
+      throw new IllegalStateException(path + " returned " + response.statusCode() + ": " + response.body());
+    }
+    return objectMapper.readTree(response.body());
+  }
+}
@@ -0,0 +1,149 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.config.MongoIndexInitializer;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OrderItem;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.repository.OrderRepository;
+import com.pushkar.ecommersepayment.repository.PaymentRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Compares the single-aggregation order detail read ({@code $lookup} of the
+ * payment) against the previous two queries, order by id then payment by
+ * order id. Override the number of orders with
+ * {@code -Dbenchmark.order-detail.orders=...}.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_benchmark"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Order Detail Benchmark - $lookup vs Two Queries")
+class OrderDetailBenchmarkTest {
+
+  private static final int BATCH = 10_000;
+  private static final int WARMUP = 2_000;
+  private static final int RUNS = 10_000;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private MongoIndexInitializer indexInitializer;
+
+  @Autowired
+  private OrderRepository orderRepository;
+
+  @Autowired
+  private PaymentRepository paymentRepository;
+
+  @Test
+  @DisplayName("Order detail latency")
+  void benchmarkOrderDetail() {
+    int orders = Integer.getInteger("benchmark.order-detail.orders", 100_000);
+    List<String> orderIds = seed(orders);
+
+    long[] twoQueries = measure(orderIds, id -> {
+      orderRepository.findById(id).orElseThrow();
+      paymentRepository.findByOrderId(id);
+    });
+    long[] lookup = measure(orderIds, id -> orderRepository.findDetailById(id).orElseThrow());
+
+    System.out.printf("[order detail %,d] two queries p50=%d us p99=%d us | $lookup p50=%d us p99=%d us%n",
+        orders, micros(twoQueries, 0.5), micros(twoQueries, 0.99), micros(lookup, 0.5), micros(lookup, 0.99));
+
+    mongoTemplate.dropCollection(Order.class);
+    mongoTemplate.dropCollection(Payment.class);
+    indexInitializer.createIndexes();
+  }
+
+  /**
+   * Inserts orders of three lines each, four in five of them with a payment.
+   */
+  private List<String> seed(int count) {
+    mongoTemplate.dropCollection(Order.class);
+    mongoTemplate.dropCollection(Payment.class);
+    indexInitializer.createIndexes();
+
+    Random random = new Random(42);
+    List<String> orderIds = new ArrayList<>(count);
+    List<Order> orderBatch = new ArrayList<>(BATCH);
+    for (int i = 0; i < count; i++) {
+      Order order = new Order();
+      order.setUserId("user" + random.nextInt(10_000));
+      order.setStatus("CREATED");
+      order.setCreatedAt(Instant.now());
+      for (int line = 0; line < 3; line++) {
+        OrderItem item = new OrderItem();
+        item.setProductId("prod" + random.nextInt(100_000));
+        item.setQuantity(1 + random.nextInt(3));
+        item.setPrice(Money.inr(100_00 + random.nextInt(10_000_00)));
+        order.getItems().add(item);
+      }
+      order.setTotalAmount(Order.totalOf(order.getItems()));
+      orderBatch.add(order);
+      if (orderBatch.size() == BATCH || i == count - 1) {
+        orderIds.addAll(insertWithPayments(orderBatch, random));
+        orderBatch.clear();
+      }
+    }
+    return orderIds;
+  }
+
+  private List<String> insertWithPayments(List<Order> orders, Random random) {
+    mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class).insert(orders).execute();
+    List<String> ids = new ArrayList<>(orders.size());
+    List<Payment> payments = new ArrayList<>(orders.size());
+    for (Order order : orders) {
+      ids.add(order.getId());
+      if (random.nextInt(5) != 0) {
+        Payment payment = new Payment();
+        payment.setOrderId(order.getId());
+        payment.setAmount(order.getTotalAmount());
+        payment.setStatus("SUCCESS");
+        payment.setRazorpayOrderId("order_" + order.getId());
+        payment.setCreatedAt(Instant.now());
+        payments.add(payment);
+      }
+    }
+    mongoTemplate.bulkOps(BulkMode.UNORDERED, Payment.class).insert(payments).execute();
+    return ids;
+  }
+
+  private static long[] measure(List<String> orderIds, Consumer<String> read) {
+    Random random = new Random(7);
+    for (int i = 0; i < WARMUP; i++) {
+      read.accept(orderIds.get(random.nextInt(orderIds.size())));
+    }
+    long[] latencies = new long[RUNS];
+    for (int i = 0; i < RUNS; i++) {
+      String id = orderIds.get(random.nextInt(orderIds.size()));
+      long start = System.nanoTime();
+      read.accept(id);
+      latencies[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  private static long micros(long[] sorted, double percentile) {
+    return TimeUnit.NANOSECONDS.toMicros(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+  }
+}
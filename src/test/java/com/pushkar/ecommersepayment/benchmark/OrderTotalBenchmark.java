@@ -0,0 +1,74 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OrderItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH cost of totalling an order: the previous boxed {@code Double} prices
+ * against {@link Order#totalOf} over minor units, plus a naive
+ * {@link Money#plus} chain that allocates per line. Launched by
+ * {@link OrderTotalBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderTotalBenchmark {
+
+  @Param({"3", "50"})
+  public int lines;
+
+  private List<LegacyOrderItem> legacyItems;
+  private List<OrderItem> items;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(42);
+    legacyItems = new ArrayList<>(lines);
+    items = new ArrayList<>(lines);
+    for (int i = 0; i < lines; i++) {
+      long paise = 100_00 + random.nextInt(10_000_00);
+      int quantity = 1 + random.nextInt(5);
+      legacyItems.add(new LegacyOrderItem(paise / 100.0, quantity));
+      items.add(new OrderItem("prod" + i, quantity, Money.inr(paise)));
+    }
+  }
+
+  @Benchmark
+  public Double boxedDouble() {
+    Double total = 0.0;
+    for (LegacyOrderItem item : legacyItems) {
+      total += item.price * item.quantity;
+    }
+    return total;
+  }
+
+  @Benchmark
+  public Money minorUnits() {
+    return Order.totalOf(items);
+  }
+
+  @Benchmark
+  public Money moneyPlusChain() {
+    Money total = Money.zero(Money.INR);
+    for (OrderItem item : items) {
+      total = total.plus(item.getPrice().times(item.getQuantity()));
+    }
+    return total;
+  }
+
+  /**
+   * Order line as stored before amounts moved to minor units.
+   */
+  private record LegacyOrderItem(Double price, Integer quantity) {
+  }
+}
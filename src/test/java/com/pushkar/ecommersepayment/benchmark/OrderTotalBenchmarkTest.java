@@ -0,0 +1,23 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link OrderTotalBenchmark} through JMH. No MongoDB needed.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Order Total Benchmark - Double vs Minor Units")
+class OrderTotalBenchmarkTest {
+
+  @Test
+  @DisplayName("JMH order total")
+  void runJmh() throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(OrderTotalBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
@@ -0,0 +1,22 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_benchmark",
+    "spring.threads.virtual.enabled=false",
+    "payment.mock.success.delay=100"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Checkout Load Benchmark - Platform Threads")
+class PlatformThreadCheckoutBenchmarkTest extends CheckoutLoadBenchmark {
+
+  @Override
+  protected String modeName() {
+    return "platform";
+  }
+}
@@ -0,0 +1,126 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.config.MongoIndexInitializer;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the text-index search against the unanchored case-insensitive
+ * regex it replaced, on catalogs of 100k and 1M products. Override the sizes
+ * with {@code -Dbenchmark.search.sizes=...}.
+ */
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_benchmark"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Product Search Benchmark - Text Index vs Regex")
+class ProductSearchBenchmarkTest {
+
+  private static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne", "Hooli", "Vandelay"};
+  private static final String[] NOUNS = {"Laptop", "Mouse", "Keyboard", "Monitor", "Headphones", "Speaker", "Webcam",
+      "Charger", "Router", "Tablet", "Camera", "Printer", "Microphone", "Drive", "Controller", "Watch"};
+  private static final String[] ADJECTIVES = {"Wireless", "Gaming", "Portable", "Mechanical", "Ergonomic", "Compact",
+      "Premium", "Rugged", "Slim", "Smart", "Noise-Cancelling", "Ultra", "Pro", "Mini", "Curved", "Backlit"};
+  private static final String[] QUERIES = {"laptop", "wireless mouse", "gaming", "stark camera", "backlit keyboard",
+      "charger", "ergonomic", "router"};
+  private static final int BATCH = 10_000;
+  private static final int RUNS = 20;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private MongoIndexInitializer indexInitializer;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Test
+  @DisplayName("Search latency at catalog scale")
+  void benchmarkSearch() {
+    String sizes = System.getProperty("benchmark.search.sizes", "100000,1000000");
+    for (String size : sizes.split(",")) {
+      int products = Integer.parseInt(size.trim());
+      seed(products);
+      for (String query : QUERIES) {
+        long[] regex = measure(() -> regexSearch(query).size());
+        long[] text = measure(() -> productRepository.searchByText(query, null, null, 20).size());
+        System.out.printf("[search %,d] %-18s regex p50=%d ms p99=%d ms (%,d hits) | text p50=%d ms p99=%d ms%n",
+            products, "'" + query + "'", millis(regex, 0.5), millis(regex, 0.99), regexSearch(query).size(),
+            millis(text, 0.5), millis(text, 0.99));
+      }
+    }
+    mongoTemplate.dropCollection(Product.class);
+    indexInitializer.createIndexes();
+  }
+
+  /**
+   * The previous implementation: an unanchored, case-insensitive regex on the
+   * name returning every match.
+   */
+  private List<Product> regexSearch(String query) {
+    return mongoTemplate.find(
+        Query.query(Criteria.where("name").regex(Pattern.quote(query), "i")), Product.class);
+  }
+
+  private void seed(int count) {
+    mongoTemplate.dropCollection(Product.class);
+    Random random = new Random(42);
+    List<Product> batch = new ArrayList<>(BATCH);
+    for (int i = 0; i < count; i++) {
+      String name = pick(random, BRANDS) + " " + pick(random, ADJECTIVES) + " " + pick(random, NOUNS);
+      String description = pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + " for "
+          + pick(random, NOUNS).toLowerCase() + " users, model " + i;
+      batch.add(new Product(null, name, description, Money.inr(100_00 + random.nextInt(100_000_00)), 1 + random.nextInt(100)));
+      if (batch.size() == BATCH) {
+        mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class).insert(batch).execute();
+        batch.clear();
+      }
+    }
+    if (!batch.isEmpty()) {
+      mongoTemplate.bulkOps(BulkMode.UNORDERED, Product.class).insert(batch).execute();
+    }
+    // Building the text index once after the load is much faster than per insert
+    indexInitializer.createIndexes();
+  }
+
+  private static long[] measure(Supplier<Integer> search) {
+    search.get();
+    long[] latencies = new long[RUNS];
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      search.get();
+      latencies[i] = System.nanoTime() - start;
+    }
+    Arrays.sort(latencies);
+    return latencies;
+  }
+
+  private static long millis(long[] sorted, double percentile) {
+    return TimeUnit.NANOSECONDS.toMillis(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+}
@@ -0,0 +1,75 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH query latency of the in-memory product search index. Launched by
+ * {@link ProductSearchIndexBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSearchIndexBenchmark {
+
+  static final String[] BRANDS = {"Acme", "Globex", "Initech", "Umbrella", "Stark", "Wayne", "Hooli", "Vandelay"};
+  static final String[] NOUNS = {"Laptop", "Mouse", "Keyboard", "Monitor", "Headphones", "Speaker", "Webcam",
+      "Charger", "Router", "Tablet", "Camera", "Printer", "Microphone", "Drive", "Controller", "Watch"};
+  static final String[] ADJECTIVES = {"Wireless", "Gaming", "Portable", "Mechanical", "Ergonomic", "Compact",
+      "Premium", "Rugged", "Slim", "Smart", "Noise-Cancelling", "Ultra", "Pro", "Mini", "Curved", "Backlit"};
+
+  @Param({"100000", "1000000"})
+  public int products;
+
+  private ProductSearchIndex index;
+
+  @Setup
+  public void setUp() {
+    index = buildIndex(products);
+  }
+
+  @Benchmark
+  public Object singleTerm() {
+    return index.search("laptop", null, null, 20);
+  }
+
+  @Benchmark
+  public Object twoTerms() {
+    return index.search("stark camera", null, null, 20);
+  }
+
+  @Benchmark
+  public Object rareTerms() {
+    return index.search("vandelay curved microphone", null, null, 20);
+  }
+
+  @Benchmark
+  public Object autocompletePrefix() {
+    return index.autocomplete("wireless ke", 10);
+  }
+
+  static ProductSearchIndex buildIndex(int count) {
+    ProductSearchIndex index = new ProductSearchIndex(true, 256);
+    Random random = new Random(42);
+    for (int i = 0; i < count; i++) {
+      String name = pick(random, BRANDS) + " " + pick(random, ADJECTIVES) + " " + pick(random, NOUNS);
+      String description = pick(random, ADJECTIVES) + " " + pick(random, NOUNS) + " for "
+          + pick(random, NOUNS).toLowerCase() + " users, model m" + i;
+      index.put(new Product(String.format("%024x", i), name, description, Money.inr(100_00), 1));
+    }
+    index.markReady();
+    return index;
+  }
+
+  private static String pick(Random random, String[] values) {
+    return values[random.nextInt(values.length)];
+  }
+}
@@ -0,0 +1,49 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * Runs {@link ProductSearchIndexBenchmark} through JMH and reports the heap
+ * the index retains per million products. No MongoDB needed.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Product Search Index Benchmark")
+class ProductSearchIndexBenchmarkTest {
+
+  private static final int PRODUCTS = 1_000_000;
+
+  @Test
+  @DisplayName("Heap retained per million products")
+  void reportMemoryPerMillionProducts() {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long before = usedHeap(memory);
+    ProductSearchIndex index = ProductSearchIndexBenchmark.buildIndex(PRODUCTS);
+    long after = usedHeap(memory);
+
+    System.out.printf("[search index] %,d products, %,d tokens: measured %d MB, estimated %d MB%n",
+        index.size(), index.tokenCount(), (after - before) >> 20, index.estimatedMemoryBytes() >> 20);
+  }
+
+  @Test
+  @DisplayName("JMH query latency")
+  void runJmh() throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(ProductSearchIndexBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+
+  private static long usedHeap(MemoryMXBean memory) {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
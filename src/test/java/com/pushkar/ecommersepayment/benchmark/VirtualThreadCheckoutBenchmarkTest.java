@@ -0,0 +1,25 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_benchmark",
+    "spring.threads.virtual.enabled=true",
+    "payment.mock.success.delay=100"
+})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+@DisplayName("Checkout Load Benchmark - Virtual Threads")
+class VirtualThreadCheckoutBenchmarkTest extends CheckoutLoadBenchmark {
+
+  @Override
+  protected String modeName() {
+    return "virtual";
+  }
+}
@@ -0,0 +1,75 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.webhook.WebhookDeduplicator;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH cost of turning a webhook body into a queued task: the previous
+ * binding to {@code Map<String, Object>}, with the payload formatted for the
+ * INFO log and fields cast out of the map, against binding straight into
+ * {@link PaymentWebhookRequest}. Both include building the task and its
+ * deduplication key. Launched by {@link WebhookParseBenchmarkTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebhookParseBenchmark {
+
+  private static final String MINIMAL = """
+      {"event":"payment.captured","paymentId":"mock_pay_6f1c2a9e","orderId":"mock_order_0b7d4e21"}""";
+
+  // Shape of a real gateway delivery: the fields we use plus metadata we skip
+  private static final String GATEWAY = """
+      {"event":"payment.captured","paymentId":"mock_pay_6f1c2a9e","orderId":"mock_order_0b7d4e21",
+       "signature":"3f9a1c0d8e7b6a5f4e3d2c1b0a9f8e7d6c5b4a3f2e1d0c9b8a7f6e5d4c3b2a1f",
+       "createdAt":1767225600,"contains":["payment","order"],
+       "payload":{"payment":{"entity":{"id":"mock_pay_6f1c2a9e","amount":5000000,"currency":"INR",
+       "status":"captured","method":"upi","vpa":"buyer@upi","fee":11800,"tax":1800,
+       "notes":{"cart":"c_81234","channel":"web"}}}}}""";
+
+  @Param({"minimal", "gateway"})
+  public String payload;
+
+  private byte[] body;
+  private ObjectReader mapReader;
+  private ObjectReader typedReader;
+
+  @Setup
+  public void setUp() {
+    body = ("minimal".equals(payload) ? MINIMAL : GATEWAY).getBytes(StandardCharsets.UTF_8);
+    // Configured like the converter Spring MVC binds request bodies with
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    mapReader = objectMapper.readerFor(Map.class);
+    typedReader = objectMapper.readerFor(PaymentWebhookRequest.class);
+  }
+
+  @Benchmark
+  public String mapBinding() throws IOException {
+    Map<String, Object> map = mapReader.readValue(body);
+    String logged = "Received mock payment webhook: " + map;
+    String event = (String) map.get("event");
+    WebhookTask task = new WebhookTask(event, (String) map.get("paymentId"), (String) map.get("orderId"),
+        (String) map.get("reason"));
+    return WebhookTask.isSupported(event) && logged != null ? WebhookDeduplicator.keyOf(task) : null;
+  }
+
+  @Benchmark
+  public String typedBinding() throws IOException {
+    PaymentWebhookRequest request = typedReader.readValue(body);
+    WebhookTask task = new WebhookTask(request.event(), request.paymentId(), request.orderId(), request.reason());
+    return WebhookTask.isSupported(request.event()) ? WebhookDeduplicator.keyOf(task) : null;
+  }
+}
@@ -0,0 +1,23 @@
+package com.pushkar.ecommersepayment.benchmark;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs {@link WebhookParseBenchmark} through JMH. No MongoDB needed.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("Webhook Parse Benchmark - Map vs Typed Binding")
+class WebhookParseBenchmarkTest {
+
+  @Test
+  @DisplayName("JMH webhook parse")
+  void runJmh() throws Exception {
+    new Runner(new OptionsBuilder()
+        .include(WebhookParseBenchmark.class.getSimpleName())
+        .build()).run();
+  }
+}
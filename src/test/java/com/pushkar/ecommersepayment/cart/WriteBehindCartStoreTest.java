@@ -0,0 +1,272 @@
+package com.pushkar.ecommersepayment.cart;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import org.mockito.InOrder;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.CartItem;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Write-Behind Cart Store Tests")
+class WriteBehindCartStoreTest {
+
+  private static final String USER = "user123";
+
+  private CartStore delegate;
+  private SimpleMeterRegistry meterRegistry;
+  private WriteBehindCartStore store;
+
+  @BeforeEach
+  void setUp() {
+    delegate = mock(CartStore.class);
+    meterRegistry = new SimpleMeterRegistry();
+    when(delegate.findLines(anyString())).thenReturn(new ArrayList<>());
+    when(delegate.addQuantity(anyString(), anyString(), anyInt(), anyInt())).thenReturn(Optional.empty());
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (store != null) {
+      store.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("Should coalesce repeated adds into one write per line")
+  void testCoalescesAdds() {
+    // Arrange
+    store = newStore(10_000, 100);
+
+    // Act
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i + 1, store.addQuantity(USER, "prod1", 1, 20).orElseThrow().getQuantity());
+    }
+    store.addQuantity(USER, "prod2", 2, 20);
+    verify(delegate, never()).addQuantity(anyString(), anyString(), anyInt(), anyInt());
+    store.flush(USER);
+
+    // Assert
+    verify(delegate, times(1)).addQuantity(USER, "prod1", 10, 10);
+    verify(delegate, times(1)).addQuantity(USER, "prod2", 2, 2);
+    assertEquals(11, meterRegistry.counter("cart.buffer.mutations").count());
+    assertEquals(2, meterRegistry.counter("cart.buffer.writes").count());
+    assertEquals(5.5, store.getCoalescingRatio());
+    assertEquals(0, store.getBufferedUsers());
+  }
+
+  @Test
+  @DisplayName("Should check the limit against stored plus buffered quantity")
+  void testLimitIncludesStoredQuantity() {
+    // Arrange
+    when(delegate.findLines(USER)).thenReturn(List.of(new CartItem("line1", USER, "prod1", 8)));
+    store = newStore(10_000, 100);
+
+    // Act & Assert
+    assertEquals(Optional.empty(), store.addQuantity(USER, "prod1", 3, 10));
+    CartItem line = store.addQuantity(USER, "prod1", 2, 10).orElseThrow();
+    assertEquals("line1", line.getId());
+    assertEquals(10, line.getQuantity());
+
+    store.flush(USER);
+    verify(delegate, times(1)).addQuantity(USER, "prod1", 2, 10);
+  }
+
+  @Test
+  @DisplayName("Should write a removed and re-added line as a remove and an add")
+  void testRemoveThenReAdd() {
+    // Arrange
+    when(delegate.findLines(USER)).thenReturn(List.of(
+        new CartItem("line1", USER, "prod1", 5), new CartItem("line2", USER, "prod2", 1)));
+    store = newStore(10_000, 100);
+    store.addQuantity(USER, "prod2", 1, 10);
+
+    // Act
+    store.removeLine("line1");
+    store.addQuantity(USER, "prod1", 2, 10);
+    store.flush(USER);
+
+    // Assert
+    InOrder order = inOrder(delegate);
+    order.verify(delegate).removeLine("line1");
+    order.verify(delegate).addQuantity(USER, "prod1", 2, 2);
+    verify(delegate, times(1)).addQuantity(USER, "prod2", 1, 2);
+  }
+
+  @Test
+  @DisplayName("Should write a buffered clear before the lines added after it")
+  void testClearThenAdd() {
+    // Arrange
+    when(delegate.findLines(USER)).thenReturn(List.of(new CartItem("line1", USER, "prod1", 5)));
+    store = newStore(10_000, 100);
+    store.addQuantity(USER, "prod1", 1, 10);
+
+    // Act
+    store.clear(USER);
+    store.addQuantity(USER, "prod1", 2, 10);
+    store.flush(USER);
+
+    // Assert
+    InOrder order = inOrder(delegate);
+    order.verify(delegate).clear(USER);
+    order.verify(delegate).addQuantity(USER, "prod1", 2, 2);
+    verify(delegate, never()).removeLine(anyString());
+  }
+
+  @Test
+  @DisplayName("Should flush before reading the cart")
+  void testViewFlushesFirst() {
+    // Arrange
+    store = newStore(10_000, 100);
+    store.addQuantity(USER, "prod1", 1, 10);
+    when(delegate.view(USER)).thenReturn(new CartResponse(USER, new ArrayList<>(), null));
+
+    // Act
+    store.view(USER);
+
+    // Assert
+    InOrder order = inOrder(delegate);
+    order.verify(delegate).addQuantity(USER, "prod1", 1, 1);
+    order.verify(delegate).view(USER);
+  }
+
+  @Test
+  @DisplayName("Should flush a user inline once their pending changes reach the bound")
+  void testMaxPendingPerUser() {
+    // Arrange
+    store = newStore(10_000, 3);
+
+    // Act
+    store.addQuantity(USER, "prod1", 1, 10);
+    store.addQuantity(USER, "prod1", 1, 10);
+    store.addQuantity(USER, "prod1", 1, 10);
+
+    // Assert
+    verify(delegate, times(1)).addQuantity(USER, "prod1", 3, 3);
+    assertEquals(0, store.getBufferedUsers());
+  }
+
+  @Test
+  @DisplayName("Should write through once the buffer holds the maximum number of users")
+  void testMaxUsers() {
+    // Arrange
+    store = newStore(1, 100);
+    store.addQuantity("user1", "prod1", 1, 10);
+
+    // Act
+    store.addQuantity("user2", "prod1", 1, 10);
+
+    // Assert
+    verify(delegate, times(1)).addQuantity("user2", "prod1", 1, 10);
+    verify(delegate, never()).addQuantity("user1", "prod1", 1, 1);
+    assertEquals(1, store.getBufferedUsers());
+  }
+
+  @Test
+  @DisplayName("Should flush every buffered user on the timer and on shutdown")
+  void testTimedAndShutdownFlush() throws Exception {
+    // Arrange
+    store = new WriteBehindCartStore(delegate, Duration.ofMillis(50), 10_000, 100, meterRegistry);
+    store.addQuantity("user1", "prod1", 1, 10);
+
+    // Act
+    long deadline = System.currentTimeMillis() + 5_000;
+    while (store.getBufferedUsers() > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    store.addQuantity("user2", "prod1", 1, 10);
+    store.shutdown();
+
+    // Assert
+    verify(delegate, times(1)).addQuantity("user1", "prod1", 1, 1);
+    verify(delegate, times(1)).addQuantity("user2", "prod1", 1, 1);
+    assertEquals(0, store.getBufferedUsers());
+    store = null;
+  }
+
+  @Test
+  @DisplayName("Should keep a buffer whose flush failed and write only what is missing on retry")
+  void testFailedFlushIsRetried() {
+    // Arrange
+    when(delegate.findLines(USER)).thenReturn(List.of(new CartItem("line1", USER, "prod1", 5)));
+    when(delegate.addQuantity(USER, "prod2", 1, 1))
+        .thenReturn(Optional.of(new CartItem("line2", USER, "prod2", 1)));
+    when(delegate.addQuantity(USER, "prod3", 4, 4))
+        .thenThrow(new RuntimeException("connection reset"))
+        .thenReturn(Optional.of(new CartItem("line3", USER, "prod3", 4)));
+    store = newStore(10_000, 100);
+    store.removeLine("line1");
+    store.addQuantity(USER, "prod2", 1, 10);
+    store.addQuantity(USER, "prod3", 4, 10);
+
+    // Act
+    store.flushAll();
+    assertEquals(1, store.getBufferedUsers());
+    store.flushAll();
+
+    // Assert: nothing that was written is written again
+    verify(delegate, times(1)).removeLine("line1");
+    verify(delegate, times(1)).addQuantity(USER, "prod2", 1, 1);
+    verify(delegate, times(2)).addQuantity(USER, "prod3", 4, 4);
+    assertEquals(0, store.getBufferedUsers());
+  }
+
+  @Test
+  @DisplayName("Should count an addition dropped because the stored line grew, once")
+  void testDroppedAddIsCounted() {
+    // Arrange: another writer added to prod1 after it was loaded, so the capped write matches nothing
+    when(delegate.findLines(USER)).thenReturn(List.of(new CartItem("line1", USER, "prod1", 2)));
+    when(delegate.addQuantity(USER, "prod2", 1, 1))
+        .thenThrow(new RuntimeException("connection reset"))
+        .thenReturn(Optional.of(new CartItem("line2", USER, "prod2", 1)));
+    store = newStore(10_000, 100);
+    store.addQuantity(USER, "prod1", 3, 10);
+    store.addQuantity(USER, "prod2", 1, 10);
+
+    // Act
+    store.flushAll();
+    store.flushAll();
+
+    // Assert
+    verify(delegate, times(1)).addQuantity(USER, "prod1", 3, 5);
+    assertEquals(3, meterRegistry.counter("cart.buffer.dropped").count());
+    assertEquals(0, store.getBufferedUsers());
+  }
+
+  @Test
+  @DisplayName("Should fail a read instead of serving a cart without the buffered changes")
+  void testReadFailsWhileFlushFails() {
+    // Arrange
+    when(delegate.addQuantity(USER, "prod1", 1, 1)).thenThrow(new RuntimeException("connection reset"));
+    store = newStore(10_000, 100);
+    store.addQuantity(USER, "prod1", 1, 10);
+
+    // Act & Assert
+    assertThrows(RuntimeException.class, () -> store.findLines(USER));
+    verify(delegate, times(1)).findLines(USER); // the initial load only
+    assertEquals(1, store.getBufferedUsers());
+    assertEquals(2, store.addQuantity(USER, "prod1", 1, 10).orElseThrow().getQuantity());
+  }
+
+  private WriteBehindCartStore newStore(int maxUsers, int maxPendingPerUser) {
+    return new WriteBehindCartStore(delegate, Duration.ofHours(1), maxUsers, maxPendingPerUser, meterRegistry);
+  }
+}
@@ -0,0 +1,190 @@
+package com.pushkar.ecommersepayment.client;
+
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.dto.WebhookEventResult;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.webhook.WebhookBatchProcessor;
+import com.pushkar.ecommersepayment.webhook.WebhookDeduplicator;
+import com.pushkar.ecommersepayment.webhook.WebhookQueue;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(PaymentServiceClient.class)
+@DisplayName("Payment Webhook Endpoint Tests")
+class PaymentServiceClientTest {
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private WebhookQueue webhookQueue;
+
+  @MockBean
+  private WebhookDeduplicator webhookDeduplicator;
+
+  @MockBean
+  private WebhookBatchProcessor webhookBatchProcessor;
+
+  @Test
+  @DisplayName("Should bind the typed fields, skip unknown ones and queue the webhook")
+  void testAcceptsWebhook() throws Exception {
+    mockMvc.perform(post("/api/webhooks/payment")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("""
+            {
+              "event": "payment.captured",
+              "paymentId": "pay_1",
+              "orderId": "order_1",
+              "signature": "sig",
+              "payload": { "payment": { "entity": { "id": "pay_1", "amount": 50000 } } }
+            }
+            """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.message", is("Webhook accepted")));
+
+    verify(webhookQueue, times(1)).enqueue(argThat(task -> WebhookTask.PAYMENT_CAPTURED.equals(task.getEvent())
+        && "pay_1".equals(task.getPaymentId()) && "order_1".equals(task.getOrderId()) && task.getReason() == null));
+  }
+
+  @Test
+  @DisplayName("Should reject a webhook without an event or order id")
+  void testRejectsIncompleteWebhook() throws Exception {
+    mockMvc.perform(post("/api/webhooks/payment")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"orderId\": \"order_1\"}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", is("Event type not found")));
+
+    mockMvc.perform(post("/api/webhooks/payment")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"event\": \"payment.failed\", \"reason\": \"declined\"}"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", is("Order id not found")));
+
+    verify(webhookQueue, never()).enqueue(any(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should acknowledge unhandled events and redeliveries without queueing them")
+  void testSkipsIgnoredAndDuplicateWebhooks() throws Exception {
+    when(webhookDeduplicator.isProcessed(anyString())).thenReturn(true);
+
+    mockMvc.perform(post("/api/webhooks/payment")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"event\": \"refund.created\", \"orderId\": \"order_1\"}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.message", is("Webhook ignored")));
+
+    mockMvc.perform(post("/api/webhooks/payment")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("{\"event\": \"payment.failed\", \"orderId\": \"order_1\", \"reason\": \"declined\"}"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.message", is("Webhook already processed")));
+
+    verify(webhookDeduplicator, times(1)).isProcessed("payment.failed|null|order_1");
+    verify(webhookDeduplicator, times(1)).dropped("endpoint");
+    verify(webhookQueue, never()).enqueue(any(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should apply a JSON batch and return one result per event")
+  void testAppliesJsonBatch() throws Exception {
+    when(webhookBatchProcessor.apply(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("""
+            [
+              { "event": "payment.captured", "paymentId": "pay_1", "orderId": "order_1" },
+              { "event": "payment.failed", "orderId": "order_2", "reason": "declined" }
+            ]
+            """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(2)))
+        .andExpect(jsonPath("$[1].index", is(1)))
+        .andExpect(jsonPath("$[1].orderId", is("order_2")))
+        .andExpect(jsonPath("$[1].status", is("APPLIED")));
+
+    verify(webhookBatchProcessor, times(1)).apply(argThat(events -> events.size() == 2
+        && "declined".equals(events.get(1).reason())));
+    verify(webhookQueue, never()).enqueue(any(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should read an NDJSON batch line by line and pass malformed lines on as invalid")
+  void testAppliesNdjsonBatch() throws Exception {
+    when(webhookBatchProcessor.getMaxEvents()).thenReturn(10);
+    when(webhookBatchProcessor.apply(anyList())).thenAnswer(invocation -> results(invocation.getArgument(0)));
+
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .content("""
+            {"event":"payment.captured","paymentId":"pay_1","orderId":"order_1"}
+
+            {"event":"payment.captured",
+            {"event":"order.paid","paymentId":"pay_2","orderId":"order_2","extra":1}
+            """))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(3)))
+        .andExpect(jsonPath("$[1].status", is("INVALID")))
+        .andExpect(jsonPath("$[2].orderId", is("order_2")));
+  }
+
+  @Test
+  @DisplayName("Should reject a batch over the size limit")
+  void testRejectsOversizedBatch() throws Exception {
+    when(webhookBatchProcessor.apply(anyList())).thenThrow(new IllegalArgumentException("Batch exceeds 1 events"));
+
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_JSON)
+        .content("[{\"event\": \"payment.captured\", \"orderId\": \"order_1\"}]"))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", is("Batch exceeds 1 events")));
+  }
+
+  @Test
+  @DisplayName("Should stop reading an NDJSON batch at the first event over the size limit")
+  void testRejectsOversizedNdjsonBatch() throws Exception {
+    when(webhookBatchProcessor.getMaxEvents()).thenReturn(2);
+
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .content("""
+            {"event":"payment.captured","orderId":"order_1"}
+
+            {"event":"payment.captured","orderId":"order_2"}
+            {"event":"payment.captured","orderId":"order_3"}
+            """))
+        .andExpect(status().isBadRequest())
+        .andExpect(jsonPath("$.message", is("Batch exceeds 2 events")));
+
+    verify(webhookBatchProcessor, never()).apply(anyList());
+  }
+
+  private static List<WebhookEventResult> results(List<PaymentWebhookRequest> events) {
+    List<WebhookEventResult> results = new ArrayList<>();
+    for (int i = 0; i < events.size(); i++) {
+      PaymentWebhookRequest event = events.get(i);
+      results.add(event == null ? new WebhookEventResult(i, null, null, WebhookEventResult.INVALID, "Malformed event")
+          : new WebhookEventResult(i, event.event(), event.orderId(), WebhookEventResult.APPLIED, null));
+    }
+    return results;
+  }
+}
@@ -1,6 +1,8 @@
 package com.pushkar.ecommersepayment.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.dto.CursorPage;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Product;
 import com.pushkar.ecommersepayment.service.ProductService;
 import org.junit.jupiter.api.BeforeEach;
@@ -11,10 +13,13 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
+import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -41,7 +46,7 @@ class ProductControllerTest {
     testProduct.setId("prod123");
     testProduct.setName("Laptop");
     testProduct.setDescription("Gaming Laptop");
-    testProduct.setPrice(50000.0);
+    testProduct.setPrice(Money.inr(50_000_00));
     testProduct.setStock(10);
   }
 
@@ -56,39 +61,60 @@ class ProductControllerTest {
         .andExpect(status().isCreated())
         .andExpect(jsonPath("$.id", is("prod123")))
         .andExpect(jsonPath("$.name", is("Laptop")))
-        .andExpect(jsonPath("$.price", is(50000.0)))
+        .andExpect(jsonPath("$.price.amount", is(5000000)))
         .andExpect(jsonPath("$.stock", is(10)));
 
     verify(productService, times(1)).createProduct(any(Product.class));
   }
 
   @Test
-  @DisplayName("Should get all products")
-  void testGetAllProducts() throws Exception {
+  @DisplayName("Should get a page of products")
+  void testGetProducts() throws Exception {
     Product product2 = new Product();
     product2.setId("prod456");
     product2.setName("Mouse");
-    product2.setPrice(1000.0);
+    product2.setPrice(Money.inr(1_000_00));
 
-    when(productService.getAllProducts()).thenReturn(Arrays.asList(testProduct, product2));
+    when(productService.getProducts(null, 2)).thenReturn(new CursorPage<>(Arrays.asList(testProduct, product2), "c2"));
 
-    mockMvc.perform(get("/api/products"))
+    mockMvc.perform(get("/api/products").param("limit", "2"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", hasSize(2)))
         .andExpect(jsonPath("$[0].name", is("Laptop")))
-        .andExpect(jsonPath("$[1].name", is("Mouse")));
+        .andExpect(jsonPath("$[1].name", is("Mouse")))
+        .andExpect(header().string("X-Next-Cursor", "c2"));
+  }
+
+  @Test
+  @DisplayName("Should export products as NDJSON")
+  void testExportProducts() throws Exception {
+    Product product2 = new Product("prod456", "Mouse", "Wireless Mouse", Money.inr(1_000_00), 50);
+    when(productService.streamProducts()).thenReturn(Stream.of(testProduct, product2));
+
+    MvcResult result = mockMvc.perform(get("/api/products/export"))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+
+    String body = mockMvc.perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+        .andReturn().getResponse().getContentAsString();
+    String[] lines = body.trim().split("\n");
+    assertEquals(2, lines.length);
+    assertEquals("Mouse", objectMapper.readValue(lines[1], Product.class).getName());
   }
 
   @Test
   @DisplayName("Should search products by name")
   void testSearchProducts() throws Exception {
-    when(productService.searchProducts("laptop"))
-        .thenReturn(Arrays.asList(testProduct));
+    when(productService.searchProducts("laptop", null, null))
+        .thenReturn(new CursorPage<>(Arrays.asList(testProduct), "next"));
 
     mockMvc.perform(get("/api/products/search")
         .param("q", "laptop"))
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", hasSize(1)))
-        .andExpect(jsonPath("$[0].name", containsStringIgnoringCase("laptop")));
+        .andExpect(jsonPath("$[0].name", containsStringIgnoringCase("laptop")))
+        .andExpect(header().string("X-Next-Cursor", "next"));
   }
 }
@@ -0,0 +1,79 @@
+package com.pushkar.ecommersepayment.controller;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.client.PaymentServiceClient;
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.service.ReactiveCheckoutService;
+import com.pushkar.ecommersepayment.webhook.WebhookBatchProcessor;
+import com.pushkar.ecommersepayment.webhook.WebhookDeduplicator;
+import com.pushkar.ecommersepayment.webhook.WebhookQueue;
+
+import reactor.test.StepVerifier;
+
+@DisplayName("Reactive Checkout Controller Tests")
+class ReactiveCheckoutControllerTest {
+
+  private WebhookQueue webhookQueue;
+  private WebhookDeduplicator webhookDeduplicator;
+  private ReactiveCheckoutController controller;
+
+  @BeforeEach
+  void setUp() {
+    webhookQueue = mock(WebhookQueue.class);
+    webhookDeduplicator = mock(WebhookDeduplicator.class);
+    PaymentServiceClient client = new PaymentServiceClient(webhookQueue, webhookDeduplicator,
+        mock(WebhookBatchProcessor.class), new ObjectMapper());
+    controller = new ReactiveCheckoutController(mock(ReactiveCheckoutService.class), client);
+  }
+
+  @Test
+  @DisplayName("Should queue the webhook instead of applying it inline")
+  void testQueuesWebhook() {
+    StepVerifier.create(controller.handlePaymentWebhook(
+            new PaymentWebhookRequest(WebhookTask.PAYMENT_CAPTURED, "pay_1", "order_1", null)))
+        .assertNext(response -> {
+          assertEquals(200, response.getStatusCode().value());
+          assertEquals(Map.of("message", "Webhook accepted"), response.getBody());
+        })
+        .verifyComplete();
+    verify(webhookQueue, times(1)).enqueue(any(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should drop a redelivery of an applied webhook")
+  void testDropsDuplicate() {
+    when(webhookDeduplicator.isProcessed(anyString())).thenReturn(true);
+
+    StepVerifier.create(controller.handlePaymentWebhook(
+            new PaymentWebhookRequest(WebhookTask.PAYMENT_FAILED, null, "order_1", "declined")))
+        .assertNext(response -> assertEquals(Map.of("message", "Webhook already processed"), response.getBody()))
+        .verifyComplete();
+    verify(webhookQueue, never()).enqueue(any(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should answer 500 when the webhook could not be queued, so the gateway redelivers it")
+  void testQueueFailure() {
+    when(webhookQueue.enqueue(any(WebhookTask.class))).thenThrow(new IllegalStateException("mongo down"));
+
+    StepVerifier.create(controller.handlePaymentWebhook(
+            new PaymentWebhookRequest(WebhookTask.PAYMENT_CAPTURED, "pay_1", "order_1", null)))
+        .assertNext(response -> assertEquals(500, response.getStatusCode().value()))
+        .verifyComplete();
+  }
+}
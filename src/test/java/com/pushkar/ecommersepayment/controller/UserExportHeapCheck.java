@@ -0,0 +1,122 @@
+package com.pushkar.ecommersepayment.controller;
+
+import com.pushkar.ecommersepayment.model.User;
+import com.pushkar.ecommersepayment.repository.UserRepository;
+import com.pushkar.ecommersepayment.service.UserService;
+import jakarta.servlet.Filter;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.PrintWriter;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Exports a generated stand-in user collection through the real
+ * {@code GET /api/users/export} mapping with MockMvc, and counts the NDJSON
+ * lines written instead of keeping them: MockMvc would otherwise buffer the
+ * whole body. Launched by {@link UserExportHeapTest} in a JVM with a small
+ * fixed heap.
+ */
+public class UserExportHeapCheck {
+
+  public static void main(String[] args) throws Exception {
+    int users = Integer.parseInt(args[0]);
+    CountingOutputStream out = new CountingOutputStream();
+    Filter countingFilter = (request, response, chain) ->
+        chain.doFilter(request, new CountingResponse((HttpServletResponse) response, out));
+    MockMvc mockMvc = MockMvcBuilders
+        .standaloneSetup(new UserController(new UserService(standInRepository(users))))
+        .addFilters(countingFilter)
+        .build();
+
+    MvcResult result = mockMvc.perform(get("/api/users/export")
+        .param("fields", "username", "email")
+        .accept(MediaType.APPLICATION_NDJSON))
+        .andReturn();
+    // Completes once the last user has been written
+    result.getAsyncResult(TimeUnit.MINUTES.toMillis(2));
+
+    System.out.printf("status=%d exported=%d bytes=%d maxHeap=%dMB%n", result.getResponse().getStatus(),
+        out.lines, out.bytes, Runtime.getRuntime().maxMemory() >> 20);
+    System.exit(result.getResponse().getStatus() == 200 && out.lines == users ? 0 : 1);
+  }
+
+  /**
+   * A repository whose cursor yields {@code users} generated users lazily,
+   * the way a MongoDB cursor hands out one batch at a time.
+   */
+  private static UserRepository standInRepository(int users) {
+    return (UserRepository) Proxy.newProxyInstance(UserRepository.class.getClassLoader(),
+        new Class<?>[] {UserRepository.class}, (proxy, method, methodArgs) -> {
+          if (method.getName().equals("streamAll")) {
+            return IntStream.range(0, users).mapToObj(i ->
+                new User(String.format("%024x", i), "user_" + i, "user_" + i + "@example.com", null));
+          }
+          throw new UnsupportedOperationException(method.getName());
+        });
+  }
+
+  private static class CountingResponse extends HttpServletResponseWrapper {
+
+    private final CountingOutputStream out;
+
+    CountingResponse(HttpServletResponse response, CountingOutputStream out) {
+      super(response);
+      this.out = out;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+      return out;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+      return new PrintWriter(out, true, StandardCharsets.UTF_8);
+    }
+  }
+
+  private static class CountingOutputStream extends ServletOutputStream {
+
+    private volatile long bytes;
+    private volatile long lines;
+
+    @Override
+    public synchronized void write(int b) {
+      bytes++;
+      if (b == '\n') {
+        lines++;
+      }
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      bytes += len;
+      for (int i = off; i < off + len; i++) {
+        if (b[i] == '\n') {
+          lines++;
+        }
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+    }
+  }
+}
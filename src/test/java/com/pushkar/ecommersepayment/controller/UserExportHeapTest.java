@@ -0,0 +1,37 @@
+package com.pushkar.ecommersepayment.controller;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DisplayName("User Export Heap Test")
+class UserExportHeapTest {
+
+  private static final int USERS = 1_000_000;
+
+  @Test
+  @DisplayName("Should export 1M users with a 32 MB heap")
+  void testExportOneMillionUsersInSmallHeap() throws Exception {
+    // Materializing 1M users takes well over 100 MB, so this only passes if
+    // the export streams
+    Process process = new ProcessBuilder(
+        Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+        "-Xmx32m",
+        "-cp", System.getProperty("java.class.path"),
+        UserExportHeapCheck.class.getName(),
+        String.valueOf(USERS))
+        .redirectErrorStream(true)
+        .start();
+
+    String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+    assertTrue(process.waitFor(2, TimeUnit.MINUTES), output);
+    assertEquals(0, process.exitValue(), output);
+    assertTrue(output.contains("exported=" + USERS), output);
+  }
+}
@@ -0,0 +1,263 @@
+package com.pushkar.ecommersepayment.idempotency;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.result.DeleteResult;
+import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.model.IdempotencyRecord;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+
+@DisplayName("Idempotency Store Tests")
+class IdempotencyStoreTest {
+
+  private MongoTemplate mongoTemplate;
+  private ObjectMapper objectMapper;
+  private IdempotencyStore store;
+  private CreateOrderRequest request;
+
+  @BeforeEach
+  void setUp() {
+    mongoTemplate = mock(MongoTemplate.class);
+    objectMapper = new ObjectMapper().findAndRegisterModules();
+    store = new IdempotencyStore(mongoTemplate, objectMapper, Duration.ofHours(24), Duration.ofSeconds(30), 1000);
+    request = new CreateOrderRequest();
+    request.setUserId("user123");
+    when(mongoTemplate.remove(any(Query.class), eq(IdempotencyRecord.class))).thenReturn(DeleteResult.acknowledged(1));
+  }
+
+  @Test
+  @DisplayName("Should run the action once for the same key fired from many threads")
+  void testConcurrentSameKey() throws Exception {
+    // Arrange
+    int threads = 64;
+    AtomicInteger executions = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<ResponseEntity<Order>>> futures = new ArrayList<>();
+
+    // Act
+    for (int i = 0; i < threads; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        return store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> {
+          executions.incrementAndGet();
+          sleep(50);
+          return order("order123");
+        });
+      }));
+    }
+    start.countDown();
+    List<ResponseEntity<Order>> responses = new ArrayList<>();
+    for (Future<ResponseEntity<Order>> future : futures) {
+      responses.add(future.get(10, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+
+    // Assert
+    assertEquals(1, executions.get());
+    verify(mongoTemplate, times(1)).insert(any(IdempotencyRecord.class));
+    verify(mongoTemplate, times(1)).save(any(IdempotencyRecord.class));
+    for (ResponseEntity<Order> response : responses) {
+      assertEquals(HttpStatus.CREATED, response.getStatusCode());
+      assertEquals("order123", response.getBody().getId());
+      assertEquals(Money.inr(100_000_00), response.getBody().getTotalAmount());
+    }
+    assertEquals(threads - 1, responses.stream()
+        .filter(response -> response.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER))
+        .count());
+  }
+
+  @Test
+  @DisplayName("Should replay a response stored by another instance without running the action")
+  void testReplayFromDatabase() {
+    // Arrange
+    IdempotencyStore otherInstance = new IdempotencyStore(mongoTemplate, objectMapper, Duration.ofHours(24),
+        Duration.ofSeconds(30), 1000);
+    otherInstance.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> order("order123"));
+    ArgumentCaptor<IdempotencyRecord> stored = ArgumentCaptor.forClass(IdempotencyRecord.class);
+    verify(mongoTemplate).save(stored.capture());
+    when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+    when(mongoTemplate.findById("orders:key-1", IdempotencyRecord.class)).thenReturn(stored.getValue());
+
+    // Act
+    ResponseEntity<Order> response = store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class,
+        () -> {
+          throw new AssertionError("must not run");
+        });
+    store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> {
+      throw new AssertionError("must not run");
+    });
+
+    // Assert
+    assertEquals(HttpStatus.CREATED, response.getStatusCode());
+    assertEquals("order123", response.getBody().getId());
+    verify(mongoTemplate, times(1)).findById("orders:key-1", IdempotencyRecord.class);
+  }
+
+  @Test
+  @DisplayName("Should reject a key reused with a different request")
+  void testKeyReusedWithDifferentRequest() {
+    // Arrange
+    store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> order("order123"));
+    CreateOrderRequest other = new CreateOrderRequest();
+    other.setUserId("user456");
+
+    // Act & Assert
+    IdempotencyKeyException exception = assertThrows(IdempotencyKeyException.class,
+        () -> store.execute("orders", "key-1", other, HttpStatus.CREATED, Order.class, () -> order("order456")));
+    assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, exception.getStatus());
+  }
+
+  @Test
+  @DisplayName("Should answer 409 while another instance holds the key")
+  void testInProgressElsewhere() {
+    // Arrange
+    when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+    Instant now = Instant.now();
+    when(mongoTemplate.findById("orders:key-1", IdempotencyRecord.class)).thenReturn(new IdempotencyRecord(
+        "orders:key-1", "hash", IdempotencyRecord.IN_PROGRESS, 0, null, now, "claim-1", now, now.plusSeconds(60)));
+
+    // Act & Assert
+    IdempotencyKeyException exception = assertThrows(IdempotencyKeyException.class,
+        () -> store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> order("order123")));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+  }
+
+  @Test
+  @DisplayName("Should not take over a claim that is old but still renewed")
+  void testLongRunningClaimIsKept() {
+    // Arrange
+    when(mongoTemplate.insert(any(IdempotencyRecord.class))).thenThrow(new DuplicateKeyException("dup"));
+    Instant now = Instant.now();
+    when(mongoTemplate.findById("orders:key-1", IdempotencyRecord.class)).thenReturn(new IdempotencyRecord(
+        "orders:key-1", "hash", IdempotencyRecord.IN_PROGRESS, 0, null, now.minusSeconds(600), "claim-1", now,
+        now.plusSeconds(60)));
+
+    // Act & Assert
+    IdempotencyKeyException exception = assertThrows(IdempotencyKeyException.class,
+        () -> store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> order("order123")));
+    assertEquals(HttpStatus.CONFLICT, exception.getStatus());
+    verify(mongoTemplate, never()).remove(any(Query.class), eq(IdempotencyRecord.class));
+  }
+
+  @Test
+  @DisplayName("Should take over a claim whose heartbeat stopped")
+  void testAbandonedClaimTakenOver() {
+    // Arrange
+    when(mongoTemplate.insert(any(IdempotencyRecord.class)))
+        .thenThrow(new DuplicateKeyException("dup"))
+        .thenAnswer(invocation -> invocation.getArgument(0));
+    Instant now = Instant.now();
+    when(mongoTemplate.findById("orders:key-1", IdempotencyRecord.class)).thenReturn(new IdempotencyRecord(
+        "orders:key-1", "hash", IdempotencyRecord.IN_PROGRESS, 0, null, now.minusSeconds(600), "claim-1",
+        now.minusSeconds(60), now.plusSeconds(60)));
+
+    // Act
+    ResponseEntity<Order> response = store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class,
+        () -> order("order123"));
+
+    // Assert
+    assertEquals("order123", response.getBody().getId());
+    assertNull(response.getHeaders().get(IdempotencyStore.REPLAYED_HEADER));
+    verify(mongoTemplate, times(2)).insert(any(IdempotencyRecord.class));
+  }
+
+  @Test
+  @DisplayName("Should renew the heartbeat while the request runs")
+  void testHeartbeatRenewed() {
+    // Arrange
+    store = new IdempotencyStore(mongoTemplate, objectMapper, Duration.ofHours(24), Duration.ofMillis(90), 1000);
+
+    // Act
+    store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class, () -> {
+      sleep(200);
+      return order("order123");
+    });
+
+    // Assert
+    verify(mongoTemplate, atLeast(2)).updateFirst(any(Query.class), any(Update.class), eq(IdempotencyRecord.class));
+  }
+
+  @Test
+  @DisplayName("Should release the key when the request fails so a retry runs again")
+  void testFailureReleasesKey() {
+    // Act
+    assertThrows(RuntimeException.class, () -> store.execute("orders", "key-1", request, HttpStatus.CREATED,
+        Order.class, () -> {
+          throw new RuntimeException("Cart is empty");
+        }));
+    ResponseEntity<Order> retried = store.execute("orders", "key-1", request, HttpStatus.CREATED, Order.class,
+        () -> order("order123"));
+
+    // Assert
+    verify(mongoTemplate, times(1)).remove(any(Query.class), eq(IdempotencyRecord.class));
+    assertEquals("order123", retried.getBody().getId());
+    assertNull(retried.getHeaders().get(IdempotencyStore.REPLAYED_HEADER));
+  }
+
+  @Test
+  @DisplayName("Should run every request without a key")
+  void testNoKey() {
+    // Act
+    AtomicInteger executions = new AtomicInteger();
+    for (int i = 0; i < 2; i++) {
+      store.execute("orders", null, request, HttpStatus.CREATED, Order.class,
+          () -> order("order" + executions.incrementAndGet()));
+    }
+
+    // Assert
+    assertEquals(2, executions.get());
+    verify(mongoTemplate, never()).insert(any(IdempotencyRecord.class));
+  }
+
+  private static Order order(String id) {
+    Order order = new Order();
+    order.setId(id);
+    order.setUserId("user123");
+    order.setStatus("CREATED");
+    order.setTotalAmount(Money.inr(100_000_00));
+    order.setCreatedAt(Instant.now());
+    return order;
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
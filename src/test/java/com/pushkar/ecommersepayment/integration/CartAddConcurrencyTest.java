@@ -0,0 +1,115 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.dto.AddToCartRequest;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.service.CartService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test",
+    "cart.storage=items"
+})
+@DisplayName("Add To Cart Concurrency Tests")
+class CartAddConcurrencyTest {
+
+  private static final String USER = "concurrent_cart_user";
+  private static final int ADDS = 500;
+
+  @Autowired
+  private CartService cartService;
+
+  @Autowired
+  private CartRepository cartRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  private String productId;
+
+  @BeforeEach
+  void setUp() {
+    cartRepository.deleteByUserId(USER);
+    productId = productRepository.save(new Product(null, "Concurrent Cart Item", "Cart race", Money.inr(10_00), ADDS))
+        .getId();
+  }
+
+  @AfterEach
+  void tearDown() {
+    cartRepository.deleteByUserId(USER);
+    productRepository.deleteById(productId);
+  }
+
+  @Test
+  @DisplayName("Parallel adds of one product leave one line with every increment")
+  void testNoDuplicatesNoLostIncrements() throws Exception {
+    assertEquals(ADDS, runAdds(ADDS));
+
+    List<CartItem> lines = cartRepository.findByUserId(USER);
+    assertEquals(1, lines.size());
+    assertEquals(ADDS, lines.get(0).getQuantity());
+  }
+
+  @Test
+  @DisplayName("Parallel adds never take a line past the stock")
+  void testLimitHoldsUnderParallelAdds() throws Exception {
+    Product product = productRepository.findById(productId).orElseThrow();
+    product.setStock(50);
+    productRepository.save(product);
+
+    assertEquals(50, runAdds(ADDS));
+
+    List<CartItem> lines = cartRepository.findByUserId(USER);
+    assertEquals(1, lines.size());
+    assertEquals(50, lines.get(0).getQuantity());
+  }
+
+  /**
+   * Fires {@code count} single-unit adds at once and returns how many were
+   * accepted.
+   */
+  private int runAdds(int count) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(64);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger accepted = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < count; i++) {
+      futures.add(executor.submit(() -> {
+        AddToCartRequest request = new AddToCartRequest();
+        request.setUserId(USER);
+        request.setProductId(productId);
+        request.setQuantity(1);
+        start.await();
+        try {
+          cartService.addToCart(request);
+          accepted.incrementAndGet();
+        } catch (RuntimeException e) {
+          // Rejected for insufficient stock
+        }
+        return null;
+      }));
+    }
+
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+    return accepted.get();
+  }
+}
@@ -3,6 +3,7 @@ package com.pushkar.ecommersepayment.integration;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pushkar.ecommersepayment.dto.AddToCartRequest;
 import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Order;
 import com.pushkar.ecommersepayment.model.Product;
 import com.pushkar.ecommersepayment.model.User;
@@ -71,6 +72,10 @@ class EcommerceIntegrationTest {
   @org.junit.jupiter.api.Order(1)
   @DisplayName("1. Create test user")
   void testCreateUser() throws Exception {
+    // Usernames and emails are unique, remove the user left by a previous run
+    userRepository.findByUsername("test_user").ifPresent(userRepository::delete);
+    userRepository.findByEmail("test@example.com").ifPresent(userRepository::delete);
+
     User user = new User();
     user.setUsername("test_user");
     user.setEmail("test@example.com");
@@ -97,7 +102,7 @@ class EcommerceIntegrationTest {
     Product laptop = new Product();
     laptop.setName("Laptop");
     laptop.setDescription("Gaming Laptop");
-    laptop.setPrice(50000.0);
+    laptop.setPrice(Money.inr(50_000_00));
     laptop.setStock(10);
 
     MvcResult result1 = mockMvc.perform(post("/api/products")
@@ -105,7 +110,8 @@ class EcommerceIntegrationTest {
         .content(objectMapper.writeValueAsString(laptop)))
         .andExpect(status().isCreated())
         .andExpect(jsonPath("$.name", is("Laptop")))
-        .andExpect(jsonPath("$.price", is(50000.0)))
+        .andExpect(jsonPath("$.price.amount", is(5000000)))
+        .andExpect(jsonPath("$.price.currency", is("INR")))
         .andExpect(jsonPath("$.stock", is(10)))
         .andReturn();
 
@@ -117,7 +123,7 @@ class EcommerceIntegrationTest {
     Product mouse = new Product();
     mouse.setName("Mouse");
     mouse.setDescription("Wireless Mouse");
-    mouse.setPrice(1000.0);
+    mouse.setPrice(Money.inr(1_000_00));
     mouse.setStock(50);
 
     MvcResult result2 = mockMvc.perform(post("/api/products")
@@ -135,7 +141,7 @@ class EcommerceIntegrationTest {
     Product keyboard = new Product();
     keyboard.setName("Keyboard");
     keyboard.setDescription("Mechanical Keyboard");
-    keyboard.setPrice(3000.0);
+    keyboard.setPrice(Money.inr(3_000_00));
     keyboard.setStock(30);
 
     MvcResult result3 = mockMvc.perform(post("/api/products")
@@ -187,9 +193,11 @@ class EcommerceIntegrationTest {
   void testViewCart() throws Exception {
     mockMvc.perform(get("/api/cart/" + userId))
         .andExpect(status().isOk())
-        .andExpect(jsonPath("$", hasSize(2)))
-        .andExpect(jsonPath("$[0].product.name", notNullValue()))
-        .andExpect(jsonPath("$[0].product.price", notNullValue()));
+        .andExpect(jsonPath("$.items", hasSize(2)))
+        .andExpect(jsonPath("$.items[0].product.name", notNullValue()))
+        .andExpect(jsonPath("$.items[0].product.price", notNullValue()))
+        .andExpect(jsonPath("$.items[0].lineTotal", notNullValue()))
+        .andExpect(jsonPath("$.subtotal.amount", is(10500000))); // 2*50000 + 5*1000 rupees, in paise
   }
 
   @Test
@@ -205,7 +213,7 @@ class EcommerceIntegrationTest {
         .andExpect(status().isCreated())
         .andExpect(jsonPath("$.userId", is(userId)))
         .andExpect(jsonPath("$.status", is("CREATED")))
-        .andExpect(jsonPath("$.totalAmount", is(105000.0))) // 2*50000 + 5*1000
+        .andExpect(jsonPath("$.totalAmount.amount", is(10500000))) // 2*50000 + 5*1000 rupees, in paise
         .andExpect(jsonPath("$.items", hasSize(2)))
         .andReturn();
 
@@ -220,7 +228,8 @@ class EcommerceIntegrationTest {
   void testCartClearedAfterOrder() throws Exception {
     mockMvc.perform(get("/api/cart/" + userId))
         .andExpect(status().isOk())
-        .andExpect(jsonPath("$", hasSize(0)));
+        .andExpect(jsonPath("$.items", hasSize(0)))
+        .andExpect(jsonPath("$.subtotal", nullValue()));
   }
 
   @Test
@@ -270,7 +279,7 @@ class EcommerceIntegrationTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$.id", is(orderId)))
         .andExpect(jsonPath("$.userId", is(userId)))
-        .andExpect(jsonPath("$.totalAmount", is(105000.0)))
+        .andExpect(jsonPath("$.totalAmount.amount", is(10500000)))
         .andExpect(jsonPath("$.items", hasSize(2)));
   }
 
@@ -293,6 +302,12 @@ class EcommerceIntegrationTest {
         .andExpect(status().isOk())
         .andExpect(jsonPath("$", hasSize(greaterThanOrEqualTo(1))))
         .andExpect(jsonPath("$[0].name", containsStringIgnoringCase("laptop")));
+
+    // Every term must match, as with the in-memory index
+    mockMvc.perform(get("/api/products/search")
+        .param("q", "laptop nosuchterm"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$", hasSize(0)));
   }
 
   @Test
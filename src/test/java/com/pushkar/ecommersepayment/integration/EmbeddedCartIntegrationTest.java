@@ -0,0 +1,156 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.cart.EmbeddedCartStore;
+import com.pushkar.ecommersepayment.dto.CartResponse;
+import com.pushkar.ecommersepayment.model.Cart;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.repository.CartDocumentRepository;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test"
+})
+@DisplayName("Embedded Cart Storage Tests")
+class EmbeddedCartIntegrationTest {
+
+  private static final String USER = "embedded_cart_user";
+
+  @Autowired
+  private CartDocumentRepository cartDocumentRepository;
+
+  @Autowired
+  private CartRepository cartRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  private EmbeddedCartStore cartStore;
+  private String laptopId;
+  private String mouseId;
+
+  @BeforeEach
+  void setUp() {
+    cartStore = new EmbeddedCartStore(cartDocumentRepository);
+    cartDocumentRepository.deleteAll();
+    cartRepository.deleteAll();
+    laptopId = productRepository.save(new Product(null, "Cart Laptop", "Embedded cart test", Money.inr(50_000_00), 10))
+        .getId();
+    mouseId = productRepository.save(new Product(null, "Cart Mouse", "Embedded cart test", Money.inr(1_000_00), 100))
+        .getId();
+  }
+
+  @AfterEach
+  void tearDown() {
+    cartDocumentRepository.deleteAll();
+    cartRepository.deleteAll();
+    productRepository.deleteById(laptopId);
+    productRepository.deleteById(mouseId);
+  }
+
+  @Test
+  @DisplayName("Adding pushes a line once and then increments it")
+  void testAddPushesThenIncrements() {
+    CartItem first = cartStore.addQuantity(USER, laptopId, 2, 10).orElseThrow();
+    CartItem second = cartStore.addQuantity(USER, laptopId, 3, 10).orElseThrow();
+    cartStore.addQuantity(USER, mouseId, 5, 100).orElseThrow();
+
+    assertEquals(first.getId(), second.getId());
+    assertEquals(5, second.getQuantity());
+    Cart cart = cartDocumentRepository.findById(USER).orElseThrow();
+    assertEquals(2, cart.getLines().size());
+    assertNotNull(cart.getUpdatedAt());
+  }
+
+  @Test
+  @DisplayName("A line never grows past the limit")
+  void testAddRespectsLimit() {
+    cartStore.addQuantity(USER, laptopId, 8, 10).orElseThrow();
+
+    assertEquals(Optional.empty(), cartStore.addQuantity(USER, laptopId, 3, 10));
+    assertEquals(Optional.empty(), cartStore.addQuantity(USER, mouseId, 101, 100));
+    assertEquals(8, cartStore.findLines(USER).get(0).getQuantity());
+    assertEquals(1, cartStore.findLines(USER).size());
+  }
+
+  @Test
+  @DisplayName("Concurrent adds to the same line are all counted")
+  void testConcurrentAdds() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        return cartStore.addQuantity(USER, mouseId, 1, 100).orElseThrow();
+      }));
+    }
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    List<CartItem> lines = cartStore.findLines(USER);
+    assertEquals(1, lines.size());
+    assertEquals(50, lines.get(0).getQuantity());
+  }
+
+  @Test
+  @DisplayName("View joins products and totals lines")
+  void testView() {
+    cartStore.addQuantity(USER, laptopId, 2, 10);
+    cartStore.addQuantity(USER, mouseId, 5, 100);
+
+    CartResponse cart = cartStore.view(USER);
+
+    assertEquals(2, cart.getItems().size());
+    assertEquals("Cart Laptop", cart.getItems().get(0).getProduct().getName());
+    assertEquals(Money.inr(100_000_00), cart.getItems().get(0).getLineTotal());
+    assertEquals(Money.inr(105_000_00), cart.getSubtotal());
+    assertNull(cartStore.view("nobody").getSubtotal());
+  }
+
+  @Test
+  @DisplayName("Removing a line and clearing the cart")
+  void testRemoveAndClear() {
+    CartItem laptop = cartStore.addQuantity(USER, laptopId, 1, 10).orElseThrow();
+    cartStore.addQuantity(USER, mouseId, 1, 100);
+
+    cartStore.removeLine(laptop.getId());
+    assertEquals(List.of(mouseId), cartStore.findLines(USER).stream().map(CartItem::getProductId).toList());
+
+    cartStore.clear(USER);
+    assertTrue(cartStore.findLines(USER).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Migration folds cart_items into one cart per user and can be re-run")
+  void testMigrateFromCartItems() {
+    cartRepository.save(new CartItem(null, USER, laptopId, 2));
+    cartRepository.save(new CartItem(null, USER, mouseId, 5));
+    cartRepository.save(new CartItem(null, "other_user", mouseId, 1));
+
+    assertEquals(2, cartDocumentRepository.migrateFromCartItems());
+    assertEquals(2, cartDocumentRepository.migrateFromCartItems());
+
+    assertEquals(Money.inr(105_000_00), cartStore.view(USER).getSubtotal());
+    CartItem migrated = cartStore.addQuantity(USER, laptopId, 1, 10).orElseThrow();
+    assertEquals(3, migrated.getQuantity());
+    assertEquals(1, cartStore.findLines("other_user").size());
+  }
+}
@@ -0,0 +1,164 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pushkar.ecommersepayment.dto.AddToCartRequest;
+import com.pushkar.ecommersepayment.idempotency.IdempotencyStore;
+import com.pushkar.ecommersepayment.model.IdempotencyRecord;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.repository.PaymentRepository;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.service.CartService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test",
+    "payment.mock.enabled=false"
+})
+@DisplayName("Idempotency Key Concurrency Tests")
+class IdempotencyConcurrencyTest {
+
+  private static final String USER = "idempotent_user";
+  private static final int REQUESTS = 64;
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private CartService cartService;
+
+  @Autowired
+  private CartRepository cartRepository;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  @Autowired
+  private PaymentRepository paymentRepository;
+
+  private String productId;
+
+  @BeforeEach
+  void setUp() {
+    cartRepository.deleteByUserId(USER);
+    mongoTemplate.remove(Query.query(Criteria.where("userId").is(USER)), Order.class);
+    mongoTemplate.dropCollection(IdempotencyRecord.class);
+    productId = productRepository.save(new Product(null, "Idempotent Item", "Retried checkout", Money.inr(500_00), 10))
+        .getId();
+
+    AddToCartRequest add = new AddToCartRequest();
+    add.setUserId(USER);
+    add.setProductId(productId);
+    add.setQuantity(2);
+    cartService.addToCart(add);
+  }
+
+  @AfterEach
+  void tearDown() {
+    cartRepository.deleteByUserId(USER);
+    mongoTemplate.findAll(Order.class).stream()
+        .filter(order -> USER.equals(order.getUserId()))
+        .forEach(order -> paymentRepository.findByOrderId(order.getId()).ifPresent(paymentRepository::delete));
+    mongoTemplate.remove(Query.query(Criteria.where("userId").is(USER)), Order.class);
+    productRepository.deleteById(productId);
+  }
+
+  @Test
+  @DisplayName("The same order request fired in parallel creates one order and reserves stock once")
+  void testParallelOrderRetries() throws Exception {
+    String key = UUID.randomUUID().toString();
+    List<MockHttpServletResponse> responses = fire("/api/orders", key, "{\"userId\":\"" + USER + "\"}");
+
+    Set<String> orderIds = new HashSet<>();
+    for (MockHttpServletResponse response : responses) {
+      assertEquals(201, response.getStatus(), response.getContentAsString());
+      orderIds.add(objectMapper.readTree(response.getContentAsString()).get("id").asText());
+    }
+    assertEquals(1, orderIds.size());
+    assertEquals(1, mongoTemplate.count(Query.query(Criteria.where("userId").is(USER)), Order.class));
+    assertEquals(8, productRepository.findById(productId).orElseThrow().getStock());
+
+    // Later retries are answered from the stored response
+    MockHttpServletResponse retry = fire("/api/orders", key, "{\"userId\":\"" + USER + "\"}").get(0);
+    assertEquals("true", retry.getHeader(IdempotencyStore.REPLAYED_HEADER));
+  }
+
+  @Test
+  @DisplayName("The same payment request fired in parallel creates one payment")
+  void testParallelPaymentRetries() throws Exception {
+    MockHttpServletResponse created = fire("/api/orders", UUID.randomUUID().toString(),
+        "{\"userId\":\"" + USER + "\"}").get(0);
+    JsonNode order = objectMapper.readTree(created.getContentAsString());
+    String body = "{\"orderId\":\"" + order.get("id").asText() + "\",\"amount\":"
+        + order.get("totalAmount").toString() + "}";
+
+    List<MockHttpServletResponse> responses = fire("/api/payments/create", UUID.randomUUID().toString(), body);
+
+    Set<String> paymentIds = new HashSet<>();
+    for (MockHttpServletResponse response : responses) {
+      assertEquals(201, response.getStatus(), response.getContentAsString());
+      paymentIds.add(objectMapper.readTree(response.getContentAsString()).get("id").asText());
+    }
+    assertEquals(1, paymentIds.size());
+    assertTrue(paymentRepository.findByOrderId(order.get("id").asText()).isPresent());
+  }
+
+  /**
+   * Sends {@link #REQUESTS} copies of the request with the same key at once.
+   */
+  private List<MockHttpServletResponse> fire(String path, String key, String body) throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(REQUESTS);
+    CountDownLatch start = new CountDownLatch(1);
+    List<Future<MockHttpServletResponse>> futures = new ArrayList<>();
+    for (int i = 0; i < REQUESTS; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        return mockMvc.perform(post(path)
+            .header(IdempotencyStore.HEADER, key)
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(body))
+            .andReturn()
+            .getResponse();
+      }));
+    }
+    start.countDown();
+    List<MockHttpServletResponse> responses = new ArrayList<>();
+    for (Future<MockHttpServletResponse> future : futures) {
+      responses.add(future.get(30, TimeUnit.SECONDS));
+    }
+    executor.shutdown();
+    return responses;
+  }
+}
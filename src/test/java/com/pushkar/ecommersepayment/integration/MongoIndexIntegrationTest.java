@@ -0,0 +1,67 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.config.MongoIndexInitializer;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.User;
+import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.repository.UserRepository;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test"
+})
+@DisplayName("MongoDB Index Tests")
+class MongoIndexIntegrationTest {
+
+  @Autowired
+  private MongoIndexInitializer indexInitializer;
+
+  @Autowired
+  private CartRepository cartRepository;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @BeforeEach
+  void setUp() {
+    cartRepository.deleteByUserId("index_user");
+    userRepository.findByUsername("index_user").ifPresent(userRepository::delete);
+  }
+
+  @AfterEach
+  void tearDown() {
+    setUp();
+  }
+
+  @Test
+  @DisplayName("Every repository finder should be filtered and sorted by an index")
+  void testNoFinderResolvesToCollectionScan() {
+    assertTrue(indexInitializer.findUnindexedFinders().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should reject a second cart line for the same user and product")
+  void testCartLineIsUnique() {
+    cartRepository.save(new CartItem(null, "index_user", "prod1", 1));
+
+    assertThrows(DuplicateKeyException.class,
+        () -> cartRepository.save(new CartItem(null, "index_user", "prod1", 2)));
+  }
+
+  @Test
+  @DisplayName("Should reject a duplicate username")
+  void testUsernameIsUnique() {
+    userRepository.save(new User(null, "index_user", "index1@example.com", "customer"));
+
+    assertThrows(DuplicateKeyException.class,
+        () -> userRepository.save(new User(null, "index_user", "index2@example.com", "customer")));
+  }
+}
@@ -0,0 +1,133 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.service.ProductService;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test"
+})
+@DisplayName("Stock Reservation Concurrency Tests")
+class StockReservationConcurrencyTest {
+
+  private static final int INITIAL_STOCK = 50;
+  private static final int CHECKOUTS = 500;
+
+  @Autowired
+  private ProductService productService;
+
+  @Autowired
+  private ProductRepository productRepository;
+
+  private String productId;
+  private String plentifulProductId;
+
+  @BeforeEach
+  void setUp() {
+    Product product = new Product(null, "Flash Sale Item", "Limited stock", Money.inr(999_00), INITIAL_STOCK);
+    productId = productRepository.save(product).getId();
+    Product plentiful = new Product(null, "Gift Wrap", "Plenty of stock", Money.inr(10_00), CHECKOUTS * 2);
+    plentifulProductId = productRepository.save(plentiful).getId();
+  }
+
+  @AfterEach
+  void tearDown() {
+    productRepository.deleteById(productId);
+    productRepository.deleteById(plentifulProductId);
+  }
+
+  @Test
+  @DisplayName("Parallel checkouts never oversell a hot product")
+  void testNoOversellUnderParallelCheckouts() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(64);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger reserved = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+
+    for (int i = 0; i < CHECKOUTS; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        if (productService.reserveStock(productId, 1)) {
+          reserved.incrementAndGet();
+        }
+        return null;
+      }));
+    }
+
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertEquals(INITIAL_STOCK, reserved.get());
+    assertEquals(0, productRepository.findById(productId).orElseThrow().getStock());
+  }
+
+  @Test
+  @DisplayName("Parallel bulk checkouts never oversell and compensate failed carts")
+  void testNoOversellUnderParallelBulkCheckouts() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(64);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger reserved = new AtomicInteger();
+    List<Future<?>> futures = new ArrayList<>();
+    List<StockChange> cart = List.of(
+        new StockChange(plentifulProductId, 1),
+        new StockChange(productId, 1));
+
+    for (int i = 0; i < CHECKOUTS; i++) {
+      futures.add(executor.submit(() -> {
+        start.await();
+        if (productService.reserveStock(cart).isEmpty()) {
+          reserved.incrementAndGet();
+        }
+        return null;
+      }));
+    }
+
+    start.countDown();
+    for (Future<?> future : futures) {
+      future.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    assertEquals(INITIAL_STOCK, reserved.get());
+    assertEquals(0, productRepository.findById(productId).orElseThrow().getStock());
+    // Gift wrap taken by failed carts must have been put back
+    assertEquals(CHECKOUTS * 2 - INITIAL_STOCK,
+        productRepository.findById(plentifulProductId).orElseThrow().getStock());
+  }
+
+  @Test
+  @DisplayName("A product deleted mid-checkout fails its line without creating a stub")
+  void testDeletedProductInBulk() {
+    String deletedId = productRepository.save(
+        new Product(null, "Discontinued", null, Money.inr(5_00), 10)).getId();
+    productRepository.deleteById(deletedId);
+
+    Optional<StockChange> failed = productService.reserveStock(List.of(
+        new StockChange(plentifulProductId, 1),
+        new StockChange(deletedId, 1)));
+
+    assertEquals(deletedId, failed.orElseThrow().productId());
+    assertFalse(productRepository.existsById(deletedId));
+    // The applied line was released again
+    assertEquals(CHECKOUTS * 2, productRepository.findById(plentifulProductId).orElseThrow().getStock());
+  }
+}
@@ -0,0 +1,133 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.ProcessedWebhook;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Reconciles a bundle of webhooks through the NDJSON batch endpoint: every
+ * payment gets a failure followed by a capture, so the last event must win
+ * and both must land in the outbox. Replaying the bundle must change
+ * nothing.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test",
+    "payment.mock.enabled=false",
+    "outbox.dispatcher.enabled=false",
+    "webhook.batch.chunk-size=1000"
+})
+@DisplayName("Webhook Batch Tests")
+class WebhookBatchTest {
+
+  private static final int PAYMENTS = 5_000;
+  private static final String PREFIX = "batch_order_";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @BeforeEach
+  void setUp() {
+    cleanUp();
+    List<Order> orders = new ArrayList<>();
+    for (int i = 0; i < PAYMENTS; i++) {
+      Order order = new Order();
+      order.setUserId("batch_user");
+      order.setStatus("CREATED");
+      order.setTotalAmount(Money.inr(100_00));
+      order.setCreatedAt(Instant.now());
+      orders.add(order);
+    }
+    List<Payment> payments = new ArrayList<>();
+    int i = 0;
+    for (Order order : mongoTemplate.insertAll(orders)) {
+      Payment payment = new Payment();
+      payment.setOrderId(order.getId());
+      payment.setAmount(Money.inr(100_00));
+      payment.setStatus("PENDING");
+      payment.setRazorpayOrderId(PREFIX + i++);
+      payment.setCreatedAt(Instant.now());
+      payments.add(payment);
+    }
+    mongoTemplate.insertAll(payments);
+  }
+
+  @AfterEach
+  void tearDown() {
+    cleanUp();
+  }
+
+  @Test
+  @DisplayName("Should apply a bundle of events per payment in order, once")
+  void testBatch() throws Exception {
+    // Arrange
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < PAYMENTS; i++) {
+      body.append("{\"event\":\"payment.failed\",\"orderId\":\"").append(PREFIX).append(i)
+          .append("\",\"reason\":\"declined\"}\n");
+      body.append("{\"event\":\"payment.captured\",\"paymentId\":\"pay_").append(i)
+          .append("\",\"orderId\":\"").append(PREFIX).append(i).append("\"}\n");
+    }
+    body.append("{\"event\":\"payment.captured\",\"orderId\":\"").append(PREFIX).append("missing\"}\n");
+
+    // Act
+    long start = System.nanoTime();
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .content(body.toString()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(2 * PAYMENTS + 1)))
+        .andExpect(jsonPath("$[0].status", is("APPLIED")))
+        .andExpect(jsonPath("$[" + 2 * PAYMENTS + "].status", is("NOT_FOUND")));
+    System.out.printf("[webhook batch %,d] applied in %d ms%n", 2 * PAYMENTS + 1,
+        (System.nanoTime() - start) / 1_000_000);
+
+    // Replay: everything is a duplicate now
+    mockMvc.perform(post("/api/webhooks/payment/batch")
+        .contentType(MediaType.APPLICATION_NDJSON)
+        .content(body.toString()))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$[0].status", is("DUPLICATE")))
+        .andExpect(jsonPath("$[1].status", is("DUPLICATE")));
+
+    // Assert
+    for (Payment payment : mongoTemplate.find(
+        Query.query(Criteria.where("razorpayOrderId").regex("^" + PREFIX)), Payment.class)) {
+      assertEquals("SUCCESS", payment.getStatus());
+      assertEquals(List.of(OutboxEvent.PAYMENT_FAILED, OutboxEvent.PAYMENT_SUCCEEDED),
+          payment.getOutbox().stream().map(OutboxEvent::getType).toList());
+      assertEquals("PAID", mongoTemplate.findById(payment.getOrderId(), Order.class).getStatus());
+    }
+  }
+
+  private void cleanUp() {
+    mongoTemplate.remove(Query.query(Criteria.where("_id").regex(PREFIX)), ProcessedWebhook.class);
+    mongoTemplate.remove(Query.query(Criteria.where("razorpayOrderId").regex("^" + PREFIX)), Payment.class);
+    mongoTemplate.remove(Query.query(Criteria.where("userId").is("batch_user")), Order.class);
+  }
+}
@@ -0,0 +1,158 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.ProcessedWebhook;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.webhook.WebhookQueue;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Delivers a burst of webhooks, several per order, from many threads at
+ * once. Every request must be acknowledged before its webhook is applied,
+ * and once the workers have drained the queue each order must reflect the
+ * last webhook it received.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test",
+    "payment.mock.enabled=false",
+    "webhook.queue.poll-interval=20ms"
+})
+@DisplayName("Webhook Queue Burst Tests")
+class WebhookBurstTest {
+
+  private static final int WEBHOOKS = 20_000;
+  private static final int ORDERS = 5_000;
+  private static final int THREADS = 32;
+  private static final String PREFIX = "burst_order_";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @BeforeEach
+  void setUp() {
+    cleanUp();
+    List<Order> orders = new ArrayList<>(ORDERS);
+    for (int i = 0; i < ORDERS; i++) {
+      Order order = new Order();
+      order.setUserId("burst_user");
+      order.setStatus("CREATED");
+      order.setTotalAmount(Money.inr(100_00));
+      order.setCreatedAt(Instant.now());
+      orders.add(order);
+    }
+    mongoTemplate.bulkOps(BulkMode.UNORDERED, Order.class).insert(orders).execute();
+
+    List<Payment> payments = new ArrayList<>(ORDERS);
+    for (int i = 0; i < ORDERS; i++) {
+      Payment payment = new Payment();
+      payment.setOrderId(orders.get(i).getId());
+      payment.setAmount(Money.inr(100_00));
+      payment.setStatus("PENDING");
+      payment.setRazorpayOrderId(PREFIX + i);
+      payment.setCreatedAt(Instant.now());
+      payments.add(payment);
+    }
+    mongoTemplate.bulkOps(BulkMode.UNORDERED, Payment.class).insert(payments).execute();
+  }
+
+  @AfterEach
+  void tearDown() {
+    cleanUp();
+  }
+
+  @Test
+  @DisplayName("Should acknowledge 20k webhooks and apply them in per-order arrival order")
+  void testBurst() throws Exception {
+    // Arrange: each order gets failed, failed, failed, then captured, sent in that order
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<long[]>> results = new ArrayList<>();
+
+    // Act
+    long start = System.nanoTime();
+    for (int thread = 0; thread < THREADS; thread++) {
+      int owner = thread;
+      results.add(executor.submit(() -> {
+        List<Long> latencies = new ArrayList<>();
+        for (int order = owner; order < ORDERS; order += THREADS) {
+          for (int delivery = 0; delivery < WEBHOOKS / ORDERS; delivery++) {
+            String orderId = PREFIX + order;
+            String body = delivery == WEBHOOKS / ORDERS - 1
+                ? "{\"event\":\"payment.captured\",\"paymentId\":\"pay_" + order + "\",\"orderId\":\"" + orderId + "\"}"
+                : "{\"event\":\"payment.failed\",\"orderId\":\"" + orderId + "\",\"reason\":\"declined\"}";
+            long sent = System.nanoTime();
+            int status = mockMvc.perform(post("/api/webhooks/payment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(body))
+                .andReturn().getResponse().getStatus();
+            latencies.add(System.nanoTime() - sent);
+            assertEquals(200, status);
+          }
+        }
+        return latencies.stream().mapToLong(Long::longValue).toArray();
+      }));
+    }
+    List<Long> all = new ArrayList<>(WEBHOOKS);
+    for (Future<long[]> result : results) {
+      Arrays.stream(result.get(5, TimeUnit.MINUTES)).forEach(all::add);
+    }
+    long acknowledgedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    executor.shutdown();
+
+    long deadline = System.currentTimeMillis() + 120_000;
+    while (mongoTemplate.count(new Query(), WebhookTask.class) > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+    long drainedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    // Assert
+    long[] sorted = all.stream().mapToLong(Long::longValue).sorted().toArray();
+    System.out.printf("[webhook burst %,d] acked in %d ms (p50=%d us p99=%d us), applied in %d ms%n",
+        sorted.length, acknowledgedMillis, micros(sorted, 0.5), micros(sorted, 0.99), drainedMillis);
+
+    assertEquals(WEBHOOKS, sorted.length);
+    assertEquals(0, mongoTemplate.count(new Query(), WebhookTask.class));
+    assertEquals(0, mongoTemplate.count(new Query(), WebhookQueue.DEAD_LETTER_COLLECTION));
+    assertEquals(ORDERS, mongoTemplate.count(Query.query(Criteria.where("razorpayOrderId").regex("^" + PREFIX)
+        .and("status").is("SUCCESS")), Payment.class));
+    assertEquals(ORDERS, mongoTemplate.count(Query.query(Criteria.where("userId").is("burst_user")
+        .and("status").is("PAID")), Order.class));
+  }
+
+  private void cleanUp() {
+    mongoTemplate.remove(new Query(), WebhookTask.class);
+    mongoTemplate.dropCollection(WebhookQueue.DEAD_LETTER_COLLECTION);
+    mongoTemplate.remove(Query.query(Criteria.where("_id").regex(PREFIX)), ProcessedWebhook.class);
+    mongoTemplate.remove(Query.query(Criteria.where("razorpayOrderId").regex("^" + PREFIX)), Payment.class);
+    mongoTemplate.remove(Query.query(Criteria.where("userId").is("burst_user")), Order.class);
+  }
+
+  private static long micros(long[] sorted, double percentile) {
+    return TimeUnit.NANOSECONDS.toMicros(sorted[Math.min(sorted.length - 1, (int) (sorted.length * percentile))]);
+  }
+}
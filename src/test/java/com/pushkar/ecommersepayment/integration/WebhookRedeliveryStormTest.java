@@ -0,0 +1,149 @@
+package com.pushkar.ecommersepayment.integration;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.ProcessedWebhook;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Replays every webhook of a set of payments many times from many threads,
+ * as a gateway does when it does not see acknowledgements. Each payment
+ * must be applied exactly once, which shows as exactly one
+ * {@code payment.succeeded} event in its outbox.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.data.mongodb.database=ecommerce_test",
+    "payment.mock.enabled=false",
+    "outbox.dispatcher.enabled=false",
+    "webhook.queue.poll-interval=20ms"
+})
+@DisplayName("Webhook Redelivery Storm Tests")
+class WebhookRedeliveryStormTest {
+
+  private static final int PAYMENTS = 200;
+  private static final int REDELIVERIES = 50;
+  private static final int THREADS = 16;
+  private static final String PREFIX = "storm_order_";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    cleanUp();
+    for (int i = 0; i < PAYMENTS; i++) {
+      Order order = new Order();
+      order.setUserId("storm_user");
+      order.setStatus("CREATED");
+      order.setTotalAmount(Money.inr(100_00));
+      order.setCreatedAt(Instant.now());
+      mongoTemplate.insert(order);
+
+      Payment payment = new Payment();
+      payment.setOrderId(order.getId());
+      payment.setAmount(Money.inr(100_00));
+      payment.setStatus("PENDING");
+      payment.setRazorpayOrderId(PREFIX + i);
+      payment.setCreatedAt(Instant.now());
+      mongoTemplate.insert(payment);
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    cleanUp();
+  }
+
+  @Test
+  @DisplayName("Should apply each webhook once however often it is redelivered")
+  void testRedeliveryStorm() throws Exception {
+    // Arrange
+    ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> results = new ArrayList<>();
+
+    // Act: two rounds, the second after the first has been applied
+    for (int round = 0; round < 2; round++) {
+      for (int thread = 0; thread < THREADS; thread++) {
+        int owner = thread;
+        results.add(executor.submit(() -> {
+          for (int delivery = owner; delivery < PAYMENTS * REDELIVERIES; delivery += THREADS) {
+            int payment = delivery % PAYMENTS;
+            mockMvc.perform(post("/api/webhooks/payment")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"event\":\"payment.captured\",\"paymentId\":\"pay_" + payment
+                    + "\",\"orderId\":\"" + PREFIX + payment + "\"}"))
+                .andReturn();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> result : results) {
+        result.get(5, TimeUnit.MINUTES);
+      }
+      awaitEmptyQueue();
+    }
+    executor.shutdown();
+
+    // Assert
+    for (int i = 0; i < PAYMENTS; i++) {
+      Payment payment = mongoTemplate.findOne(
+          Query.query(Criteria.where("razorpayOrderId").is(PREFIX + i)), Payment.class);
+      long succeeded = payment.getOutbox().stream()
+          .filter(event -> OutboxEvent.PAYMENT_SUCCEEDED.equals(event.getType()))
+          .count();
+      assertEquals("SUCCESS", payment.getStatus());
+      assertEquals(1, succeeded, "payment " + payment.getRazorpayOrderId() + " applied more than once");
+    }
+    double droppedAtEndpoint = meterRegistry.counter("webhook.dedup.dropped", "stage", "endpoint").count();
+    double droppedByWorker = meterRegistry.counter("webhook.dedup.dropped", "stage", "worker").count();
+    System.out.printf("[webhook storm %,d] dropped at endpoint=%.0f by worker=%.0f hit ratio=%.3f%n",
+        2 * PAYMENTS * REDELIVERIES, droppedAtEndpoint, droppedByWorker,
+        meterRegistry.get("webhook.dedup.hit.ratio").gauge().value());
+    assertEquals(2L * PAYMENTS * REDELIVERIES - PAYMENTS, (long) (droppedAtEndpoint + droppedByWorker));
+    assertTrue(droppedAtEndpoint >= PAYMENTS * REDELIVERIES, "second round must not reach the queue");
+  }
+
+  private void awaitEmptyQueue() throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 60_000;
+    while (mongoTemplate.count(new Query(), WebhookTask.class) > 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(50);
+    }
+  }
+
+  private void cleanUp() {
+    mongoTemplate.remove(new Query(), WebhookTask.class);
+    mongoTemplate.remove(Query.query(Criteria.where("_id").regex(PREFIX)), ProcessedWebhook.class);
+    mongoTemplate.remove(Query.query(Criteria.where("razorpayOrderId").regex("^" + PREFIX)), Payment.class);
+    mongoTemplate.remove(Query.query(Criteria.where("userId").is("storm_user")), Order.class);
+  }
+}
@@ -0,0 +1,32 @@
+package com.pushkar.ecommersepayment.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@DisplayName("Money Tests")
+class MoneyTest {
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Test
+  @DisplayName("Should accept only ISO 4217 currency codes")
+  void testRejectsUnknownCurrency() {
+    assertEquals("USD 12.50", Money.of(1_250, "USD").toString());
+    assertThrows(IllegalArgumentException.class, () -> Money.of(100, "ABC"));
+    assertThrows(IllegalArgumentException.class, () -> Money.of(100, "inr"));
+    assertThrows(IllegalArgumentException.class, () -> Money.of(100, null));
+  }
+
+  @Test
+  @DisplayName("Should serialize as amount and currency only")
+  void testJson() throws Exception {
+    String json = objectMapper.writeValueAsString(Money.inr(50_000_00));
+
+    assertEquals("{\"amount\":5000000,\"currency\":\"INR\"}", json);
+    assertEquals(Money.inr(50_000_00), objectMapper.readValue(json, Money.class));
+  }
+}
@@ -0,0 +1,265 @@
+package com.pushkar.ecommersepayment.outbox;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.query.Query;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.UpdateOneModel;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Outbox Dispatcher Tests")
+class OutboxDispatcherTest {
+
+  private MongoTemplate mongoTemplate;
+  private MongoCollection<Document> orders;
+  private RecordingConsumer consumer;
+  private SimpleMeterRegistry meterRegistry;
+  private OutboxDispatcher dispatcher;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    mongoTemplate = mock(MongoTemplate.class);
+    orders = mock(MongoCollection.class);
+    MongoCustomConversions conversions = new MongoCustomConversions(List.of());
+    MongoMappingContext mappingContext = new MongoMappingContext();
+    mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+    MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+    converter.setCustomConversions(conversions);
+    converter.afterPropertiesSet();
+    when(mongoTemplate.getConverter()).thenReturn(converter);
+    when(mongoTemplate.getCollectionName(Order.class)).thenReturn("orders");
+    when(mongoTemplate.getCollectionName(Payment.class)).thenReturn("payments");
+    when(mongoTemplate.getCollection("orders")).thenReturn(orders);
+
+    consumer = new RecordingConsumer();
+    meterRegistry = new SimpleMeterRegistry();
+    dispatcher = new OutboxDispatcher(mongoTemplate, List.of(consumer), Duration.ofHours(1), 500, 10, meterRegistry);
+  }
+
+  @AfterEach
+  void tearDown() {
+    dispatcher.shutdown();
+  }
+
+  @Test
+  @DisplayName("Should deliver pending events oldest first and remove them from their documents")
+  @SuppressWarnings("unchecked")
+  void testDeliversAndAcknowledges() {
+    // Arrange
+    Instant now = Instant.now();
+    OutboxEvent created = event("e1", OutboxEvent.ORDER_CREATED, now.minusSeconds(2));
+    OutboxEvent paid = event("e2", OutboxEvent.ORDER_STATUS_CHANGED, now.minusSeconds(1));
+    OutboxEvent other = event("e3", OutboxEvent.ORDER_CREATED, now.minusSeconds(3));
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("orders")))
+        .thenReturn(List.of(document("order1", paid, created), document("order2", other)));
+
+    // Act
+    int dispatched = dispatcher.dispatchPending();
+
+    // Assert
+    assertEquals(3, dispatched);
+    assertEquals(List.of("e3", "e1", "e2"), consumer.received.stream().map(OutboxEvent::getEventId).toList());
+    OutboxEvent first = consumer.received.get(0);
+    assertEquals("order", first.getAggregateType());
+    assertEquals("order2", first.getAggregateId());
+    assertEquals("PAID", consumer.received.get(2).getData().get("status"));
+
+    ArgumentCaptor<List<UpdateOneModel<Document>>> updates = ArgumentCaptor.forClass(List.class);
+    verify(orders, times(1)).bulkWrite(updates.capture(), any(BulkWriteOptions.class));
+    assertEquals(2, updates.getValue().size());
+    assertEquals(new Document("_id", "order1"), updates.getValue().get(0).getFilter());
+    assertEquals(3, meterRegistry.counter("outbox.events.dispatched").count());
+    assertEquals(3, meterRegistry.timer("outbox.dispatch.lag").count());
+  }
+
+  @Test
+  @DisplayName("Should leave the batch in place when a consumer fails")
+  void testConsumerFailureRedelivers() {
+    // Arrange
+    OutboxConsumer failing = mock(OutboxConsumer.class);
+    when(failing.name()).thenReturn("failing");
+    doThrow(new IllegalStateException("broker down")).when(failing).accept(anyList());
+    dispatcher.shutdown();
+    dispatcher = new OutboxDispatcher(mongoTemplate, List.of(consumer, failing), Duration.ofHours(1), 500, 10,
+        meterRegistry);
+    OutboxEvent created = event("e1", OutboxEvent.ORDER_CREATED, Instant.now());
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("orders")))
+        .thenReturn(List.of(document("order1", created)));
+
+    // Act
+    assertEquals(0, dispatcher.dispatchPending());
+    assertEquals(0, dispatcher.dispatchPending());
+
+    // Assert
+    verify(orders, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+    assertEquals(2, consumer.received.size()); // the same event, delivered twice
+    assertEquals(2, meterRegistry.counter("outbox.dispatch.failures", "consumer", "failing").count());
+    assertEquals(0, meterRegistry.counter("outbox.events.dispatched").count());
+  }
+
+  @Test
+  @DisplayName("Should deliver the rest of a batch around an event a consumer rejects")
+  @SuppressWarnings("unchecked")
+  void testRejectedEventIsIsolated() {
+    // Arrange
+    useConsumers(10, consumer, new RejectingConsumer("e2"));
+    Instant now = Instant.now();
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("orders"))).thenReturn(List.of(
+        document("order1", event("e1", OutboxEvent.ORDER_CREATED, now.minusSeconds(4)),
+            event("e2", OutboxEvent.ORDER_STATUS_CHANGED, now.minusSeconds(3)),
+            event("e4", OutboxEvent.ORDER_STATUS_CHANGED, now.minusSeconds(1))),
+        document("order2", event("e3", OutboxEvent.ORDER_CREATED, now.minusSeconds(2)))));
+
+    // Act
+    int dispatched = dispatcher.dispatchPending();
+
+    // Assert: e4 is held back behind e2 to keep order1's events in order
+    assertEquals(2, dispatched);
+    ArgumentCaptor<List<UpdateOneModel<Document>>> updates = ArgumentCaptor.forClass(List.class);
+    verify(orders, times(2)).bulkWrite(updates.capture(), any(BulkWriteOptions.class));
+    List<UpdateOneModel<Document>> attempts = updates.getAllValues().get(0);
+    assertEquals(1, attempts.size());
+    assertEquals(new Document("_id", "order1").append("outbox.eventId", "e2"), attempts.get(0).getFilter());
+    List<UpdateOneModel<Document>> acknowledged = updates.getAllValues().get(1);
+    assertEquals(List.of(new Document("_id", "order1"), new Document("_id", "order2")),
+        acknowledged.stream().map(UpdateOneModel::getFilter).toList());
+    verify(mongoTemplate, never()).insert(anyList(), eq(OutboxDispatcher.DEAD_LETTER_COLLECTION));
+  }
+
+  @Test
+  @DisplayName("Should dead-letter an event once it has been rejected the maximum number of times")
+  @SuppressWarnings("unchecked")
+  void testDeadLettersAfterMaxAttempts() {
+    // Arrange
+    useConsumers(3, consumer, new RejectingConsumer("e2"));
+    Instant now = Instant.now();
+    Document order1 = document("order1", event("e1", OutboxEvent.ORDER_CREATED, now.minusSeconds(2)),
+        event("e2", OutboxEvent.ORDER_STATUS_CHANGED, now.minusSeconds(1)));
+    order1.getList("outbox", Document.class).get(1).append("attempts", 2);
+    when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("orders"))).thenReturn(List.of(order1));
+
+    // Act
+    int dispatched = dispatcher.dispatchPending();
+
+    // Assert
+    assertEquals(1, dispatched);
+    ArgumentCaptor<List<Document>> deadLetters = ArgumentCaptor.forClass(List.class);
+    verify(mongoTemplate).insert(deadLetters.capture(), eq(OutboxDispatcher.DEAD_LETTER_COLLECTION));
+    Document deadLetter = deadLetters.getValue().get(0);
+    assertEquals("e2", deadLetter.getString("eventId"));
+    assertEquals("order1", deadLetter.getString("aggregateId"));
+    assertEquals("rejecting: cannot map e2", deadLetter.getString("error"));
+    ArgumentCaptor<List<UpdateOneModel<Document>>> updates = ArgumentCaptor.forClass(List.class);
+    verify(orders, times(1)).bulkWrite(updates.capture(), any(BulkWriteOptions.class));
+    assertEquals(1, updates.getValue().size()); // e1 and e2 both leave order1's outbox
+    assertEquals(1, meterRegistry.counter("outbox.events.dead_lettered").count());
+  }
+
+  @Test
+  @DisplayName("Should not touch the collections when nothing is pending")
+  void testNothingPending() {
+    // Act
+    int dispatched = dispatcher.dispatchPending();
+
+    // Assert
+    assertEquals(0, dispatched);
+    assertTrue(consumer.received.isEmpty());
+    verify(orders, never()).bulkWrite(anyList(), any(BulkWriteOptions.class));
+  }
+
+  private void useConsumers(int maxAttempts, OutboxConsumer... consumers) {
+    dispatcher.shutdown();
+    dispatcher = new OutboxDispatcher(mongoTemplate, List.of(consumers), Duration.ofHours(1), 500, maxAttempts,
+        meterRegistry);
+  }
+
+  private static OutboxEvent event(String eventId, String type, Instant createdAt) {
+    Map<String, Object> data = OutboxEvent.ORDER_STATUS_CHANGED.equals(type) ? Map.of("status", "PAID")
+        : Map.of("userId", "user123");
+    return new OutboxEvent(eventId, type, data, createdAt, null, null);
+  }
+
+  private static Document document(String id, OutboxEvent... events) {
+    List<Document> outbox = new ArrayList<>();
+    for (OutboxEvent event : events) {
+      outbox.add(new Document("eventId", event.getEventId())
+          .append("type", event.getType())
+          .append("data", new Document(event.getData()))
+          .append("createdAt", Date.from(event.getCreatedAt())));
+    }
+    return new Document("_id", id).append("outbox", outbox);
+  }
+
+  /**
+   * Rejects every delivery that contains one particular event.
+   */
+  private static final class RejectingConsumer implements OutboxConsumer {
+
+    private final String eventId;
+
+    private RejectingConsumer(String eventId) {
+      this.eventId = eventId;
+    }
+
+    @Override
+    public String name() {
+      return "rejecting";
+    }
+
+    @Override
+    public void accept(List<OutboxEvent> events) {
+      if (events.stream().anyMatch(event -> eventId.equals(event.getEventId()))) {
+        throw new IllegalArgumentException("cannot map " + eventId);
+      }
+    }
+  }
+
+  private static final class RecordingConsumer implements OutboxConsumer {
+
+    private final List<OutboxEvent> received = new ArrayList<>();
+
+    @Override
+    public String name() {
+      return "recording";
+    }
+
+    @Override
+    public void accept(List<OutboxEvent> events) {
+      received.addAll(events);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package com.pushkar.ecommersepayment.repository;
+
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.pushkar.ecommersepayment.model.StockChange;
+
+@DisplayName("Bulk Stock Result Tests")
+class BulkStockResultTest {
+
+  private final StockChange giftWrap = new StockChange("gift", 1);
+  private final StockChange hot = new StockChange("hot", 1);
+  private final StockChange deleted = new StockChange("deleted", 2);
+
+  @Test
+  @DisplayName("Should report the applied lines and the first line that was not")
+  void testAppliedLines() {
+    // Act
+    BulkStockResult result = BulkStockResult.of(List.of(giftWrap, deleted, hot), Set.of(0, 2));
+
+    // Assert
+    assertEquals(List.of(giftWrap, hot), result.applied());
+    assertEquals(deleted, result.failed());
+  }
+
+  @Test
+  @DisplayName("Should take a line as applied exactly when its product holds the line's tag")
+  void testReadBackByTag() {
+    // Arrange: a concurrent checkout tagged the sold-out hot product too, and gift was restocked
+    List<StockChange> changes = List.of(giftWrap, hot);
+    List<String> tags = ProductRepositoryImpl.reservationTags(changes);
+    List<Document> products = List.of(
+        new Document("_id", "gift").append(ProductRepositoryImpl.RESERVATIONS, List.of("other:0", tags.get(0))),
+        new Document("_id", "hot").append(ProductRepositoryImpl.RESERVATIONS, List.of("other:1")));
+
+    // Act
+    BulkStockResult result = ProductRepositoryImpl.readBack(changes, tags, products);
+
+    // Assert
+    assertEquals(List.of(giftWrap), result.applied());
+    assertEquals(hot, result.failed());
+  }
+
+  @Test
+  @DisplayName("Should keep two lines of the same product apart")
+  void testSameProductTwice() {
+    // Arrange: the second line for the hot product was short
+    StockChange more = new StockChange("hot", 5);
+    List<StockChange> changes = List.of(hot, more);
+    List<String> tags = ProductRepositoryImpl.reservationTags(changes);
+    List<Document> products = List.of(
+        new Document("_id", "hot").append(ProductRepositoryImpl.RESERVATIONS, List.of(tags.get(0))));
+
+    // Act
+    BulkStockResult result = ProductRepositoryImpl.readBack(changes, tags, products);
+
+    // Assert
+    assertEquals(List.of(hot), result.applied());
+    assertEquals(more, result.failed());
+  }
+
+  @Test
+  @DisplayName("Should succeed when every line was applied")
+  void testAllApplied() {
+    BulkStockResult result = BulkStockResult.of(List.of(giftWrap, hot), Set.of(0, 1));
+
+    assertEquals(List.of(giftWrap, hot), result.applied());
+    assertNull(result.failed());
+  }
+}
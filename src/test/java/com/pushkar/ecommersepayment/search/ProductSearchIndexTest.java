@@ -0,0 +1,113 @@
+package com.pushkar.ecommersepayment.search;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.search.ProductSearchIndex.Hit;
+
+@DisplayName("Product Search Index Tests")
+class ProductSearchIndexTest {
+
+  private ProductSearchIndex index;
+
+  @BeforeEach
+  void setUp() {
+    index = new ProductSearchIndex(true, 256);
+    index.put(new Product("p1", "Gaming Laptop", "Fast laptop for gaming", Money.inr(50_000_00), 10));
+    index.put(new Product("p2", "Wireless Mouse", "Mouse for gaming laptops", Money.inr(1_000_00), 50));
+    index.put(new Product("p3", "Mechanical Keyboard", "Backlit gaming keyboard", Money.inr(3_000_00), 30));
+  }
+
+  @Test
+  @DisplayName("Should rank name matches above description matches")
+  void testSearch_RanksNameMatchesFirst() {
+    List<Hit> hits = index.search("gaming", null, null, 10);
+
+    assertEquals(List.of(
+        new Hit("p1", ProductSearchIndex.NAME_WEIGHT),
+        new Hit("p2", ProductSearchIndex.DESCRIPTION_WEIGHT),
+        new Hit("p3", ProductSearchIndex.DESCRIPTION_WEIGHT)), hits);
+  }
+
+  @Test
+  @DisplayName("Should require every query term")
+  void testSearch_IntersectsTerms() {
+    assertEquals(List.of("p2"), ids(index.search("wireless GAMING", null, null, 10)));
+    assertTrue(index.search("wireless keyboard", null, null, 10).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should continue after the last hit of the previous page")
+  void testSearch_KeysetPagination() {
+    List<Hit> first = index.search("gaming", null, null, 2);
+    Hit last = first.get(1);
+
+    assertEquals(List.of("p1", "p2"), ids(first));
+    assertEquals(List.of("p3"), ids(index.search("gaming", last.score(), last.productId(), 2)));
+  }
+
+  @Test
+  @DisplayName("Should complete the last term as a prefix")
+  void testAutocomplete() {
+    assertEquals(List.of("p1", "p2"), ids(index.autocomplete("gaming lap", 10)));
+    assertEquals(List.of("p3"), ids(index.autocomplete("mech", 10)));
+  }
+
+  @Test
+  @DisplayName("Should reflect updates and deletes incrementally")
+  void testIncrementalUpdates() {
+    index.put(new Product("p1", "Office Laptop", "Quiet laptop", Money.inr(40_000_00), 10));
+    index.remove("p3");
+
+    assertEquals(List.of("p2"), ids(index.search("gaming", null, null, 10)));
+    assertEquals(List.of("p1"), ids(index.search("office", null, null, 10)));
+    assertTrue(index.autocomplete("mech", 10).isEmpty());
+    assertEquals(2, index.size());
+  }
+
+  @Test
+  @DisplayName("Should reclaim document numbers of re-indexed products")
+  void testCompactsAfterUpdates() {
+    for (int i = 0; i < 10_000; i++) {
+      index.put(new Product("p2", "Wireless Mouse " + i, "Mouse for gaming laptops", Money.inr(1_000_00), 50));
+    }
+
+    assertTrue(index.documentSlots() < 2_048);
+    assertEquals(3, index.size());
+    assertEquals(List.of("p1", "p3", "p2"), ids(index.search("gaming", null, null, 10)));
+    assertEquals(List.of("p2"), ids(index.search("mouse 9999", null, null, 10)));
+    assertTrue(index.search("mouse 9998", null, null, 10).isEmpty());
+  }
+
+  @Test
+  @DisplayName("Should not overwrite a newer version during the initial build")
+  void testPutIfAbsent() {
+    index.putIfAbsent(new Product("p1", "Stale Name", "Stale", Money.inr(1_00), 1));
+
+    assertTrue(index.search("stale", null, null, 10).isEmpty());
+    assertEquals(List.of("p1"), ids(index.search("laptop", null, null, 10)));
+  }
+
+  @Test
+  @DisplayName("Should ignore writes and never be ready when disabled")
+  void testDisabled() {
+    ProductSearchIndex disabled = new ProductSearchIndex(false, 256);
+    disabled.put(new Product("p1", "Gaming Laptop", "Fast", Money.inr(1_00), 1));
+    disabled.markReady();
+
+    assertFalse(disabled.isReady());
+    assertEquals(0, disabled.size());
+  }
+
+  private static List<String> ids(List<Hit> hits) {
+    return hits.stream().map(Hit::productId).toList();
+  }
+}
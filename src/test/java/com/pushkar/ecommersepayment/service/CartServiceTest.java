@@ -1,30 +1,37 @@
 package com.pushkar.ecommersepayment.service;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.argThat;
-import org.mockito.InjectMocks;
+import static org.mockito.ArgumentMatchers.anyString;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import com.pushkar.ecommersepayment.cart.CartItemStore;
 import com.pushkar.ecommersepayment.dto.AddToCartRequest;
 import com.pushkar.ecommersepayment.dto.CartItemResponse;
+import com.pushkar.ecommersepayment.dto.CartResponse;
 import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Product;
 import com.pushkar.ecommersepayment.repository.CartRepository;
 
@@ -38,7 +45,6 @@ class CartServiceTest {
   @Mock
   private ProductService productService;
 
-  @InjectMocks
   private CartService cartService;
 
   private Product testProduct;
@@ -47,10 +53,12 @@ class CartServiceTest {
 
   @BeforeEach
   void setUp() {
+    cartService = new CartService(new CartItemStore(cartRepository), productService);
+
     testProduct = new Product();
     testProduct.setId("prod123");
     testProduct.setName("Laptop");
-    testProduct.setPrice(50000.0);
+    testProduct.setPrice(Money.inr(50_000_00));
     testProduct.setStock(10);
 
     testCartItem = new CartItem();
@@ -70,9 +78,7 @@ class CartServiceTest {
   void testAddToCart_NewItem() {
     // Arrange
     when(productService.getProductById("prod123")).thenReturn(testProduct);
-    when(cartRepository.findByUserIdAndProductId("user123", "prod123"))
-        .thenReturn(Optional.empty());
-    when(cartRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+    when(cartRepository.addQuantity("user123", "prod123", 2, 10)).thenReturn(Optional.of(testCartItem));
 
     // Act
     CartItem result = cartService.addToCart(testRequest);
@@ -82,24 +88,37 @@ class CartServiceTest {
     assertEquals("user123", result.getUserId());
     assertEquals("prod123", result.getProductId());
     assertEquals(2, result.getQuantity());
-    verify(cartRepository, times(1)).save(any(CartItem.class));
+    verify(cartRepository, times(1)).addQuantity("user123", "prod123", 2, 10);
+    verify(cartRepository, never()).save(any(CartItem.class));
   }
 
   @Test
   @DisplayName("Should update quantity when item already in cart")
   void testAddToCart_ExistingItem() {
     // Arrange
+    testCartItem.setQuantity(4); // 2 existing + 2 new, incremented by the database
     when(productService.getProductById("prod123")).thenReturn(testProduct);
-    when(cartRepository.findByUserIdAndProductId("user123", "prod123"))
-        .thenReturn(Optional.of(testCartItem));
-    when(cartRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+    when(cartRepository.addQuantity("user123", "prod123", 2, 10)).thenReturn(Optional.of(testCartItem));
 
     // Act
     CartItem result = cartService.addToCart(testRequest);
 
     // Assert
-    verify(cartRepository, times(1)).save(argThat(item -> item.getQuantity() == 4 // 2 existing + 2 new
-    ));
+    assertEquals(4, result.getQuantity());
+    verify(cartRepository, never()).save(any(CartItem.class));
+  }
+
+  @Test
+  @DisplayName("Should reject an add that takes the line past the stock")
+  void testAddToCart_ExistingItemExceedsStock() {
+    // Arrange
+    when(productService.getProductById("prod123")).thenReturn(testProduct);
+    when(cartRepository.addQuantity("user123", "prod123", 2, 10)).thenReturn(Optional.empty());
+
+    // Act & Assert
+    RuntimeException exception = assertThrows(RuntimeException.class,
+        () -> cartService.addToCart(testRequest));
+    assertTrue(exception.getMessage().contains("Insufficient stock"));
   }
 
   @Test
@@ -120,21 +139,63 @@ class CartServiceTest {
   @DisplayName("Should get cart items with product details")
   void testGetCartItems() {
     // Arrange
-    when(cartRepository.findByUserId("user123"))
-        .thenReturn(Arrays.asList(testCartItem));
-    when(productService.getProductById("prod123")).thenReturn(testProduct);
+    CartItemResponse line = new CartItemResponse("cart123", "user123", "prod123", 2, testProduct, Money.inr(100_000_00));
+    when(cartRepository.findCartView("user123"))
+        .thenReturn(new CartResponse("user123", List.of(line), Money.inr(100_000_00)));
 
     // Act
-    List<CartItemResponse> results = cartService.getCartItems("user123");
+    CartResponse cart = cartService.getCartItems("user123");
 
     // Assert
-    assertEquals(1, results.size());
-    CartItemResponse response = results.get(0);
+    assertEquals(1, cart.getItems().size());
+    CartItemResponse response = cart.getItems().get(0);
     assertEquals("user123", response.getUserId());
     assertEquals("prod123", response.getProductId());
     assertEquals(2, response.getQuantity());
     assertNotNull(response.getProduct());
     assertEquals("Laptop", response.getProduct().getName());
+    assertEquals(Money.inr(100_000_00), response.getLineTotal());
+    assertEquals(Money.inr(100_000_00), cart.getSubtotal());
+  }
+
+  @ParameterizedTest(name = "{0} cart lines")
+  @ValueSource(ints = { 1, 10, 100, 500 })
+  @DisplayName("Should read the cart in one round trip regardless of cart size")
+  void testGetCartItems_SingleRoundTrip(int cartSize) {
+    // Arrange
+    List<CartItemResponse> lines = new ArrayList<>();
+    for (int i = 0; i < cartSize; i++) {
+      Product product = new Product("prod" + i, "Product " + i, null, Money.inr(100_00), 10);
+      lines.add(new CartItemResponse("cart" + i, "user123", product.getId(), 1, product, Money.inr(100_00)));
+    }
+    when(cartRepository.findCartView("user123"))
+        .thenReturn(new CartResponse("user123", lines, Money.inr(100_00L * cartSize)));
+
+    // Act
+    CartResponse cart = cartService.getCartItems("user123");
+
+    // Assert
+    assertEquals(cartSize, cart.getItems().size());
+    verify(cartRepository, times(1)).findCartView("user123");
+    verify(cartRepository, never()).findByUserId(anyString());
+    verifyNoInteractions(productService);
+  }
+
+  @Test
+  @DisplayName("Should keep cart lines whose product was deleted")
+  void testGetCartItems_MissingProduct() {
+    // Arrange
+    CartItemResponse line = new CartItemResponse("cart123", "user123", "gone", 1, null, null);
+    when(cartRepository.findCartView("user123"))
+        .thenReturn(new CartResponse("user123", List.of(line), null));
+
+    // Act
+    CartResponse cart = cartService.getCartItems("user123");
+
+    // Assert
+    assertEquals(1, cart.getItems().size());
+    assertNull(cart.getItems().get(0).getProduct());
+    assertNull(cart.getSubtotal());
   }
 
   @Test
@@ -1,39 +1,60 @@
 package com.pushkar.ecommersepayment.service;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
-import org.mockito.InjectMocks;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.pushkar.ecommersepayment.cart.CartItemStore;
+import com.pushkar.ecommersepayment.cart.CartStore;
 import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.CursorPage;
 import com.pushkar.ecommersepayment.dto.OrderResponse;
+import com.pushkar.ecommersepayment.dto.OrderSummary;
 import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Order;
 import com.pushkar.ecommersepayment.model.OrderItem;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
 import com.pushkar.ecommersepayment.model.Payment;
 import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
 import com.pushkar.ecommersepayment.repository.CartRepository;
+import com.pushkar.ecommersepayment.repository.OrderDetail;
 import com.pushkar.ecommersepayment.repository.OrderRepository;
 
 @ExtendWith(MockitoExtension.class)
@@ -49,10 +70,6 @@ class OrderServiceTest {
   @Mock
   private ProductService productService;
 
-  @Mock
-  private PaymentService paymentService;
-
-  @InjectMocks
   private OrderService orderService;
 
   private Product testProduct;
@@ -62,10 +79,12 @@ class OrderServiceTest {
 
   @BeforeEach
   void setUp() {
+    orderService = new OrderService(orderRepository, new CartItemStore(cartRepository), productService);
+
     testProduct = new Product();
     testProduct.setId("prod123");
     testProduct.setName("Laptop");
-    testProduct.setPrice(50000.0);
+    testProduct.setPrice(Money.inr(50_000_00));
     testProduct.setStock(10);
 
     testCartItem = new CartItem();
@@ -76,12 +95,15 @@ class OrderServiceTest {
     testOrder = new Order();
     testOrder.setId("order123");
     testOrder.setUserId("user123");
-    testOrder.setTotalAmount(100000.0);
+    testOrder.setTotalAmount(Money.inr(100_000_00));
     testOrder.setStatus("CREATED");
     testOrder.setCreatedAt(Instant.now());
 
     testRequest = new CreateOrderRequest();
     testRequest.setUserId("user123");
+
+    ReflectionTestUtils.setField(orderService, "historyDefaultPageSize", 20);
+    ReflectionTestUtils.setField(orderService, "historyMaxPageSize", 100);
   }
 
   @Test
@@ -90,9 +112,9 @@ class OrderServiceTest {
     // Arrange
     when(cartRepository.findByUserId("user123"))
         .thenReturn(Arrays.asList(testCartItem));
-    when(productService.getProductById("prod123")).thenReturn(testProduct);
+    when(productService.getProductsByIds(anyCollection())).thenReturn(Map.of("prod123", testProduct));
+    when(productService.reserveStock(anyList())).thenReturn(Optional.empty());
     when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
-    doNothing().when(productService).updateStock(anyString(), anyInt());
     doNothing().when(cartRepository).deleteByUserId(anyString());
 
     // Act
@@ -102,14 +124,40 @@ class OrderServiceTest {
     assertNotNull(result);
     assertEquals("user123", result.getUserId());
     assertEquals("CREATED", result.getStatus());
-    assertEquals(100000.0, result.getTotalAmount());
+    assertEquals(Money.inr(100_000_00), result.getTotalAmount());
 
     // Verify business logic
-    verify(productService, times(1)).updateStock("prod123", -2); // Stock deducted
+    verify(productService, times(1)).reserveStock(List.of(new StockChange("prod123", 2))); // Stock deducted
     verify(cartRepository, times(1)).deleteByUserId("user123"); // Cart cleared
     verify(orderRepository, times(1)).save(any(Order.class)); // Order saved
   }
 
+  @ParameterizedTest(name = "{0} cart lines")
+  @ValueSource(ints = { 1, 10, 100, 500 })
+  @DisplayName("Should look up cart products in one round trip regardless of cart size")
+  void testCreateOrder_ProductLookupsConstant(int cartSize) {
+    // Arrange
+    List<CartItem> cartItems = new ArrayList<>();
+    Map<String, Product> products = new HashMap<>();
+    for (int i = 0; i < cartSize; i++) {
+      Product product = new Product("prod" + i, "Product " + i, null, Money.inr(100_00), 10);
+      products.put(product.getId(), product);
+      cartItems.add(new CartItem(null, "user123", product.getId(), 1));
+    }
+    when(cartRepository.findByUserId("user123")).thenReturn(cartItems);
+    when(productService.getProductsByIds(anyCollection())).thenReturn(products);
+    when(productService.reserveStock(anyList())).thenReturn(Optional.empty());
+    when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+
+    // Act
+    orderService.createOrder(testRequest);
+
+    // Assert
+    verify(productService, times(1)).getProductsByIds(anyCollection());
+    verify(productService, never()).getProductById(anyString());
+    verify(productService, times(1)).reserveStock(anyList());
+  }
+
   @Test
   @DisplayName("Should throw exception when cart is empty")
   void testCreateOrder_EmptyCart() {
@@ -130,12 +178,104 @@ class OrderServiceTest {
     testProduct.setStock(1); // Not enough for 2 items
     when(cartRepository.findByUserId("user123"))
         .thenReturn(Arrays.asList(testCartItem));
-    when(productService.getProductById("prod123")).thenReturn(testProduct);
+    when(productService.getProductsByIds(anyCollection())).thenReturn(Map.of("prod123", testProduct));
+    when(productService.reserveStock(anyList()))
+        .thenReturn(Optional.of(new StockChange("prod123", 2)));
 
     // Act & Assert
     RuntimeException exception = assertThrows(RuntimeException.class,
         () -> orderService.createOrder(testRequest));
     assertTrue(exception.getMessage().contains("Insufficient stock"));
+    verify(orderRepository, never()).save(any());
+  }
+
+  @Test
+  @DisplayName("Should reserve all lines in one call and not save the order on a shortage")
+  void testCreateOrder_ShortageOnLaterLine() {
+    // Arrange
+    Product mouse = new Product();
+    mouse.setId("prod456");
+    mouse.setName("Mouse");
+    mouse.setPrice(Money.inr(1_000_00));
+    mouse.setStock(0);
+
+    CartItem mouseItem = new CartItem();
+    mouseItem.setUserId("user123");
+    mouseItem.setProductId("prod456");
+    mouseItem.setQuantity(1);
+
+    when(cartRepository.findByUserId("user123"))
+        .thenReturn(Arrays.asList(testCartItem, mouseItem));
+    when(productService.getProductsByIds(anyCollection()))
+        .thenReturn(Map.of("prod123", testProduct, "prod456", mouse));
+    when(productService.reserveStock(anyList()))
+        .thenReturn(Optional.of(new StockChange("prod456", 1)));
+
+    // Act & Assert
+    RuntimeException exception = assertThrows(RuntimeException.class,
+        () -> orderService.createOrder(testRequest));
+    assertTrue(exception.getMessage().contains("Mouse"));
+    verify(productService, times(1)).reserveStock(
+        List.of(new StockChange("prod123", 2), new StockChange("prod456", 1)));
+    verify(orderRepository, never()).save(any());
+    verify(cartRepository, never()).deleteByUserId(anyString());
+  }
+
+  @Test
+  @DisplayName("Should total order lines exactly in minor units")
+  void testCreateOrder_TotalInMinorUnits() {
+    // Arrange
+    Product pen = new Product("prod456", "Pen", null, Money.inr(10_10), 100);
+    CartItem penItem = new CartItem(null, "user123", "prod456", 3);
+    when(cartRepository.findByUserId("user123"))
+        .thenReturn(Arrays.asList(testCartItem, penItem));
+    when(productService.getProductsByIds(anyCollection()))
+        .thenReturn(Map.of("prod123", testProduct, "prod456", pen));
+    when(productService.reserveStock(anyList())).thenReturn(Optional.empty());
+    when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Act
+    Order result = orderService.createOrder(testRequest);
+
+    // Assert
+    assertEquals(Money.inr(100_030_30), result.getTotalAmount()); // 2 * 50000.00 + 3 * 10.10
+    assertEquals(Money.inr(10_10), result.getItems().get(1).getPrice());
+  }
+
+  @Test
+  @DisplayName("Should reject a cart mixing currencies")
+  void testCreateOrder_MixedCurrencies() {
+    // Arrange
+    Product imported = new Product("prod456", "Imported Mouse", null, Money.of(25_00, "USD"), 10);
+    CartItem importedItem = new CartItem(null, "user123", "prod456", 1);
+    when(cartRepository.findByUserId("user123"))
+        .thenReturn(Arrays.asList(testCartItem, importedItem));
+    when(productService.getProductsByIds(anyCollection()))
+        .thenReturn(Map.of("prod123", testProduct, "prod456", imported));
+
+    // Act & Assert
+    RuntimeException exception = assertThrows(RuntimeException.class,
+        () -> orderService.createOrder(testRequest));
+    assertTrue(exception.getMessage().contains("USD"));
+    verify(productService, never()).reserveStock(anyList());
+    verify(orderRepository, never()).save(any());
+  }
+
+  @Test
+  @DisplayName("Should flush buffered cart changes before reading the cart")
+  void testCreateOrder_FlushesCartFirst() {
+    // Arrange
+    CartStore cartStore = mock(CartStore.class);
+    when(cartStore.findLines("user123")).thenReturn(List.of());
+    OrderService service = new OrderService(orderRepository, cartStore, productService);
+
+    // Act
+    assertThrows(RuntimeException.class, () -> service.createOrder(testRequest));
+
+    // Assert
+    InOrder order = inOrder(cartStore);
+    order.verify(cartStore).flush("user123");
+    order.verify(cartStore).findLines("user123");
   }
 
   @Test
@@ -146,16 +286,15 @@ class OrderServiceTest {
     payment.setId("pay123");
     payment.setOrderId("order123");
     payment.setStatus("SUCCESS");
-    payment.setAmount(100000.0);
+    payment.setAmount(Money.inr(100_000_00));
 
     OrderItem orderItem = new OrderItem();
     orderItem.setProductId("prod123");
     orderItem.setQuantity(2);
-    orderItem.setPrice(50000.0);
+    orderItem.setPrice(Money.inr(50_000_00));
     testOrder.setItems(Arrays.asList(orderItem));
 
-    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
-    when(paymentService.getPaymentByOrderId("order123")).thenReturn(Optional.of(payment));
+    when(orderRepository.findDetailById("order123")).thenReturn(Optional.of(new OrderDetail(testOrder, payment)));
 
     // Act
     OrderResponse result = orderService.getOrderById("order123");
@@ -169,18 +308,42 @@ class OrderServiceTest {
     assertEquals(1, result.getItems().size());
   }
 
+  @Test
+  @DisplayName("Should get order without payment")
+  void testGetOrderById_WithoutPayment() {
+    // Arrange
+    when(orderRepository.findDetailById("order123")).thenReturn(Optional.of(new OrderDetail(testOrder, null)));
+
+    // Act
+    OrderResponse result = orderService.getOrderById("order123");
+
+    // Assert
+    assertEquals("order123", result.getId());
+    assertNull(result.getPayment());
+  }
+
+  @Test
+  @DisplayName("Should fail when order does not exist")
+  void testGetOrderById_NotFound() {
+    when(orderRepository.findDetailById("missing")).thenReturn(Optional.empty());
+
+    RuntimeException exception = assertThrows(RuntimeException.class, () -> orderService.getOrderById("missing"));
+    assertTrue(exception.getMessage().contains("Order not found"));
+  }
+
   @Test
   @DisplayName("Should update order status")
   void testUpdateOrderStatus() {
     // Arrange
-    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
-    when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+    when(orderRepository.transition(eq("order123"), isNull(), eq("PAID"), any(OutboxEvent.class))).thenReturn(true);
 
     // Act
     orderService.updateOrderStatus("order123", "PAID");
 
     // Assert
-    verify(orderRepository, times(1)).save(argThat(order -> "PAID".equals(order.getStatus())));
+    verify(orderRepository, times(1)).transition(eq("order123"), isNull(), eq("PAID"),
+        argThat(event -> OutboxEvent.ORDER_STATUS_CHANGED.equals(event.getType())));
+    verify(orderRepository, never()).save(any(Order.class));
   }
 
   @Test
@@ -190,19 +353,33 @@ class OrderServiceTest {
     OrderItem orderItem = new OrderItem();
     orderItem.setProductId("prod123");
     orderItem.setQuantity(2);
-    orderItem.setPrice(50000.0);
+    orderItem.setPrice(Money.inr(50_000_00));
     testOrder.setItems(Arrays.asList(orderItem));
 
     when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
-    when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
-    doNothing().when(productService).updateStock(anyString(), anyInt());
+    when(orderRepository.transition(eq("order123"), eq(Set.of("CREATED")), eq("CANCELLED"), any(OutboxEvent.class)))
+        .thenReturn(true);
 
     // Act
     orderService.cancelOrder("order123");
 
     // Assert
-    verify(productService, times(1)).updateStock("prod123", 2); // Stock restored
-    verify(orderRepository, times(1)).save(argThat(order -> "CANCELLED".equals(order.getStatus())));
+    verify(productService, times(1)).releaseStock(List.of(new StockChange("prod123", 2))); // Stock restored
+    verify(orderRepository, times(1)).transition(eq("order123"), eq(Set.of("CREATED")), eq("CANCELLED"),
+        argThat(event -> "CANCELLED".equals(event.getData().get("status"))));
+  }
+
+  @Test
+  @DisplayName("Should restore stock only for the cancel that wins a race")
+  void testCancelOrder_ConcurrentCancel() {
+    // Arrange
+    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
+    when(orderRepository.transition(eq("order123"), eq(Set.of("CREATED")), eq("CANCELLED"), any(OutboxEvent.class)))
+        .thenReturn(false);
+
+    // Act & Assert
+    assertThrows(RuntimeException.class, () -> orderService.cancelOrder("order123"));
+    verify(productService, never()).releaseStock(anyList());
   }
 
   @Test
@@ -222,20 +399,51 @@ class OrderServiceTest {
   @DisplayName("Should get orders by user ID - Database Relationship Test")
   void testGetOrdersByUserId() {
     // Arrange
-    Order order2 = new Order();
-    order2.setId("order456");
-    order2.setUserId("user123");
-    order2.setTotalAmount(50000.0);
-    order2.setStatus("PAID");
+    Instant now = Instant.now();
+    OrderSummary newest = new OrderSummary("order456", "user123", "PAID", Money.inr(50_000_00), 1, now);
+    OrderSummary older = new OrderSummary("order123", "user123", "CREATED", Money.inr(100_000_00), 2,
+        now.minusSeconds(60));
 
-    when(orderRepository.findByUserId("user123"))
-        .thenReturn(Arrays.asList(testOrder, order2));
+    when(orderRepository.findSummariesByUserId("user123", null, null, 21))
+        .thenReturn(Arrays.asList(newest, older));
 
     // Act
-    List<Order> results = orderService.getOrdersByUserId("user123");
+    CursorPage<OrderSummary> page = orderService.getOrdersByUserId("user123", null, null);
 
     // Assert
-    assertEquals(2, results.size());
-    assertTrue(results.stream().allMatch(o -> "user123".equals(o.getUserId())));
+    assertEquals(2, page.getItems().size());
+    assertTrue(page.getItems().stream().allMatch(o -> "user123".equals(o.getUserId())));
+    assertNull(page.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should page order history newest first by cursor")
+  void testGetOrdersByUserId_Paged() {
+    // Arrange
+    Instant now = Instant.now();
+    OrderSummary first = new OrderSummary("order3", "user123", "PAID", Money.inr(10_00), 1, now);
+    OrderSummary second = new OrderSummary("order2", "user123", "PAID", Money.inr(20_00), 1, now.minusSeconds(1));
+    OrderSummary third = new OrderSummary("order1", "user123", "PAID", Money.inr(30_00), 1, now.minusSeconds(2));
+    when(orderRepository.findSummariesByUserId("user123", null, null, 3))
+        .thenReturn(Arrays.asList(first, second, third));
+    Instant secondCreatedAt = Instant.ofEpochMilli(second.getCreatedAt().toEpochMilli());
+    when(orderRepository.findSummariesByUserId("user123", secondCreatedAt, "order2", 3))
+        .thenReturn(Arrays.asList(third));
+
+    // Act
+    CursorPage<OrderSummary> firstPage = orderService.getOrdersByUserId("user123", null, 2);
+    CursorPage<OrderSummary> secondPage = orderService.getOrdersByUserId("user123", firstPage.getNextCursor(), 2);
+
+    // Assert
+    assertEquals(List.of(first, second), firstPage.getItems());
+    assertNotNull(firstPage.getNextCursor());
+    assertEquals(List.of(third), secondPage.getItems());
+    assertNull(secondPage.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should reject a malformed order history cursor")
+  void testGetOrdersByUserId_InvalidCursor() {
+    assertThrows(RuntimeException.class, () -> orderService.getOrdersByUserId("user123", "not-a-cursor", null));
   }
 }
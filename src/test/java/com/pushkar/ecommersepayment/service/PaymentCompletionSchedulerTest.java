@@ -0,0 +1,125 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Payment Completion Scheduler Tests")
+class PaymentCompletionSchedulerTest {
+
+  private static final int THREADS = 4;
+
+  private PaymentCompletionScheduler scheduler;
+
+  @AfterEach
+  void tearDown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("Should complete 50k pending payments on a fixed number of threads")
+  void testFiftyThousandPendingPayments() throws Exception {
+    // Arrange
+    int payments = 50_000;
+    scheduler = newScheduler(PaymentCompletionScheduler.SHUTDOWN_DRAIN, payments);
+    CountDownLatch completed = new CountDownLatch(payments);
+    Set<Thread> completionThreads = ConcurrentHashMap.newKeySet();
+
+    // Act
+    for (int i = 0; i < payments; i++) {
+      scheduler.schedule("pay" + i, Duration.ofMillis(500), () -> {
+        completionThreads.add(Thread.currentThread());
+        completed.countDown();
+      });
+    }
+    int pendingAfterScheduling = scheduler.getPendingCount();
+
+    // Assert
+    assertTrue(completed.await(30, TimeUnit.SECONDS));
+    assertTrue(pendingAfterScheduling > payments / 2);
+    assertEquals(0, scheduler.getPendingCount());
+    assertTrue(completionThreads.size() <= THREADS, "Threads used: " + completionThreads.size());
+  }
+
+  @Test
+  @DisplayName("Should not schedule the same payment twice")
+  void testDuplicateSchedule() throws Exception {
+    // Arrange
+    scheduler = newScheduler(PaymentCompletionScheduler.SHUTDOWN_DRAIN, 10);
+    AtomicInteger runs = new AtomicInteger();
+
+    // Act
+    scheduler.schedule("pay1", Duration.ofMillis(50), runs::incrementAndGet);
+    scheduler.schedule("pay1", Duration.ofMillis(50), runs::incrementAndGet);
+    Thread.sleep(300);
+
+    // Assert
+    assertEquals(1, runs.get());
+  }
+
+  @Test
+  @DisplayName("Should run pending completions immediately when draining on shutdown")
+  void testDrainOnShutdown() {
+    // Arrange
+    scheduler = newScheduler(PaymentCompletionScheduler.SHUTDOWN_DRAIN, 10);
+    AtomicInteger runs = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      scheduler.schedule("pay" + i, Duration.ofMinutes(10), runs::incrementAndGet);
+    }
+
+    // Act
+    scheduler.shutdown();
+
+    // Assert
+    assertEquals(5, runs.get());
+    assertEquals(0, scheduler.getPendingCount());
+  }
+
+  @Test
+  @DisplayName("Should leave completions pending when persisting on shutdown")
+  void testPersistOnShutdown() {
+    // Arrange
+    scheduler = newScheduler(PaymentCompletionScheduler.SHUTDOWN_PERSIST, 10);
+    AtomicInteger runs = new AtomicInteger();
+    scheduler.schedule("pay1", Duration.ofMinutes(10), runs::incrementAndGet);
+
+    // Act
+    scheduler.shutdown();
+
+    // Assert
+    assertEquals(0, runs.get());
+  }
+
+  @Test
+  @DisplayName("Should report no capacity once max pending is reached")
+  void testCapacity() {
+    // Arrange
+    scheduler = newScheduler(PaymentCompletionScheduler.SHUTDOWN_PERSIST, 2);
+
+    // Act
+    scheduler.schedule("pay1", Duration.ofMinutes(10), () -> { });
+    scheduler.schedule("pay2", Duration.ofMinutes(10), () -> { });
+
+    // Assert
+    assertFalse(scheduler.hasCapacity());
+  }
+
+  private PaymentCompletionScheduler newScheduler(String shutdownPolicy, int maxPending) {
+    return new PaymentCompletionScheduler(PaymentCompletionScheduler.MODE_POOLED, false, THREADS,
+        maxPending, shutdownPolicy, Duration.ofSeconds(5), new SimpleMeterRegistry());
+  }
+}
@@ -1,6 +1,10 @@
 package com.pushkar.ecommersepayment.service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -10,9 +14,13 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -20,8 +28,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
 import com.pushkar.ecommersepayment.dto.PaymentRequest;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
 import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.WebhookTask;
 import com.pushkar.ecommersepayment.repository.OrderRepository;
 import com.pushkar.ecommersepayment.repository.PaymentRepository;
 
@@ -35,6 +46,9 @@ class PaymentServiceTest {
   @Mock
   private OrderRepository orderRepository;
 
+  @Mock
+  private PaymentCompletionScheduler completionScheduler;
+
   @InjectMocks
   private PaymentService paymentService;
 
@@ -44,63 +58,115 @@ class PaymentServiceTest {
 
   @BeforeEach
   void setUp() {
-    // Set up Razorpay credentials (mock values)
-    ReflectionTestUtils.setField(paymentService, "razorpayKeyId", "test_key_id");
-    ReflectionTestUtils.setField(paymentService, "razorpayKeySecret", "test_key_secret");
+    ReflectionTestUtils.setField(paymentService, "mockEnabled", true);
+    ReflectionTestUtils.setField(paymentService, "mockDelay", 2000L);
+    ReflectionTestUtils.setField(paymentService, "completionLease", Duration.ofMinutes(5));
 
     testOrder = new Order();
     testOrder.setId("order123");
     testOrder.setUserId("user123");
-    testOrder.setTotalAmount(100000.0);
+    testOrder.setTotalAmount(Money.inr(100_000_00));
     testOrder.setStatus("CREATED");
 
     testPayment = new Payment();
     testPayment.setId("pay123");
     testPayment.setOrderId("order123");
-    testPayment.setAmount(100000.0);
+    testPayment.setAmount(Money.inr(100_000_00));
     testPayment.setStatus("PENDING");
     testPayment.setRazorpayOrderId("order_razorpay123");
 
     testRequest = new PaymentRequest();
     testRequest.setOrderId("order123");
-    testRequest.setAmount(100000.0);
+    testRequest.setAmount(Money.inr(100_000_00));
   }
 
   @Test
   @DisplayName("Should handle payment success webhook")
   void testHandlePaymentSuccess() {
     // Arrange
-    when(paymentRepository.findByRazorpayOrderId("order_razorpay123"))
-        .thenReturn(Optional.of(testPayment));
-    when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
-    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
-    when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+    when(paymentRepository.transitionByRazorpayOrderId(eq("order_razorpay123"), eq(Set.of("PENDING", "FAILED")),
+        eq("SUCCESS"), eq("pay_razorpay456"), any(OutboxEvent.class))).thenReturn(Optional.of(testPayment));
+    when(orderRepository.transition(eq("order123"), eq(Set.of("CREATED", "FAILED")), eq("PAID"),
+        any(OutboxEvent.class))).thenReturn(true);
 
     // Act
     paymentService.handlePaymentSuccess("pay_razorpay456", "order_razorpay123", null);
 
-    // Assert
-    verify(paymentRepository, times(1)).save(argThat(payment -> "SUCCESS".equals(payment.getStatus()) &&
-        "pay_razorpay456".equals(payment.getPaymentId())));
-    verify(orderRepository, times(1)).save(argThat(order -> "PAID".equals(order.getStatus())));
+    // Assert: each status change carries its outbox event in the same write
+    verify(paymentRepository, times(1)).transitionByRazorpayOrderId(eq("order_razorpay123"), any(), eq("SUCCESS"),
+        eq("pay_razorpay456"), argThat(event -> OutboxEvent.PAYMENT_SUCCEEDED.equals(event.getType())));
+    verify(orderRepository, times(1)).transition(eq("order123"), any(), eq("PAID"),
+        argThat(event -> "PAID".equals(event.getData().get("status"))));
+    verify(paymentRepository, never()).save(any(Payment.class));
+    verify(orderRepository, never()).save(any(Order.class));
   }
 
   @Test
   @DisplayName("Should handle payment failure webhook")
   void testHandlePaymentFailure() {
     // Arrange
-    when(paymentRepository.findByRazorpayOrderId("order_razorpay123"))
-        .thenReturn(Optional.of(testPayment));
-    when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
-    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
-    when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+    when(paymentRepository.transitionByRazorpayOrderId(eq("order_razorpay123"), eq(Set.of("PENDING")), eq("FAILED"),
+        isNull(), any(OutboxEvent.class))).thenReturn(Optional.of(testPayment));
+    when(orderRepository.transition(eq("order123"), eq(Set.of("CREATED")), eq("FAILED"), any(OutboxEvent.class)))
+        .thenReturn(true);
 
     // Act
     paymentService.handlePaymentFailure("order_razorpay123", "Insufficient funds");
 
     // Assert
-    verify(paymentRepository, times(1)).save(argThat(payment -> "FAILED".equals(payment.getStatus())));
-    verify(orderRepository, times(1)).save(argThat(order -> "FAILED".equals(order.getStatus())));
+    verify(paymentRepository, times(1)).transitionByRazorpayOrderId(eq("order_razorpay123"), any(), eq("FAILED"),
+        isNull(), argThat(event -> "Insufficient funds".equals(event.getData().get("reason"))));
+    verify(orderRepository, times(1)).transition(eq("order123"), any(), eq("FAILED"),
+        argThat(event -> OutboxEvent.ORDER_STATUS_CHANGED.equals(event.getType())));
+  }
+
+  @Test
+  @DisplayName("Should ignore a failure arriving after the payment succeeded")
+  void testHandlePaymentFailure_AfterSuccess() {
+    // Arrange: the conditional update matches nothing, the payment is already captured
+    testPayment.setStatus("SUCCESS");
+    when(paymentRepository.transitionByRazorpayOrderId(eq("order_razorpay123"), eq(Set.of("PENDING")), eq("FAILED"),
+        isNull(), any(OutboxEvent.class))).thenReturn(Optional.empty());
+    when(paymentRepository.findByRazorpayOrderId("order_razorpay123")).thenReturn(Optional.of(testPayment));
+
+    // Act
+    paymentService.handlePaymentFailure("order_razorpay123", "Late decline");
+
+    // Assert: neither document changes, so no outbox event is written
+    verify(orderRepository, never()).transition(anyString(), any(), anyString(), any(OutboxEvent.class));
+  }
+
+  @Test
+  @DisplayName("Should bring the order in line on a redelivered success without a second payment event")
+  void testHandlePaymentSuccess_Redelivered() {
+    // Arrange: the payment is already captured; whether the order still needs it is up to its status
+    testPayment.setStatus("SUCCESS");
+    when(paymentRepository.transitionByRazorpayOrderId(eq("order_razorpay123"), any(), eq("SUCCESS"),
+        eq("pay_razorpay456"), any(OutboxEvent.class))).thenReturn(Optional.empty());
+    when(paymentRepository.findByRazorpayOrderId("order_razorpay123")).thenReturn(Optional.of(testPayment));
+    when(orderRepository.transition(eq("order123"), eq(Set.of("CREATED", "FAILED")), eq("PAID"),
+        any(OutboxEvent.class))).thenReturn(false);
+    when(orderRepository.existsById("order123")).thenReturn(true);
+
+    // Act
+    paymentService.handlePaymentSuccess("pay_razorpay456", "order_razorpay123", null);
+
+    // Assert
+    verify(orderRepository, times(1)).transition(eq("order123"), any(), eq("PAID"), any(OutboxEvent.class));
+  }
+
+  @Test
+  @DisplayName("Should fail a queued webhook whose payment is unknown so the queue retries it")
+  void testHandleWebhook_UnknownPayment() {
+    // Arrange
+    WebhookTask task = new WebhookTask(WebhookTask.PAYMENT_CAPTURED, "pay_razorpay456", "order_unknown", null);
+    when(paymentRepository.transitionByRazorpayOrderId(eq("order_unknown"), any(), eq("SUCCESS"),
+        eq("pay_razorpay456"), any(OutboxEvent.class))).thenReturn(Optional.empty());
+    when(paymentRepository.findByRazorpayOrderId("order_unknown")).thenReturn(Optional.empty());
+
+    // Act & Assert
+    assertThrows(RuntimeException.class, () -> paymentService.handleWebhook(task));
+    verify(orderRepository, never()).transition(anyString(), any(), anyString(), any(OutboxEvent.class));
   }
 
   @Test
@@ -130,6 +196,108 @@ class PaymentServiceTest {
     assertTrue(exception.getMessage().contains("not in CREATED status"));
   }
 
+  @Test
+  @DisplayName("Should reject a payment in another currency than the order")
+  void testCreatePayment_CurrencyMismatch() {
+    // Arrange
+    testRequest.setAmount(Money.of(1_200_00, "USD"));
+    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
+
+    // Act & Assert
+    RuntimeException exception = assertThrows(RuntimeException.class,
+        () -> paymentService.createPayment(testRequest));
+    assertEquals("Payment currency USD does not match order currency INR", exception.getMessage());
+    verify(paymentRepository, never()).save(any(Payment.class));
+  }
+
+  @Test
+  @DisplayName("Should schedule mock completion instead of spawning a thread")
+  void testCreatePayment_SchedulesCompletion() {
+    // Arrange
+    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
+    when(paymentRepository.findByOrderId("order123")).thenReturn(Optional.empty());
+    when(completionScheduler.hasCapacity()).thenReturn(true);
+    when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+
+    // Act
+    paymentService.createPayment(testRequest);
+
+    // Assert
+    verify(completionScheduler, times(1))
+        .schedule(anyString(), eq(Duration.ofMillis(2000)), any(Runnable.class));
+  }
+
+  @Test
+  @DisplayName("Should reject payment when completion scheduler is full")
+  void testCreatePayment_SchedulerFull() {
+    // Arrange
+    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
+    when(paymentRepository.findByOrderId("order123")).thenReturn(Optional.empty());
+    when(completionScheduler.hasCapacity()).thenReturn(false);
+
+    // Act & Assert
+    RuntimeException exception = assertThrows(RuntimeException.class,
+        () -> paymentService.createPayment(testRequest));
+    assertTrue(exception.getMessage().contains("at capacity"));
+    verify(paymentRepository, never()).save(any(Payment.class));
+  }
+
+  @Test
+  @DisplayName("Should lease a new payment to this instance")
+  void testCreatePayment_Lease() {
+    // Arrange
+    ReflectionTestUtils.setField(paymentService, "instanceId", "node-a");
+    when(orderRepository.findById("order123")).thenReturn(Optional.of(testOrder));
+    when(paymentRepository.findByOrderId("order123")).thenReturn(Optional.empty());
+    when(completionScheduler.hasCapacity()).thenReturn(true);
+    when(paymentRepository.save(any(Payment.class))).thenReturn(testPayment);
+
+    // Act
+    paymentService.createPayment(testRequest);
+
+    // Assert
+    verify(paymentRepository, times(1)).save(argThat(payment -> "node-a".equals(payment.getCompletionOwner())
+        && Duration.ofMinutes(5).equals(Duration.between(payment.getCreatedAt(), payment.getCompletionLeaseUntil()))));
+  }
+
+  @Test
+  @DisplayName("Should resume claimed payments in pages until none are left")
+  void testResumePendingPayments() {
+    // Arrange
+    ReflectionTestUtils.setField(paymentService, "resumeOnStartup", true);
+    ReflectionTestUtils.setField(paymentService, "resumePageSize", 2);
+    ReflectionTestUtils.setField(paymentService, "instanceId", "node-a");
+    when(completionScheduler.hasCapacity()).thenReturn(true);
+    when(paymentRepository.claimPending(eq("node-a"), any(Instant.class), any(Instant.class), eq(2)))
+        .thenReturn(List.of(pending("1"), pending("2")), List.of(pending("3")));
+
+    // Act
+    paymentService.resumePendingPayments();
+
+    // Assert
+    verify(paymentRepository, times(2)).claimPending(eq("node-a"), any(Instant.class), any(Instant.class), eq(2));
+    verify(completionScheduler, times(3)).schedule(anyString(), eq(Duration.ofMillis(2000)), any(Runnable.class));
+    verify(completionScheduler, never()).scheduleTask(any(Duration.class), any(Runnable.class));
+  }
+
+  @Test
+  @DisplayName("Should stop claiming when the scheduler is full and try again later")
+  void testResumePendingPayments_SchedulerFull() {
+    // Arrange
+    ReflectionTestUtils.setField(paymentService, "resumeOnStartup", true);
+    ReflectionTestUtils.setField(paymentService, "resumePageSize", 2);
+    when(completionScheduler.hasCapacity()).thenReturn(true, false);
+    when(paymentRepository.claimPending(anyString(), any(Instant.class), any(Instant.class), eq(2)))
+        .thenReturn(List.of(pending("1"), pending("2")));
+
+    // Act
+    paymentService.resumePendingPayments();
+
+    // Assert
+    verify(paymentRepository, times(1)).claimPending(anyString(), any(Instant.class), any(Instant.class), eq(2));
+    verify(completionScheduler, times(1)).scheduleTask(eq(Duration.ofMillis(2000)), any(Runnable.class));
+  }
+
   @Test
   @DisplayName("Should get payment by order ID")
   void testGetPaymentByOrderId() {
@@ -145,4 +313,13 @@ class PaymentServiceTest {
     assertEquals("order123", result.get().getOrderId());
     assertEquals("PENDING", result.get().getStatus());
   }
+
+  private static Payment pending(String id) {
+    Payment payment = new Payment();
+    payment.setId(id);
+    payment.setStatus("PENDING");
+    payment.setPaymentId("mock_pay_" + id);
+    payment.setRazorpayOrderId("mock_order_" + id);
+    return payment;
+  }
 }
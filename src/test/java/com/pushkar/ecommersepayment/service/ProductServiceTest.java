@@ -1,10 +1,13 @@
 package com.pushkar.ecommersepayment.service;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -13,16 +16,31 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.ArgumentMatchers.argThat;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.pushkar.ecommersepayment.cache.ProductCatalogCache;
+import com.pushkar.ecommersepayment.dto.CursorPage;
+import com.pushkar.ecommersepayment.model.Money;
 import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.BulkStockResult;
 import com.pushkar.ecommersepayment.repository.ProductRepository;
+import com.pushkar.ecommersepayment.repository.ProductSearchHit;
+import com.pushkar.ecommersepayment.search.ProductSearchIndex;
 
 @ExtendWith(MockitoExtension.class)
 @DisplayName("Product Service Tests")
@@ -31,6 +49,12 @@ class ProductServiceTest {
   @Mock
   private ProductRepository productRepository;
 
+  @Spy
+  private ProductCatalogCache productCache = new ProductCatalogCache(100, Duration.ofMinutes(5));
+
+  @Mock
+  private ProductSearchIndex searchIndex;
+
   @InjectMocks
   private ProductService productService;
 
@@ -42,8 +66,14 @@ class ProductServiceTest {
     testProduct.setId("prod123");
     testProduct.setName("Laptop");
     testProduct.setDescription("Gaming Laptop");
-    testProduct.setPrice(50000.0);
+    testProduct.setPrice(Money.inr(50_000_00));
     testProduct.setStock(10);
+
+    ReflectionTestUtils.setField(productService, "catalogDefaultPageSize", 20);
+    ReflectionTestUtils.setField(productService, "catalogMaxPageSize", 100);
+    ReflectionTestUtils.setField(productService, "searchDefaultPageSize", 20);
+    ReflectionTestUtils.setField(productService, "searchMaxPageSize", 100);
+    ReflectionTestUtils.setField(productService, "searchMaxResults", 1000);
   }
 
   @Test
@@ -58,30 +88,51 @@ class ProductServiceTest {
     // Assert
     assertNotNull(created);
     assertEquals("Laptop", created.getName());
-    assertEquals(50000.0, created.getPrice());
+    assertEquals(Money.inr(50_000_00), created.getPrice());
     assertEquals(10, created.getStock());
     verify(productRepository, times(1)).save(any(Product.class));
   }
 
   @Test
-  @DisplayName("Should get all products")
-  void testGetAllProducts() {
+  @DisplayName("Should get a page of products with a cursor to the next one")
+  void testGetProducts() {
     // Arrange
     Product product2 = new Product();
     product2.setId("prod456");
     product2.setName("Mouse");
-    product2.setPrice(1000.0);
+    product2.setPrice(Money.inr(1_000_00));
     product2.setStock(50);
 
-    List<Product> products = Arrays.asList(testProduct, product2);
-    when(productRepository.findAll()).thenReturn(products);
+    when(productRepository.findAllByOrderByIdAsc(Limit.of(2))).thenReturn(Arrays.asList(testProduct, product2));
+    when(productRepository.findByIdGreaterThanOrderByIdAsc("prod123", Limit.of(2))).thenReturn(List.of(product2));
+    when(productRepository.findStockByIds(anyCollection())).thenReturn(Map.of("prod123", 10, "prod456", 50));
 
     // Act
-    List<Product> result = productService.getAllProducts();
+    CursorPage<Product> first = productService.getProducts(null, 1);
+    CursorPage<Product> second = productService.getProducts(first.getNextCursor(), 1);
 
     // Assert
-    assertEquals(2, result.size());
-    verify(productRepository, times(1)).findAll();
+    assertEquals(List.of("prod123"), first.getItems().stream().map(Product::getId).toList());
+    assertNotNull(first.getNextCursor());
+    assertEquals(List.of("prod456"), second.getItems().stream().map(Product::getId).toList());
+    assertEquals(null, second.getNextCursor());
+    verify(productRepository, never()).findAll();
+  }
+
+  @Test
+  @DisplayName("Should cap the catalog page size")
+  void testGetProducts_PageSizeCap() {
+    // Arrange
+    ReflectionTestUtils.setField(productService, "catalogMaxPageSize", 50);
+    when(productRepository.findAllByOrderByIdAsc(Limit.of(51))).thenReturn(List.of(testProduct));
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of("prod123", 10));
+
+    // Act
+    CursorPage<Product> page = productService.getProducts(null, 10_000);
+
+    // Assert
+    assertEquals(1, page.getItems().size());
+    verify(productRepository, times(1)).findAllByOrderByIdAsc(Limit.of(51));
   }
 
   @Test
@@ -99,6 +150,109 @@ class ProductServiceTest {
     assertEquals("Laptop", found.getName());
   }
 
+  @Test
+  @DisplayName("Should get products by ids with a single query")
+  void testGetProductsByIds() {
+    // Arrange
+    Product product2 = new Product("prod456", "Mouse", null, Money.inr(1_000_00), 50);
+    List<String> ids = Arrays.asList("prod123", "prod456", "missing");
+    when(productRepository.findAllById(ids)).thenReturn(Arrays.asList(testProduct, product2));
+
+    // Act
+    Map<String, Product> found = productService.getProductsByIds(ids);
+
+    // Assert
+    assertEquals(2, found.size());
+    assertEquals("Mouse", found.get("prod456").getName());
+    verify(productRepository, times(1)).findAllById(ids);
+  }
+
+  @Test
+  @DisplayName("Should serve repeated product reads from the cache")
+  void testGetProductById_Cached() {
+    // Arrange
+    when(productRepository.findById("prod123")).thenReturn(Optional.of(testProduct));
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of("prod123", 10));
+
+    // Act
+    productService.getProductById("prod123");
+    Product found = productService.getProductById("prod123");
+
+    // Assert
+    assertEquals("Laptop", found.getName());
+    verify(productRepository, times(1)).findById("prod123");
+    assertEquals(1, productCache.getProductEntries().stats().hitCount());
+  }
+
+  @Test
+  @DisplayName("Should show the current stock of a cached product after stock changes")
+  void testReserveStock_CachedProductShowsCurrentStock() {
+    // Arrange
+    when(productRepository.findById("prod123")).thenReturn(Optional.of(testProduct));
+    when(productRepository.decrementStockIfAvailable("prod123", 2)).thenReturn(true);
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of("prod123", 8));
+    productService.getProductById("prod123");
+
+    // Act
+    productService.reserveStock("prod123", 2);
+    Product found = productService.getProductById("prod123");
+
+    // Assert: the name comes from the cache, the stock from the database
+    assertEquals(8, found.getStock());
+    assertEquals("Laptop", found.getName());
+    verify(productRepository, times(1)).findById("prod123");
+  }
+
+  @Test
+  @DisplayName("Should drop a cached product that no longer exists")
+  void testGetProductById_CachedButDeleted() {
+    // Arrange
+    productCache.put(testProduct);
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of());
+
+    // Act & Assert
+    assertThrows(RuntimeException.class, () -> productService.getProductById("prod123"));
+  }
+
+  @Test
+  @DisplayName("Should keep cached listing pages when stock changes and show the current stock")
+  void testReserveStock_KeepsListingPages() {
+    // Arrange
+    when(productRepository.findAllByOrderByIdAsc(Limit.of(21))).thenReturn(List.of(testProduct));
+    when(productRepository.decrementStockInBulk(any())).thenReturn(new BulkStockResult(List.of(), null));
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of("prod123", 10), Map.of("prod123", 9));
+    productService.getProducts(null, null);
+
+    // Act
+    productService.reserveStock("prod123", 1);
+    productService.reserveStock(List.of(new StockChange("prod123", 1)));
+    productService.releaseStock(List.of(new StockChange("prod123", 1)));
+    CursorPage<Product> page = productService.getProducts(null, null);
+
+    // Assert
+    assertEquals(9, page.getItems().get(0).getStock());
+    verify(productRepository, times(1)).findAllByOrderByIdAsc(Limit.of(21));
+    verify(productCache, never()).evictLists();
+  }
+
+  @Test
+  @DisplayName("Should only query uncached ids in a bulk lookup")
+  void testGetProductsByIds_UsesCache() {
+    // Arrange
+    productCache.put(testProduct);
+    Product product2 = new Product("prod456", "Mouse", null, Money.inr(1_000_00), 50);
+    when(productRepository.findAllById(List.of("prod456"))).thenReturn(List.of(product2));
+    when(productRepository.findStockByIds(List.of("prod123"))).thenReturn(Map.of("prod123", 7));
+
+    // Act
+    Map<String, Product> found = productService.getProductsByIds(List.of("prod123", "prod456"));
+
+    // Assert
+    assertEquals(2, found.size());
+    assertEquals(7, found.get("prod123").getStock());
+    verify(productRepository, times(1)).findAllById(List.of("prod456"));
+  }
+
   @Test
   @DisplayName("Should throw exception when product not found")
   void testGetProductByIdNotFound() {
@@ -126,17 +280,178 @@ class ProductServiceTest {
   }
 
   @Test
-  @DisplayName("Should search products by name")
+  @DisplayName("Should reserve stock with a conditional decrement")
+  void testReserveStock() {
+    // Arrange
+    when(productRepository.decrementStockIfAvailable("prod123", 2)).thenReturn(true);
+    when(productRepository.decrementStockIfAvailable("prod123", 20)).thenReturn(false);
+
+    // Act & Assert
+    assertTrue(productService.reserveStock("prod123", 2));
+    assertFalse(productService.reserveStock("prod123", 20));
+    verify(productRepository, never()).save(any(Product.class));
+  }
+
+  @Test
+  @DisplayName("Should reserve all lines with one bulk write")
+  void testReserveStock_Bulk() {
+    // Arrange
+    List<StockChange> changes = List.of(new StockChange("prod123", 2), new StockChange("prod456", 1));
+    when(productRepository.decrementStockInBulk(changes)).thenReturn(new BulkStockResult(changes, null));
+
+    // Act
+    Optional<StockChange> shortage = productService.reserveStock(changes);
+
+    // Assert
+    assertTrue(shortage.isEmpty());
+    verify(productRepository, times(1)).decrementStockInBulk(changes);
+    verify(productRepository, never()).incrementStockInBulk(any());
+  }
+
+  @Test
+  @DisplayName("Should compensate applied lines when a bulk reservation fails")
+  void testReserveStock_BulkCompensates() {
+    // Arrange
+    StockChange laptop = new StockChange("prod123", 2);
+    StockChange mouse = new StockChange("prod456", 1);
+    StockChange keyboard = new StockChange("prod789", 3);
+    List<StockChange> changes = List.of(laptop, mouse, keyboard);
+    when(productRepository.decrementStockInBulk(changes))
+        .thenReturn(new BulkStockResult(List.of(laptop), mouse));
+
+    // Act
+    Optional<StockChange> shortage = productService.reserveStock(changes);
+
+    // Assert
+    assertEquals(mouse, shortage.orElseThrow());
+    verify(productRepository, times(1)).incrementStockInBulk(List.of(laptop));
+  }
+
+  @Test
+  @DisplayName("Should search products by relevance")
   void testSearchProducts() {
     // Arrange
-    when(productRepository.findByNameContainingIgnoreCase("laptop"))
-        .thenReturn(Arrays.asList(testProduct));
+    when(productRepository.searchByText("laptop", null, null, 21))
+        .thenReturn(List.of(new ProductSearchHit(testProduct, 2.5)));
+
+    // Act
+    CursorPage<Product> page = productService.searchProducts("laptop", null, null);
+
+    // Assert
+    assertEquals(1, page.getItems().size());
+    assertEquals("Laptop", page.getItems().get(0).getName());
+    assertEquals(null, page.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should continue search after the last hit of the previous page")
+  void testSearchProducts_CursorPagination() {
+    // Arrange
+    Product second = new Product("prod456", "Laptop Bag", "Bag", Money.inr(1_000_00), 5);
+    Product third = new Product("prod789", "Laptop Stand", "Stand", Money.inr(1_500_00), 5);
+    when(productRepository.searchByText("laptop", null, null, 2))
+        .thenReturn(List.of(new ProductSearchHit(testProduct, 2.5), new ProductSearchHit(second, 1.5)));
+    when(productRepository.searchByText("laptop", 2.5, "prod123", 2))
+        .thenReturn(List.of(new ProductSearchHit(second, 1.5), new ProductSearchHit(third, 1.0)));
+
+    // Act
+    CursorPage<Product> first = productService.searchProducts("laptop", null, 1);
+    CursorPage<Product> next = productService.searchProducts("laptop", first.getNextCursor(), 1);
+
+    // Assert
+    assertEquals(List.of(testProduct), first.getItems());
+    assertNotNull(first.getNextCursor());
+    assertEquals(List.of(second), next.getItems());
+    assertNotNull(next.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should cap page size and total number of search results")
+  void testSearchProducts_ResultCap() {
+    // Arrange
+    ReflectionTestUtils.setField(productService, "searchMaxPageSize", 2);
+    ReflectionTestUtils.setField(productService, "searchMaxResults", 3);
+    Product second = new Product("prod456", "Laptop Bag", "Bag", Money.inr(1_000_00), 5);
+    Product third = new Product("prod789", "Laptop Stand", "Stand", Money.inr(1_500_00), 5);
+    when(productRepository.searchByText(eq("laptop"), isNull(), isNull(), eq(3)))
+        .thenReturn(List.of(new ProductSearchHit(testProduct, 3.0), new ProductSearchHit(second, 2.0),
+            new ProductSearchHit(third, 1.0)));
+    when(productRepository.searchByText(eq("laptop"), eq(2.0), eq("prod456"), eq(2)))
+        .thenReturn(List.of(new ProductSearchHit(third, 1.0), new ProductSearchHit(testProduct, 0.5)));
+
+    // Act
+    CursorPage<Product> first = productService.searchProducts("laptop", null, 50);
+    CursorPage<Product> last = productService.searchProducts("laptop", first.getNextCursor(), 50);
+
+    // Assert
+    assertEquals(2, first.getItems().size());
+    assertEquals(List.of(third), last.getItems());
+    assertEquals(null, last.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should reject a malformed search cursor")
+  void testSearchProducts_InvalidCursor() {
+    assertThrows(RuntimeException.class, () -> productService.searchProducts("laptop", "not-a-cursor", null));
+    verify(productRepository, never()).searchByText(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Should reject a search cursor with a negative result count")
+  void testSearchProducts_NegativeCursor() {
+    String cursor = Cursors.encode("-1000000", "1.5", "prod123");
+
+    assertThrows(RuntimeException.class, () -> productService.searchProducts("laptop", cursor, null));
+    verify(productRepository, never()).searchByText(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Should reject a search cursor whose result count was rewritten")
+  void testSearchProducts_TamperedCursor() {
+    // Arrange
+    Product second = new Product("prod456", "Laptop Bag", "Bag", Money.inr(1_000_00), 5);
+    when(productRepository.searchByText("laptop", null, null, 2))
+        .thenReturn(List.of(new ProductSearchHit(testProduct, 2.5), new ProductSearchHit(second, 1.5)));
+    String[] parts = Cursors.decode(productService.searchProducts("laptop", null, 1).getNextCursor(), 4);
+
+    // Act: reset the count, keeping the signature
+    String reset = Cursors.encode("0", parts[1], parts[2], parts[3]);
+
+    // Assert
+    assertEquals("1", parts[0]);
+    assertThrows(RuntimeException.class, () -> productService.searchProducts("laptop", reset, 1));
+    verify(productRepository, times(1)).searchByText(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Should serve search from the in-memory index once it is ready")
+  void testSearchProducts_InMemoryIndex() {
+    // Arrange
+    when(searchIndex.isReady()).thenReturn(true);
+    when(searchIndex.search("laptop", null, null, 21))
+        .thenReturn(List.of(new ProductSearchIndex.Hit("prod123", 3)));
+    when(productRepository.findAllById(List.of("prod123"))).thenReturn(List.of(testProduct));
+
+    // Act
+    CursorPage<Product> page = productService.searchProducts("laptop", null, null);
+
+    // Assert
+    assertEquals(List.of(testProduct), page.getItems());
+    verify(productRepository, never()).searchByText(any(), any(), any(), anyInt());
+  }
+
+  @Test
+  @DisplayName("Should keep the in-memory index in step with product writes")
+  void testSearchIndexUpdatedOnWrites() {
+    // Arrange
+    when(productRepository.save(any(Product.class))).thenReturn(testProduct);
 
     // Act
-    List<Product> results = productService.searchProducts("laptop");
+    productService.createProduct(testProduct);
+    productService.deleteProduct("prod123");
 
     // Assert
-    assertEquals(1, results.size());
-    assertEquals("Laptop", results.get(0).getName());
+    verify(searchIndex).put(testProduct);
+    verify(searchIndex).remove("prod123");
   }
 }
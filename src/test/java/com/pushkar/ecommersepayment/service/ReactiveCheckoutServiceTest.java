@@ -0,0 +1,187 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.pushkar.ecommersepayment.cart.CartStore;
+import com.pushkar.ecommersepayment.dto.AddToCartRequest;
+import com.pushkar.ecommersepayment.dto.CreateOrderRequest;
+import com.pushkar.ecommersepayment.dto.PaymentRequest;
+import com.pushkar.ecommersepayment.model.CartItem;
+import com.pushkar.ecommersepayment.model.Money;
+import com.pushkar.ecommersepayment.model.Order;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.Product;
+import com.pushkar.ecommersepayment.model.StockChange;
+import com.pushkar.ecommersepayment.repository.BulkStockResult;
+import com.pushkar.ecommersepayment.repository.reactive.ReactiveOrderRepository;
+import com.pushkar.ecommersepayment.repository.reactive.ReactivePaymentRepository;
+import com.pushkar.ecommersepayment.repository.reactive.ReactiveProductRepository;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("Reactive Checkout Service Tests")
+class ReactiveCheckoutServiceTest {
+
+  @Mock
+  private CartStore cartStore;
+
+  @Mock
+  private ReactiveOrderRepository orderRepository;
+
+  @Mock
+  private ReactivePaymentRepository paymentRepository;
+
+  @Mock
+  private ReactiveProductRepository productRepository;
+
+  @Mock
+  private PaymentService paymentService;
+
+  @InjectMocks
+  private ReactiveCheckoutService checkoutService;
+
+  private Product testProduct;
+
+  @BeforeEach
+  void setUp() {
+    testProduct = new Product();
+    testProduct.setId("prod123");
+    testProduct.setName("Laptop");
+    testProduct.setPrice(Money.inr(50_000_00));
+    testProduct.setStock(10);
+  }
+
+  @Test
+  @DisplayName("Should merge quantity into the cart line through the configured cart store")
+  void testAddToCart_ExistingItem() {
+    when(productRepository.findById("prod123")).thenReturn(Mono.just(testProduct));
+    when(cartStore.addQuantity("user123", "prod123", 3, 10))
+        .thenReturn(Optional.of(new CartItem("cart1", "user123", "prod123", 5)));
+
+    StepVerifier.create(checkoutService.addToCart(new AddToCartRequest("user123", "prod123", 3)))
+        .assertNext(item -> assertEquals(5, item.getQuantity()))
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Should reject add to cart beyond available stock")
+  void testAddToCart_InsufficientStock() {
+    when(productRepository.findById("prod123")).thenReturn(Mono.just(testProduct));
+    when(cartStore.addQuantity("user123", "prod123", 11, 10)).thenReturn(Optional.empty());
+
+    StepVerifier.create(checkoutService.addToCart(new AddToCartRequest("user123", "prod123", 11)))
+        .expectErrorMessage("Insufficient stock. Available: 10")
+        .verify();
+  }
+
+  @Test
+  @DisplayName("Should create order, reserve stock in bulk and clear cart")
+  void testCreateOrder_Success() {
+    when(cartStore.findLines("user123")).thenReturn(List.of(new CartItem("cart1", "user123", "prod123", 2)));
+    when(productRepository.findAllById(anyList())).thenReturn(Flux.just(testProduct));
+    when(productRepository.decrementStockInBulk(anyList()))
+        .thenReturn(Mono.just(new BulkStockResult(List.of(new StockChange("prod123", 2)), null)));
+    when(orderRepository.save(any(Order.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+    StepVerifier.create(checkoutService.createOrder(new CreateOrderRequest("user123")))
+        .assertNext(order -> {
+          assertEquals(Money.inr(100_000_00), order.getTotalAmount());
+          assertEquals("CREATED", order.getStatus());
+        })
+        .verifyComplete();
+    verify(cartStore).flush("user123");
+    verify(cartStore).clear("user123");
+  }
+
+  @Test
+  @DisplayName("Should release applied lines when a later line is short")
+  void testCreateOrder_InsufficientStockCompensates() {
+    Product mouse = new Product();
+    mouse.setId("prod456");
+    mouse.setName("Mouse");
+    mouse.setPrice(Money.inr(500_00));
+    mouse.setStock(1);
+    List<StockChange> applied = List.of(new StockChange("prod123", 2));
+
+    when(cartStore.findLines("user123")).thenReturn(List.of(
+        new CartItem("cart1", "user123", "prod123", 2),
+        new CartItem("cart2", "user123", "prod456", 3)));
+    when(productRepository.findAllById(anyList())).thenReturn(Flux.just(testProduct, mouse));
+    when(productRepository.decrementStockInBulk(anyList()))
+        .thenReturn(Mono.just(new BulkStockResult(applied, new StockChange("prod456", 3))));
+    when(productRepository.incrementStockInBulk(applied)).thenReturn(Mono.empty());
+
+    StepVerifier.create(checkoutService.createOrder(new CreateOrderRequest("user123")))
+        .expectErrorMessage("Insufficient stock for product: Mouse. Available: 1")
+        .verify();
+    verify(productRepository).incrementStockInBulk(applied);
+    verify(orderRepository, never()).save(any());
+  }
+
+  @Test
+  @DisplayName("Should fail order creation for empty cart")
+  void testCreateOrder_EmptyCart() {
+    when(cartStore.findLines("user123")).thenReturn(List.of());
+
+    StepVerifier.create(checkoutService.createOrder(new CreateOrderRequest("user123")))
+        .expectErrorMessage("Cart is empty")
+        .verify();
+  }
+
+  @Test
+  @DisplayName("Should create pending payment and schedule mock completion")
+  void testCreatePayment_Success() {
+    Order order = new Order();
+    order.setId("order123");
+    order.setStatus("CREATED");
+    order.setTotalAmount(Money.inr(100_000_00));
+    when(orderRepository.findById("order123")).thenReturn(Mono.just(order));
+    when(paymentRepository.findByOrderId("order123")).thenReturn(Mono.empty());
+    when(paymentService.hasProcessingCapacity()).thenReturn(true);
+    when(paymentRepository.save(any(Payment.class))).thenAnswer(inv -> Mono.just(inv.getArgument(0)));
+
+    StepVerifier.create(checkoutService.createPayment(new PaymentRequest("order123", Money.inr(100_000_00))))
+        .assertNext(payment -> {
+          assertEquals("PENDING", payment.getStatus());
+          verify(paymentService).scheduleMockCompletion(payment.getPaymentId(), payment.getRazorpayOrderId());
+        })
+        .verifyComplete();
+  }
+
+  @Test
+  @DisplayName("Should reject a payment in another currency than the order")
+  void testCreatePayment_CurrencyMismatch() {
+    Order order = new Order();
+    order.setId("order123");
+    order.setStatus("CREATED");
+    order.setTotalAmount(Money.inr(100_000_00));
+    when(orderRepository.findById("order123")).thenReturn(Mono.just(order));
+
+    StepVerifier.create(checkoutService.createPayment(new PaymentRequest("order123", Money.of(1_200_00, "USD"))))
+        .expectErrorMessage("Payment currency USD does not match order currency INR")
+        .verify();
+    verify(paymentRepository, never()).save(any());
+  }
+}
@@ -0,0 +1,89 @@
+package com.pushkar.ecommersepayment.service;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.pushkar.ecommersepayment.dto.CursorPage;
+import com.pushkar.ecommersepayment.model.User;
+import com.pushkar.ecommersepayment.repository.UserRepository;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("User Service Tests")
+class UserServiceTest {
+
+  @Mock
+  private UserRepository userRepository;
+
+  @InjectMocks
+  private UserService userService;
+
+  private User alice;
+  private User bob;
+
+  @BeforeEach
+  void setUp() {
+    alice = new User("user1", "alice", null, null);
+    bob = new User("user2", "bob", null, null);
+
+    ReflectionTestUtils.setField(userService, "defaultPageSize", 50);
+    ReflectionTestUtils.setField(userService, "maxPageSize", 500);
+  }
+
+  @Test
+  @DisplayName("Should page users by id with only the requested fields")
+  void testGetUsers_CursorPagination() {
+    // Arrange
+    Set<String> fields = Set.of("username");
+    when(userRepository.findPage(null, 2, fields)).thenReturn(List.of(alice, bob));
+    when(userRepository.findPage("user1", 2, fields)).thenReturn(List.of(bob));
+
+    // Act
+    CursorPage<User> first = userService.getUsers(null, 1, fields);
+    CursorPage<User> second = userService.getUsers(first.getNextCursor(), 1, fields);
+
+    // Assert
+    assertEquals(List.of(alice), first.getItems());
+    assertNotNull(first.getNextCursor());
+    assertEquals(List.of(bob), second.getItems());
+    assertNull(second.getNextCursor());
+  }
+
+  @Test
+  @DisplayName("Should cap the user page size")
+  void testGetUsers_PageSizeCap() {
+    // Arrange
+    when(userRepository.findPage(null, 501, Set.of())).thenReturn(List.of(alice));
+
+    // Act
+    CursorPage<User> page = userService.getUsers(null, 1_000_000, null);
+
+    // Assert
+    assertEquals(List.of(alice), page.getItems());
+  }
+
+  @Test
+  @DisplayName("Should reject projection to an unknown field")
+  void testGetUsers_UnknownField() {
+    assertThrows(RuntimeException.class, () -> userService.getUsers(null, 10, Set.of("password")));
+    assertThrows(RuntimeException.class, () -> userService.streamUsers(Set.of("password")));
+    verify(userRepository, never()).findPage(any(), anyInt(), any());
+  }
+}
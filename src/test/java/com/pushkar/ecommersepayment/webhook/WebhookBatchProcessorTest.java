@@ -0,0 +1,297 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.pushkar.ecommersepayment.dto.PaymentWebhookRequest;
+import com.pushkar.ecommersepayment.dto.WebhookEventResult;
+import com.pushkar.ecommersepayment.model.OutboxEvent;
+import com.pushkar.ecommersepayment.model.Payment;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+import com.pushkar.ecommersepayment.repository.OrderRepository;
+import com.pushkar.ecommersepayment.repository.PaymentRepository;
+import com.pushkar.ecommersepayment.repository.StatusTransition;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Webhook Batch Processor Tests")
+class WebhookBatchProcessorTest {
+
+  private PaymentRepository paymentRepository;
+  private OrderRepository orderRepository;
+  private WebhookDeduplicator deduplicator;
+  private WebhookQueue webhookQueue;
+  private SimpleMeterRegistry meterRegistry;
+  private WebhookBatchProcessor processor;
+
+  @BeforeEach
+  void setUp() {
+    paymentRepository = mock(PaymentRepository.class);
+    orderRepository = mock(OrderRepository.class);
+    deduplicator = mock(WebhookDeduplicator.class);
+    webhookQueue = mock(WebhookQueue.class);
+    meterRegistry = new SimpleMeterRegistry();
+    when(deduplicator.findProcessed(anyCollection())).thenReturn(new HashSet<>());
+    when(paymentRepository.transitionAllByRazorpayOrderId(anyList())).thenReturn(Set.of());
+    when(orderRepository.transitionAll(anyList())).thenReturn(Set.of());
+    when(webhookQueue.findQueuedOrders(anyCollection())).thenReturn(Set.of());
+    processor = new WebhookBatchProcessor(paymentRepository, orderRepository, deduplicator, webhookQueue, 3, 10,
+        meterRegistry);
+  }
+
+  @Test
+  @DisplayName("Should fold the events of one payment into one payment and one order update")
+  @SuppressWarnings("unchecked")
+  void testFoldsEventsPerPayment() {
+    // Arrange
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection()))
+        .thenReturn(payments("rzp_1", "order1"));
+    List<PaymentWebhookRequest> events = List.of(
+        new PaymentWebhookRequest("payment.failed", null, "rzp_1", "declined"),
+        new PaymentWebhookRequest("payment.captured", "pay1", "rzp_1", null));
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert
+    assertEquals(List.of(WebhookEventResult.APPLIED, WebhookEventResult.APPLIED), statuses(results));
+    ArgumentCaptor<List<StatusTransition>> payments = ArgumentCaptor.forClass(List.class);
+    ArgumentCaptor<List<StatusTransition>> orders = ArgumentCaptor.forClass(List.class);
+    verify(paymentRepository, times(1)).transitionAllByRazorpayOrderId(payments.capture());
+    verify(orderRepository, times(1)).transitionAll(orders.capture());
+
+    StatusTransition payment = payments.getValue().get(0);
+    assertEquals(1, payments.getValue().size());
+    assertEquals("rzp_1", payment.id());
+    assertEquals(Set.of("PENDING"), payment.expectedStatuses());
+    assertEquals("SUCCESS", payment.status());
+    assertEquals("pay1", payment.paymentId());
+    assertEquals(List.of(OutboxEvent.PAYMENT_FAILED, OutboxEvent.PAYMENT_SUCCEEDED), types(payment.events()));
+
+    StatusTransition order = orders.getValue().get(0);
+    assertEquals("order1", order.id());
+    assertEquals(Set.of("CREATED"), order.expectedStatuses());
+    assertEquals("PAID", order.status());
+    assertNull(order.paymentId());
+    assertEquals(List.of(OutboxEvent.ORDER_STATUS_CHANGED, OutboxEvent.ORDER_STATUS_CHANGED), types(order.events()));
+    verify(deduplicator, times(1)).markProcessed(
+        List.of("payment.failed|null|rzp_1", "payment.captured|pay1|rzp_1"));
+  }
+
+  @Test
+  @DisplayName("Should skip a failure arriving after the capture instead of failing the paid order")
+  @SuppressWarnings("unchecked")
+  void testSkipsLateFailure() {
+    // Arrange
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection()))
+        .thenReturn(Map.of("rzp_1", payment("order1", "SUCCESS")));
+    List<PaymentWebhookRequest> events = List.of(
+        new PaymentWebhookRequest("payment.failed", null, "rzp_1", "declined"));
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert: no payment update, and the order is only brought in line if it is not paid yet
+    assertEquals(List.of(WebhookEventResult.APPLIED), statuses(results));
+    assertEquals("Payment already SUCCESS", results.get(0).message());
+    verify(paymentRepository, times(1)).transitionAllByRazorpayOrderId(List.of());
+    ArgumentCaptor<List<StatusTransition>> orders = ArgumentCaptor.forClass(List.class);
+    verify(orderRepository, times(1)).transitionAll(orders.capture());
+    StatusTransition order = orders.getValue().get(0);
+    assertEquals(Set.of("CREATED", "FAILED"), order.expectedStatuses());
+    assertEquals("PAID", order.status());
+    verify(deduplicator, times(1)).markProcessed(List.of("payment.failed|null|rzp_1"));
+  }
+
+  @Test
+  @DisplayName("Should report invalid, ignored, duplicate and unknown events without writing them")
+  void testPerEventResults() {
+    // Arrange
+    when(deduplicator.findProcessed(anyCollection()))
+        .thenReturn(new HashSet<>(Set.of("payment.captured|pay2|rzp_2")));
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection())).thenReturn(Map.of());
+    List<PaymentWebhookRequest> events = Arrays.asList(
+        null,
+        new PaymentWebhookRequest(null, null, "rzp_1", null),
+        new PaymentWebhookRequest("refund.created", null, "rzp_1", null),
+        new PaymentWebhookRequest("payment.captured", "pay1", null, null),
+        new PaymentWebhookRequest("payment.captured", "pay2", "rzp_2", null),
+        new PaymentWebhookRequest("payment.captured", "pay2", "rzp_2", null),
+        new PaymentWebhookRequest("payment.captured", "pay3", "rzp_3", null));
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert: chunks of three, so the repeat at index 5 is only caught by the store lookup
+    assertEquals(List.of(WebhookEventResult.INVALID, WebhookEventResult.INVALID, WebhookEventResult.IGNORED,
+        WebhookEventResult.INVALID, WebhookEventResult.DUPLICATE, WebhookEventResult.DUPLICATE,
+        WebhookEventResult.NOT_FOUND), statuses(results));
+    for (int i = 0; i < results.size(); i++) {
+      assertEquals(i, results.get(i).index());
+    }
+    verify(paymentRepository, never()).transitionAllByRazorpayOrderId(anyList());
+    verify(orderRepository, never()).transitionAll(anyList());
+    verify(deduplicator, never()).markProcessed(anyCollection());
+    assertEquals(3, meterRegistry.counter("webhook.batch.events", "status", WebhookEventResult.INVALID).count());
+  }
+
+  @Test
+  @DisplayName("Should drop repeats within a chunk before touching the database")
+  void testDropsRepeatsInChunk() {
+    // Arrange
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection()))
+        .thenReturn(payments("rzp_1", "order1"));
+    PaymentWebhookRequest captured = new PaymentWebhookRequest("payment.captured", "pay1", "rzp_1", null);
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(List.of(captured, captured, captured));
+
+    // Assert
+    assertEquals(List.of(WebhookEventResult.APPLIED, WebhookEventResult.DUPLICATE, WebhookEventResult.DUPLICATE),
+        statuses(results));
+    verify(deduplicator, times(1)).findProcessed(
+        argThat(keys -> List.of("payment.captured|pay1|rzp_1").equals(List.copyOf(keys))));
+  }
+
+  @Test
+  @DisplayName("Should fail the events of payments whose update failed and queue those whose order update failed")
+  @SuppressWarnings("unchecked")
+  void testPartialFailure() {
+    // Arrange
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection()))
+        .thenReturn(payments("rzp_1", "order1", "rzp_2", "order2", "rzp_3", "order3"));
+    when(paymentRepository.transitionAllByRazorpayOrderId(anyList())).thenReturn(Set.of("rzp_2"));
+    when(orderRepository.transitionAll(anyList())).thenReturn(Set.of("order3"));
+    List<PaymentWebhookRequest> events = List.of(
+        new PaymentWebhookRequest("payment.captured", "pay1", "rzp_1", null),
+        new PaymentWebhookRequest("payment.captured", "pay2", "rzp_2", null),
+        new PaymentWebhookRequest("order.paid", "pay3", "rzp_3", null));
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert: the order of a failed payment is left alone, and failed events stay retryable
+    assertEquals(List.of(WebhookEventResult.APPLIED, WebhookEventResult.FAILED, WebhookEventResult.QUEUED),
+        statuses(results));
+    verify(orderRepository, times(1)).transitionAll(any());
+    // The captured payment of order3 is not resent; the queue only has its order left to move
+    ArgumentCaptor<List<WebhookTask>> queued = ArgumentCaptor.forClass(List.class);
+    verify(webhookQueue, times(1)).enqueueAll(queued.capture());
+    assertEquals(List.of("rzp_3"), queued.getValue().stream().map(WebhookTask::getOrderId).toList());
+    verify(deduplicator, times(1)).markProcessed(List.of("payment.captured|pay1|rzp_1"));
+  }
+
+  @Test
+  @DisplayName("Should queue the events of orders that still have queued webhooks instead of overtaking them")
+  @SuppressWarnings("unchecked")
+  void testQueuesBehindPendingWebhooks() {
+    // Arrange
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection()))
+        .thenReturn(payments("rzp_1", "order1", "rzp_2", "order2"));
+    when(webhookQueue.findQueuedOrders(anyCollection())).thenReturn(Set.of("rzp_1"));
+    List<PaymentWebhookRequest> events = List.of(
+        new PaymentWebhookRequest("payment.failed", null, "rzp_1", "declined"),
+        new PaymentWebhookRequest("payment.captured", "pay2", "rzp_2", null),
+        new PaymentWebhookRequest("payment.captured", "pay1", "rzp_1", null));
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert: rzp_1's events go to the queue in batch order and are not marked as processed yet
+    assertEquals(List.of(WebhookEventResult.QUEUED, WebhookEventResult.APPLIED, WebhookEventResult.QUEUED),
+        statuses(results));
+    ArgumentCaptor<List<WebhookTask>> queued = ArgumentCaptor.forClass(List.class);
+    verify(webhookQueue, times(1)).enqueueAll(queued.capture());
+    assertEquals(List.of(WebhookTask.PAYMENT_FAILED, WebhookTask.PAYMENT_CAPTURED),
+        queued.getValue().stream().map(WebhookTask::getEvent).toList());
+    ArgumentCaptor<List<StatusTransition>> payments = ArgumentCaptor.forClass(List.class);
+    verify(paymentRepository, times(1)).transitionAllByRazorpayOrderId(payments.capture());
+    assertEquals(List.of("rzp_2"), payments.getValue().stream().map(StatusTransition::id).toList());
+    verify(deduplicator, times(1)).markProcessed(List.of("payment.captured|pay2|rzp_2"));
+  }
+
+  @Test
+  @DisplayName("Should apply 100,000 events with a handful of round trips per chunk")
+  void testLargeBatch() {
+    // Arrange
+    processor = new WebhookBatchProcessor(paymentRepository, orderRepository, deduplicator, webhookQueue, 10_000,
+        100_000, meterRegistry);
+    Map<String, Payment> payments = new HashMap<>();
+    List<PaymentWebhookRequest> events = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      payments.put("rzp_" + i, payment("order" + i, "PENDING"));
+      events.add(new PaymentWebhookRequest("payment.captured", "pay" + i, "rzp_" + i, null));
+      events.add(new PaymentWebhookRequest("order.paid", "pay" + i, "rzp_" + i, null));
+    }
+    when(paymentRepository.findStatusesByRazorpayOrderId(anyCollection())).thenReturn(payments);
+
+    // Act
+    List<WebhookEventResult> results = processor.apply(events);
+
+    // Assert
+    assertEquals(100_000, results.stream().filter(r -> WebhookEventResult.APPLIED.equals(r.status())).count());
+    verify(deduplicator, times(10)).findProcessed(anyCollection());
+    verify(paymentRepository, times(10)).findStatusesByRazorpayOrderId(anyCollection());
+    verify(webhookQueue, times(10)).findQueuedOrders(anyCollection());
+    verify(paymentRepository, times(10)).transitionAllByRazorpayOrderId(anyList());
+    verify(orderRepository, times(10)).transitionAll(anyList());
+    verify(deduplicator, times(10)).markProcessed(anyCollection());
+  }
+
+  @Test
+  @DisplayName("Should reject a batch over the size limit")
+  void testRejectsOversizedBatch() {
+    List<PaymentWebhookRequest> events = new ArrayList<>();
+    for (int i = 0; i < 11; i++) {
+      events.add(new PaymentWebhookRequest("payment.captured", "pay" + i, "rzp_" + i, null));
+    }
+
+    assertThrows(IllegalArgumentException.class, () -> processor.apply(events));
+    verify(deduplicator, never()).findProcessed(anyCollection());
+  }
+
+  private static Map<String, Payment> payments(String... gatewayAndOrderIds) {
+    Map<String, Payment> payments = new HashMap<>();
+    for (int i = 0; i < gatewayAndOrderIds.length; i += 2) {
+      payments.put(gatewayAndOrderIds[i], payment(gatewayAndOrderIds[i + 1], "PENDING"));
+    }
+    return payments;
+  }
+
+  private static Payment payment(String orderId, String status) {
+    Payment payment = new Payment();
+    payment.setOrderId(orderId);
+    payment.setStatus(status);
+    return payment;
+  }
+
+  private static List<String> statuses(List<WebhookEventResult> results) {
+    return results.stream().map(WebhookEventResult::status).toList();
+  }
+
+  private static List<String> types(List<OutboxEvent> events) {
+    return events.stream().map(OutboxEvent::getType).toList();
+  }
+}
@@ -0,0 +1,146 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.ProcessedWebhook;
+import com.pushkar.ecommersepayment.model.WebhookTask;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Webhook Deduplicator Tests")
+class WebhookDeduplicatorTest {
+
+  private MongoTemplate mongoTemplate;
+  private BulkOperations bulkOperations;
+  private SimpleMeterRegistry meterRegistry;
+  private WebhookDeduplicator deduplicator;
+
+  @BeforeEach
+  void setUp() {
+    mongoTemplate = mock(MongoTemplate.class);
+    bulkOperations = mock(BulkOperations.class);
+    when(mongoTemplate.bulkOps(BulkMode.UNORDERED, ProcessedWebhook.class)).thenReturn(bulkOperations);
+    meterRegistry = new SimpleMeterRegistry();
+    deduplicator = new WebhookDeduplicator(mongoTemplate, Duration.ofHours(24), 10_000, meterRegistry);
+  }
+
+  @Test
+  @DisplayName("Should key a delivery by event, payment id and order id")
+  void testKey() {
+    WebhookTask captured = new WebhookTask(WebhookTask.PAYMENT_CAPTURED, "pay1", "order1", null);
+    WebhookTask failed = new WebhookTask(WebhookTask.PAYMENT_FAILED, null, "order1", "declined");
+
+    assertEquals("payment.captured|pay1|order1", WebhookDeduplicator.keyOf(captured));
+    assertEquals("payment.failed|null|order1", WebhookDeduplicator.keyOf(failed));
+  }
+
+  @Test
+  @DisplayName("Should record applied keys in memory and in the store with one bulk write")
+  void testMarkProcessed() {
+    // Act
+    deduplicator.markProcessed(List.of("k1", "k2"));
+
+    // Assert
+    verify(bulkOperations, times(2)).upsert(any(Query.class), any(Update.class));
+    verify(bulkOperations, times(1)).execute();
+    assertTrue(deduplicator.isProcessed("k1"));
+    verify(mongoTemplate, never()).exists(any(Query.class), eq(ProcessedWebhook.class));
+  }
+
+  @Test
+  @DisplayName("Should fall back to the store for keys applied by another instance")
+  void testStoreLookup() {
+    // Arrange
+    when(mongoTemplate.exists(any(Query.class), eq(ProcessedWebhook.class))).thenReturn(true, false);
+
+    // Act & Assert: the store hit is cached, so the second lookup stays in memory
+    assertTrue(deduplicator.isProcessed("remote"));
+    assertTrue(deduplicator.isProcessed("remote"));
+    assertFalse(deduplicator.isProcessed("fresh"));
+    verify(mongoTemplate, times(2)).exists(any(Query.class), eq(ProcessedWebhook.class));
+    assertEquals(1, meterRegistry.counter("webhook.dedup.store.lookups", "result", "hit").count());
+    assertEquals(1, meterRegistry.counter("webhook.dedup.store.lookups", "result", "miss").count());
+  }
+
+  @Test
+  @DisplayName("Should look up a batch of keys with one query")
+  void testFindProcessed() {
+    // Arrange
+    deduplicator.markProcessed(List.of("k1"));
+    when(mongoTemplate.find(any(Query.class), eq(ProcessedWebhook.class)))
+        .thenReturn(List.of(new ProcessedWebhook("k2", null)));
+
+    // Act
+    Set<String> processed = deduplicator.findProcessed(List.of("k1", "k2", "k3"));
+
+    // Assert
+    assertEquals(Set.of("k1", "k2"), processed);
+    verify(mongoTemplate, times(1)).find(any(Query.class), eq(ProcessedWebhook.class));
+    assertEquals(1, meterRegistry.counter("webhook.dedup.store.lookups", "result", "miss").count());
+  }
+
+  @Test
+  @DisplayName("Should answer a redelivery storm from memory without touching the database")
+  void testRedeliveryStorm() throws Exception {
+    // Arrange: 1,000 applied webhooks, each redelivered 100 times from 16 threads
+    List<String> keys = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      keys.add(WebhookDeduplicator.keyOf(
+          new WebhookTask(WebhookTask.PAYMENT_CAPTURED, "pay" + i, "order" + i, null)));
+    }
+    deduplicator.markProcessed(keys);
+    ExecutorService executor = Executors.newFixedThreadPool(16);
+    List<Future<Integer>> results = new ArrayList<>();
+
+    // Act
+    for (int thread = 0; thread < 16; thread++) {
+      int owner = thread;
+      results.add(executor.submit(() -> {
+        int dropped = 0;
+        for (int delivery = owner; delivery < 100_000; delivery += 16) {
+          if (deduplicator.isProcessed(keys.get(delivery % keys.size()))) {
+            dropped++;
+          }
+        }
+        return dropped;
+      }));
+    }
+    int dropped = 0;
+    for (Future<Integer> result : results) {
+      dropped += result.get(30, TimeUnit.SECONDS);
+    }
+    executor.shutdown();
+
+    // Assert
+    assertEquals(100_000, dropped);
+    verify(mongoTemplate, never()).exists(any(Query.class), eq(ProcessedWebhook.class));
+    assertEquals(1.0, deduplicator.getHitRatio());
+    assertEquals(1.0, meterRegistry.get("webhook.dedup.hit.ratio").gauge().value());
+  }
+}
@@ -0,0 +1,225 @@
+package com.pushkar.ecommersepayment.webhook;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.bson.Document;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import com.pushkar.ecommersepayment.model.WebhookTask;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@DisplayName("Webhook Queue Tests")
+class WebhookQueueTest {
+
+  private MongoTemplate mongoTemplate;
+  private WebhookDeduplicator deduplicator;
+  private List<String> applied;
+  private List<String> failing;
+  private SimpleMeterRegistry meterRegistry;
+  private WebhookQueue queue;
+
+  @BeforeEach
+  void setUp() {
+    mongoTemplate = mock(MongoTemplate.class);
+    deduplicator = mock(WebhookDeduplicator.class);
+    when(deduplicator.findProcessed(anyCollection())).thenAnswer(invocation -> new HashSet<>());
+    applied = new ArrayList<>();
+    failing = new ArrayList<>();
+    meterRegistry = new SimpleMeterRegistry();
+    queue = new WebhookQueue(mongoTemplate, task -> {
+      if (failing.contains(task.getId())) {
+        throw new RuntimeException("Payment not found for order: " + task.getOrderId());
+      }
+      applied.add(task.getId());
+    }, deduplicator, 4, 100, 3, Duration.ofSeconds(1), Duration.ofSeconds(10), meterRegistry);
+  }
+
+  @Test
+  @DisplayName("Should store the webhook with its partition before acknowledging")
+  void testEnqueue() {
+    // Arrange
+    when(mongoTemplate.insert(any(WebhookTask.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+    // Act
+    WebhookTask task = queue.enqueue(new WebhookTask(WebhookTask.PAYMENT_CAPTURED, "pay1", "order1", null));
+
+    // Assert
+    verify(mongoTemplate, times(1)).insert(task);
+    assertEquals(WebhookQueue.partitionOf("order1", 4), task.getPartition());
+    assertNotNull(task.getReceivedAt());
+    assertEquals(task.getReceivedAt(), task.getNextAttemptAt());
+    assertEquals(1, meterRegistry.counter("webhook.queue.enqueued").count());
+  }
+
+  @Test
+  @DisplayName("Should apply a batch in order and delete it with one write")
+  void testDrainAppliesBatch() {
+    // Arrange
+    queued(task("t1", "order1", 0, null), task("t2", "order2", 0, null), task("t3", "order1", 0, null));
+
+    // Act
+    int drained = queue.drain(0);
+
+    // Assert
+    assertEquals(3, drained);
+    assertEquals(List.of("t1", "t2", "t3"), applied);
+    verify(mongoTemplate, times(1)).remove(any(Query.class), eq(WebhookTask.class));
+    verify(deduplicator, times(1)).markProcessed(List.of(
+        "payment.captured|pay_t1|order1", "payment.captured|pay_t2|order2", "payment.captured|pay_t3|order1"));
+    assertEquals(3, meterRegistry.counter("webhook.queue.processed").count());
+  }
+
+  @Test
+  @DisplayName("Should drop redeliveries of applied webhooks without calling the handler")
+  void testDropsDuplicates() {
+    // Arrange: t1 was applied earlier, t3 repeats t2 within the batch
+    WebhookTask t2 = task("t2", "order2", 0, null);
+    WebhookTask t3 = task("t3", "order2", 0, null);
+    t3.setPaymentId(t2.getPaymentId());
+    when(deduplicator.findProcessed(anyCollection()))
+        .thenAnswer(invocation -> new HashSet<>(Set.of("payment.captured|pay_t1|order1")));
+    queued(task("t1", "order1", 0, null), t2, t3);
+
+    // Act
+    int drained = queue.drain(0);
+
+    // Assert
+    assertEquals(3, drained);
+    assertEquals(List.of("t2"), applied);
+    verify(deduplicator, times(2)).dropped("worker");
+    verify(deduplicator, times(1)).markProcessed(List.of("payment.captured|pay_t2|order2"));
+    assertEquals(1, meterRegistry.counter("webhook.queue.processed").count());
+  }
+
+  @Test
+  @DisplayName("Should hold back later webhooks of an order whose earlier webhook failed")
+  void testFailureBlocksOrder() {
+    // Arrange
+    failing.add("t1");
+    queued(task("t1", "order1", 0, null), task("t2", "order2", 0, null), task("t3", "order1", 0, null));
+
+    // Act
+    int drained = queue.drain(0);
+
+    // Assert
+    assertEquals(1, drained);
+    assertEquals(List.of("t2"), applied);
+    ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+    verify(mongoTemplate, times(1)).updateFirst(any(Query.class), update.capture(), eq(WebhookTask.class));
+    assertEquals(1, update.getValue().getUpdateObject().get("$set", Document.class).get("attempts"));
+    assertEquals(1, meterRegistry.counter("webhook.queue.retries").count());
+  }
+
+  @Test
+  @DisplayName("Should leave orders waiting for a retry out of the batch query")
+  void testBackoffNotDue() {
+    // Arrange: order1's oldest task waits for its retry, so only order2 is queried
+    when(mongoTemplate.findDistinct(any(Query.class), eq("orderId"), eq(WebhookTask.class), eq(String.class)))
+        .thenReturn(List.of("order1"));
+    queued(task("t3", "order2", 0, null));
+
+    // Act
+    int drained = queue.drain(0);
+
+    // Assert
+    assertEquals(1, drained);
+    assertEquals(List.of("t3"), applied);
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(query.capture(), eq(WebhookTask.class));
+    Document filter = query.getValue().getQueryObject();
+    assertEquals(List.of("order1"), filter.get("orderId", Document.class).get("$nin"));
+    assertNotNull(filter.get("nextAttemptAt", Document.class).get("$lte"));
+    verify(mongoTemplate, never()).updateFirst(any(Query.class), any(Update.class), eq(WebhookTask.class));
+  }
+
+  @Test
+  @DisplayName("Should move a webhook to the dead-letter collection after its last attempt")
+  void testDeadLetter() {
+    // Arrange
+    failing.add("t1");
+    queued(task("t1", "order1", 2, null), task("t2", "order1", 0, null));
+
+    // Act
+    int drained = queue.drain(0);
+
+    // Assert: the dead letter no longer blocks its order
+    assertEquals(2, drained);
+    assertEquals(List.of("t2"), applied);
+    ArgumentCaptor<WebhookTask> dead = ArgumentCaptor.forClass(WebhookTask.class);
+    verify(mongoTemplate, times(1)).insert(dead.capture(), eq(WebhookQueue.DEAD_LETTER_COLLECTION));
+    assertEquals("t1", dead.getValue().getId());
+    assertEquals(3, dead.getValue().getAttempts());
+    assertEquals("Payment not found for order: order1", dead.getValue().getLastError());
+    assertNotNull(dead.getValue().getFailedAt());
+    assertEquals(1, meterRegistry.counter("webhook.queue.dead_lettered").count());
+  }
+
+  @Test
+  @DisplayName("Should look up queued orders within their partitions only")
+  void testFindQueuedOrders() {
+    // Arrange
+    when(mongoTemplate.findDistinct(any(Query.class), eq("orderId"), eq(WebhookTask.class), eq(String.class)))
+        .thenReturn(List.of("order1"));
+
+    // Act
+    Set<String> queued = queue.findQueuedOrders(List.of("order1", "order2"));
+
+    // Assert
+    assertEquals(Set.of("order1"), queued);
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).findDistinct(query.capture(), eq("orderId"), eq(WebhookTask.class), eq(String.class));
+    Document filter = query.getValue().getQueryObject();
+    assertEquals(Set.of(WebhookQueue.partitionOf("order1", 4), WebhookQueue.partitionOf("order2", 4)),
+        Set.copyOf((Collection<?>) filter.get("partition", Document.class).get("$in")));
+  }
+
+  @Test
+  @DisplayName("Should double the backoff per attempt up to the maximum")
+  void testBackoff() {
+    Duration initial = Duration.ofSeconds(1);
+    Duration max = Duration.ofMinutes(5);
+
+    assertEquals(Duration.ofSeconds(1), WebhookQueue.backoff(1, initial, max));
+    assertEquals(Duration.ofSeconds(2), WebhookQueue.backoff(2, initial, max));
+    assertEquals(Duration.ofSeconds(64), WebhookQueue.backoff(7, initial, max));
+    assertEquals(max, WebhookQueue.backoff(12, initial, max));
+    assertEquals(max, WebhookQueue.backoff(100, initial, max));
+  }
+
+  private void queued(WebhookTask... tasks) {
+    when(mongoTemplate.find(any(Query.class), eq(WebhookTask.class))).thenReturn(List.of(tasks));
+  }
+
+  private static WebhookTask task(String id, String orderId, int attempts, Instant nextAttemptAt) {
+    WebhookTask task = new WebhookTask(WebhookTask.PAYMENT_CAPTURED, "pay_" + id, orderId, null);
+    Instant receivedAt = Instant.now().minusSeconds(5);
+    task.setId(id);
+    task.setAttempts(attempts);
+    task.setReceivedAt(receivedAt);
+    task.setNextAttemptAt(nextAttemptAt != null ? nextAttemptAt : receivedAt);
+    return task;
+  }
+}